@@ -0,0 +1,70 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.gdcreplication.util.PartitionBatchResult;
+import com.amazonaws.services.glue.model.Partition;
+
+/**
+ * Measures the throughput, in partitions per second, of adding and deleting
+ * partitions with GlueUtil for a growing level of concurrency against a Glue
+ * stub with a fixed latency per request.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchPartitionBenchmark {
+
+	private static final int NUMBER_OF_PARTITIONS = 5000;
+
+	@Param({ "1", "2", "4", "8", "16" })
+	public int concurrency;
+
+	@Param({ "10" })
+	public long latencyMillis;
+
+	private FakeGlue glue;
+	private GlueUtil glueUtil;
+	private List<Partition> partitionList;
+
+	@Setup
+	public void setup() {
+		glue = new FakeGlue(0, 1000, latencyMillis);
+		glueUtil = new GlueUtil();
+		partitionList = FakeGlue.createPartitions(NUMBER_OF_PARTITIONS);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public PartitionBatchResult addPartitions() {
+		return glueUtil.addPartitionsConcurrently(glue, partitionList, "1234567890", "db", "table", concurrency);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public PartitionBatchResult deletePartitions() {
+		return glueUtil.deletePartitionsConcurrently(glue, "1234567890", "db", "table", partitionList, concurrency);
+	}
+}
@@ -0,0 +1,63 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.gdcreplication.lambda.GDCReplicationPlanner;
+import com.amazonaws.services.glue.model.Database;
+
+/**
+ * Measures the time GDCReplicationPlanner.getRequiredDatabases takes to match
+ * the databases of a catalog against a list of prefixes. The databases are
+ * copies of the sample database, spread over 1000 name groups; every other
+ * prefix matches a group and the others match nothing.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DatabasePrefixBenchmark {
+
+	private static final int NUMBER_OF_GROUPS = 1000;
+
+	@Param({ "100000" })
+	public int numberOfDatabases;
+
+	@Param({ "1", "10", "100" })
+	public int numberOfPrefixes;
+
+	private List<Database> databaseList;
+	private List<String> prefixList;
+
+	@Setup
+	public void setup() {
+		databaseList = SampleData.createDatabases(numberOfDatabases, NUMBER_OF_GROUPS);
+		prefixList = new ArrayList<String>();
+		for (int i = 0; i < numberOfPrefixes; i++)
+			prefixList.add(i % 2 == 0 ? "db" + i + "_" : "none" + i + "_");
+	}
+
+	@Benchmark
+	public List<Database> getRequiredDatabases() {
+		return GDCReplicationPlanner.getRequiredDatabases(databaseList, prefixList);
+	}
+}
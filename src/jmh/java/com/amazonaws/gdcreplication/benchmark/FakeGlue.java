@@ -0,0 +1,110 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.glue.AbstractAWSGlue;
+import com.amazonaws.services.glue.model.BatchCreatePartitionRequest;
+import com.amazonaws.services.glue.model.BatchCreatePartitionResult;
+import com.amazonaws.services.glue.model.BatchDeletePartitionRequest;
+import com.amazonaws.services.glue.model.BatchDeletePartitionResult;
+import com.amazonaws.services.glue.model.Column;
+import com.amazonaws.services.glue.model.GetPartitionsRequest;
+import com.amazonaws.services.glue.model.GetPartitionsResult;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.PartitionError;
+import com.amazonaws.services.glue.model.SerDeInfo;
+import com.amazonaws.services.glue.model.StorageDescriptor;
+
+/**
+ * This is a stubbed AWSGlue used by the benchmarks. It serves a fixed number
+ * of partitions for any table, accepts every batch create and delete request
+ * and sleeps for a fixed latency on every call to simulate the round trip to
+ * the Glue service.
+ *
+ */
+public class FakeGlue extends AbstractAWSGlue {
+
+	private final List<Partition> partitionList;
+	private final int pageSize;
+	private final long latencyMillis;
+
+	public FakeGlue(int numberOfPartitions, int pageSize, long latencyMillis) {
+		this.pageSize = pageSize;
+		this.latencyMillis = latencyMillis;
+		this.partitionList = createPartitions(numberOfPartitions);
+	}
+
+	/**
+	 * Pages through the partitions of the requested segment. Segment n of N owns
+	 * every partition whose index modulo N equals n. The NextToken is the offset
+	 * in to the segment. MaxResults is honored up to the page size.
+	 */
+	@Override
+	public GetPartitionsResult getPartitions(GetPartitionsRequest request) {
+		simulateLatency();
+		List<Partition> segmentPartitions = partitionList;
+		if (Optional.ofNullable(request.getSegment()).isPresent()) {
+			int segmentNumber = request.getSegment().getSegmentNumber();
+			int totalSegments = request.getSegment().getTotalSegments();
+			segmentPartitions = new ArrayList<Partition>();
+			for (int i = segmentNumber; i < partitionList.size(); i += totalSegments) {
+				segmentPartitions.add(partitionList.get(i));
+			}
+		}
+		int offset = Optional.ofNullable(request.getNextToken()).map(Integer::parseInt).orElse(0);
+		int limit = Optional.ofNullable(request.getMaxResults()).orElse(pageSize);
+		int end = Math.min(offset + Math.min(limit, pageSize), segmentPartitions.size());
+		GetPartitionsResult result = new GetPartitionsResult()
+				.withPartitions(new ArrayList<Partition>(segmentPartitions.subList(offset, end)));
+		if (end < segmentPartitions.size())
+			result.setNextToken(Integer.toString(end));
+		return result;
+	}
+
+	@Override
+	public BatchCreatePartitionResult batchCreatePartition(BatchCreatePartitionRequest request) {
+		simulateLatency();
+		return new BatchCreatePartitionResult().withErrors(new ArrayList<PartitionError>());
+	}
+
+	@Override
+	public BatchDeletePartitionResult batchDeletePartition(BatchDeletePartitionRequest request) {
+		simulateLatency();
+		return new BatchDeletePartitionResult().withErrors(new ArrayList<PartitionError>());
+	}
+
+	protected void simulateLatency() {
+		if (latencyMillis <= 0)
+			return;
+		try {
+			TimeUnit.MILLISECONDS.sleep(latencyMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public static List<Partition> createPartitions(int numberOfPartitions) {
+		List<Partition> partitions = new ArrayList<Partition>(numberOfPartitions);
+		for (int i = 0; i < numberOfPartitions; i++) {
+			String day = Integer.toString(i);
+			StorageDescriptor sd = new StorageDescriptor()
+					.withColumns(new Column().withName("id").withType("bigint"),
+							new Column().withName("name").withType("string"))
+					.withLocation("s3://bucket/table/day=" + day)
+					.withInputFormat("org.apache.hadoop.mapred.TextInputFormat")
+					.withOutputFormat("org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat")
+					.withSerdeInfo(new SerDeInfo()
+							.withSerializationLibrary("org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe"));
+			partitions.add(new Partition().withDatabaseName("db").withTableName("table")
+					.withValues(Arrays.asList(day)).withStorageDescriptor(sd));
+		}
+		return partitions;
+	}
+}
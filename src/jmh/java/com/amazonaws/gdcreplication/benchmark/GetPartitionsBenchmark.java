@@ -0,0 +1,59 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.services.glue.model.Partition;
+
+/**
+ * Measures the wall-clock time of reading all the partitions of a table with
+ * GlueUtil.getPartitions for a growing number of GetPartitions segments.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GetPartitionsBenchmark {
+
+	@Param({ "1", "2", "4", "8", "10" })
+	public int totalSegments;
+
+	@Param({ "20000" })
+	public int numberOfPartitions;
+
+	@Param({ "5" })
+	public long latencyMillis;
+
+	private FakeGlue glue;
+	private GlueUtil glueUtil;
+
+	@Setup
+	public void setup() {
+		glue = new FakeGlue(numberOfPartitions, 1000, latencyMillis);
+		glueUtil = new GlueUtil();
+	}
+
+	@Benchmark
+	public List<Partition> getPartitions() {
+		return glueUtil.getPartitions(glue, "1234567890", "db", "table", totalSegments, totalSegments);
+	}
+}
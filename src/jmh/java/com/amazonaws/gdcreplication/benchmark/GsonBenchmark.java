@@ -0,0 +1,81 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.LargeTable;
+import com.amazonaws.gdcreplication.util.TableWithPartitions;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+
+/**
+ * Measures the serialization and deserialization of the sample message
+ * payloads of src/test/resources with:
+ * <ul>
+ * <li>perMessage: a new Gson for every message, as the Lambdas used to do</li>
+ * <li>shared: the Gson of GsonRegistry, shared by all the messages</li>
+ * </ul>
+ * Run with '-prof gc' to compare the allocation rates as well.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GsonBenchmark {
+
+	@Param({ "perMessage", "shared" })
+	public String gsonMode;
+
+	@Param({ "sample_table-with-partitions_message_payload.json", "sample_large-table_message_payload.json" })
+	public String sample;
+
+	private Gson sharedGson;
+	private Class<?> payloadClass;
+	private String payload;
+	private Object payloadObject;
+
+	@Setup
+	public void setup() throws IOException {
+		sharedGson = GsonRegistry.getGson();
+		payloadClass = sample.startsWith("sample_large-table") ? LargeTable.class : TableWithPartitions.class;
+		try (InputStream in = GsonBenchmark.class.getResourceAsStream("/samples/" + sample)) {
+			payload = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+		payloadObject = sharedGson.fromJson(payload, payloadClass);
+	}
+
+	@Benchmark
+	public String serialize() {
+		return getGson().toJson(payloadObject);
+	}
+
+	@Benchmark
+	public Object deserialize() {
+		return getGson().fromJson(payload, payloadClass);
+	}
+
+	private Gson getGson() {
+		return gsonMode.equals("perMessage") ? new Gson() : sharedGson;
+	}
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.S3Util;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.Table;
+import com.google.gson.Gson;
+
+/**
+ * Measures the throughput, in partitions per second, of parsing the S3 object
+ * of a large table with S3Util.readPartitions, the parser behind
+ * getPartitionsFromS3 and readPartitionsFromS3. The object is built in memory
+ * from the sample partitions, with full or compact partitions.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PartitionParsingBenchmark {
+
+	private static final int NUMBER_OF_PARTITIONS = 1000;
+
+	@Param({ "false", "true" })
+	public boolean compactPartitions;
+
+	private S3Util s3Util;
+	private Table compactBaseTable;
+	private String s3Object;
+
+	@Setup
+	public void setup() {
+		s3Util = new S3Util();
+		Gson gson = GsonRegistry.getGson();
+		GlueUtil glueUtil = new GlueUtil();
+		Table table = SampleData.createTable();
+		List<Partition> partitionList = SampleData.createPartitions(NUMBER_OF_PARTITIONS);
+		StringBuilder builder = new StringBuilder();
+		for (Partition partition : partitionList) {
+			if (compactPartitions)
+				builder.append(gson.toJson(glueUtil.compactPartition(table, partition)));
+			else
+				builder.append(gson.toJson(partition));
+			builder.append('\n');
+		}
+		s3Object = builder.toString();
+		compactBaseTable = compactPartitions ? table : null;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public void readPartitions(Blackhole blackhole) throws IOException {
+		s3Util.readPartitions(new BufferedReader(new StringReader(s3Object)), compactBaseTable, 0,
+				blackhole::consume);
+	}
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.gdcreplication.util.PartitionBatchResult;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.PartitionInput;
+import com.amazonaws.services.glue.model.PartitionValueList;
+import com.google.common.collect.Lists;
+
+/**
+ * Measures the throughput, in partitions per second, of slicing the sample
+ * partitions in to batch requests: by count and estimated size for
+ * BatchCreatePartition, and with Lists.partition for BatchDeletePartition. The
+ * addPartitions and deletePartitions benchmarks include the slicing and the
+ * building of the requests, against a Glue stub without latency.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PartitionSlicingBenchmark {
+
+	private static final int NUMBER_OF_PARTITIONS = 10000;
+
+	private FakeGlue glue;
+	private GlueUtil glueUtil;
+	private List<Partition> partitionList;
+	private List<PartitionInput> partitionInputList;
+	private List<PartitionValueList> partitionValueLists;
+
+	@Setup
+	public void setup() {
+		glue = new FakeGlue(0, 1000, 0);
+		glueUtil = new GlueUtil();
+		partitionList = SampleData.createPartitions(NUMBER_OF_PARTITIONS);
+		partitionInputList = new ArrayList<PartitionInput>();
+		partitionValueLists = new ArrayList<PartitionValueList>();
+		for (Partition partition : partitionList) {
+			partitionInputList.add(glueUtil.createPartitionInput(partition));
+			partitionValueLists.add(new PartitionValueList().withValues(partition.getValues()));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public List<List<PartitionInput>> slicePartitionInputs() {
+		return glueUtil.slicePartitionInputs(partitionInputList);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public void slicePartitionValueLists(Blackhole blackhole) {
+		for (List<PartitionValueList> batch : Lists.partition(partitionValueLists,
+				GlueUtil.MAX_PARTITIONS_PER_DELETE_REQUEST))
+			blackhole.consume(batch.size());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public PartitionBatchResult addPartitions() {
+		return glueUtil.addPartitions(glue, partitionList, "1234567890", "db", "table", new PartitionBatchResult());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBER_OF_PARTITIONS)
+	public PartitionBatchResult deletePartitions() {
+		return glueUtil.deletePartitions(glue, "1234567890", "db", "table", partitionList,
+				new PartitionBatchResult());
+	}
+}
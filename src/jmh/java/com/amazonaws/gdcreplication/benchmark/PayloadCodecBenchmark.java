@@ -0,0 +1,73 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.amazonaws.gdcreplication.util.PayloadCodec;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Measures the time to encode and decode the sample message payloads of
+ * src/test/resources with each PayloadCodec. The compression ratio of each
+ * payload is printed once during setup.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PayloadCodecBenchmark {
+
+	@Param({ "none", "gzip" })
+	public String codecName;
+
+	@Param({ "sample_table-with-partitions_message_payload.json", "sample_large-table_message_payload.json",
+			"sample_table_schema.json" })
+	public String sample;
+
+	private PayloadCodec codec;
+	private String payload;
+	private String encodedPayload;
+
+	@Setup
+	public void setup() throws IOException {
+		codec = PayloadCodec.forName(codecName);
+		try (InputStream in = PayloadCodecBenchmark.class.getResourceAsStream("/samples/" + sample)) {
+			payload = new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+		encodedPayload = codec.encode(payload);
+		int plainSize = payload.getBytes(StandardCharsets.UTF_8).length;
+		int encodedSize = encodedPayload.getBytes(StandardCharsets.UTF_8).length;
+		System.out.printf("%n%s with codec %s: %d bytes -> %d bytes, ratio %.2f%n", sample, codecName, plainSize,
+				encodedSize, (double) plainSize / encodedSize);
+	}
+
+	@Benchmark
+	public String encode() throws IOException {
+		return codec.encode(payload);
+	}
+
+	@Benchmark
+	public String decode() throws IOException {
+		return codec.decode(encodedPayload);
+	}
+}
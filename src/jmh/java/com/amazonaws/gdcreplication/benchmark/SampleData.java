@@ -0,0 +1,111 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.services.glue.model.Database;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.Table;
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * This class builds the seed data of the benchmarks from the sample JSON files
+ * of src/test/resources, which the benchmark profile packages under /samples.
+ * Large inputs are made of copies of a sample with distinct names and values.
+ *
+ */
+public class SampleData {
+
+	private static final Gson GSON = GsonRegistry.getGson();
+
+	private SampleData() {
+	}
+
+	public static String read(String sample) {
+		try (InputStream in = SampleData.class.getResourceAsStream("/samples/" + sample)) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the table of sample_table_schema.json, the parent table of the
+	 *         sample partitions
+	 */
+	public static Table createTable() {
+		return GSON.fromJson(read("sample_table_schema.json"), Table.class);
+	}
+
+	/**
+	 * @return the partitions of sample_partitions_schema.json, a sequence of
+	 *         JSON documents
+	 */
+	public static List<Partition> readPartitions() {
+		List<Partition> partitions = new ArrayList<Partition>();
+		try (JsonReader reader = GSON.newJsonReader(new StringReader(read("sample_partitions_schema.json")))) {
+			reader.setLenient(true);
+			while (reader.peek() != JsonToken.END_DOCUMENT)
+				partitions.add(GSON.fromJson(reader, Partition.class));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Copy the partitions of sample_partitions_schema.json in turn. Copy i has
+	 * the values 2017 / 01 / i and a location to match.
+	 *
+	 * @param numberOfPartitions
+	 * @return
+	 */
+	public static List<Partition> createPartitions(int numberOfPartitions) {
+		List<String> samples = new ArrayList<String>();
+		for (Partition partition : readPartitions())
+			samples.add(GSON.toJson(partition));
+		List<Partition> partitions = new ArrayList<Partition>(numberOfPartitions);
+		for (int i = 0; i < numberOfPartitions; i++) {
+			Partition partition = GSON.fromJson(samples.get(i % samples.size()), Partition.class);
+			String day = Integer.toString(i);
+			partition.setValues(Arrays.asList("2017", "01", day));
+			String location = partition.getStorageDescriptor().getLocation();
+			partition.getStorageDescriptor()
+					.setLocation(location.substring(0, location.lastIndexOf("/01/") + 4) + day + "/");
+			partitions.add(partition);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Copy the database of sample_database_schema.json. The names are spread
+	 * over numberOfGroups groups: database i is named db&lt;i % groups&gt;_&lt;i&gt;.
+	 *
+	 * @param numberOfDatabases
+	 * @param numberOfGroups
+	 * @return
+	 */
+	public static List<Database> createDatabases(int numberOfDatabases, int numberOfGroups) {
+		String databaseJSON = read("sample_database_schema.json");
+		List<Database> databases = new ArrayList<Database>(numberOfDatabases);
+		for (int i = 0; i < numberOfDatabases; i++) {
+			Database database = GSON.fromJson(databaseJSON, Database.class);
+			database.setName("db" + (i % numberOfGroups) + "_" + i);
+			databases.add(database);
+		}
+		return databases;
+	}
+}
@@ -0,0 +1,48 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class counts the calls of an API operation, or the invocations of a
+ * Lambda function, with their throttles, failures and latencies.
+ *
+ */
+public class CallStatistics {
+
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong throttles = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final LatencyRecorder latencies = new LatencyRecorder();
+
+	public void recordCall(long nanos) {
+		calls.incrementAndGet();
+		latencies.record(nanos);
+	}
+
+	public void recordThrottle() {
+		throttles.incrementAndGet();
+	}
+
+	public void recordFailure() {
+		failures.incrementAndGet();
+	}
+
+	public long getCalls() {
+		return calls.get();
+	}
+
+	public long getThrottles() {
+		return throttles.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public LatencyRecorder getLatencies() {
+		return latencies;
+	}
+}
@@ -0,0 +1,214 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+
+/**
+ * This class evaluates a DynamoDB condition expression against an item, for
+ * InMemoryDynamoDB. It supports:
+ * <ul>
+ * <li>OR, AND and NOT, with the precedence of DynamoDB, and parentheses</li>
+ * <li>comparisons with =, &lt;&gt;, &lt;, &lt;=, &gt; and &gt;= of
+ * attributes, :values and size(attribute)</li>
+ * <li>attribute_exists(attribute) and attribute_not_exists(attribute)</li>
+ * </ul>
+ * Numbers are compared as numbers, strings as strings. As in DynamoDB, a
+ * comparison with a missing attribute, or of values of different types with
+ * an operator other than &lt;&gt;, is false.
+ *
+ */
+public class ConditionExpression {
+
+	private static final Pattern TOKEN = Pattern
+			.compile("\\s*(\\(|\\)|<>|<=|>=|=|<|>|:[A-Za-z0-9_]+|#[A-Za-z0-9_]+|[A-Za-z_][A-Za-z0-9_.]*)");
+
+	private final String expression;
+	private final List<String> tokens;
+	private final Map<String, String> names;
+	private final Map<String, AttributeValue> values;
+	private final Map<String, AttributeValue> item;
+	private int position;
+
+	private ConditionExpression(String expression, Map<String, String> names, Map<String, AttributeValue> values,
+			Map<String, AttributeValue> item) {
+		this.expression = expression;
+		this.tokens = tokenize(expression);
+		this.names = Optional.ofNullable(names).orElse(Collections.emptyMap());
+		this.values = Optional.ofNullable(values).orElse(Collections.emptyMap());
+		this.item = item;
+	}
+
+	/**
+	 * Evaluate a condition expression
+	 *
+	 * @param expression
+	 * @param names      the expression attribute names, may be null
+	 * @param values     the expression attribute values, may be null
+	 * @param item       the item, empty if there is none
+	 * @return true if the item satisfies the condition
+	 */
+	public static boolean evaluate(String expression, Map<String, String> names, Map<String, AttributeValue> values,
+			Map<String, AttributeValue> item) {
+		ConditionExpression condition = new ConditionExpression(expression, names, values, item);
+		boolean satisfied = condition.parseOr();
+		if (condition.position < condition.tokens.size())
+			throw condition.syntaxError();
+		return satisfied;
+	}
+
+	private boolean parseOr() {
+		boolean satisfied = parseAnd();
+		while (accept("OR"))
+			satisfied |= parseAnd();
+		return satisfied;
+	}
+
+	private boolean parseAnd() {
+		boolean satisfied = parseNot();
+		while (accept("AND"))
+			satisfied &= parseNot();
+		return satisfied;
+	}
+
+	private boolean parseNot() {
+		if (accept("NOT"))
+			return !parseNot();
+		if (accept("(")) {
+			boolean satisfied = parseOr();
+			expect(")");
+			return satisfied;
+		}
+		if (accept("attribute_exists"))
+			return Optional.ofNullable(parseFunctionArgument()).isPresent();
+		if (accept("attribute_not_exists"))
+			return !Optional.ofNullable(parseFunctionArgument()).isPresent();
+		AttributeValue left = parseOperand();
+		String comparator = next();
+		AttributeValue right = parseOperand();
+		return compare(left, comparator, right);
+	}
+
+	private AttributeValue parseOperand() {
+		if (accept("size")) {
+			AttributeValue value = parseFunctionArgument();
+			return Optional.ofNullable(value).isPresent()
+					? new AttributeValue().withN(Integer.toString(sizeOf(value)))
+					: null;
+		}
+		String token = next();
+		if (token.startsWith(":")) {
+			if (!values.containsKey(token))
+				throw new IllegalArgumentException("Undefined expression attribute value " + token + ": " + expression);
+			return values.get(token);
+		}
+		return item.get(resolveName(token));
+	}
+
+	private AttributeValue parseFunctionArgument() {
+		expect("(");
+		AttributeValue value = item.get(resolveName(next()));
+		expect(")");
+		return value;
+	}
+
+	private String resolveName(String token) {
+		if (!token.startsWith("#"))
+			return token;
+		if (!names.containsKey(token))
+			throw new IllegalArgumentException("Undefined expression attribute name " + token + ": " + expression);
+		return names.get(token);
+	}
+
+	private static boolean compare(AttributeValue left, String comparator, AttributeValue right) {
+		if (!Optional.ofNullable(left).isPresent() || !Optional.ofNullable(right).isPresent())
+			return false;
+		int comparison;
+		if (Optional.ofNullable(left.getN()).isPresent() && Optional.ofNullable(right.getN()).isPresent())
+			comparison = new BigDecimal(left.getN()).compareTo(new BigDecimal(right.getN()));
+		else if (Optional.ofNullable(left.getS()).isPresent() && Optional.ofNullable(right.getS()).isPresent())
+			comparison = left.getS().compareTo(right.getS());
+		else if ("=".equals(comparator))
+			return left.equals(right);
+		else if ("<>".equals(comparator))
+			return !left.equals(right);
+		else
+			return false;
+		switch (comparator) {
+		case "=":
+			return comparison == 0;
+		case "<>":
+			return comparison != 0;
+		case "<":
+			return comparison < 0;
+		case "<=":
+			return comparison <= 0;
+		case ">":
+			return comparison > 0;
+		case ">=":
+			return comparison >= 0;
+		default:
+			throw new IllegalArgumentException("Unknown comparator: " + comparator);
+		}
+	}
+
+	private static int sizeOf(AttributeValue value) {
+		if (Optional.ofNullable(value.getS()).isPresent())
+			return value.getS().length();
+		if (Optional.ofNullable(value.getNS()).isPresent())
+			return value.getNS().size();
+		if (Optional.ofNullable(value.getSS()).isPresent())
+			return value.getSS().size();
+		if (Optional.ofNullable(value.getL()).isPresent())
+			return value.getL().size();
+		if (Optional.ofNullable(value.getM()).isPresent())
+			return value.getM().size();
+		throw new IllegalArgumentException("size() is not supported for " + value);
+	}
+
+	private boolean accept(String token) {
+		if (position < tokens.size() && tokens.get(position).equals(token)) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(String token) {
+		if (!accept(token))
+			throw syntaxError();
+	}
+
+	private String next() {
+		if (position >= tokens.size())
+			throw syntaxError();
+		return tokens.get(position++);
+	}
+
+	private IllegalArgumentException syntaxError() {
+		return new IllegalArgumentException("Invalid condition expression at token " + position + ": " + expression);
+	}
+
+	private static List<String> tokenize(String expression) {
+		List<String> tokens = new ArrayList<String>();
+		Matcher matcher = TOKEN.matcher(expression);
+		int end = 0;
+		while (matcher.find() && matcher.start() == end) {
+			tokens.add(matcher.group(1));
+			end = matcher.end();
+		}
+		if (!expression.substring(end).trim().isEmpty())
+			throw new IllegalArgumentException("Invalid condition expression: " + expression);
+		return tokens;
+	}
+}
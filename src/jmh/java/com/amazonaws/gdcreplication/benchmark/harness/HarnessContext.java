@@ -0,0 +1,95 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+
+/**
+ * This is the Context of an invocation of a Lambda function by the harness.
+ * The remaining time counts down from the timeout of the function, and the
+ * logger writes to System.out, like the one of the Lambda runtime.
+ *
+ */
+public class HarnessContext implements Context, LambdaLogger {
+
+	private final String functionName;
+	private final String awsRequestId = UUID.randomUUID().toString();
+	private final long deadlineMillis;
+
+	public HarnessContext(String functionName, long timeoutMillis) {
+		this.functionName = functionName;
+		this.deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+	}
+
+	@Override
+	public String getAwsRequestId() {
+		return awsRequestId;
+	}
+
+	@Override
+	public String getLogGroupName() {
+		return "/aws/lambda/" + functionName;
+	}
+
+	@Override
+	public String getLogStreamName() {
+		return awsRequestId;
+	}
+
+	@Override
+	public String getFunctionName() {
+		return functionName;
+	}
+
+	@Override
+	public String getFunctionVersion() {
+		return "$LATEST";
+	}
+
+	@Override
+	public String getInvokedFunctionArn() {
+		return "arn:aws:lambda:local:000000000000:function:" + functionName;
+	}
+
+	@Override
+	public CognitoIdentity getIdentity() {
+		return null;
+	}
+
+	@Override
+	public ClientContext getClientContext() {
+		return null;
+	}
+
+	@Override
+	public int getRemainingTimeInMillis() {
+		return (int) Math.max(0, deadlineMillis - System.currentTimeMillis());
+	}
+
+	@Override
+	public int getMemoryLimitInMB() {
+		return (int) (Runtime.getRuntime().maxMemory() / (1024 * 1024));
+	}
+
+	@Override
+	public LambdaLogger getLogger() {
+		return this;
+	}
+
+	@Override
+	public void log(String message) {
+		System.out.println(message);
+	}
+
+	@Override
+	public void log(byte[] message) {
+		log(new String(message, StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,265 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * This is an in-memory AmazonDynamoDB for the status tracking of the
+ * replication, the distributed Glue API budget, chunked large-table imports
+ * and import checkpoints. A table has no key schema unless one is set with
+ * setKeySchema: PutItem then appends an item, and GetItem and UpdateItem work
+ * on the last item that has the attributes of the Key. In a table with a key
+ * schema, PutItem replaces the item with the same key, as in DynamoDB.
+ *
+ * UpdateItem supports SET and REMOVE actions, and ADD actions on numbers and
+ * number or string sets. PutItem and UpdateItem evaluate condition
+ * expressions as described in ConditionExpression, and throw a
+ * ConditionalCheckFailedException if the condition is not met. A conditional
+ * PutItem needs a key schema.
+ *
+ */
+public class InMemoryDynamoDB extends AbstractAmazonDynamoDB {
+
+	private static final Pattern UPDATE_CLAUSE = Pattern.compile("(SET|REMOVE|ADD|DELETE)\\s+(.*?)\\s*(?=\\b(?:SET|REMOVE|ADD|DELETE)\\b|$)");
+
+	private final ServiceBehavior behavior;
+	private final Map<String, List<Map<String, AttributeValue>>> tables = new ConcurrentHashMap<String, List<Map<String, AttributeValue>>>();
+	private final Map<String, List<String>> keySchemas = new ConcurrentHashMap<String, List<String>>();
+
+	public InMemoryDynamoDB(ServiceBehavior behavior) {
+		this.behavior = behavior;
+	}
+
+	public ServiceBehavior getBehavior() {
+		return behavior;
+	}
+
+	/**
+	 * Set the key schema of a table, so that PutItem replaces the item with the
+	 * same key instead of appending one
+	 *
+	 * @param tableName
+	 * @param keyAttributeNames
+	 */
+	public void setKeySchema(String tableName, String... keyAttributeNames) {
+		keySchemas.put(tableName, Arrays.asList(keyAttributeNames));
+	}
+
+	@Override
+	public PutItemResult putItem(PutItemRequest request) {
+		behavior.callWithRetries("PutItem");
+		List<String> keySchema = keySchemas.get(request.getTableName());
+		if (Optional.ofNullable(request.getConditionExpression()).isPresent()
+				&& !Optional.ofNullable(keySchema).isPresent())
+			throw new UnsupportedOperationException(
+					"Conditional puts need the key schema of table " + request.getTableName());
+		List<Map<String, AttributeValue>> items = getItems(request.getTableName());
+		synchronized (items) {
+			Map<String, AttributeValue> item = Optional.ofNullable(keySchema)
+					.map(k -> findItem(items, getKey(k, request.getItem()))).orElse(null);
+			checkCondition(request.getConditionExpression(), request.getExpressionAttributeNames(),
+					request.getExpressionAttributeValues(), item);
+			putItem(items, keySchema, request.getItem());
+		}
+		return ServiceBehavior.ok(new PutItemResult());
+	}
+
+	@Override
+	public BatchWriteItemResult batchWriteItem(BatchWriteItemRequest request) {
+		behavior.callWithRetries("BatchWriteItem");
+		for (Map.Entry<String, List<WriteRequest>> tableRequests : request.getRequestItems().entrySet()) {
+			List<Map<String, AttributeValue>> items = getItems(tableRequests.getKey());
+			List<String> keySchema = keySchemas.get(tableRequests.getKey());
+			synchronized (items) {
+				for (WriteRequest writeRequest : tableRequests.getValue()) {
+					if (!Optional.ofNullable(writeRequest.getPutRequest()).isPresent())
+						throw new UnsupportedOperationException("Only put requests are supported");
+					putItem(items, keySchema, writeRequest.getPutRequest().getItem());
+				}
+			}
+		}
+		return ServiceBehavior
+				.ok(new BatchWriteItemResult().withUnprocessedItems(new HashMap<String, List<WriteRequest>>()));
+	}
+
+	@Override
+	public BatchWriteItemResult batchWriteItem(Map<String, List<WriteRequest>> requestItems) {
+		return batchWriteItem(new BatchWriteItemRequest().withRequestItems(requestItems));
+	}
+
+	@Override
+	public GetItemResult getItem(GetItemRequest request) {
+		behavior.callWithRetries("GetItem");
+		List<Map<String, AttributeValue>> items = getItems(request.getTableName());
+		synchronized (items) {
+			return ServiceBehavior.ok(new GetItemResult().withItem(Optional
+					.ofNullable(findItem(items, request.getKey())).map(HashMap<String, AttributeValue>::new).orElse(null)));
+		}
+	}
+
+	@Override
+	public UpdateItemResult updateItem(UpdateItemRequest request) {
+		behavior.callWithRetries("UpdateItem");
+		Map<String, AttributeValue> values = Optional.ofNullable(request.getExpressionAttributeValues())
+				.orElse(Collections.emptyMap());
+		List<Map<String, AttributeValue>> items = getItems(request.getTableName());
+		synchronized (items) {
+			Map<String, AttributeValue> item = findItem(items, request.getKey());
+			checkCondition(request.getConditionExpression(), request.getExpressionAttributeNames(), values, item);
+			if (!Optional.ofNullable(item).isPresent()) {
+				item = new HashMap<String, AttributeValue>(request.getKey());
+				items.add(item);
+			}
+			Matcher matcher = UPDATE_CLAUSE.matcher(request.getUpdateExpression().trim());
+			while (matcher.find()) {
+				for (String action : matcher.group(2).split(",")) {
+					if ("SET".equals(matcher.group(1))) {
+						String[] assignment = action.split("=");
+						item.put(assignment[0].trim(), values.get(assignment[1].trim()));
+					} else if ("REMOVE".equals(matcher.group(1)))
+						item.remove(action.trim());
+					else if ("ADD".equals(matcher.group(1))) {
+						String[] operands = action.trim().split("\\s+");
+						item.put(operands[0], add(item.get(operands[0]), values.get(operands[1])));
+					} else
+						throw new UnsupportedOperationException(matcher.group(1) + " actions are not supported");
+				}
+			}
+			UpdateItemResult result = new UpdateItemResult();
+			if (ReturnValue.ALL_NEW.toString().equals(request.getReturnValues()))
+				result.setAttributes(new HashMap<String, AttributeValue>(item));
+			return ServiceBehavior.ok(result);
+		}
+	}
+
+	/**
+	 * Return all the items of a table in one page. Projections are not applied.
+	 */
+	@Override
+	public ScanResult scan(ScanRequest request) {
+		behavior.callWithRetries("Scan");
+		List<Map<String, AttributeValue>> items = getItems(request.getTableName());
+		synchronized (items) {
+			List<Map<String, AttributeValue>> page = new ArrayList<Map<String, AttributeValue>>();
+			for (Map<String, AttributeValue> item : items)
+				page.add(new HashMap<String, AttributeValue>(item));
+			return ServiceBehavior.ok(new ScanResult().withItems(page).withCount(page.size()));
+		}
+	}
+
+	/**
+	 * @return the number of items written to each table, by table name
+	 */
+	public Map<String, Integer> getNumberOfItemsByTable() {
+		Map<String, Integer> numberOfItems = new HashMap<String, Integer>();
+		for (Map.Entry<String, List<Map<String, AttributeValue>>> table : tables.entrySet()) {
+			synchronized (table.getValue()) {
+				numberOfItems.put(table.getKey(), table.getValue().size());
+			}
+		}
+		return numberOfItems;
+	}
+
+	private List<Map<String, AttributeValue>> getItems(String tableName) {
+		return tables.computeIfAbsent(tableName, k -> new ArrayList<Map<String, AttributeValue>>());
+	}
+
+	private static Map<String, AttributeValue> findItem(List<Map<String, AttributeValue>> items,
+			Map<String, AttributeValue> key) {
+		for (int i = items.size() - 1; i >= 0; i--) {
+			if (items.get(i).entrySet().containsAll(key.entrySet()))
+				return items.get(i);
+		}
+		return null;
+	}
+
+	private static Map<String, AttributeValue> getKey(List<String> keySchema, Map<String, AttributeValue> item) {
+		Map<String, AttributeValue> key = new HashMap<String, AttributeValue>();
+		for (String keyAttributeName : keySchema)
+			key.put(keyAttributeName, item.get(keyAttributeName));
+		return key;
+	}
+
+	private static void putItem(List<Map<String, AttributeValue>> items, List<String> keySchema,
+			Map<String, AttributeValue> item) {
+		if (Optional.ofNullable(keySchema).isPresent())
+			items.remove(findItem(items, getKey(keySchema, item)));
+		items.add(new HashMap<String, AttributeValue>(item));
+	}
+
+	private static void checkCondition(String conditionExpression, Map<String, String> names,
+			Map<String, AttributeValue> values, Map<String, AttributeValue> item) {
+		if (!Optional.ofNullable(conditionExpression).isPresent() || ConditionExpression.evaluate(conditionExpression,
+				names, values, Optional.ofNullable(item).orElse(Collections.emptyMap())))
+			return;
+		ConditionalCheckFailedException e = new ConditionalCheckFailedException("The conditional request failed");
+		e.setServiceName("AmazonDynamoDBv2");
+		e.setErrorCode("ConditionalCheckFailedException");
+		e.setErrorType(AmazonServiceException.ErrorType.Client);
+		e.setStatusCode(400);
+		throw e;
+	}
+
+	/**
+	 * @return the value of an attribute after an ADD action: the sum of two
+	 *         numbers, or the union of two sets
+	 */
+	private static AttributeValue add(AttributeValue current, AttributeValue value) {
+		if (Optional.ofNullable(value.getN()).isPresent()) {
+			BigDecimal sum = new BigDecimal(value.getN());
+			if (Optional.ofNullable(current).isPresent())
+				sum = sum.add(new BigDecimal(current.getN()));
+			return new AttributeValue().withN(sum.toPlainString());
+		}
+		if (Optional.ofNullable(value.getNS()).isPresent()) {
+			LinkedHashSet<BigDecimal> numbers = new LinkedHashSet<BigDecimal>();
+			List<String> union = new ArrayList<String>();
+			for (List<String> set : Arrays.asList(
+					Optional.ofNullable(current).map(AttributeValue::getNS).orElse(Collections.emptyList()),
+					value.getNS())) {
+				for (String number : set) {
+					if (numbers.add(new BigDecimal(number).stripTrailingZeros()))
+						union.add(number);
+				}
+			}
+			return new AttributeValue().withNS(union);
+		}
+		if (Optional.ofNullable(value.getSS()).isPresent()) {
+			LinkedHashSet<String> union = new LinkedHashSet<String>(
+					Optional.ofNullable(current).map(AttributeValue::getSS).orElse(Collections.emptyList()));
+			union.addAll(value.getSS());
+			return new AttributeValue().withSS(new ArrayList<String>(union));
+		}
+		throw new UnsupportedOperationException("ADD actions are only supported on numbers and sets: " + value);
+	}
+}
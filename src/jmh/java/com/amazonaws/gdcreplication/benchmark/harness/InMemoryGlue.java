@@ -0,0 +1,449 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.services.glue.AbstractAWSGlue;
+import com.amazonaws.services.glue.model.AlreadyExistsException;
+import com.amazonaws.services.glue.model.BatchCreatePartitionRequest;
+import com.amazonaws.services.glue.model.BatchCreatePartitionResult;
+import com.amazonaws.services.glue.model.BatchDeletePartitionRequest;
+import com.amazonaws.services.glue.model.BatchDeletePartitionResult;
+import com.amazonaws.services.glue.model.BatchGetPartitionRequest;
+import com.amazonaws.services.glue.model.BatchGetPartitionResult;
+import com.amazonaws.services.glue.model.CreateDatabaseRequest;
+import com.amazonaws.services.glue.model.CreateDatabaseResult;
+import com.amazonaws.services.glue.model.CreateTableRequest;
+import com.amazonaws.services.glue.model.CreateTableResult;
+import com.amazonaws.services.glue.model.Database;
+import com.amazonaws.services.glue.model.DeletePartitionRequest;
+import com.amazonaws.services.glue.model.DeletePartitionResult;
+import com.amazonaws.services.glue.model.EntityNotFoundException;
+import com.amazonaws.services.glue.model.ErrorDetail;
+import com.amazonaws.services.glue.model.GetDatabaseRequest;
+import com.amazonaws.services.glue.model.GetDatabaseResult;
+import com.amazonaws.services.glue.model.GetDatabasesRequest;
+import com.amazonaws.services.glue.model.GetDatabasesResult;
+import com.amazonaws.services.glue.model.GetPartitionsRequest;
+import com.amazonaws.services.glue.model.GetPartitionsResult;
+import com.amazonaws.services.glue.model.GetTableRequest;
+import com.amazonaws.services.glue.model.GetTableResult;
+import com.amazonaws.services.glue.model.GetTablesRequest;
+import com.amazonaws.services.glue.model.GetTablesResult;
+import com.amazonaws.services.glue.model.InvalidInputException;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.PartitionError;
+import com.amazonaws.services.glue.model.PartitionInput;
+import com.amazonaws.services.glue.model.PartitionValueList;
+import com.amazonaws.services.glue.model.Table;
+import com.amazonaws.services.glue.model.UpdatePartitionRequest;
+import com.amazonaws.services.glue.model.UpdatePartitionResult;
+import com.amazonaws.services.glue.model.UpdateTableRequest;
+import com.amazonaws.services.glue.model.UpdateTableResult;
+import com.google.gson.Gson;
+
+/**
+ * This is an in-memory AWSGlue holding any number of Data Catalogs, keyed by
+ * catalog id. A request without a CatalogId goes to the catalog of the
+ * caller's account, defaultCatalogId, as it does in Glue. Only the operations
+ * used by GlueUtil are implemented; they fail with the same exceptions and
+ * partition errors as Glue, and the entities are copied in and out so that
+ * callers never share them with the catalog. Seeding and counting entities do
+ * not count as calls.
+ *
+ */
+public class InMemoryGlue extends AbstractAWSGlue {
+
+	public static final int MAX_PARTITIONS_PER_CREATE_REQUEST = 100;
+	public static final int MAX_PARTITIONS_PER_DELETE_REQUEST = 25;
+	public static final int MAX_PARTITIONS_PER_GET_REQUEST = 1000;
+
+	private static final Gson GSON = GsonRegistry.getGson();
+
+	private final ServiceBehavior behavior;
+	private final String defaultCatalogId;
+	private final Map<String, Catalog> catalogs = new ConcurrentHashMap<String, Catalog>();
+
+	public InMemoryGlue(ServiceBehavior behavior, String defaultCatalogId) {
+		this.behavior = behavior;
+		this.defaultCatalogId = defaultCatalogId;
+	}
+
+	/**
+	 * The databases, tables and partitions of a catalog. All accesses are
+	 * synchronized on the catalog.
+	 */
+	private static class Catalog {
+		private final NavigableMap<String, Database> databases = new TreeMap<String, Database>();
+		private final Map<String, NavigableMap<String, Table>> tables = new HashMap<String, NavigableMap<String, Table>>();
+		private final Map<String, NavigableMap<String, Partition>> partitions = new HashMap<String, NavigableMap<String, Partition>>();
+
+		private NavigableMap<String, Table> getTables(String databaseName) {
+			return Optional.ofNullable(tables.get(databaseName))
+					.orElseThrow(() -> entityNotFound("Database " + databaseName + " not found."));
+		}
+
+		private Table getTable(String databaseName, String tableName) {
+			return Optional.ofNullable(getTables(databaseName).get(tableName))
+					.orElseThrow(() -> entityNotFound("Table " + tableName + " not found."));
+		}
+
+		private NavigableMap<String, Partition> getPartitions(String databaseName, String tableName) {
+			getTable(databaseName, tableName);
+			return partitions.computeIfAbsent(getTableKey(databaseName, tableName),
+					k -> new TreeMap<String, Partition>());
+		}
+	}
+
+	public ServiceBehavior getBehavior() {
+		return behavior;
+	}
+
+	@Override
+	public GetDatabaseResult getDatabase(GetDatabaseRequest request) {
+		behavior.call("GetDatabase");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		synchronized (catalog) {
+			Database database = Optional.ofNullable(catalog.databases.get(request.getName()))
+					.orElseThrow(() -> entityNotFound("Database " + request.getName() + " not found."));
+			return ServiceBehavior.ok(new GetDatabaseResult().withDatabase(copy(database, Database.class)));
+		}
+	}
+
+	@Override
+	public GetDatabasesResult getDatabases(GetDatabasesRequest request) {
+		behavior.call("GetDatabases");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		synchronized (catalog) {
+			List<Database> page = new ArrayList<Database>();
+			String nextToken = getPage(catalog.databases, request.getNextToken(), request.getMaxResults(),
+					database -> true, page, Database.class);
+			return ServiceBehavior.ok(new GetDatabasesResult().withDatabaseList(page).withNextToken(nextToken));
+		}
+	}
+
+	@Override
+	public CreateDatabaseResult createDatabase(CreateDatabaseRequest request) {
+		behavior.call("CreateDatabase");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		Database database = copy(request.getDatabaseInput(), Database.class).withCreateTime(new Date());
+		synchronized (catalog) {
+			if (catalog.databases.containsKey(database.getName()))
+				throw alreadyExists("Database already exists.");
+			catalog.databases.put(database.getName(), database);
+			catalog.tables.put(database.getName(), new TreeMap<String, Table>());
+		}
+		return ServiceBehavior.ok(new CreateDatabaseResult());
+	}
+
+	@Override
+	public GetTablesResult getTables(GetTablesRequest request) {
+		behavior.call("GetTables");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		synchronized (catalog) {
+			List<Table> page = new ArrayList<Table>();
+			String nextToken = getPage(catalog.getTables(request.getDatabaseName()), request.getNextToken(),
+					request.getMaxResults(), table -> true, page, Table.class);
+			return ServiceBehavior.ok(new GetTablesResult().withTableList(page).withNextToken(nextToken));
+		}
+	}
+
+	@Override
+	public GetTableResult getTable(GetTableRequest request) {
+		behavior.call("GetTable");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		synchronized (catalog) {
+			Table table = catalog.getTable(request.getDatabaseName(), request.getName());
+			return ServiceBehavior.ok(new GetTableResult().withTable(copy(table, Table.class)));
+		}
+	}
+
+	@Override
+	public CreateTableResult createTable(CreateTableRequest request) {
+		behavior.call("CreateTable");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		Date now = new Date();
+		Table table = copy(request.getTableInput(), Table.class).withDatabaseName(request.getDatabaseName())
+				.withCreateTime(now).withUpdateTime(now);
+		synchronized (catalog) {
+			NavigableMap<String, Table> tables = catalog.getTables(request.getDatabaseName());
+			if (tables.containsKey(table.getName()))
+				throw alreadyExists("Table already exists.");
+			tables.put(table.getName(), table);
+		}
+		return ServiceBehavior.ok(new CreateTableResult());
+	}
+
+	@Override
+	public UpdateTableResult updateTable(UpdateTableRequest request) {
+		behavior.call("UpdateTable");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		Table table = copy(request.getTableInput(), Table.class).withDatabaseName(request.getDatabaseName())
+				.withUpdateTime(new Date());
+		synchronized (catalog) {
+			table.setCreateTime(catalog.getTable(request.getDatabaseName(), table.getName()).getCreateTime());
+			catalog.getTables(request.getDatabaseName()).put(table.getName(), table);
+		}
+		return ServiceBehavior.ok(new UpdateTableResult());
+	}
+
+	/**
+	 * Pages through the partitions of a table in order of values, or through
+	 * those of a segment: segment n of N owns every partition whose key hashes to
+	 * n modulo N. The NextToken is the key of the last partition of the page.
+	 */
+	@Override
+	public GetPartitionsResult getPartitions(GetPartitionsRequest request) {
+		behavior.call("GetPartitions");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		Predicate<String> inSegment = Optional.ofNullable(request.getSegment())
+				.map(segment -> (Predicate<String>) key -> Math.floorMod(key.hashCode(),
+						segment.getTotalSegments()) == segment.getSegmentNumber())
+				.orElse(key -> true);
+		synchronized (catalog) {
+			List<Partition> page = new ArrayList<Partition>();
+			String nextToken = getPage(catalog.getPartitions(request.getDatabaseName(), request.getTableName()),
+					request.getNextToken(), request.getMaxResults(), inSegment, page, Partition.class);
+			return ServiceBehavior.ok(new GetPartitionsResult().withPartitions(page).withNextToken(nextToken));
+		}
+	}
+
+	@Override
+	public BatchGetPartitionResult batchGetPartition(BatchGetPartitionRequest request) {
+		behavior.call("BatchGetPartition");
+		if (request.getPartitionsToGet().size() > MAX_PARTITIONS_PER_GET_REQUEST)
+			throw invalidInput("Too many partitions to get.");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		List<Partition> partitions = new ArrayList<Partition>();
+		synchronized (catalog) {
+			NavigableMap<String, Partition> tablePartitions = catalog.getPartitions(request.getDatabaseName(),
+					request.getTableName());
+			for (PartitionValueList values : request.getPartitionsToGet())
+				Optional.ofNullable(tablePartitions.get(getPartitionKey(values.getValues())))
+						.ifPresent(partition -> partitions.add(copy(partition, Partition.class)));
+		}
+		return ServiceBehavior.ok(new BatchGetPartitionResult().withPartitions(partitions)
+				.withUnprocessedKeys(new ArrayList<PartitionValueList>()));
+	}
+
+	@Override
+	public BatchCreatePartitionResult batchCreatePartition(BatchCreatePartitionRequest request) {
+		behavior.call("BatchCreatePartition");
+		if (request.getPartitionInputList().size() > MAX_PARTITIONS_PER_CREATE_REQUEST)
+			throw invalidInput("Too many partitions to create.");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		Date now = new Date();
+		List<Partition> partitions = new ArrayList<Partition>();
+		for (PartitionInput partitionInput : request.getPartitionInputList())
+			partitions.add(toPartition(partitionInput, request.getDatabaseName(), request.getTableName(), now));
+		List<PartitionError> errors = new ArrayList<PartitionError>();
+		synchronized (catalog) {
+			NavigableMap<String, Partition> tablePartitions = catalog.getPartitions(request.getDatabaseName(),
+					request.getTableName());
+			for (Partition partition : partitions) {
+				if (tablePartitions.putIfAbsent(getPartitionKey(partition.getValues()), partition) != null)
+					errors.add(createPartitionError(partition.getValues(), "AlreadyExistsException",
+							"Partition already exists."));
+			}
+		}
+		return ServiceBehavior.ok(new BatchCreatePartitionResult().withErrors(errors));
+	}
+
+	@Override
+	public BatchDeletePartitionResult batchDeletePartition(BatchDeletePartitionRequest request) {
+		behavior.call("BatchDeletePartition");
+		if (request.getPartitionsToDelete().size() > MAX_PARTITIONS_PER_DELETE_REQUEST)
+			throw invalidInput("Too many partitions to delete.");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		List<PartitionError> errors = new ArrayList<PartitionError>();
+		synchronized (catalog) {
+			NavigableMap<String, Partition> tablePartitions = catalog.getPartitions(request.getDatabaseName(),
+					request.getTableName());
+			for (PartitionValueList values : request.getPartitionsToDelete()) {
+				if (tablePartitions.remove(getPartitionKey(values.getValues())) == null)
+					errors.add(createPartitionError(values.getValues(), "EntityNotFoundException",
+							"Partition not found."));
+			}
+		}
+		return ServiceBehavior.ok(new BatchDeletePartitionResult().withErrors(errors));
+	}
+
+	@Override
+	public UpdatePartitionResult updatePartition(UpdatePartitionRequest request) {
+		behavior.call("UpdatePartition");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		Partition partition = toPartition(request.getPartitionInput(), request.getDatabaseName(),
+				request.getTableName(), new Date());
+		synchronized (catalog) {
+			NavigableMap<String, Partition> tablePartitions = catalog.getPartitions(request.getDatabaseName(),
+					request.getTableName());
+			Partition existingPartition = Optional
+					.ofNullable(tablePartitions.remove(getPartitionKey(request.getPartitionValueList())))
+					.orElseThrow(() -> entityNotFound("Partition not found."));
+			partition.setCreationTime(existingPartition.getCreationTime());
+			tablePartitions.put(getPartitionKey(partition.getValues()), partition);
+		}
+		return ServiceBehavior.ok(new UpdatePartitionResult());
+	}
+
+	@Override
+	public DeletePartitionResult deletePartition(DeletePartitionRequest request) {
+		behavior.call("DeletePartition");
+		Catalog catalog = getCatalog(request.getCatalogId());
+		synchronized (catalog) {
+			if (catalog.getPartitions(request.getDatabaseName(), request.getTableName())
+					.remove(getPartitionKey(request.getPartitionValues())) == null)
+				throw entityNotFound("Partition not found.");
+		}
+		return ServiceBehavior.ok(new DeletePartitionResult());
+	}
+
+	/**
+	 * Add a database to a catalog, or replace it, without counting a call
+	 *
+	 * @param catalogId
+	 * @param database
+	 */
+	public void seedDatabase(String catalogId, Database database) {
+		Catalog catalog = getCatalog(catalogId);
+		synchronized (catalog) {
+			catalog.databases.put(database.getName(), copy(database, Database.class));
+			catalog.tables.putIfAbsent(database.getName(), new TreeMap<String, Table>());
+		}
+	}
+
+	/**
+	 * Add a table with its partitions to a database of a catalog, or replace
+	 * them, without counting a call
+	 *
+	 * @param catalogId
+	 * @param table
+	 * @param partitions
+	 */
+	public void seedTable(String catalogId, Table table, List<Partition> partitions) {
+		Catalog catalog = getCatalog(catalogId);
+		NavigableMap<String, Partition> tablePartitions = new TreeMap<String, Partition>();
+		for (Partition partition : partitions) {
+			Partition copy = copy(partition, Partition.class).withDatabaseName(table.getDatabaseName())
+					.withTableName(table.getName());
+			tablePartitions.put(getPartitionKey(copy.getValues()), copy);
+		}
+		synchronized (catalog) {
+			catalog.getTables(table.getDatabaseName()).put(table.getName(), copy(table, Table.class));
+			catalog.partitions.put(getTableKey(table.getDatabaseName(), table.getName()), tablePartitions);
+		}
+	}
+
+	public int getNumberOfDatabases(String catalogId) {
+		Catalog catalog = getCatalog(catalogId);
+		synchronized (catalog) {
+			return catalog.databases.size();
+		}
+	}
+
+	/**
+	 * @param catalogId
+	 * @return the number of partitions of every table of a catalog, keyed by
+	 *         &lt;database&gt;.&lt;table&gt;
+	 */
+	public Map<String, Integer> getNumberOfPartitionsByTable(String catalogId) {
+		Catalog catalog = getCatalog(catalogId);
+		Map<String, Integer> numberOfPartitions = new TreeMap<String, Integer>();
+		synchronized (catalog) {
+			for (Map.Entry<String, NavigableMap<String, Table>> databaseTables : catalog.tables.entrySet()) {
+				for (String tableName : databaseTables.getValue().keySet()) {
+					String tableKey = getTableKey(databaseTables.getKey(), tableName);
+					numberOfPartitions.put(tableKey,
+							Optional.ofNullable(catalog.partitions.get(tableKey)).map(Map::size).orElse(0));
+				}
+			}
+		}
+		return numberOfPartitions;
+	}
+
+	private Catalog getCatalog(String catalogId) {
+		return catalogs.computeIfAbsent(Optional.ofNullable(catalogId).orElse(defaultCatalogId), k -> new Catalog());
+	}
+
+	/**
+	 * Copy the next page of the entities of a map, in order of key, after the key
+	 * in nextToken
+	 *
+	 * @return the NextToken of the page, or null if it is the last one
+	 */
+	private <T> String getPage(NavigableMap<String, T> entities, String nextToken, Integer maxResults,
+			Predicate<String> filter, List<T> page, Class<T> type) {
+		int pageSize = behavior.getPageSize(maxResults);
+		String lastKey = null;
+		for (Map.Entry<String, T> entry : (nextToken == null ? entities : entities.tailMap(nextToken, false))
+				.entrySet()) {
+			if (!filter.test(entry.getKey()))
+				continue;
+			if (page.size() == pageSize)
+				return lastKey;
+			page.add(copy(entry.getValue(), type));
+			lastKey = entry.getKey();
+		}
+		return null;
+	}
+
+	private static Partition toPartition(PartitionInput partitionInput, String databaseName, String tableName,
+			Date creationTime) {
+		return copy(partitionInput, Partition.class).withDatabaseName(databaseName).withTableName(tableName)
+				.withCreationTime(creationTime);
+	}
+
+	private static PartitionError createPartitionError(List<String> values, String errorCode, String errorMessage) {
+		return new PartitionError().withPartitionValues(values)
+				.withErrorDetail(new ErrorDetail().withErrorCode(errorCode).withErrorMessage(errorMessage));
+	}
+
+	/**
+	 * Copy an entity, or convert the input of an entity to the entity, through
+	 * its JSON form
+	 */
+	private static <T> T copy(Object source, Class<T> type) {
+		return GSON.fromJson(GSON.toJson(source), type);
+	}
+
+	private static String getTableKey(String databaseName, String tableName) {
+		return databaseName + "." + tableName;
+	}
+
+	private static String getPartitionKey(List<String> values) {
+		return String.join("\u0001", values);
+	}
+
+	private static EntityNotFoundException entityNotFound(String message) {
+		return withErrorCode(new EntityNotFoundException(message), "EntityNotFoundException");
+	}
+
+	private static AlreadyExistsException alreadyExists(String message) {
+		return withErrorCode(new AlreadyExistsException(message), "AlreadyExistsException");
+	}
+
+	private static InvalidInputException invalidInput(String message) {
+		return withErrorCode(new InvalidInputException(message), "InvalidInputException");
+	}
+
+	private static <T extends AmazonServiceException> T withErrorCode(T e, String errorCode) {
+		e.setServiceName("AWSGlue");
+		e.setErrorCode(errorCode);
+		e.setErrorType(AmazonServiceException.ErrorType.Client);
+		e.setStatusCode(400);
+		return e;
+	}
+}
@@ -0,0 +1,194 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.google.common.io.ByteStreams;
+
+/**
+ * This is an in-memory AmazonS3 with the object and multipart upload
+ * operations used by S3Util and S3MultipartOutputStream. Objects are kept as
+ * byte arrays, keyed by bucket and key.
+ *
+ */
+public class InMemoryS3 extends AbstractAmazonS3 {
+
+	private final ServiceBehavior behavior;
+	private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+	private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<String, Map<Integer, byte[]>>();
+
+	public InMemoryS3(ServiceBehavior behavior) {
+		this.behavior = behavior;
+	}
+
+	public ServiceBehavior getBehavior() {
+		return behavior;
+	}
+
+	@Override
+	public PutObjectResult putObject(PutObjectRequest request) {
+		behavior.callWithRetries("PutObject");
+		try (InputStream in = Optional.ofNullable(request.getFile()).isPresent()
+				? new FileInputStream(request.getFile())
+				: request.getInputStream()) {
+			objects.put(getObjectKey(request.getBucketName(), request.getKey()), ByteStreams.toByteArray(in));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return new PutObjectResult();
+	}
+
+	@Override
+	public PutObjectResult putObject(String bucketName, String key, InputStream input, ObjectMetadata metadata) {
+		return putObject(new PutObjectRequest(bucketName, key, input, metadata));
+	}
+
+	@Override
+	public PutObjectResult putObject(String bucketName, String key, String content) {
+		return putObject(bucketName, key, new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+				new ObjectMetadata());
+	}
+
+	/**
+	 * Get an object, or the range of it that is requested
+	 */
+	@Override
+	public S3Object getObject(GetObjectRequest request) {
+		behavior.callWithRetries("GetObject");
+		byte[] content = getContent(request.getBucketName(), request.getKey());
+		long[] range = request.getRange();
+		if (Optional.ofNullable(range).isPresent())
+			content = Arrays.copyOfRange(content, (int) Math.min(range[0], content.length),
+					(int) Math.min(range[1] + 1, content.length));
+		ObjectMetadata metadata = new ObjectMetadata();
+		metadata.setContentLength(content.length);
+		metadata.setContentType("text/plain");
+		S3Object object = new S3Object();
+		object.setBucketName(request.getBucketName());
+		object.setKey(request.getKey());
+		object.setObjectMetadata(metadata);
+		object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null));
+		return object;
+	}
+
+	@Override
+	public S3Object getObject(String bucketName, String key) {
+		return getObject(new GetObjectRequest(bucketName, key));
+	}
+
+	@Override
+	public String getObjectAsString(String bucketName, String key) {
+		behavior.callWithRetries("GetObject");
+		return new String(getContent(bucketName, key), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+		behavior.callWithRetries("CreateMultipartUpload");
+		String uploadId = UUID.randomUUID().toString();
+		uploads.put(uploadId, new ConcurrentHashMap<Integer, byte[]>());
+		InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+		result.setBucketName(request.getBucketName());
+		result.setKey(request.getKey());
+		result.setUploadId(uploadId);
+		return result;
+	}
+
+	@Override
+	public UploadPartResult uploadPart(UploadPartRequest request) {
+		behavior.callWithRetries("UploadPart");
+		byte[] part = new byte[(int) request.getPartSize()];
+		try {
+			ByteStreams.readFully(request.getInputStream(), part);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		getUpload(request.getUploadId()).put(request.getPartNumber(), part);
+		UploadPartResult result = new UploadPartResult();
+		result.setPartNumber(request.getPartNumber());
+		result.setETag(Integer.toHexString(Arrays.hashCode(part)));
+		return result;
+	}
+
+	@Override
+	public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+		behavior.callWithRetries("CompleteMultipartUpload");
+		Map<Integer, byte[]> parts = getUpload(request.getUploadId());
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		for (PartETag partETag : request.getPartETags())
+			content.write(parts.get(partETag.getPartNumber()), 0, parts.get(partETag.getPartNumber()).length);
+		objects.put(getObjectKey(request.getBucketName(), request.getKey()), content.toByteArray());
+		uploads.remove(request.getUploadId());
+		CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+		result.setBucketName(request.getBucketName());
+		result.setKey(request.getKey());
+		return result;
+	}
+
+	@Override
+	public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+		behavior.callWithRetries("AbortMultipartUpload");
+		uploads.remove(request.getUploadId());
+	}
+
+	public int getNumberOfObjects() {
+		return objects.size();
+	}
+
+	public long getNumberOfBytes() {
+		return objects.values().stream().mapToLong(content -> content.length).sum();
+	}
+
+	private byte[] getContent(String bucketName, String key) {
+		return Optional.ofNullable(objects.get(getObjectKey(bucketName, key)))
+				.orElseThrow(() -> createException(404, "NoSuchKey", "The specified key does not exist."));
+	}
+
+	private Map<Integer, byte[]> getUpload(String uploadId) {
+		return Optional.ofNullable(uploads.get(uploadId))
+				.orElseThrow(() -> createException(404, "NoSuchUpload", "The specified upload does not exist."));
+	}
+
+	private static String getObjectKey(String bucketName, String key) {
+		return bucketName + "/" + key;
+	}
+
+	private static AmazonS3Exception createException(int statusCode, String errorCode, String message) {
+		AmazonS3Exception e = new AmazonS3Exception(message);
+		e.setServiceName("Amazon S3");
+		e.setErrorCode(errorCode);
+		e.setErrorType(AmazonServiceException.ErrorType.Client);
+		e.setStatusCode(statusCode);
+		return e;
+	}
+}
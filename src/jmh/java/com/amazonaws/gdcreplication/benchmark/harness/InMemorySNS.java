@@ -0,0 +1,78 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.lambda.runtime.events.SNSEvent;
+import com.amazonaws.services.lambda.runtime.events.SNSEvent.SNSRecord;
+import com.amazonaws.services.sns.AbstractAmazonSNS;
+import com.amazonaws.services.sns.model.InvalidParameterException;
+import com.amazonaws.services.sns.model.MessageAttributeValue;
+import com.amazonaws.services.sns.model.PublishRequest;
+import com.amazonaws.services.sns.model.PublishResult;
+
+/**
+ * This is an in-memory AmazonSNS. A published message is handed to the
+ * subscriber as the SNSRecord a Lambda function subscribed to the topic would
+ * get. Messages larger than SNS accepts, attributes included, are rejected.
+ *
+ */
+public class InMemorySNS extends AbstractAmazonSNS {
+
+	public static final int MAX_MESSAGE_BYTES = 256 * 1024;
+
+	private final ServiceBehavior behavior;
+	private final BiConsumer<String, SNSRecord> subscriber;
+
+	/**
+	 * @param behavior
+	 * @param subscriber gets the topic ARN and the record of each message
+	 */
+	public InMemorySNS(ServiceBehavior behavior, BiConsumer<String, SNSRecord> subscriber) {
+		this.behavior = behavior;
+		this.subscriber = subscriber;
+	}
+
+	public ServiceBehavior getBehavior() {
+		return behavior;
+	}
+
+	@Override
+	public PublishResult publish(PublishRequest request) {
+		behavior.callWithRetries("Publish");
+		int messageBytes = request.getMessage().getBytes(StandardCharsets.UTF_8).length;
+		Map<String, SNSEvent.MessageAttribute> messageAttributes = new HashMap<String, SNSEvent.MessageAttribute>();
+		for (Map.Entry<String, MessageAttributeValue> entry : Optional.ofNullable(request.getMessageAttributes())
+				.orElse(Collections.emptyMap()).entrySet()) {
+			MessageAttributeValue value = entry.getValue();
+			messageBytes += (entry.getKey() + value.getDataType() + value.getStringValue())
+					.getBytes(StandardCharsets.UTF_8).length;
+			messageAttributes.put(entry.getKey(),
+					new SNSEvent.MessageAttribute().withType(value.getDataType()).withValue(value.getStringValue()));
+		}
+		if (messageBytes > MAX_MESSAGE_BYTES) {
+			InvalidParameterException e = new InvalidParameterException(
+					"Invalid parameter: Message too long: " + messageBytes + " bytes");
+			e.setServiceName("AmazonSNS");
+			e.setErrorCode("InvalidParameter");
+			e.setErrorType(AmazonServiceException.ErrorType.Client);
+			e.setStatusCode(400);
+			throw e;
+		}
+		String messageId = UUID.randomUUID().toString();
+		subscriber.accept(request.getTopicArn(),
+				new SNSRecord().withEventSource("aws:sns").withSns(new SNSEvent.SNS().withTopicArn(request.getTopicArn())
+						.withMessageId(messageId).withMessage(request.getMessage())
+						.withMessageAttributes(messageAttributes)));
+		return ServiceBehavior.ok(new PublishResult().withMessageId(messageId));
+	}
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+import com.amazonaws.services.sqs.AbstractAmazonSQS;
+import com.amazonaws.services.sqs.model.InvalidMessageContentsException;
+import com.amazonaws.services.sqs.model.MessageAttributeValue;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+
+/**
+ * This is an in-memory AmazonSQS. A message sent to a queue is handed to the
+ * consumer as the SQSMessage a Lambda function triggered by the queue would
+ * get. Messages larger than SQS accepts, attributes included, are rejected.
+ *
+ */
+public class InMemorySQS extends AbstractAmazonSQS {
+
+	public static final int MAX_MESSAGE_BYTES = 256 * 1024;
+
+	private final ServiceBehavior behavior;
+	private final BiConsumer<String, SQSMessage> consumer;
+
+	/**
+	 * @param behavior
+	 * @param consumer gets the queue URL and each message
+	 */
+	public InMemorySQS(ServiceBehavior behavior, BiConsumer<String, SQSMessage> consumer) {
+		this.behavior = behavior;
+		this.consumer = consumer;
+	}
+
+	public ServiceBehavior getBehavior() {
+		return behavior;
+	}
+
+	@Override
+	public SendMessageResult sendMessage(SendMessageRequest request) {
+		behavior.callWithRetries("SendMessage");
+		int messageBytes = request.getMessageBody().getBytes(StandardCharsets.UTF_8).length;
+		Map<String, SQSEvent.MessageAttribute> messageAttributes = new HashMap<String, SQSEvent.MessageAttribute>();
+		for (Map.Entry<String, MessageAttributeValue> entry : Optional.ofNullable(request.getMessageAttributes())
+				.orElse(Collections.emptyMap()).entrySet()) {
+			MessageAttributeValue value = entry.getValue();
+			messageBytes += (entry.getKey() + value.getDataType() + value.getStringValue())
+					.getBytes(StandardCharsets.UTF_8).length;
+			SQSEvent.MessageAttribute messageAttribute = new SQSEvent.MessageAttribute();
+			messageAttribute.setDataType(value.getDataType());
+			messageAttribute.setStringValue(value.getStringValue());
+			messageAttributes.put(entry.getKey(), messageAttribute);
+		}
+		if (messageBytes > MAX_MESSAGE_BYTES) {
+			InvalidMessageContentsException e = new InvalidMessageContentsException(
+					"Message must be shorter than " + MAX_MESSAGE_BYTES + " bytes.");
+			e.setServiceName("AmazonSQS");
+			e.setErrorCode("InvalidParameterValue");
+			e.setErrorType(AmazonServiceException.ErrorType.Client);
+			e.setStatusCode(400);
+			throw e;
+		}
+		String messageId = UUID.randomUUID().toString();
+		SQSMessage message = new SQSMessage();
+		message.setMessageId(messageId);
+		message.setEventSource("aws:sqs");
+		message.setBody(request.getMessageBody());
+		message.setMessageAttributes(messageAttributes);
+		consumer.accept(request.getQueueUrl(), message);
+		return ServiceBehavior.ok(new SendMessageResult().withMessageId(messageId));
+	}
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class draws the simulated latency of a call to an in-memory service.
+ * It is parsed from a specification:
+ * <ul>
+ * <li>none: no latency</li>
+ * <li>constant:&lt;ms&gt;</li>
+ * <li>uniform:&lt;min ms&gt;:&lt;max ms&gt;</li>
+ * <li>lognormal:&lt;median ms&gt;:&lt;p99 ms&gt;, a long-tailed distribution
+ * like the one of real API calls</li>
+ * </ul>
+ *
+ */
+public class LatencyModel {
+
+	private static final double Z_99 = 2.3263;
+
+	private final String specification;
+	private final String kind;
+	private final double first;
+	private final double second;
+
+	private LatencyModel(String specification, String kind, double first, double second) {
+		this.specification = specification;
+		this.kind = kind;
+		this.first = first;
+		this.second = second;
+	}
+
+	public static LatencyModel parse(String specification) {
+		String[] tokens = specification.split(":");
+		switch (tokens[0]) {
+		case "none":
+			return new LatencyModel(specification, "none", 0, 0);
+		case "constant":
+			return new LatencyModel(specification, "constant", Double.parseDouble(tokens[1]), 0);
+		case "uniform":
+			return new LatencyModel(specification, "uniform", Double.parseDouble(tokens[1]),
+					Double.parseDouble(tokens[2]));
+		case "lognormal":
+			double median = Double.parseDouble(tokens[1]);
+			double p99 = Double.parseDouble(tokens[2]);
+			if (median <= 0 || p99 < median)
+				throw new IllegalArgumentException("Invalid lognormal latency: " + specification);
+			return new LatencyModel(specification, "lognormal", Math.log(median), Math.log(p99 / median) / Z_99);
+		default:
+			throw new IllegalArgumentException("Unknown latency model: " + specification);
+		}
+	}
+
+	/**
+	 * @return the next latency in nanoseconds
+	 */
+	public long nextNanos() {
+		double millis;
+		switch (kind) {
+		case "constant":
+			millis = first;
+			break;
+		case "uniform":
+			millis = first + ThreadLocalRandom.current().nextDouble() * (second - first);
+			break;
+		case "lognormal":
+			millis = Math.exp(first + second * ThreadLocalRandom.current().nextGaussian());
+			break;
+		default:
+			millis = 0;
+		}
+		return (long) (millis * 1_000_000);
+	}
+
+	@Override
+	public String toString() {
+		return specification;
+	}
+}
@@ -0,0 +1,40 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.util.Arrays;
+
+/**
+ * This class records durations, in nanoseconds, and computes their
+ * percentiles. It is thread-safe.
+ *
+ */
+public class LatencyRecorder {
+
+	private long[] samples = new long[1024];
+	private int count;
+
+	public synchronized void record(long nanos) {
+		if (count == samples.length)
+			samples = Arrays.copyOf(samples, count * 2);
+		samples[count++] = nanos;
+	}
+
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the percentile in milliseconds, or 0 if nothing was recorded
+	 */
+	public synchronized double getPercentileMillis(double percentile) {
+		if (count == 0)
+			return 0;
+		long[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(index, count - 1))] / 1_000_000.0;
+	}
+}
@@ -0,0 +1,403 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.amazonaws.gdcreplication.benchmark.SampleData;
+import com.amazonaws.gdcreplication.lambda.ExportDatabaseWithTables;
+import com.amazonaws.gdcreplication.lambda.ExportLargeTable;
+import com.amazonaws.gdcreplication.lambda.GDCReplicationPlanner;
+import com.amazonaws.gdcreplication.lambda.ImportDatabaseOrTable;
+import com.amazonaws.gdcreplication.lambda.ImportLargeTable;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.LargeTable;
+import com.amazonaws.gdcreplication.util.PayloadCodec;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.glue.model.Database;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.Table;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.SNSEvent;
+import com.amazonaws.services.lambda.runtime.events.SNSEvent.SNSRecord;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
+
+/**
+ * This harness runs a replication end to end, in one JVM, against in-memory
+ * stand-ins of Glue, SNS, SQS, S3 and DynamoDB. It seeds a source catalog from
+ * the sample JSON files, registers the stand-ins in AWSClientRegistry and
+ * invokes GDCReplicationPlanner. Every message published to a topic or sent to
+ * a queue then invokes the Lambda function subscribed to it, on a pool of
+ * threads, until no invocation is left:
+ * <ul>
+ * <li>sns_topic_arn_gdc_replication_planner: ExportDatabaseWithTables</li>
+ * <li>sns_topic_arn_export_dbs_tables: ImportDatabaseOrTable</li>
+ * <li>sqs_queue_url_large_tables: ExportLargeTable, or ImportLargeTable once
+ * the large table has an S3 object</li>
+ * <li>dlq_url_sqs: counted only</li>
+ * </ul>
+ * A failed invocation is retried up to MAX_ATTEMPTS times. The harness then
+ * reports the invocations and latencies of each Lambda function, the calls,
+ * throttles and latencies of each API operation, the entities replicated per
+ * second and whether the target catalog is complete.
+ *
+ * The Lambda functions read their configuration from environment variables,
+ * which cannot be set in a running JVM. The harness therefore runs itself in a
+ * child JVM, with DEFAULT_ENVIRONMENT added to the environment for the
+ * variables that are not set. Any environment variable of the Lambda
+ * functions can be set before running the harness, e.g.
+ * ddb_name_glue_api_budget, ddb_name_large_table_chunks with
+ * partitions_per_chunk, or ddb_name_large_table_checkpoint to run the
+ * replication with the features that use those DynamoDB tables.
+ *
+ * Arguments are key=value pairs, see ServiceBehavior for the behavior of the
+ * services:
+ * <ul>
+ * <li>databases, the number of databases of the source catalog (default
+ * 10)</li>
+ * <li>tables, the number of tables per database (default 10)</li>
+ * <li>partitions, the number of partitions per table (default 10). A sample
+ * partition is about 15KB, so a table with more than 16 partitions does not
+ * fit in an SNS message and is exported as a large table.</li>
+ * <li>largeTables, the number of tables per database with largePartitions
+ * partitions (default 1)</li>
+ * <li>largePartitions (default 2000)</li>
+ * <li>concurrency, the number of concurrent invocations (default 16)</li>
+ * <li>timeoutSeconds, the timeout of the Lambda functions (default 900)</li>
+ * <li>log, the file the output of the Lambda functions is written to (default
+ * replication-harness.log)</li>
+ * </ul>
+ *
+ */
+public class ReplicationThroughputHarness {
+
+	public static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * Environment of the child JVM, for the variables that are not set
+	 */
+	public static final Map<String, String> DEFAULT_ENVIRONMENT;
+
+	static {
+		Map<String, String> environment = new LinkedHashMap<String, String>();
+		environment.put("region", Regions.US_EAST_1.getName());
+		environment.put("source_glue_catalog_id", "111111111111");
+		environment.put("target_glue_catalog_id", "222222222222");
+		environment.put("sns_topic_arn_gdc_replication_planner",
+				"arn:aws:sns:us-east-1:111111111111:GDCReplicationPlannerSNSTopic");
+		environment.put("sns_topic_arn_export_dbs_tables",
+				"arn:aws:sns:us-east-1:111111111111:ExportDatabaseWithTablesSNSTopic");
+		environment.put("sqs_queue_url_large_tables",
+				"https://sqs.us-east-1.amazonaws.com/111111111111/LargeTableSQSQueue");
+		environment.put("dlq_url_sqs", "https://sqs.us-east-1.amazonaws.com/222222222222/DeadLetterQueue");
+		environment.put("s3_bucket_name", "gdc-replication-large-tables");
+		environment.put("partition_threshold", "1000");
+		DEFAULT_ENVIRONMENT = Collections.unmodifiableMap(environment);
+	}
+
+	private static final String CHILD_JVM_VARIABLE = "gdc_replication_harness_child";
+
+	private final Map<String, String> arguments;
+	private final Map<String, String> environment;
+	private final String sourceCatalogId;
+	private final String targetCatalogId;
+	private final long timeoutMillis;
+	private final ExecutorService executor;
+	private final AtomicInteger invocationsInFlight = new AtomicInteger();
+	private final AtomicInteger abandonedInvocations = new AtomicInteger();
+	private final AtomicInteger deadLetterMessages = new AtomicInteger();
+	private final AtomicInteger unroutedMessages = new AtomicInteger();
+	private final Map<String, CallStatistics> stages = new ConcurrentSkipListMap<String, CallStatistics>();
+
+	private InMemoryGlue glue;
+	private InMemorySNS sns;
+	private InMemorySQS sqs;
+	private InMemoryS3 s3;
+	private InMemoryDynamoDB dynamoDB;
+
+	public ReplicationThroughputHarness(Map<String, String> arguments, Map<String, String> environment) {
+		this.arguments = arguments;
+		this.environment = environment;
+		this.sourceCatalogId = environment.get("source_glue_catalog_id");
+		this.targetCatalogId = environment.get("target_glue_catalog_id");
+		this.timeoutMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(arguments.getOrDefault("timeoutSeconds", "900")));
+		this.executor = Executors.newFixedThreadPool(Integer.parseInt(arguments.getOrDefault("concurrency", "16")));
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> arguments = parseArguments(args);
+		if (!Optional.ofNullable(System.getenv(CHILD_JVM_VARIABLE)).isPresent())
+			System.exit(runInChildJvm(args));
+
+		PrintStream report = System.out;
+		File logFile = new File(arguments.getOrDefault("log", "replication-harness.log"));
+		try (PrintStream log = new PrintStream(new FileOutputStream(logFile), true, "UTF-8")) {
+			System.setOut(log);
+			System.setErr(log);
+			ReplicationThroughputHarness harness = new ReplicationThroughputHarness(arguments, System.getenv());
+			boolean complete = harness.run(report);
+			report.println("Output of the Lambda functions: " + logFile.getAbsolutePath());
+			System.exit(complete ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Run the replication and print the report
+	 *
+	 * @param report
+	 * @return true if the target catalog has all the databases, tables and
+	 *         partitions of the source catalog
+	 * @throws InterruptedException
+	 */
+	public boolean run(PrintStream report) throws InterruptedException {
+		String region = Optional.ofNullable(environment.get("region")).orElse(Regions.US_EAST_1.getName());
+		glue = new InMemoryGlue(ServiceBehavior.fromArguments("glue", arguments, 1000), targetCatalogId);
+		sns = new InMemorySNS(ServiceBehavior.fromArguments("sns", arguments, 1), this::onPublish);
+		sqs = new InMemorySQS(ServiceBehavior.fromArguments("sqs", arguments, 1), this::onSend);
+		s3 = new InMemoryS3(ServiceBehavior.fromArguments("s3", arguments, 1000));
+		dynamoDB = new InMemoryDynamoDB(ServiceBehavior.fromArguments("dynamodb", arguments, 1000));
+		setKeySchema("ddb_name_glue_api_budget", "bucket_id");
+		setKeySchema("ddb_name_large_table_chunks", "manifest_id");
+		setKeySchema("ddb_name_large_table_checkpoint", "import_id");
+		AWSClientRegistry.registerClient("glue", region, AWSClientRegistry.PROFILE_THROTTLE_AWARE, glue);
+		AWSClientRegistry.registerClient("sns", region, AWSClientRegistry.PROFILE_DEFAULT, sns);
+		AWSClientRegistry.registerClient("sqs", region, AWSClientRegistry.PROFILE_DEFAULT, sqs);
+		AWSClientRegistry.registerClient("s3", region, AWSClientRegistry.PROFILE_DEFAULT, s3);
+		AWSClientRegistry.registerClient("dynamodb", region, AWSClientRegistry.PROFILE_DEFAULT, dynamoDB);
+		AWSClientRegistry.registerClient("dynamodb", null, AWSClientRegistry.PROFILE_DEFAULT, dynamoDB);
+
+		seedSourceCatalog();
+		long start = System.nanoTime();
+		invoke("GDCReplicationPlanner", 1,
+				context -> new GDCReplicationPlanner().handleRequest(new HashMap<String, Object>(), context));
+		synchronized (invocationsInFlight) {
+			while (invocationsInFlight.get() > 0)
+				invocationsInFlight.wait();
+		}
+		double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+		executor.shutdown();
+		return printReport(report, elapsedSeconds);
+	}
+
+	/**
+	 * Set the key schema of the DynamoDB table named by an environment variable,
+	 * if it is set
+	 *
+	 * @param variable
+	 * @param keyAttributeName
+	 */
+	private void setKeySchema(String variable, String keyAttributeName) {
+		String tableName = Optional.ofNullable(environment.get(variable)).orElse("");
+		if (!tableName.isEmpty())
+			dynamoDB.setKeySchema(tableName, keyAttributeName);
+	}
+
+	/**
+	 * Seed the source catalog with copies of the sample database, table and
+	 * partitions
+	 */
+	private void seedSourceCatalog() {
+		int numberOfDatabases = Integer.parseInt(arguments.getOrDefault("databases", "10"));
+		int numberOfTables = Integer.parseInt(arguments.getOrDefault("tables", "10"));
+		int numberOfLargeTables = Integer.parseInt(arguments.getOrDefault("largeTables", "1"));
+		List<Partition> partitions = SampleData
+				.createPartitions(Integer.parseInt(arguments.getOrDefault("partitions", "10")));
+		List<Partition> largeTablePartitions = SampleData
+				.createPartitions(Integer.parseInt(arguments.getOrDefault("largePartitions", "2000")));
+		for (Database database : SampleData.createDatabases(numberOfDatabases, numberOfDatabases)) {
+			glue.seedDatabase(sourceCatalogId, database);
+			for (int i = 0; i < numberOfTables + numberOfLargeTables; i++) {
+				Table table = SampleData.createTable();
+				table.setDatabaseName(database.getName());
+				table.setName(i < numberOfTables ? "table_" + i : "large_table_" + (i - numberOfTables));
+				glue.seedTable(sourceCatalogId, table, i < numberOfTables ? partitions : largeTablePartitions);
+			}
+		}
+	}
+
+	/**
+	 * Invoke the Lambda function subscribed to the topic of a message
+	 */
+	private void onPublish(String topicArn, SNSRecord record) {
+		SNSEvent event = new SNSEvent().withRecords(Collections.singletonList(record));
+		if (topicArn.equals(environment.get("sns_topic_arn_gdc_replication_planner")))
+			submit("ExportDatabaseWithTables", context -> new ExportDatabaseWithTables().handleRequest(event, context));
+		else if (topicArn.equals(environment.get("sns_topic_arn_export_dbs_tables")))
+			submit("ImportDatabaseOrTable", context -> new ImportDatabaseOrTable().handleRequest(event, context));
+		else
+			unroutedMessages.incrementAndGet();
+	}
+
+	/**
+	 * Invoke the Lambda function triggered by the queue of a message. The queue
+	 * for large tables serves ExportLargeTable in the source account and
+	 * ImportLargeTable in the target account; a large table with an S3 object
+	 * was exported already.
+	 */
+	private void onSend(String queueUrl, SQSMessage message) {
+		SQSEvent event = new SQSEvent();
+		event.setRecords(Collections.singletonList(message));
+		if (queueUrl.equals(environment.get("sqs_queue_url_large_tables"))) {
+			String payload = PayloadCodec.decodePayload(
+					Optional.ofNullable(message.getMessageAttributes().get(PayloadCodec.SQS_ATTRIBUTE))
+							.map(SQSEvent.MessageAttribute::getStringValue).orElse(null),
+					message.getBody());
+			if (Optional.ofNullable(GsonRegistry.getGson().fromJson(payload, LargeTable.class).getS3ObjectKey())
+					.isPresent())
+				submit("ImportLargeTable", context -> new ImportLargeTable().handleRequest(event, context));
+			else
+				submit("ExportLargeTable", context -> new ExportLargeTable().handleRequest(event, context));
+		} else if (queueUrl.equals(environment.get("dlq_url_sqs")))
+			deadLetterMessages.incrementAndGet();
+		else
+			unroutedMessages.incrementAndGet();
+	}
+
+	private void submit(String functionName, Function<Context, ?> handler) {
+		submit(functionName, 1, handler);
+	}
+
+	private void submit(String functionName, int attempt, Function<Context, ?> handler) {
+		invocationsInFlight.incrementAndGet();
+		executor.execute(() -> {
+			try {
+				invoke(functionName, attempt, handler);
+			} finally {
+				if (invocationsInFlight.decrementAndGet() == 0) {
+					synchronized (invocationsInFlight) {
+						invocationsInFlight.notifyAll();
+					}
+				}
+			}
+		});
+	}
+
+	private void invoke(String functionName, int attempt, Function<Context, ?> handler) {
+		CallStatistics statistics = stages.computeIfAbsent(functionName, k -> new CallStatistics());
+		long start = System.nanoTime();
+		try {
+			handler.apply(new HarnessContext(functionName, timeoutMillis));
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			statistics.recordFailure();
+			System.out.printf("Invocation %d of %s failed. \n", attempt, functionName);
+			if (attempt < MAX_ATTEMPTS)
+				submit(functionName, attempt + 1, handler);
+			else
+				abandonedInvocations.incrementAndGet();
+		} finally {
+			statistics.recordCall(System.nanoTime() - start);
+		}
+	}
+
+	private boolean printReport(PrintStream report, double elapsedSeconds) {
+		report.println("Arguments: " + arguments);
+		for (ServiceBehavior behavior : getBehaviors())
+			report.println("Service " + behavior);
+		report.println();
+		report.printf("%-26s %12s %10s %12s %12s%n", "Lambda function", "invocations", "failures", "p50 ms", "p99 ms");
+		for (Map.Entry<String, CallStatistics> stage : stages.entrySet())
+			report.printf("%-26s %12d %10d %12.1f %12.1f%n", stage.getKey(), stage.getValue().getCalls(),
+					stage.getValue().getFailures(), stage.getValue().getLatencies().getPercentileMillis(50),
+					stage.getValue().getLatencies().getPercentileMillis(99));
+		report.println();
+		report.printf("%-35s %10s %10s %12s %12s%n", "API operation", "calls", "throttles", "p50 ms", "p99 ms");
+		for (ServiceBehavior behavior : getBehaviors()) {
+			for (Map.Entry<String, CallStatistics> operation : behavior.getStatistics().entrySet())
+				report.printf("%-35s %10d %10d %12.1f %12.1f%n", behavior.getService() + ":" + operation.getKey(),
+						operation.getValue().getCalls(), operation.getValue().getThrottles(),
+						operation.getValue().getLatencies().getPercentileMillis(50),
+						operation.getValue().getLatencies().getPercentileMillis(99));
+		}
+		report.println();
+
+		Map<String, Integer> sourcePartitions = glue.getNumberOfPartitionsByTable(sourceCatalogId);
+		Map<String, Integer> targetPartitions = glue.getNumberOfPartitionsByTable(targetCatalogId);
+		int targetDatabases = glue.getNumberOfDatabases(targetCatalogId);
+		long targetPartitionCount = targetPartitions.values().stream().mapToLong(Integer::longValue).sum();
+		List<String> incompleteTables = new ArrayList<String>();
+		for (Map.Entry<String, Integer> table : sourcePartitions.entrySet()) {
+			if (!table.getValue().equals(targetPartitions.get(table.getKey())))
+				incompleteTables.add(table.getKey());
+		}
+		long entitiesReplicated = targetDatabases + targetPartitions.size() + targetPartitionCount;
+		report.printf("Source catalog: %d databases, %d tables, %d partitions%n",
+				glue.getNumberOfDatabases(sourceCatalogId), sourcePartitions.size(),
+				sourcePartitions.values().stream().mapToLong(Integer::longValue).sum());
+		report.printf("Target catalog: %d databases, %d tables, %d partitions%n", targetDatabases,
+				targetPartitions.size(), targetPartitionCount);
+		report.printf("Elapsed: %.2f s, entities replicated per second: %.1f%n", elapsedSeconds,
+				entitiesReplicated / elapsedSeconds);
+		report.printf("S3 objects: %d (%d bytes), DynamoDB items: %s%n", s3.getNumberOfObjects(),
+				s3.getNumberOfBytes(), dynamoDB.getNumberOfItemsByTable());
+		report.printf("Abandoned invocations: %d, dead letter messages: %d, unrouted messages: %d%n",
+				abandonedInvocations.get(), deadLetterMessages.get(), unroutedMessages.get());
+		boolean complete = incompleteTables.isEmpty()
+				&& targetDatabases == glue.getNumberOfDatabases(sourceCatalogId);
+		if (complete)
+			report.println("Target catalog is complete.");
+		else
+			report.printf("Target catalog is INCOMPLETE. Tables missing or with missing partitions: %s%n",
+					incompleteTables.subList(0, Math.min(10, incompleteTables.size())));
+		return complete;
+	}
+
+	private List<ServiceBehavior> getBehaviors() {
+		return Arrays.asList(glue.getBehavior(), sns.getBehavior(), sqs.getBehavior(), s3.getBehavior(),
+				dynamoDB.getBehavior());
+	}
+
+	/**
+	 * Run the harness in a child JVM with the same class path and JVM options,
+	 * and DEFAULT_ENVIRONMENT added to the environment
+	 *
+	 * @param args
+	 * @return the exit code of the child JVM
+	 */
+	private static int runInChildJvm(String[] args) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(ReplicationThroughputHarness.class.getName());
+		command.addAll(Arrays.asList(args));
+		ProcessBuilder processBuilder = new ProcessBuilder(command).inheritIO();
+		for (Map.Entry<String, String> variable : DEFAULT_ENVIRONMENT.entrySet())
+			processBuilder.environment().putIfAbsent(variable.getKey(), variable.getValue());
+		processBuilder.environment().put(CHILD_JVM_VARIABLE, "true");
+		return processBuilder.start().waitFor();
+	}
+
+	private static Map<String, String> parseArguments(String[] args) {
+		Map<String, String> arguments = new LinkedHashMap<String, String>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator < 1)
+				throw new IllegalArgumentException("Arguments must be key=value pairs: " + arg);
+			arguments.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		return arguments;
+	}
+}
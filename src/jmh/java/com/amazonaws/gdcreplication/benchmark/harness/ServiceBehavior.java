@@ -0,0 +1,178 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.benchmark.harness;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonServiceException.ErrorType;
+import com.amazonaws.AmazonWebServiceResult;
+import com.amazonaws.ResponseMetadata;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.SdkHttpMetadata;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * This class simulates the behavior of an AWS service for the in-memory
+ * stand-ins: every call waits for a latency drawn from a LatencyModel and is
+ * throttled with a given probability, or when it exceeds a given number of
+ * calls per second. Pages of list operations hold at most pageSize entities.
+ * The calls, throttles and latencies are counted per operation.
+ *
+ * The behavior of a service is configured with the following harness
+ * arguments, where &lt;service&gt; is one of glue, s3, sns, sqs or dynamodb:
+ * <ul>
+ * <li>&lt;service&gt;.latency, see LatencyModel (default none)</li>
+ * <li>&lt;service&gt;.throttle, the probability that a call is throttled
+ * (default 0)</li>
+ * <li>&lt;service&gt;.tps, the calls per second above which calls are
+ * throttled (default 0, i.e. no limit)</li>
+ * <li>&lt;service&gt;.pageSize, the maximum number of entities in a page</li>
+ * </ul>
+ *
+ */
+public class ServiceBehavior {
+
+	/**
+	 * Number of retries of a throttled call by the SDK client, as configured by
+	 * AWSClientRegistry for the services other than Glue
+	 */
+	public static final int MAX_ERROR_RETRY = 10;
+
+	private final String service;
+	private final LatencyModel latencyModel;
+	private final double throttleRate;
+	private final RateLimiter tpsLimiter;
+	private final int pageSize;
+	private final Map<String, CallStatistics> statistics = new ConcurrentSkipListMap<String, CallStatistics>();
+
+	public ServiceBehavior(String service, LatencyModel latencyModel, double throttleRate, double tps, int pageSize) {
+		this.service = service;
+		this.latencyModel = latencyModel;
+		this.throttleRate = throttleRate;
+		this.tpsLimiter = tps > 0 ? RateLimiter.create(tps) : null;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Create the behavior of a service from the harness arguments
+	 *
+	 * @param service
+	 * @param arguments
+	 * @param defaultPageSize
+	 * @return
+	 */
+	public static ServiceBehavior fromArguments(String service, Map<String, String> arguments, int defaultPageSize) {
+		return new ServiceBehavior(service, LatencyModel.parse(arguments.getOrDefault(service + ".latency", "none")),
+				Double.parseDouble(arguments.getOrDefault(service + ".throttle", "0")),
+				Double.parseDouble(arguments.getOrDefault(service + ".tps", "0")),
+				Integer.parseInt(arguments.getOrDefault(service + ".pageSize", Integer.toString(defaultPageSize))));
+	}
+
+	/**
+	 * Simulate a call whose throttling errors reach the caller, as they do for
+	 * Glue: its SDK retry policy leaves them to RateLimitedGlue.
+	 *
+	 * @param operation
+	 */
+	public void call(String operation) {
+		if (simulateCall(operation))
+			throw createThrottlingException(operation);
+	}
+
+	/**
+	 * Simulate a call whose throttling errors are retried by the SDK client, with
+	 * the backoff of the default retry policy, up to MAX_ERROR_RETRY times.
+	 *
+	 * @param operation
+	 */
+	public void callWithRetries(String operation) {
+		for (int retries = 0; simulateCall(operation); retries++) {
+			AmazonServiceException e = createThrottlingException(operation);
+			if (retries == MAX_ERROR_RETRY)
+				throw e;
+			sleep(TimeUnit.MILLISECONDS
+					.toNanos(PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY.delayBeforeNextRetry(null, e, retries)));
+		}
+	}
+
+	/**
+	 * @param maxResults the MaxResults of a request, or null
+	 * @return the number of entities of the next page
+	 */
+	public int getPageSize(Integer maxResults) {
+		return Math.min(Optional.ofNullable(maxResults).orElse(pageSize), pageSize);
+	}
+
+	public String getService() {
+		return service;
+	}
+
+	/**
+	 * @return the statistics of the operations called, by operation name
+	 */
+	public Map<String, CallStatistics> getStatistics() {
+		return statistics;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: latency = %s, throttle = %s, tps = %s, pageSize = %d", service, latencyModel,
+				throttleRate, Optional.ofNullable(tpsLimiter).map(l -> Double.toString(l.getRate())).orElse("none"),
+				pageSize);
+	}
+
+	/**
+	 * Set the HTTP metadata of a successful response, which the util classes
+	 * check the status code of
+	 *
+	 * @param result
+	 * @return
+	 */
+	public static <T extends AmazonWebServiceResult<ResponseMetadata>> T ok(T result) {
+		HttpResponse httpResponse = new HttpResponse(null, null);
+		httpResponse.setStatusCode(200);
+		result.setSdkHttpMetadata(SdkHttpMetadata.from(httpResponse));
+		return result;
+	}
+
+	/**
+	 * @return true if the call is throttled
+	 */
+	private boolean simulateCall(String operation) {
+		long start = System.nanoTime();
+		sleep(latencyModel.nextNanos());
+		boolean throttled = ThreadLocalRandom.current().nextDouble() < throttleRate
+				|| (Optional.ofNullable(tpsLimiter).isPresent() && !tpsLimiter.tryAcquire());
+		CallStatistics operationStatistics = statistics.computeIfAbsent(operation, k -> new CallStatistics());
+		operationStatistics.recordCall(System.nanoTime() - start);
+		if (throttled)
+			operationStatistics.recordThrottle();
+		return throttled;
+	}
+
+	private AmazonServiceException createThrottlingException(String operation) {
+		AmazonServiceException e = new AmazonServiceException("Rate exceeded for operation " + operation);
+		e.setServiceName(service);
+		e.setErrorCode("ThrottlingException");
+		e.setErrorType(ErrorType.Client);
+		e.setStatusCode(400);
+		return e;
+	}
+
+	private static void sleep(long nanos) {
+		if (nanos <= 0)
+			return;
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
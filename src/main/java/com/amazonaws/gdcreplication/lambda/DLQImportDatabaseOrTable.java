@@ -6,12 +6,16 @@ package com.amazonaws.gdcreplication.lambda;
 import java.util.Map.Entry;
 import java.util.Optional;
 
-import com.amazonaws.ClientConfiguration;
 import com.amazonaws.gdcreplication.util.GDCUtil;
 import com.amazonaws.gdcreplication.util.TableWithPartitions;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.PayloadCodec;
+import com.amazonaws.gdcreplication.util.RateLimitedGlue;
+import com.amazonaws.gdcreplication.util.DDBUtil;
+import com.amazonaws.gdcreplication.util.DistributedTokenBucket;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.glue.AWSGlue;
-import com.amazonaws.services.glue.AWSGlueClientBuilder;
 import com.amazonaws.services.glue.model.Database;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
@@ -19,7 +23,6 @@ import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.MessageAttribute;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
@@ -37,18 +40,28 @@ public class DLQImportDatabaseOrTable implements RequestHandler<SQSEvent, String
 		String ddbTblNameForTableStatusTracking = Optional.ofNullable(System.getenv("ddb_name_table_import_status"))
 				.orElse("ddb_name_table_import_status");
 		String sqsQueueURL = Optional.ofNullable(System.getenv("dlq_url_sqs")).orElse("");
+		int partitionReadSegments = Integer
+				.parseInt(Optional.ofNullable(System.getenv("partition_read_segments")).orElse("1"));
+		int partitionReadParallelism = Integer.parseInt(Optional.ofNullable(System.getenv("partition_read_parallelism"))
+				.orElse(Integer.toString(partitionReadSegments)));
+		String ddbTblNameForGlueApiBudget = Optional.ofNullable(System.getenv("ddb_name_glue_api_budget")).orElse("");
+		double glueApiBudgetTps = Double
+				.parseDouble(Optional.ofNullable(System.getenv("glue_api_budget_tps")).orElse("50"));
+		int glueApiBudgetLeaseSize = Integer
+				.parseInt(Optional.ofNullable(System.getenv("glue_api_budget_lease_size")).orElse("10"));
 
 		// Print environment variables
 		printEnvVariables(targetGlueCatalogId, skipTableArchive, ddbTblNameForDBStatusTracking,
-				ddbTblNameForTableStatusTracking, sqsQueueURL, region);
-
-		// Set client configuration
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
+				ddbTblNameForTableStatusTracking, sqsQueueURL, region, partitionReadSegments, partitionReadParallelism,
+				ddbTblNameForGlueApiBudget, glueApiBudgetTps, glueApiBudgetLeaseSize);
 
 		// Create Objects for Glue and SQS
-		AWSGlue glue = AWSGlueClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
-		AmazonSQS sqs = AmazonSQSClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
+		DistributedTokenBucket glueApiBudget = null;
+		if (!ddbTblNameForGlueApiBudget.isEmpty())
+			glueApiBudget = new DistributedTokenBucket(AWSClientRegistry.getDynamoDB(region), new DDBUtil(),
+					ddbTblNameForGlueApiBudget, "glue|" + targetGlueCatalogId, glueApiBudgetTps, glueApiBudgetLeaseSize);
+		AWSGlue glue = RateLimitedGlue.wrap(AWSClientRegistry.getGlue(region), glueApiBudget);
+		AmazonSQS sqs = AWSClientRegistry.getSQS(region);
 
 		/**
 		 * Iterate and process all the messages which are part of SQSEvent
@@ -56,6 +69,7 @@ public class DLQImportDatabaseOrTable implements RequestHandler<SQSEvent, String
 		System.out.println("Number of messages in SQS Event: " + event.getRecords().size());
 		for (SQSMessage msg : event.getRecords()) {
 			String ddl = new String(msg.getBody());
+			String messageCodec = null;
 			String exportBatchId = "";
 			String sourceGlueCatalogId = "";
 			String schemaType = "";
@@ -72,17 +86,24 @@ public class DLQImportDatabaseOrTable implements RequestHandler<SQSEvent, String
 				} else if ("SchemaType".equalsIgnoreCase(entry.getKey())) {
 					schemaType = entry.getValue().getStringValue();
 					System.out.println("Message Schema Type " + schemaType);
+				} else if (PayloadCodec.SQS_ATTRIBUTE.equalsIgnoreCase(entry.getKey())) {
+					messageCodec = entry.getValue().getStringValue();
+					System.out.println("Payload Codec: " + messageCodec);
 				}
 			}
+			ddl = PayloadCodec.decodePayload(messageCodec, ddl);
 			System.out.println("Schema: " + ddl);
 			if (schemaType.equalsIgnoreCase("Table"))
 				isTable = true;
 
 			processsRecord(context, glue, sqs, sqsQueueURL, targetGlueCatalogId, ddbTblNameForDBStatusTracking,
 					ddbTblNameForTableStatusTracking, ddl, skipTableArchive, exportBatchId, sourceGlueCatalogId,
-					isTable);
+					isTable, partitionReadSegments, partitionReadParallelism);
 
 		}
+		RateLimitedGlue.printStatistics();
+		if (Optional.ofNullable(glueApiBudget).isPresent())
+			System.out.println("Glue API budget - " + glueApiBudget);
 		return "Success";
 	}
 
@@ -95,16 +116,27 @@ public class DLQImportDatabaseOrTable implements RequestHandler<SQSEvent, String
 	 * @param ddbTblNameForTableStatusTracking
 	 * @param sqsQueueURL
 	 * @param region
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param ddbTblNameForGlueApiBudget
+	 * @param glueApiBudgetTps
+	 * @param glueApiBudgetLeaseSize
 	 */
 	public void printEnvVariables(String targetGlueCatalogId, boolean skipTableArchive,
 			String ddbTblNameForDBStatusTracking, String ddbTblNameForTableStatusTracking, String sqsQueueURL,
-			String region) {
+			String region, int partitionReadSegments, int partitionReadParallelism,
+			String ddbTblNameForGlueApiBudget, double glueApiBudgetTps, int glueApiBudgetLeaseSize) {
 		System.out.println("Target Catalog Id: " + targetGlueCatalogId);
 		System.out.println("Skip Table Archive: " + skipTableArchive);
 		System.out.println("DynamoDB Table for DB Import Auditing: " + ddbTblNameForDBStatusTracking);
 		System.out.println("DynamoDB Table for Table Import Auditing: " + ddbTblNameForTableStatusTracking);
 		System.out.println("Dead Letter Queue URL: " + sqsQueueURL);
 		System.out.println("Region: " + region);
+		System.out.println("Partition read segments: " + partitionReadSegments);
+		System.out.println("Partition read parallelism: " + partitionReadParallelism);
+		System.out.println("DynamoDB Table for Glue API Budget: " + ddbTblNameForGlueApiBudget);
+		System.out.println("Glue API budget in calls per second: " + glueApiBudgetTps);
+		System.out.println("Glue API budget lease size: " + glueApiBudgetLeaseSize);
 	}
 
 	/**
@@ -122,18 +154,20 @@ public class DLQImportDatabaseOrTable implements RequestHandler<SQSEvent, String
 	 * @param exportBatchId
 	 * @param sourceGlueCatalogId
 	 * @param isTable
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
 	 */
 	public void processsRecord(Context context, AWSGlue glue, AmazonSQS sqs, String sqsQueueURL,
 			String targetGlueCatalogId, String ddbTblNameForDBStatusTracking, String ddbTblNameForTableStatusTracking,
 			String message, boolean skipTableArchive, String exportBatchId, String sourceGlueCatalogId,
-			boolean isTable) {
+			boolean isTable, int partitionReadSegments, int partitionReadParallelism) {
 
 		boolean isDatabaseType = false;
 		boolean isTableType = false;
 		
 		Database db = null;
 		TableWithPartitions table = null;
-		Gson gson = new Gson();
+		Gson gson = GsonRegistry.getGson();
 		
 		if (isTable) {
 			context.getLogger().log("The input message is of type Glue Table.");
@@ -161,7 +195,8 @@ public class DLQImportDatabaseOrTable implements RequestHandler<SQSEvent, String
 					exportBatchId, ddbTblNameForDBStatusTracking);
 		} else if (isTableType) {
 			gdcUtil.processTableSchema(glue, sqs, targetGlueCatalogId, sourceGlueCatalogId, table, message,
-					ddbTblNameForTableStatusTracking, sqsQueueURL, exportBatchId, skipTableArchive);
+					ddbTblNameForTableStatusTracking, sqsQueueURL, exportBatchId, skipTableArchive,
+					partitionReadSegments, partitionReadParallelism);
 		}
 	}
 }
\ No newline at end of file
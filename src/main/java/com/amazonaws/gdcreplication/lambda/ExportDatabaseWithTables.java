@@ -4,27 +4,33 @@
 package com.amazonaws.gdcreplication.lambda;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.amazonaws.ClientConfiguration;
 import com.amazonaws.gdcreplication.util.LargeTable;
 import com.amazonaws.gdcreplication.util.DDBUtil;
+import com.amazonaws.gdcreplication.util.FingerprintUtil;
 import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.gdcreplication.util.IdentityPayloadCodec;
 import com.amazonaws.gdcreplication.util.SNSUtil;
 import com.amazonaws.gdcreplication.util.SQSUtil;
-import com.amazonaws.gdcreplication.util.TableWithPartitions;
+import com.amazonaws.gdcreplication.util.PayloadCodec;
+import com.amazonaws.gdcreplication.util.SizeBoundedTableSerializer;
+import com.amazonaws.gdcreplication.util.TableBatch;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.RateLimitedGlue;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.PutRequest;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.amazonaws.services.glue.AWSGlue;
-import com.amazonaws.services.glue.AWSGlueClientBuilder;
 import com.amazonaws.services.glue.model.Database;
-import com.amazonaws.services.glue.model.Partition;
 import com.amazonaws.services.glue.model.Table;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
@@ -32,10 +38,8 @@ import com.amazonaws.services.lambda.runtime.events.SNSEvent;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent.MessageAttribute;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent.SNSRecord;
 import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sns.model.PublishResult;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
@@ -53,11 +57,34 @@ import com.google.gson.JsonSyntaxException;
  * 2. Publish the Table DDL to an SNS Topic 
  * 3. Insert a record to a DynamoDB table for status tracking
  * 
+ * A message can also carry a batch of tables of one database, published by the
+ * replication planner in table fan-out mode. Those tables are exported the same
+ * way.
+ * 
+ * If the topic of the replication planner is configured, the export watches the
+ * remaining time of the invocation. When less than continuation_time_margin_ms
+ * is left, it stops before the next table, flushes its audit items and
+ * publishes the rest of the work to the topic of the replication planner: a
+ * database message with the name of the last table exported as 'table_cursor',
+ * or a batch of the remaining tables. Tables are exported in order of name, so
+ * a database is exported in several invocations if need be.
+ * 
+ * When incremental_export is true, the fingerprint of each database and table
+ * exported is saved to the DynamoDB table of the replication planner once its
+ * message is published, see GDCReplicationPlanner. Tables with partition keys
+ * and tables exported by ExportLargeTable get no fingerprint, so they are
+ * always exported again.
+ * 
  * @author Ravi Itha, Amazon Web Services, Inc.
  *
  */
 public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object> {
 
+	/**
+	 * Number of audit items written to DynamoDB at a time, the BatchWriteItem limit
+	 */
+	public static final int AUDIT_FLUSH_SIZE = 25;
+
 	@Override
 	public String handleRequest(SNSEvent request, Context context) {
 
@@ -70,23 +97,40 @@ public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object
 		String ddbTblNameForTableStatusTracking = Optional.ofNullable(System.getenv("ddb_name_table_export_status"))
 				.orElse("ddb_name_table_export_status");
 		String sqsQueue4LargeTables = Optional.ofNullable(System.getenv("sqs_queue_url_large_tables")).orElse("");
-		int partitionThreshold = 10;
-		
-		// Client configuration
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
-				
+		int partitionThreshold = Integer.parseInt(Optional.ofNullable(System.getenv("partition_threshold"))
+				.orElse(Integer.toString(Integer.MAX_VALUE)));
+		int snsMessageByteBudget = Integer
+				.parseInt(Optional.ofNullable(System.getenv("sns_message_byte_budget")).orElse("245760"));
+		PayloadCodec payloadCodec = PayloadCodec
+				.forName(Optional.ofNullable(System.getenv("payload_codec")).orElse(IdentityPayloadCodec.NAME));
+		boolean compactPartitions = Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("compact_partitions")).orElse("false"));
+		String continuationTopicArn = Optional.ofNullable(System.getenv("sns_topic_arn_gdc_replication_planner"))
+				.orElse("");
+		long continuationTimeMarginMillis = Long
+				.parseLong(Optional.ofNullable(System.getenv("continuation_time_margin_ms")).orElse("60000"));
+		boolean incrementalExport = Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("incremental_export")).orElse("false"));
+		String ddbTblNameForFingerprints = incrementalExport
+				? Optional.ofNullable(System.getenv("ddb_name_catalog_fingerprint")).orElse("")
+				: "";
+
 		List<SNSRecord> snsRecods = request.getRecords();
-		AWSGlue glue = AWSGlueClientBuilder.standard().withRegion(region).build();
-		AmazonSNS sns = AmazonSNSClientBuilder.standard().withRegion(region).build();
-		AmazonSQS sqs = AmazonSQSClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
+		AWSGlue glue = RateLimitedGlue.wrap(AWSClientRegistry.getGlue(region));
+		AmazonSNS sns = AWSClientRegistry.getSNS(region);
+		AmazonSQS sqs = AWSClientRegistry.getSQS(region);
 		
 		printEnvVariables(sourceGlueCatalogId, topicArn, ddbTblNameForDBStatusTracking,
-				ddbTblNameForTableStatusTracking, sqsQueue4LargeTables);
+				ddbTblNameForTableStatusTracking, sqsQueue4LargeTables, partitionThreshold,
+				snsMessageByteBudget, payloadCodec, compactPartitions, continuationTopicArn,
+				continuationTimeMarginMillis, ddbTblNameForFingerprints);
 		System.out.printf("Number of messages in SNS Event: \n" + snsRecods.size());
 		processSNSEvent(snsRecods, context, glue, sns, sqs, sourceGlueCatalogId, ddbTblNameForDBStatusTracking,
-				ddbTblNameForTableStatusTracking, topicArn, sqsQueue4LargeTables, partitionThreshold);
+				ddbTblNameForTableStatusTracking, topicArn, sqsQueue4LargeTables, partitionThreshold,
+				snsMessageByteBudget, payloadCodec, compactPartitions, continuationTopicArn,
+				continuationTimeMarginMillis, ddbTblNameForFingerprints);
 
+		RateLimitedGlue.printStatistics();
 		return "Message from SNS Topic was processed successfully!";
 	}
 
@@ -96,14 +140,30 @@ public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object
 	 * @param topicArn
 	 * @param ddbTblNameForDBStatusTracking
 	 * @param ddbTblNameForTableStatusTracking
+	 * @param partitionThreshold
+	 * @param snsMessageByteBudget
+	 * @param payloadCodec
+	 * @param compactPartitions
+	 * @param continuationTopicArn
+	 * @param continuationTimeMarginMillis
+	 * @param ddbTblNameForFingerprints
 	 */
 	public static void printEnvVariables(String sourceGlueCatalogId, String topicArn,
-			String ddbTblNameForDBStatusTracking, String ddbTblNameForTableStatusTracking, String sqsQueue4LargeTables) {
+			String ddbTblNameForDBStatusTracking, String ddbTblNameForTableStatusTracking, String sqsQueue4LargeTables,
+			int partitionThreshold, int snsMessageByteBudget, PayloadCodec payloadCodec, boolean compactPartitions,
+			String continuationTopicArn, long continuationTimeMarginMillis, String ddbTblNameForFingerprints) {
 		System.out.println("SNS Topic Arn: " + topicArn);
 		System.out.println("Source Catalog Id: " + sourceGlueCatalogId);
 		System.out.println("DynamoDB Table for DB Export Auditing: " + ddbTblNameForDBStatusTracking);
 		System.out.println("DynamoDB Table for Table Export Auditing: " + ddbTblNameForTableStatusTracking);
 		System.out.println("SQS queue for large tables: " + sqsQueue4LargeTables);
+		System.out.println("Partition threshold for large tables: " + partitionThreshold);
+		System.out.println("Byte budget of SNS table messages: " + snsMessageByteBudget);
+		System.out.println("Payload codec: " + payloadCodec.getName());
+		System.out.println("Compact partitions: " + compactPartitions);
+		System.out.println("SNS Topic Arn for continuations: " + continuationTopicArn);
+		System.out.println("Continuation time margin in ms: " + continuationTimeMarginMillis);
+		System.out.println("DynamoDB Table for Catalog Fingerprints: " + ddbTblNameForFingerprints);
 	}
 
 	/**
@@ -116,37 +176,52 @@ public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object
 	 * @param ddbTblNameForDBStatusTracking
 	 * @param ddbTblNameForTableStatusTracking
 	 * @param topicArn
+	 * @param partitionThreshold
+	 * @param snsMessageByteBudget
+	 * @param payloadCodec
+	 * @param compactPartitions
+	 * @param continuationTopicArn
+	 * @param continuationTimeMarginMillis
+	 * @param ddbTblNameForFingerprints the table to save fingerprints to, or empty
 	 */
 	public static void processSNSEvent(List<SNSRecord> snsRecods, Context context, AWSGlue glue, AmazonSNS sns,
 			AmazonSQS sqs, String sourceGlueCatalogId, String ddbTblNameForDBStatusTracking,
 			String ddbTblNameForTableStatusTracking, String topicArn, String sqsQueue4LargePartTables,
-			int partitionThreshold) {
+			int partitionThreshold, int snsMessageByteBudget, PayloadCodec payloadCodec, boolean compactPartitions,
+			String continuationTopicArn, long continuationTimeMarginMillis, String ddbTblNameForFingerprints) {
 		Database db = null;
-		Gson gson = new Gson();
+		TableBatch tableBatch = null;
+		Gson gson = GsonRegistry.getGson();
 		DDBUtil ddbUtil = new DDBUtil();
 		SNSUtil snsUtil = new SNSUtil();
 		GlueUtil glueUtil = new GlueUtil();
 		SQSUtil sqsUtil = new SQSUtil();
+		FingerprintUtil fingerprintUtil = new FingerprintUtil();
 		long exportRunId = System.currentTimeMillis();
 		
 		for (SNSRecord snsRecod : snsRecods) {
 			
-			List<WriteRequest> itemList = new ArrayList<WriteRequest>();
-			
 			boolean isDatabaseType = false;
-			AtomicInteger numberOfTablesExported = new AtomicInteger();
+			boolean isTableBatchType = false;
 			String databaseDDL = snsRecod.getSNS().getMessage();
 			context.getLogger().log("SNS Message Payload: " + databaseDDL);
 			Map<String, MessageAttribute> msgAttributeMap = snsRecod.getSNS().getMessageAttributes();
 			MessageAttribute msgAttrMessageType = msgAttributeMap.get("message_type");
 			MessageAttribute msgAttrExportBatchId = msgAttributeMap.get("export_batch_id");
+			boolean exportTables = Optional.ofNullable(msgAttributeMap.get("export_tables"))
+					.map(attr -> Boolean.parseBoolean(attr.getValue())).orElse(true);
+			Optional<String> tableCursor = Optional.ofNullable(msgAttributeMap.get("table_cursor"))
+					.map(attr -> attr.getValue());
 			
 			context.getLogger().log("Message Attribute value: " + msgAttrMessageType.getValue());
-			// Convert Message to Glue Database Type
+			// Convert Message to Glue Database Type or to a batch of tables
 			try {
 				if (msgAttrMessageType.getValue().equalsIgnoreCase("database")) {
 					db = gson.fromJson(databaseDDL, Database.class);
 					isDatabaseType = true;
+				} else if (msgAttrMessageType.getValue().equalsIgnoreCase("tableBatch")) {
+					tableBatch = gson.fromJson(databaseDDL, TableBatch.class);
+					isTableBatchType = true;
 				}
 			} catch (JsonSyntaxException e) {
 				System.out.println("Cannot parse SNS message to Glue Database Type.");
@@ -155,7 +230,10 @@ public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object
 			if (isDatabaseType) {
 				// Check if a database exist in Glue
 				Database database = glueUtil.getDatabaseIfExist(glue, sourceGlueCatalogId, db);
-				if (Optional.ofNullable(database).isPresent()) {
+				if (Optional.ofNullable(database).isPresent() && tableCursor.isPresent()) {
+					System.out.printf("Continuing the export of database '%s' after table '%s'. \n", database.getName(),
+							tableCursor.get());
+				} else if (Optional.ofNullable(database).isPresent()) {
 					PublishResult publishDBResponse = snsUtil.publishDatabaseSchemaToSNS(sns, topicArn, databaseDDL,
 							sourceGlueCatalogId, msgAttrExportBatchId.getValue());
 					if (Optional.ofNullable(publishDBResponse.getMessageId()).isPresent()) {
@@ -163,67 +241,69 @@ public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object
 								+ publishDBResponse.getMessageId());
 						ddbUtil.trackDatabaseExportStatus(ddbTblNameForDBStatusTracking, db.getName(), databaseDDL,
 								publishDBResponse.getMessageId(), sourceGlueCatalogId, exportRunId, msgAttrExportBatchId.getValue(), true);
+						if (!ddbTblNameForFingerprints.isEmpty())
+							ddbUtil.trackFingerprints(ddbTblNameForFingerprints,
+									Collections.singletonMap(fingerprintUtil.getDatabaseEntityId(database.getName()),
+											fingerprintUtil.getDatabaseFingerprint(database)),
+									exportRunId);
 					} else {
 						ddbUtil.trackDatabaseExportStatus(ddbTblNameForDBStatusTracking, db.getName(), databaseDDL, "",
 								sourceGlueCatalogId, exportRunId, msgAttrExportBatchId.getValue(), false);
 					}
-					// Get Tables for a given Database
-					List<Table> dbTableList = glueUtil.getTables(glue, sourceGlueCatalogId, database.getName());
-					for (Table table : dbTableList) {
-						List<Partition> partitionList = glueUtil.getPartitions(glue, sourceGlueCatalogId, table.getDatabaseName(), table.getName());
-						if(partitionList.size() <= partitionThreshold) {
-							System.out.printf("Database: %s, Table: %s, num_partitions: %d \n", table.getDatabaseName(), table.getName(), partitionList.size());
-							TableWithPartitions tableWithParts = new TableWithPartitions();
-							tableWithParts.setPartitionList(partitionList);
-							tableWithParts.setTable(table);
-							
-							// Convert Table to JSON String
-							String tableDDL = gson.toJson(tableWithParts);
-							
-							// Publish a message to Amazon SNS topic.
-							PublishResult publishTableResponse = snsUtil.publishTableSchemaToSNS(sns, topicArn, table, tableDDL,
-									sourceGlueCatalogId, msgAttrExportBatchId.getValue());
-							
-							Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
-							item.put("table_id", new AttributeValue().withS(table.getName().concat("|").concat(table.getDatabaseName())));
-							item.put("export_run_id", new AttributeValue().withN(Long.valueOf(exportRunId).toString()));
-							item.put("export_batch_id", new AttributeValue().withS(msgAttrExportBatchId.getValue()));
-							item.put("source_glue_catalog_id", new AttributeValue().withS(sourceGlueCatalogId));
-							item.put("table_schema", new AttributeValue().withS(tableDDL)); 
-							item.put("is_large_table", new AttributeValue().withS(Boolean.toString(false)));
-							
-							if (Optional.ofNullable(publishTableResponse.getMessageId()).isPresent()) {
-								item.put("sns_msg_id", new AttributeValue().withS(publishTableResponse.getMessageId()));
-								item.put("is_exported", new AttributeValue().withS(Boolean.toString(true)));	
-								numberOfTablesExported.getAndIncrement();
-							} else {
-								item.put("sns_msg_id", new AttributeValue().withS(""));
-								item.put("is_exported", new AttributeValue().withS(Boolean.toString(false)));	
-							}
-							
-							itemList.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
-						} else {
-							LargeTable largeTable = new LargeTable();
-							largeTable.setTable(table);
-							largeTable.setLargeTable(true);
-							largeTable.setNumberOfPartitions(partitionList.size());
-							largeTable.setCatalogId(sourceGlueCatalogId);
-							
-							System.out.printf("Database: %s, Table: %s, num_partitions: %d \n", table.getDatabaseName(), table.getName(), partitionList.size());
-							System.out.println("This will be sent to SQS Queue for furhter processing.");
-							
-							sqsUtil.sendTableSchemaToSQSQueue(sqs, sqsQueue4LargePartTables, largeTable, msgAttrExportBatchId.getValue(), sourceGlueCatalogId);
+				}
+				if (Optional.ofNullable(database).isPresent()) {
+					if (exportTables) {
+						// Get Tables for a given Database, in order of name, after the cursor of a continuation
+						List<Table> dbTableList = new ArrayList<Table>();
+						for (Table table : glueUtil.getTables(glue, sourceGlueCatalogId, database.getName())) {
+							if (!tableCursor.isPresent() || table.getName().compareTo(tableCursor.get()) > 0)
+								dbTableList.add(table);
 						}
-					}
-					System.out.printf("Inserting Table statistics to DynamoDB for database: %s \n", database.getName());
-					ddbUtil.insertIntoDynamoDB(itemList, ddbTblNameForTableStatusTracking);
-					System.out.printf(
-							"Table export statistics: number of tables exist in Database = %d, number of tables exported to SNS = %d. \n",
-							dbTableList.size(), numberOfTablesExported.get());
+						dbTableList.sort(Comparator.comparing(Table::getName));
+						int numberOfTablesProcessed = exportTables(dbTableList, gson, glue, sns, sqs, glueUtil, snsUtil,
+								sqsUtil, ddbUtil, sourceGlueCatalogId, topicArn, sqsQueue4LargePartTables,
+								ddbTblNameForTableStatusTracking, exportRunId, msgAttrExportBatchId.getValue(),
+								partitionThreshold, snsMessageByteBudget, payloadCodec, compactPartitions, context,
+								continuationTopicArn, continuationTimeMarginMillis, ddbTblNameForFingerprints);
+						if (numberOfTablesProcessed < dbTableList.size()) {
+							PublishResult continuationResponse = snsUtil.publishDatabaseContinuationToSNS(sns,
+									continuationTopicArn, databaseDDL, sourceGlueCatalogId,
+									msgAttrExportBatchId.getValue(), dbTableList.get(numberOfTablesProcessed - 1).getName());
+							if (!Optional.ofNullable(continuationResponse).isPresent())
+								throw new RuntimeException("Continuation of the export of database " + database.getName()
+										+ " could not be published");
+						}
+					} else
+						System.out.printf("Tables of database '%s' are exported in table batches. \n", database.getName());
 				} else
 					System.out.printf(
 							"There is no Database with name '%s' exist in Glue Data Catalog. Tables cannot be retrieved. \n",
-							database.getName());
+							db.getName());
+			} else if (isTableBatchType) {
+				// Get the Tables of the batch. A Table that no longer exists is skipped.
+				List<Table> tableList = new ArrayList<Table>();
+				for (String tableName : tableBatch.getTableNames()) {
+					Table table = glueUtil.getTable(glue, sourceGlueCatalogId, tableBatch.getDatabaseName(), tableName);
+					if (Optional.ofNullable(table).isPresent())
+						tableList.add(table);
+				}
+				System.out.printf("Database: %s, number of tables in batch: %d, number of tables found: %d \n",
+						tableBatch.getDatabaseName(), tableBatch.getTableNames().size(), tableList.size());
+				int numberOfTablesProcessed = exportTables(tableList, gson, glue, sns, sqs, glueUtil, snsUtil, sqsUtil,
+						ddbUtil, sourceGlueCatalogId, topicArn, sqsQueue4LargePartTables,
+						ddbTblNameForTableStatusTracking, exportRunId, msgAttrExportBatchId.getValue(),
+						partitionThreshold, snsMessageByteBudget, payloadCodec, compactPartitions, context,
+						continuationTopicArn, continuationTimeMarginMillis, ddbTblNameForFingerprints);
+				if (numberOfTablesProcessed < tableList.size()) {
+					List<String> remainingTableNames = new ArrayList<String>();
+					for (Table table : tableList.subList(numberOfTablesProcessed, tableList.size()))
+						remainingTableNames.add(table.getName());
+					if (snsUtil.publishTableBatchesToSNS(sns, continuationTopicArn, tableBatch.getDatabaseName(),
+							remainingTableNames, remainingTableNames.size(), sourceGlueCatalogId,
+							msgAttrExportBatchId.getValue()) == 0)
+						throw new RuntimeException("Continuation of a batch of tables of database "
+								+ tableBatch.getDatabaseName() + " could not be published");
+				}
 			} else {
 				System.out.println(
 						"Message received from SNS Topic seems to be invalid. It could not be converted to Glue Database Type.");
@@ -231,4 +311,146 @@ public class ExportDatabaseWithTables implements RequestHandler<SNSEvent, Object
 
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * This method exports a list of tables. A table whose JSON, with its
+	 * partitions, fits in snsMessageByteBudget bytes once encoded with
+	 * payloadCodec and that has at most partitionThreshold partitions is published
+	 * to SNS Topic and tracked in DynamoDB. Any other table is sent to the SQS
+	 * queue for large tables.
+	 * 
+	 * Audit items are written to DynamoDB every AUDIT_FLUSH_SIZE tables. If
+	 * continuationTopicArn is not empty, the export stops before the next table
+	 * once less than continuationTimeMarginMillis is left in the invocation; at
+	 * least one table is exported, so that every invocation makes progress.
+	 * 
+	 * If ddbTblNameForFingerprints is not empty, the fingerprints of the tables
+	 * published to SNS are saved with the audit items, except for the tables
+	 * whose fingerprint is not complete, see
+	 * FingerprintUtil.isFingerprintComplete.
+	 * 
+	 * @param tableList
+	 * @param gson
+	 * @param glue
+	 * @param sns
+	 * @param sqs
+	 * @param glueUtil
+	 * @param snsUtil
+	 * @param sqsUtil
+	 * @param ddbUtil
+	 * @param sourceGlueCatalogId
+	 * @param topicArn
+	 * @param sqsQueue4LargePartTables
+	 * @param ddbTblNameForTableStatusTracking
+	 * @param exportRunId
+	 * @param exportBatchId
+	 * @param partitionThreshold
+	 * @param snsMessageByteBudget
+	 * @param payloadCodec
+	 * @param compactPartitions
+	 * @param context
+	 * @param continuationTopicArn
+	 * @param continuationTimeMarginMillis
+	 * @param ddbTblNameForFingerprints
+	 * @return number of tables processed, from the start of tableList
+	 */
+	public static int exportTables(List<Table> tableList, Gson gson, AWSGlue glue, AmazonSNS sns, AmazonSQS sqs,
+			GlueUtil glueUtil, SNSUtil snsUtil, SQSUtil sqsUtil, DDBUtil ddbUtil, String sourceGlueCatalogId,
+			String topicArn, String sqsQueue4LargePartTables, String ddbTblNameForTableStatusTracking,
+			long exportRunId, String exportBatchId, int partitionThreshold, int snsMessageByteBudget,
+			PayloadCodec payloadCodec, boolean compactPartitions, Context context, String continuationTopicArn,
+			long continuationTimeMarginMillis, String ddbTblNameForFingerprints) {
+		List<WriteRequest> itemList = new ArrayList<WriteRequest>();
+		Map<String, String> fingerprints = new HashMap<String, String>();
+		FingerprintUtil fingerprintUtil = new FingerprintUtil();
+		AtomicInteger numberOfTablesExported = new AtomicInteger();
+		SizeBoundedTableSerializer serializer = new SizeBoundedTableSerializer(gson, payloadCodec,
+				snsMessageByteBudget, partitionThreshold, compactPartitions);
+		int numberOfTablesProcessed = 0;
+		for (Table table : tableList) {
+			if (numberOfTablesProcessed > 0 && !continuationTopicArn.isEmpty()
+					&& context.getRemainingTimeInMillis() < continuationTimeMarginMillis) {
+				System.out.printf("Time budget running low: %d ms left. Stopping after %d of %d tables. \n",
+						context.getRemainingTimeInMillis(), numberOfTablesProcessed, tableList.size());
+				break;
+			}
+			numberOfTablesProcessed++;
+			// Convert Table with its partitions to an encoded JSON String. Reading stops as soon as it does not fit in a message.
+			String tableDDL = serializer.serialize(glue, glueUtil, sourceGlueCatalogId, table);
+			if (Optional.ofNullable(tableDDL).isPresent()) {
+				System.out.printf("Database: %s, Table: %s, num_partitions: %d, message_size: %d bytes \n",
+						table.getDatabaseName(), table.getName(), serializer.getNumberOfPartitionsRead(),
+						serializer.getNumberOfBytesWritten());
+				
+				// Publish a message to Amazon SNS topic.
+				PublishResult publishTableResponse = snsUtil.publishTableSchemaToSNS(sns, topicArn, table, tableDDL,
+						sourceGlueCatalogId, exportBatchId, payloadCodec.getName());
+				
+				Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+				item.put("table_id", new AttributeValue().withS(table.getName().concat("|").concat(table.getDatabaseName())));
+				item.put("export_run_id", new AttributeValue().withN(Long.valueOf(exportRunId).toString()));
+				item.put("export_batch_id", new AttributeValue().withS(exportBatchId));
+				item.put("source_glue_catalog_id", new AttributeValue().withS(sourceGlueCatalogId));
+				item.put("table_schema", new AttributeValue().withS(tableDDL)); 
+				item.put("payload_codec", new AttributeValue().withS(payloadCodec.getName()));
+				item.put("is_large_table", new AttributeValue().withS(Boolean.toString(false)));
+				
+				if (Optional.ofNullable(publishTableResponse.getMessageId()).isPresent()) {
+					item.put("sns_msg_id", new AttributeValue().withS(publishTableResponse.getMessageId()));
+					item.put("is_exported", new AttributeValue().withS(Boolean.toString(true)));	
+					numberOfTablesExported.getAndIncrement();
+					if (!ddbTblNameForFingerprints.isEmpty() && fingerprintUtil.isFingerprintComplete(table))
+						fingerprints.put(fingerprintUtil.getTableEntityId(table.getDatabaseName(), table.getName()),
+								fingerprintUtil.getTableFingerprint(glueUtil, table));
+				} else {
+					item.put("sns_msg_id", new AttributeValue().withS(""));
+					item.put("is_exported", new AttributeValue().withS(Boolean.toString(false)));	
+				}
+				
+				itemList.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
+				if (itemList.size() == AUDIT_FLUSH_SIZE) {
+					ddbUtil.insertIntoDynamoDB(itemList, ddbTblNameForTableStatusTracking);
+					itemList.clear();
+					trackFingerprints(ddbUtil, ddbTblNameForFingerprints, fingerprints, exportRunId);
+				}
+			} else {
+				LargeTable largeTable = new LargeTable();
+				largeTable.setTable(table);
+				largeTable.setLargeTable(true);
+				largeTable.setNumberOfPartitions(serializer.getNumberOfPartitionsRead());
+				largeTable.setCatalogId(sourceGlueCatalogId);
+				
+				System.out.printf(
+						"Database: %s, Table: %s, num_partitions read: %d. It exceeds the partition threshold or the message byte budget. \n",
+						table.getDatabaseName(), table.getName(), serializer.getNumberOfPartitionsRead());
+				System.out.println("This will be sent to SQS Queue for furhter processing.");
+				
+				sqsUtil.sendTableSchemaToSQSQueue(sqs, sqsQueue4LargePartTables, largeTable, exportBatchId, sourceGlueCatalogId,
+						payloadCodec);
+			}
+		}
+		System.out.println("Inserting Table statistics to DynamoDB.");
+		ddbUtil.insertIntoDynamoDB(itemList, ddbTblNameForTableStatusTracking);
+		trackFingerprints(ddbUtil, ddbTblNameForFingerprints, fingerprints, exportRunId);
+		System.out.printf(
+				"Table export statistics: number of tables = %d, number of tables processed = %d, number of tables exported to SNS = %d. \n",
+				tableList.size(), numberOfTablesProcessed, numberOfTablesExported.get());
+		return numberOfTablesProcessed;
+	}
+
+	/**
+	 * This method saves the fingerprints collected so far, if any, and clears them
+	 * 
+	 * @param ddbUtil
+	 * @param ddbTblNameForFingerprints
+	 * @param fingerprints
+	 * @param exportRunId
+	 */
+	private static void trackFingerprints(DDBUtil ddbUtil, String ddbTblNameForFingerprints,
+			Map<String, String> fingerprints, long exportRunId) {
+		if (ddbTblNameForFingerprints.isEmpty() || fingerprints.isEmpty())
+			return;
+		ddbUtil.trackFingerprints(ddbTblNameForFingerprints, fingerprints, exportRunId);
+		fingerprints.clear();
+	}
+}
@@ -3,6 +3,12 @@
 
 package com.amazonaws.gdcreplication.lambda;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
@@ -10,15 +16,22 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.amazonaws.ClientConfiguration;
+import com.amazonaws.gdcreplication.util.ChunkedPartitionWriter;
+import com.amazonaws.gdcreplication.util.CompactPartition;
 import com.amazonaws.gdcreplication.util.DDBUtil;
 import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.gdcreplication.util.IdentityPayloadCodec;
 import com.amazonaws.gdcreplication.util.LargeTable;
+import com.amazonaws.gdcreplication.util.LargeTableManifest;
+import com.amazonaws.gdcreplication.util.PayloadCodec;
+import com.amazonaws.gdcreplication.util.S3MultipartOutputStream;
 import com.amazonaws.gdcreplication.util.S3Util;
 import com.amazonaws.gdcreplication.util.SNSUtil;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.RateLimitedGlue;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.glue.AWSGlue;
-import com.amazonaws.services.glue.AWSGlueClientBuilder;
 import com.amazonaws.services.glue.model.Partition;
 import com.amazonaws.services.glue.model.Table;
 import com.amazonaws.services.lambda.runtime.Context;
@@ -27,9 +40,9 @@ import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.MessageAttribute;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
 import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import com.amazonaws.services.sns.model.PublishResult;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 
 public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 
@@ -42,14 +55,27 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 		String bucketName = Optional.ofNullable(System.getenv("s3_bucket_name")).orElse("");
 		String ddbTblNameForTableStatusTracking = Optional.ofNullable(System.getenv("ddb_name_table_export_status"))
 				.orElse("ddb_name_table_export_status");
+		int partitionReadSegments = Integer
+				.parseInt(Optional.ofNullable(System.getenv("partition_read_segments")).orElse("1"));
+		int partitionReadParallelism = Integer.parseInt(Optional.ofNullable(System.getenv("partition_read_parallelism"))
+				.orElse(Integer.toString(partitionReadSegments)));
+		int partSize = Integer.parseInt(Optional.ofNullable(System.getenv("s3_part_size_mb")).orElse("8")) * 1024 * 1024;
+		PayloadCodec payloadCodec = PayloadCodec
+				.forName(Optional.ofNullable(System.getenv("payload_codec")).orElse(IdentityPayloadCodec.NAME));
+		boolean compactPartitions = Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("compact_partitions")).orElse("false"));
+		int partitionsPerChunk = Integer
+				.parseInt(Optional.ofNullable(System.getenv("partitions_per_chunk")).orElse("0"));
+		System.out.println("S3 multipart upload part size in bytes: " + partSize);
+		System.out.println("Partition read segments: " + partitionReadSegments);
+		System.out.println("Partition read parallelism: " + partitionReadParallelism);
+		System.out.println("Payload codec: " + payloadCodec.getName());
+		System.out.println("Compact partitions: " + compactPartitions);
+		System.out.println("Partitions per chunk: " + partitionsPerChunk);
 		
-		// Set client configuration
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
-
 		// Create Objects for Glue and SQS
-		AWSGlue glue = AWSGlueClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
-		AmazonSNS sns = AmazonSNSClientBuilder.standard().withRegion(region).build();
+		AWSGlue glue = RateLimitedGlue.wrap(AWSClientRegistry.getGlue(region));
+		AmazonSNS sns = AWSClientRegistry.getSNS(region);
 		
 		// // Create Objects for Utility classes
 		DDBUtil ddbUtil = new DDBUtil();
@@ -61,6 +87,7 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 		LargeTable largeTable = null;
 		boolean recordProcessed = false;
 		boolean objectCreated = false;
+		LargeTableManifest manifest = null;
 		
 		/**
 		 * Iterate and process all the messages which are part of SQSEvent
@@ -71,8 +98,9 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 			String exportBatchId = "";
 			String sourceGlueCatalogId = "";
 			String messageType = "";
+			String messageCodec = null;
 
-			Gson gson = new Gson();
+			Gson gson = GsonRegistry.getGson();
 			long exportRunId = System.currentTimeMillis();
 
 			// Read Message Attributes
@@ -86,12 +114,17 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 				} else if ("SchemaType".equalsIgnoreCase(entry.getKey())) {
 					messageType = entry.getValue().getStringValue();
 					System.out.println("Message Type " + messageType);
+				} else if (PayloadCodec.SQS_ATTRIBUTE.equalsIgnoreCase(entry.getKey())) {
+					messageCodec = entry.getValue().getStringValue();
+					System.out.println("Payload Codec: " + messageCodec);
 				}
 			}
+			payLoad = PayloadCodec.decodePayload(messageCodec, payLoad);
 			
 			if (messageType.equalsIgnoreCase("largeTable")) {
 				largeTable = gson.fromJson(payLoad, LargeTable.class);
 				if (largeTable.isLargeTable()) {
+					largeTable.setCompactPartitions(compactPartitions);
 					
 					// Create object key
 					SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd");
@@ -100,8 +133,19 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 							.append(sourceGlueCatalogId).append("_").append(largeTable.getTable().getDatabaseName())
 							.append("_").append(largeTable.getTable().getName()).append(".txt").toString();
 					
-					String content = getPartitionsAndCreateObjectContent(context, glue, glueUtil, sourceGlueCatalogId, largeTable, exportBatchId);
-					objectCreated = s3Util.createS3Object(region, bucketName, objectKey, content);
+					if (partitionsPerChunk > 0) {
+						// Chunks and the manifest go under a prefix named like the single object
+						String keyPrefix = objectKey.substring(0, objectKey.length() - ".txt".length());
+						manifest = exportPartitionChunksToS3(glue, glueUtil, s3Util, region, bucketName, keyPrefix,
+								sourceGlueCatalogId, largeTable, partSize, partitionsPerChunk, partitionReadSegments,
+								partitionReadParallelism);
+						objectCreated = Optional.ofNullable(manifest).isPresent();
+						if (objectCreated)
+							objectKey = keyPrefix + "/" + ChunkedPartitionWriter.MANIFEST_NAME;
+					} else
+						objectCreated = exportPartitionsToS3(context, glue, glueUtil, s3Util, region, bucketName,
+								objectKey, sourceGlueCatalogId, largeTable, partSize, partitionReadSegments,
+								partitionReadParallelism);
 					
 				}
 				PublishResult publishResponse = null;
@@ -110,10 +154,18 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 				if (objectCreated && !objectKey.equalsIgnoreCase("")) {
 					largeTable.setS3ObjectKey(objectKey);
 					largeTable.setS3BucketName(bucketName);
-					largeTableJSON = gson.toJson(largeTable);
-					System.out.println("Large Table JSON: " + largeTableJSON);
-					publishResponse = snsUtil.publishLargeTableSchemaToSNS(sns, topicArn, region, bucketName, largeTableJSON,
-							sourceGlueCatalogId, exportBatchId, messageType);
+					if (Optional.ofNullable(manifest).isPresent()) {
+						largeTable.setManifestKey(objectKey);
+						largeTable.setNumberOfChunks(manifest.getChunks().size());
+						largeTableJSON = gson.toJson(largeTable);
+						publishResponse = publishChunksToSNS(sns, snsUtil, gson, topicArn, region, bucketName,
+								largeTable, manifest, sourceGlueCatalogId, exportBatchId, messageType, payloadCodec);
+					} else {
+						largeTableJSON = gson.toJson(largeTable);
+						System.out.println("Large Table JSON: " + largeTableJSON);
+						publishResponse = snsUtil.publishLargeTableSchemaToSNS(sns, topicArn, region, bucketName,
+								largeTableJSON, sourceGlueCatalogId, exportBatchId, messageType, payloadCodec);
+					}
 					if(Optional.ofNullable(publishResponse).isPresent()) {
 						System.out.println("Large Table Schema Published to SNS Topic. Message Id: " + publishResponse.getMessageId());
 						recordProcessed = true;
@@ -139,42 +191,195 @@ public class ExportLargeTable implements RequestHandler<SQSEvent, String> {
 					largeTable.getTable().getName(), largeTable.getTable().getDatabaseName());
 			throw new RuntimeException();
 		}
+		RateLimitedGlue.printStatistics();
 		return "Success";
 	}
 
 	/**
-	 * This method processes a record from SQS
+	 * This method reads the partitions of a large table page by page and streams
+	 * them to a sequence of S3 objects of at most partitionsPerChunk partitions
+	 * each, followed by a manifest listing them. See ChunkedPartitionWriter. Each
+	 * GetPartitions segment is written to chunks of its own, so the segments are
+	 * read, serialized and uploaded concurrently.
 	 * 
-	 * @param context
 	 * @param glue
 	 * @param glueUtil
-	 * @param ddbUtil
-	 * @param targetGlueCatalogId
-	 * @param ddbTblNameForDBStatusTracking
-	 * @param ddbTblNameForTableStatusTracking
-	 * @param message
-	 * @param skipTableArchive
+	 * @param s3Util
+	 * @param region
+	 * @param bucketName
+	 * @param keyPrefix
+	 * @param sourceGlueCatalogId
+	 * @param largeTable
+	 * @param partSize
+	 * @param partitionsPerChunk
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @return the manifest, or null if the partitions could not be exported
+	 */
+	public LargeTableManifest exportPartitionChunksToS3(AWSGlue glue, GlueUtil glueUtil, S3Util s3Util, String region,
+			String bucketName, String keyPrefix, String sourceGlueCatalogId, LargeTable largeTable, int partSize,
+			int partitionsPerChunk, int partitionReadSegments, int partitionReadParallelism) {
+
+		String databaseName = largeTable.getTable().getDatabaseName();
+		String tableName = largeTable.getTable().getName();
+		int numberOfSegments = glueUtil.getNumberOfSegments(partitionReadSegments);
+		ChunkedPartitionWriter chunkedWriter = new ChunkedPartitionWriter(s3Util, glueUtil, GsonRegistry.getGson(), region,
+				bucketName, keyPrefix, partSize, partitionsPerChunk,
+				largeTable.isCompactPartitions() ? largeTable.getTable() : null, numberOfSegments);
+		chunkedWriter.getManifest().setDatabaseName(databaseName);
+		chunkedWriter.getManifest().setTableName(tableName);
+		try {
+			if (Optional.ofNullable(glueUtil.getTable(glue, sourceGlueCatalogId, databaseName, tableName)).isPresent()) {
+				glueUtil.getPartitionsBySegment(glue, sourceGlueCatalogId, databaseName, tableName,
+						numberOfSegments, partitionReadParallelism, (segmentNumber, partitionList) -> {
+							try {
+								chunkedWriter.write(segmentNumber, partitionList);
+							} catch (IOException e) {
+								throw new UncheckedIOException(e);
+							}
+						});
+			}
+			return chunkedWriter.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("Exception thrown while exporting partition chunks to S3. Key prefix: " + keyPrefix);
+			chunkedWriter.abort();
+		}
+		return null;
+	}
+
+	/**
+	 * This method publishes one Large Table message per chunk of the manifest.
+	 * Each message carries the object key of its chunk, its index and the number
+	 * of chunks, so that the chunks can be imported in parallel.
+	 * 
+	 * @param sns
+	 * @param snsUtil
+	 * @param gson
+	 * @param topicArn
+	 * @param region
+	 * @param bucketName
+	 * @param largeTable
+	 * @param manifest
+	 * @param sourceGlueCatalogId
 	 * @param exportBatchId
+	 * @param messageType
+	 * @param payloadCodec
+	 * @return the result of the last publish, or null if any chunk could not be
+	 *         published
+	 */
+	public PublishResult publishChunksToSNS(AmazonSNS sns, SNSUtil snsUtil, Gson gson, String topicArn, String region,
+			String bucketName, LargeTable largeTable, LargeTableManifest manifest, String sourceGlueCatalogId,
+			String exportBatchId, String messageType, PayloadCodec payloadCodec) {
+		PublishResult publishResponse = null;
+		String manifestKey = largeTable.getS3ObjectKey();
+		int numberOfChunksPublished = 0;
+		for (int chunkIndex = 0; chunkIndex < manifest.getChunks().size(); chunkIndex++) {
+			LargeTableManifest.Chunk chunk = manifest.getChunks().get(chunkIndex);
+			largeTable.setS3ObjectKey(chunk.getS3ObjectKey());
+			largeTable.setChunkIndex(chunkIndex);
+			largeTable.setNumberOfPartitions(chunk.getNumberOfPartitions());
+			PublishResult chunkResponse = snsUtil.publishLargeTableSchemaToSNS(sns, topicArn, region, bucketName,
+					gson.toJson(largeTable), sourceGlueCatalogId, exportBatchId, messageType, payloadCodec);
+			if (Optional.ofNullable(chunkResponse).isPresent()) {
+				publishResponse = chunkResponse;
+				numberOfChunksPublished++;
+			}
+		}
+		largeTable.setS3ObjectKey(manifestKey);
+		largeTable.setChunkIndex(0);
+		largeTable.setNumberOfPartitions(manifest.getNumberOfPartitions());
+		System.out.printf("%d of %d chunks of table '%s' of database '%s' published to SNS Topic. \n",
+				numberOfChunksPublished, manifest.getChunks().size(), largeTable.getTable().getName(),
+				largeTable.getTable().getDatabaseName());
+		return numberOfChunksPublished == manifest.getChunks().size() ? publishResponse : null;
+	}
+
+	/**
+	 * This method reads the partitions of a large table page by page and streams
+	 * them to an S3 object as new line delimited JSON. The object is written using
+	 * multipart upload, so the heap used is bounded by the part size and not by
+	 * the number of partitions.
+	 * 
+	 * @param context
+	 * @param glue
+	 * @param glueUtil
+	 * @param s3Util
+	 * @param region
+	 * @param bucketName
+	 * @param objectKey
 	 * @param sourceGlueCatalogId
-	 * @param isTable
+	 * @param largeTable
+	 * @param partSize
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @return
 	 */
-	public String getPartitionsAndCreateObjectContent(Context context, AWSGlue glue, GlueUtil glueUtil,
-			String sourceGlueCatalogId, LargeTable largeTable, String exportBatchId) {
+	public boolean exportPartitionsToS3(Context context, AWSGlue glue, GlueUtil glueUtil, S3Util s3Util,
+			String region, String bucketName, String objectKey, String sourceGlueCatalogId, LargeTable largeTable,
+			int partSize, int partitionReadSegments, int partitionReadParallelism) {
 
-		StringBuilder sb = new StringBuilder();
+		boolean objectCreated = false;
 		Table table = glueUtil.getTable(glue, sourceGlueCatalogId, largeTable.getTable().getDatabaseName(),
 				largeTable.getTable().getName());
-		if (Optional.ofNullable(table).isPresent()) {
-			List<Partition> partitionList = glueUtil.getPartitions(glue, sourceGlueCatalogId,
-					largeTable.getTable().getDatabaseName(), largeTable.getTable().getName());
-			AtomicInteger ai = new AtomicInteger();
-			for (Partition p : partitionList) {
-				Gson gson = new Gson();
-				String partitionDDL = gson.toJson(p);
-				sb.append(String.format("%s%n", partitionDDL));
-				System.out.printf("Partition #: %d, schema: %s. \n", ai.incrementAndGet(), partitionDDL);
+
+		Gson gson = GsonRegistry.getGson();
+		AtomicInteger numberOfPartitions = new AtomicInteger();
+		S3MultipartOutputStream outputStream = s3Util.createMultipartOutputStream(region, bucketName, objectKey,
+				partSize);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		try {
+			JsonWriter jsonWriter = gson.newJsonWriter(writer);
+			if (Optional.ofNullable(table).isPresent()) {
+				glueUtil.getPartitions(glue, sourceGlueCatalogId, largeTable.getTable().getDatabaseName(),
+						largeTable.getTable().getName(), partitionReadSegments, partitionReadParallelism,
+						partitionList -> writePartitions(gson, glueUtil, jsonWriter, writer, largeTable, partitionList,
+								numberOfPartitions));
+			}
+			// JsonWriter.close() rejects an empty document, so close the underlying writer
+			writer.close();
+			objectCreated = true;
+			System.out.printf("%d partitions of table '%s' of database '%s' exported to S3. Object key: %s \n",
+					numberOfPartitions.get(), largeTable.getTable().getName(),
+					largeTable.getTable().getDatabaseName(), objectKey);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("Exception thrown while exporting partitions to S3. Object key: " + objectKey);
+			outputStream.abort();
+		}
+		return objectCreated;
+	}
+
+	/**
+	 * This method writes one page of partitions, one JSON document per line. The
+	 * pages may come from concurrent segment readers, so writes are serialized on
+	 * the writer. If the large table has compact partitions, each partition is
+	 * written as a CompactPartition relative to the table of the message.
+	 * 
+	 * @param gson
+	 * @param glueUtil
+	 * @param jsonWriter
+	 * @param writer
+	 * @param largeTable
+	 * @param partitionList
+	 * @param numberOfPartitions
+	 */
+	private void writePartitions(Gson gson, GlueUtil glueUtil, JsonWriter jsonWriter, Writer writer,
+			LargeTable largeTable, List<Partition> partitionList, AtomicInteger numberOfPartitions) {
+		synchronized (writer) {
+			try {
+				for (Partition p : partitionList) {
+					if (largeTable.isCompactPartitions())
+						gson.toJson(glueUtil.compactPartition(largeTable.getTable(), p), CompactPartition.class,
+								jsonWriter);
+					else
+						gson.toJson(p, Partition.class, jsonWriter);
+					writer.write(System.lineSeparator());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
-		return sb.toString();
+		numberOfPartitions.getAndAdd(partitionList.size());
 	}
-}
\ No newline at end of file
+}
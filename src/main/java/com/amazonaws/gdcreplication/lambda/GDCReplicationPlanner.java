@@ -5,22 +5,26 @@ package com.amazonaws.gdcreplication.lambda;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.StringTokenizer;
 import java.util.stream.Collectors;
 
 import com.amazonaws.gdcreplication.util.DDBUtil;
+import com.amazonaws.gdcreplication.util.FingerprintUtil;
 import com.amazonaws.gdcreplication.util.GlueUtil;
 import com.amazonaws.gdcreplication.util.SNSUtil;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.RateLimitedGlue;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.glue.AWSGlue;
-import com.amazonaws.services.glue.AWSGlueClientBuilder;
 import com.amazonaws.services.glue.model.Database;
+import com.amazonaws.services.glue.model.Table;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 
 /**
  * This class has AWS Lambda Handler method. Upon invocation, it fetches all the
@@ -30,11 +34,28 @@ import com.amazonaws.services.sns.AmazonSNSClientBuilder;
  * 2. Publish the Database DDL to an SNS Topic 
  * 3. Insert a record to a DynamoDB table for status tracking
  * 
+ * When export_fan_out is 'table', the database messages do not ask for the
+ * tables to be exported. Instead, the tables of each database are published in
+ * batches of table_batch_size, so that the export scales with the number of
+ * tables rather than with the number of databases.
+ * 
+ * When incremental_export is true, the planner reads the fingerprints of the
+ * databases and tables from a DynamoDB table and only publishes the ones whose
+ * fingerprint changed since the last run. The fingerprints are saved by
+ * ExportDatabaseWithTables once a database or table is actually exported, so a
+ * change is never lost to a failed export. Tables with partition keys are
+ * always published, see FingerprintUtil.isFingerprintComplete. A full export
+ * can still be forced with force_full_export, as an environment variable or in
+ * the input event.
+ * 
  * @author Ravi Itha, Amazon Web Services, Inc.
  *
  */
 public class GDCReplicationPlanner implements RequestHandler<Object, String> {
 
+	public static final String FAN_OUT_DATABASE = "database";
+	public static final String FAN_OUT_TABLE = "table";
+
 	@Override
 	public String handleRequest(Object input, Context context) {
 		
@@ -48,13 +69,24 @@ public class GDCReplicationPlanner implements RequestHandler<Object, String> {
 				.orElse("arn:aws:sns:us-east-1:1234567890:GlueExportSNSTopic");
 		String ddbTblNameForDBStatusTracking = Optional.ofNullable(System.getenv("ddb_name_gdc_replication_planner"))
 				.orElse("ddb_name_gdc_replication_planner");
+		String fanOut = Optional.ofNullable(System.getenv("export_fan_out")).orElse(FAN_OUT_DATABASE);
+		int tableBatchSize = Math.max(1,
+				Integer.parseInt(Optional.ofNullable(System.getenv("table_batch_size")).orElse("100")));
+		String ddbTblNameForFingerprints = Optional.ofNullable(System.getenv("ddb_name_catalog_fingerprint"))
+				.orElse("");
+		boolean incrementalExport = !ddbTblNameForFingerprints.isEmpty() && Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("incremental_export")).orElse("false"));
+		boolean forceFullExport = Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("force_full_export")).orElse("false"))
+				|| isForceFullExportRequested(input);
 		
 		// Print environment variables
-		printEnvVariables(sourceGlueCatalogId, topicArn, ddbTblNameForDBStatusTracking, dbPrefixString, separator);
+		printEnvVariables(sourceGlueCatalogId, topicArn, ddbTblNameForDBStatusTracking, dbPrefixString, separator,
+				fanOut, tableBatchSize, ddbTblNameForFingerprints, incrementalExport, forceFullExport);
 		
 		// Create Objects for Glue and SQS
-		AWSGlue glue = AWSGlueClientBuilder.standard().withRegion(region).build();
-		AmazonSNS sns = AmazonSNSClientBuilder.standard().withRegion(region).build();
+		AWSGlue glue = RateLimitedGlue.wrap(AWSClientRegistry.getGlue(region));
+		AmazonSNS sns = AWSClientRegistry.getSNS(region);
 		
 		// Create Objects for Utility classes
 		DDBUtil ddbUtil = new DDBUtil();
@@ -67,14 +99,53 @@ public class GDCReplicationPlanner implements RequestHandler<Object, String> {
 				
 		// When database Prefix string is empty or not provided then, it imports all databases
 		// else, it imports only the databases that has the same prefix
-		if (dbPrefixString.equalsIgnoreCase("")) {
-			numberOfDatabasesExported = snsUtil.publishDatabaseSchemasToSNS(sns, dBList, topicArn, ddbUtil,
-					ddbTblNameForDBStatusTracking, sourceGlueCatalogId);
-		} else {
+		List<Database> dBsListToExport = dBList;
+		if (!dbPrefixString.equalsIgnoreCase("")) {
 			// Tokenize the database prefix string to a List of database prefixes
 			List<String> dbPrefixList = tokenizeDatabasePrefixString(dbPrefixString, separator);
 			// Identify required databases to export
-			List<Database> dBsListToExport = getRequiredDatabases(dBList, dbPrefixList);
+			dBsListToExport = getRequiredDatabases(dBList, dbPrefixList);
+		}
+		if (incrementalExport || FAN_OUT_TABLE.equalsIgnoreCase(fanOut)) {
+			// Publish schemas for databases without their tables, then publish the tables in batches.
+			// In incremental mode, only the databases and tables whose fingerprint changed are published.
+			long exportRunId = System.currentTimeMillis();
+			FingerprintUtil fingerprintUtil = new FingerprintUtil();
+			Map<String, String> previousFingerprints = incrementalExport && !forceFullExport
+					? ddbUtil.getFingerprints(ddbTblNameForFingerprints)
+					: new HashMap<String, String>();
+
+			List<Database> changedDBList = new ArrayList<Database>();
+			for (Database database : dBsListToExport) {
+				String fingerprint = fingerprintUtil.getDatabaseFingerprint(database);
+				if (!fingerprint.equals(previousFingerprints.get(fingerprintUtil.getDatabaseEntityId(database.getName()))))
+					changedDBList.add(database);
+			}
+			numberOfDatabasesExported = snsUtil.publishDatabaseSchemasToSNS(sns, changedDBList, topicArn, ddbUtil,
+					ddbTblNameForDBStatusTracking, sourceGlueCatalogId, exportRunId, false);
+
+			int numberOfTables = 0;
+			int numberOfChangedTables = 0;
+			int numberOfTableBatchesExported = 0;
+			for (Database database : dBsListToExport) {
+				List<String> changedTableNames = new ArrayList<String>();
+				for (Table table : glueUtil.getTables(glue, sourceGlueCatalogId, database.getName())) {
+					numberOfTables++;
+					String entityId = fingerprintUtil.getTableEntityId(database.getName(), table.getName());
+					if (!fingerprintUtil.isFingerprintComplete(table) || !fingerprintUtil
+							.getTableFingerprint(glueUtil, table).equals(previousFingerprints.get(entityId)))
+						changedTableNames.add(table.getName());
+				}
+				if (changedTableNames.isEmpty())
+					continue;
+				numberOfChangedTables += changedTableNames.size();
+				numberOfTableBatchesExported += snsUtil.publishTableBatchesToSNS(sns, topicArn, database.getName(),
+						changedTableNames, tableBatchSize, sourceGlueCatalogId, Long.toString(exportRunId));
+			}
+			System.out.printf(
+					"Table export statistics: number of tables exist = %d, number of tables exported = %d, number of table batches exported to SNS = %d. \n",
+					numberOfTables, numberOfChangedTables, numberOfTableBatchesExported);
+		} else {
 			// Publish schemas for databases to SNS Topic
 			numberOfDatabasesExported = snsUtil.publishDatabaseSchemasToSNS(sns, dBsListToExport, topicArn, ddbUtil,
 					ddbTblNameForDBStatusTracking, sourceGlueCatalogId);
@@ -82,6 +153,7 @@ public class GDCReplicationPlanner implements RequestHandler<Object, String> {
 		System.out.printf(
 				"Database export statistics: number of databases exist = %d, number of databases exported to SNS = %d. \n",
 				dBList.size(), numberOfDatabasesExported);
+		RateLimitedGlue.printStatistics();
 		return "Lambda function to get a list of Databases completed successfully!";
 	}
 	
@@ -90,14 +162,37 @@ public class GDCReplicationPlanner implements RequestHandler<Object, String> {
 	 * @param sourceGlueCatalogId
 	 * @param topicArn
 	 * @param ddbTblNameForDBStatusTracking
+	 * @param fanOut
+	 * @param tableBatchSize
+	 * @param ddbTblNameForFingerprints
+	 * @param incrementalExport
+	 * @param forceFullExport
 	 */
 	public static void printEnvVariables(String sourceGlueCatalogId, String topicArn,
-			String ddbTblNameForDBStatusTracking, String dbPrefixString, String separator) {
+			String ddbTblNameForDBStatusTracking, String dbPrefixString, String separator, String fanOut,
+			int tableBatchSize, String ddbTblNameForFingerprints, boolean incrementalExport,
+			boolean forceFullExport) {
 		System.out.println("SNS Topic Arn: " + topicArn);
 		System.out.println("Source Catalog Id: " + sourceGlueCatalogId);
 		System.out.println("Database Prefix String: " + dbPrefixString);
 		System.out.println("Prefix Separator: " + separator);
 		System.out.println("DynamoDB Table to track GDC Replication Planning: " + ddbTblNameForDBStatusTracking);
+		System.out.println("Export fan-out: " + fanOut);
+		System.out.println("Table batch size: " + tableBatchSize);
+		System.out.println("DynamoDB Table for Catalog Fingerprints: " + ddbTblNameForFingerprints);
+		System.out.println("Incremental export: " + incrementalExport);
+		System.out.println("Force full export: " + forceFullExport);
+	}
+
+	/**
+	 * Check if the input event asks for a full export, e.g. {"force_full_export": true}
+	 * @param input
+	 * @return
+	 */
+	public static boolean isForceFullExportRequested(Object input) {
+		if (input instanceof Map)
+			return Boolean.parseBoolean(String.valueOf(((Map<?, ?>) input).get("force_full_export")));
+		return false;
 	}
 	
 	/**
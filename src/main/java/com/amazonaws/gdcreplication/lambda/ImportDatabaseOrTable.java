@@ -7,14 +7,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-import com.amazonaws.ClientConfiguration;
 import com.amazonaws.gdcreplication.util.GDCUtil;
 import com.amazonaws.gdcreplication.util.LargeTable;
+import com.amazonaws.gdcreplication.util.PayloadCodec;
 import com.amazonaws.gdcreplication.util.SQSUtil;
 import com.amazonaws.gdcreplication.util.TableWithPartitions;
+import com.amazonaws.gdcreplication.util.TargetCatalogCache;
+import com.amazonaws.gdcreplication.util.GlueUtil;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.RateLimitedGlue;
+import com.amazonaws.gdcreplication.util.DDBUtil;
+import com.amazonaws.gdcreplication.util.DistributedTokenBucket;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.glue.AWSGlue;
-import com.amazonaws.services.glue.AWSGlueClientBuilder;
 import com.amazonaws.services.glue.model.Database;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
@@ -22,7 +28,6 @@ import com.amazonaws.services.lambda.runtime.events.SNSEvent;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent.MessageAttribute;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent.SNSRecord;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
@@ -52,23 +57,54 @@ public class ImportDatabaseOrTable implements RequestHandler<SNSEvent, Object> {
 				.orElse("ddb_name_table_import_status");
 		String sqsQueueURL = Optional.ofNullable(System.getenv("dlq_url_sqs")).orElse("");
 		String sqsQueueURLLargeTable = Optional.ofNullable(System.getenv("sqs_queue_url_large_tables")).orElse("");
+		int partitionReadSegments = Integer
+				.parseInt(Optional.ofNullable(System.getenv("partition_read_segments")).orElse("1"));
+		int partitionReadParallelism = Integer.parseInt(Optional.ofNullable(System.getenv("partition_read_parallelism"))
+				.orElse(Integer.toString(partitionReadSegments)));
+		String ddbTblNameForGlueApiBudget = Optional.ofNullable(System.getenv("ddb_name_glue_api_budget")).orElse("");
+		double glueApiBudgetTps = Double
+				.parseDouble(Optional.ofNullable(System.getenv("glue_api_budget_tps")).orElse("50"));
+		int glueApiBudgetLeaseSize = Integer
+				.parseInt(Optional.ofNullable(System.getenv("glue_api_budget_lease_size")).orElse("10"));
+		long catalogCacheTtlSeconds = Long
+				.parseLong(Optional.ofNullable(System.getenv("target_catalog_cache_ttl_seconds")).orElse("300"));
+		long catalogCacheMaxSize = Long
+				.parseLong(Optional.ofNullable(System.getenv("target_catalog_cache_max_size")).orElse("10000"));
+		boolean catalogCacheWarmUp = Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("target_catalog_cache_warm_up")).orElse("false"));
 
 		// Print environment variables
 		printEnvVariables(targetGlueCatalogId, skipTableArchive, ddbTblNameForDBStatusTracking,
-				ddbTblNameForTableStatusTracking, sqsQueueURL, region, sqsQueueURLLargeTable);
-
-		// Set client configuration
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
+				ddbTblNameForTableStatusTracking, sqsQueueURL, region, sqsQueueURLLargeTable, partitionReadSegments,
+				partitionReadParallelism,
+				ddbTblNameForGlueApiBudget, glueApiBudgetTps, glueApiBudgetLeaseSize, catalogCacheTtlSeconds,
+				catalogCacheMaxSize, catalogCacheWarmUp);
 
 		// Create Objects for Glue and SQS
-		AWSGlue glue = AWSGlueClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
-		AmazonSQS sqs = AmazonSQSClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
+		DistributedTokenBucket glueApiBudget = null;
+		if (!ddbTblNameForGlueApiBudget.isEmpty())
+			glueApiBudget = new DistributedTokenBucket(AWSClientRegistry.getDynamoDB(region), new DDBUtil(),
+					ddbTblNameForGlueApiBudget, "glue|" + targetGlueCatalogId, glueApiBudgetTps, glueApiBudgetLeaseSize);
+		AWSGlue glue = RateLimitedGlue.wrap(AWSClientRegistry.getGlue(region), glueApiBudget);
+		AmazonSQS sqs = AWSClientRegistry.getSQS(region);
+		TargetCatalogCache catalogCache = null;
+		if (catalogCacheTtlSeconds > 0) {
+			catalogCache = TargetCatalogCache.getInstance(targetGlueCatalogId, catalogCacheTtlSeconds,
+					catalogCacheMaxSize);
+			if (catalogCacheWarmUp)
+				catalogCache.warmUp(glue, new GlueUtil());
+		}
 
 		// Process records
 		List<SNSRecord> snsRecods = request.getRecords();
 		processSNSEvent(context, snsRecods, glue, sqs, sqsQueueURL, sqsQueueURLLargeTable, targetGlueCatalogId,
-				ddbTblNameForDBStatusTracking, ddbTblNameForTableStatusTracking, skipTableArchive, region);
+				ddbTblNameForDBStatusTracking, ddbTblNameForTableStatusTracking, skipTableArchive, region,
+				partitionReadSegments, partitionReadParallelism, catalogCache);
+		RateLimitedGlue.printStatistics();
+		if (Optional.ofNullable(glueApiBudget).isPresent())
+			System.out.println("Glue API budget - " + glueApiBudget);
+		if (Optional.ofNullable(catalogCache).isPresent())
+			System.out.println("Target catalog cache - " + catalogCache);
 		return "Success";
 	}
 
@@ -86,11 +122,14 @@ public class ImportDatabaseOrTable implements RequestHandler<SNSEvent, Object> {
 	 * @param ddbTblNameForTableStatusTracking
 	 * @param skipTableArchive
 	 * @param region
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param catalogCache
 	 */
 	public void processSNSEvent(Context context, List<SNSRecord> snsRecods, AWSGlue glue, AmazonSQS sqs,
 			String sqsQueueURL, String sqsQueueURLLargeTable, String targetGlueCatalogId,
 			String ddbTblNameForDBStatusTracking, String ddbTblNameForTableStatusTracking, boolean skipTableArchive,
-			String region) {
+			String region, int partitionReadSegments, int partitionReadParallelism, TargetCatalogCache catalogCache) {
 
 		SQSUtil sqsUtil = new SQSUtil();
 		for (SNSRecord snsRecod : snsRecods) {
@@ -100,12 +139,14 @@ public class ImportDatabaseOrTable implements RequestHandler<SNSEvent, Object> {
 			LargeTable largeTable = null;
 			Database db = null;
 			TableWithPartitions table = null;
-			Gson gson = new Gson();
-			String message = snsRecod.getSNS().getMessage();
-			context.getLogger().log("SNS Message Payload: " + message);
-			
+			Gson gson = GsonRegistry.getGson();
 			// Get message attributes from the SNS Payload
 			Map<String, MessageAttribute> msgAttributeMap = snsRecod.getSNS().getMessageAttributes();
+			String messageCodec = Optional.ofNullable(msgAttributeMap.get(PayloadCodec.SNS_ATTRIBUTE))
+					.map(MessageAttribute::getValue).orElse(null);
+			String message = PayloadCodec.decodePayload(messageCodec, snsRecod.getSNS().getMessage());
+			context.getLogger().log("SNS Message Payload: " + message);
+			
 			MessageAttribute msgTypeAttr = msgAttributeMap.get("message_type");
 			MessageAttribute sourceCatalogIdAttr = msgAttributeMap.get("source_catalog_id");
 			MessageAttribute exportBatchIdAttr = msgAttributeMap.get("export_batch_id");
@@ -135,10 +176,11 @@ public class ImportDatabaseOrTable implements RequestHandler<SNSEvent, Object> {
 			GDCUtil gdcUtil = new GDCUtil();
 			if (isDatabaseType) {
 				gdcUtil.processDatabseSchema(glue, sqs, targetGlueCatalogId, db, message, sqsQueueURL, sourceGlueCatalogId,
-						exportBatchId, ddbTblNameForDBStatusTracking);
+						exportBatchId, ddbTblNameForDBStatusTracking, catalogCache);
 			} else if (isTableType) {
 				gdcUtil.processTableSchema(glue, sqs, targetGlueCatalogId, sourceGlueCatalogId, table, message,
-						ddbTblNameForTableStatusTracking, sqsQueueURL, exportBatchId, skipTableArchive);
+						ddbTblNameForTableStatusTracking, sqsQueueURL, exportBatchId, skipTableArchive,
+						partitionReadSegments, partitionReadParallelism, catalogCache);
 			} else if (isLargeTable) {
 				sqsUtil.sendLargeTableSchemaToSQS(sqs, sqsQueueURLLargeTable, exportBatchId, sourceGlueCatalogId,
 						message, largeTable);
@@ -152,10 +194,20 @@ public class ImportDatabaseOrTable implements RequestHandler<SNSEvent, Object> {
 	 * @param ddbTblNameForDBStatusTracking
 	 * @param ddbTblNameForTableStatusTracking
 	 * @param sqsURL
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param ddbTblNameForGlueApiBudget
+	 * @param glueApiBudgetTps
+	 * @param glueApiBudgetLeaseSize
+	 * @param catalogCacheTtlSeconds
+	 * @param catalogCacheMaxSize
+	 * @param catalogCacheWarmUp
 	 */
 	public void printEnvVariables(String targetGlueCatalogId, boolean skipTableArchive,
 			String ddbTblNameForDBStatusTracking, String ddbTblNameForTableStatusTracking, String sqsQueueURL,
-			String region, String sqsQueueURLLargeTable) {
+			String region, String sqsQueueURLLargeTable, int partitionReadSegments, int partitionReadParallelism,
+			String ddbTblNameForGlueApiBudget, double glueApiBudgetTps, int glueApiBudgetLeaseSize,
+			long catalogCacheTtlSeconds, long catalogCacheMaxSize, boolean catalogCacheWarmUp) {
 		System.out.println("Target Catalog Id: " + targetGlueCatalogId);
 		System.out.println("Skip Table Archive: " + skipTableArchive);
 		System.out.println("DynamoDB Table for DB Import Auditing: " + ddbTblNameForDBStatusTracking);
@@ -163,6 +215,14 @@ public class ImportDatabaseOrTable implements RequestHandler<SNSEvent, Object> {
 		System.out.println("Dead Letter Queue URL: " + sqsQueueURL);
 		System.out.println("Region: " + region);
 		System.out.println("SQS Queue URL for Large Tables: " + sqsQueueURLLargeTable);
+		System.out.println("Partition read segments: " + partitionReadSegments);
+		System.out.println("Partition read parallelism: " + partitionReadParallelism);
+		System.out.println("DynamoDB Table for Glue API Budget: " + ddbTblNameForGlueApiBudget);
+		System.out.println("Glue API budget in calls per second: " + glueApiBudgetTps);
+		System.out.println("Glue API budget lease size: " + glueApiBudgetLeaseSize);
+		System.out.println("Target catalog cache TTL in seconds: " + catalogCacheTtlSeconds);
+		System.out.println("Target catalog cache maximum size: " + catalogCacheMaxSize);
+		System.out.println("Target catalog cache warm-up: " + catalogCacheWarmUp);
 	}
 
 	
@@ -3,27 +3,29 @@
 
 package com.amazonaws.gdcreplication.lambda;
 
-import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
 
-import com.amazonaws.ClientConfiguration;
 import com.amazonaws.gdcreplication.util.DDBUtil;
+import com.amazonaws.gdcreplication.util.GDCUtil;
 import com.amazonaws.gdcreplication.util.GlueUtil;
 import com.amazonaws.gdcreplication.util.LargeTable;
 import com.amazonaws.gdcreplication.util.S3Util;
 import com.amazonaws.gdcreplication.util.TableReplicationStatus;
+import com.amazonaws.gdcreplication.util.TargetCatalogCache;
+import com.amazonaws.gdcreplication.util.AWSClientRegistry;
+import com.amazonaws.gdcreplication.util.GsonRegistry;
+import com.amazonaws.gdcreplication.util.PayloadCodec;
+import com.amazonaws.gdcreplication.util.RateLimitedGlue;
+import com.amazonaws.gdcreplication.util.DistributedTokenBucket;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.glue.AWSGlue;
-import com.amazonaws.services.glue.AWSGlueClientBuilder;
-import com.amazonaws.services.glue.model.Partition;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.MessageAttribute;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
 import com.amazonaws.services.sqs.AmazonSQS;
-import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
 
@@ -38,23 +40,55 @@ public class ImportLargeTable implements RequestHandler<SQSEvent, String> {
 				.parseBoolean(Optional.ofNullable(System.getenv("skip_archive")).orElse("true"));
 		String ddbTblNameForTableStatusTracking = Optional.ofNullable(System.getenv("ddb_name_table_import_status"))
 				.orElse("ddb_name_table_import_status");
+		int partitionReadSegments = Integer
+				.parseInt(Optional.ofNullable(System.getenv("partition_read_segments")).orElse("1"));
+		int partitionReadParallelism = Integer.parseInt(Optional.ofNullable(System.getenv("partition_read_parallelism"))
+				.orElse(Integer.toString(partitionReadSegments)));
+		String ddbTblNameForGlueApiBudget = Optional.ofNullable(System.getenv("ddb_name_glue_api_budget")).orElse("");
+		double glueApiBudgetTps = Double
+				.parseDouble(Optional.ofNullable(System.getenv("glue_api_budget_tps")).orElse("50"));
+		int glueApiBudgetLeaseSize = Integer
+				.parseInt(Optional.ofNullable(System.getenv("glue_api_budget_lease_size")).orElse("10"));
+		int partitionImportParallelism = Integer
+				.parseInt(Optional.ofNullable(System.getenv("partition_import_parallelism")).orElse("4"));
+		String ddbTblNameForChunkTracking = Optional.ofNullable(System.getenv("ddb_name_large_table_chunks"))
+				.orElse("");
+		String ddbTblNameForImportCheckpoints = Optional
+				.ofNullable(System.getenv("ddb_name_large_table_checkpoint")).orElse("");
+		long catalogCacheTtlSeconds = Long
+				.parseLong(Optional.ofNullable(System.getenv("target_catalog_cache_ttl_seconds")).orElse("300"));
+		long catalogCacheMaxSize = Long
+				.parseLong(Optional.ofNullable(System.getenv("target_catalog_cache_max_size")).orElse("10000"));
+		boolean catalogCacheWarmUp = Boolean
+				.parseBoolean(Optional.ofNullable(System.getenv("target_catalog_cache_warm_up")).orElse("false"));
 		boolean recordProcessed = false;
 		
 		// Print environment variables
-		printEnvVariables(targetGlueCatalogId, skipTableArchive, ddbTblNameForTableStatusTracking, region);
+		printEnvVariables(targetGlueCatalogId, skipTableArchive, ddbTblNameForTableStatusTracking, region,
+				partitionReadSegments, partitionReadParallelism, partitionImportParallelism,
+				ddbTblNameForGlueApiBudget, glueApiBudgetTps, glueApiBudgetLeaseSize, ddbTblNameForChunkTracking,
+				ddbTblNameForImportCheckpoints, catalogCacheTtlSeconds, catalogCacheMaxSize, catalogCacheWarmUp);
 				
-		// Set client configuration
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
-
 		// Create Objects for Glue and SQS
-		AWSGlue glue = AWSGlueClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
-		AmazonSQS sqs = AmazonSQSClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build();
+		DistributedTokenBucket glueApiBudget = null;
+		if (!ddbTblNameForGlueApiBudget.isEmpty())
+			glueApiBudget = new DistributedTokenBucket(AWSClientRegistry.getDynamoDB(region), new DDBUtil(),
+					ddbTblNameForGlueApiBudget, "glue|" + targetGlueCatalogId, glueApiBudgetTps, glueApiBudgetLeaseSize);
+		AWSGlue glue = RateLimitedGlue.wrap(AWSClientRegistry.getGlue(region), glueApiBudget);
+		AmazonSQS sqs = AWSClientRegistry.getSQS(region);
+		TargetCatalogCache catalogCache = null;
+		if (catalogCacheTtlSeconds > 0) {
+			catalogCache = TargetCatalogCache.getInstance(targetGlueCatalogId, catalogCacheTtlSeconds,
+					catalogCacheMaxSize);
+			if (catalogCacheWarmUp)
+				catalogCache.warmUp(glue, new GlueUtil());
+		}
 		
 		// Iterate and process all the messages which are part of SQSEvent
 		System.out.println("Number of messages in SQS Event: " + event.getRecords().size());
 		for (SQSMessage msg : event.getRecords()) {
 			String ddl = new String(msg.getBody());
+			String messageCodec = null;
 			String exportBatchId = "";
 			String schemaType = "";
 			String sourceGlueCatalogId = "";
@@ -69,17 +103,28 @@ public class ImportLargeTable implements RequestHandler<SQSEvent, String> {
 				} else if ("SchemaType".equalsIgnoreCase(entry.getKey())) {
 					schemaType = entry.getValue().getStringValue();
 					System.out.println("Message Schema Type " + schemaType);
+				} else if (PayloadCodec.SQS_ATTRIBUTE.equalsIgnoreCase(entry.getKey())) {
+					messageCodec = entry.getValue().getStringValue();
+					System.out.println("Payload Codec: " + messageCodec);
 				}
 			}
+			ddl = PayloadCodec.decodePayload(messageCodec, ddl);
 			if (schemaType.equalsIgnoreCase("largeTable")) {
 				recordProcessed = processsRecord(context, glue, sqs, targetGlueCatalogId, ddbTblNameForTableStatusTracking,
-						ddl, skipTableArchive, exportBatchId, sourceGlueCatalogId, region);
+						ddl, skipTableArchive, exportBatchId, sourceGlueCatalogId, region, partitionReadSegments,
+						partitionReadParallelism, partitionImportParallelism, ddbTblNameForChunkTracking,
+						ddbTblNameForImportCheckpoints, catalogCache);
 			}
 			if (!recordProcessed) {
 				System.out.printf("Input message '%s' could not be processed. This is an exception. It will be reprocessed again. \n", ddl);
 				throw new RuntimeException();
 			}
 		}
+		RateLimitedGlue.printStatistics();
+		if (Optional.ofNullable(glueApiBudget).isPresent())
+			System.out.println("Glue API budget - " + glueApiBudget);
+		if (Optional.ofNullable(catalogCache).isPresent())
+			System.out.println("Target catalog cache - " + catalogCache);
 		return "Success";
 	}
 	
@@ -91,13 +136,39 @@ public class ImportLargeTable implements RequestHandler<SQSEvent, String> {
 	 * @param ddbTblNameForTableStatusTracking
 	 * @param region
 	 * @param sqsQueueURL
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param partitionImportParallelism
+	 * @param ddbTblNameForGlueApiBudget
+	 * @param glueApiBudgetTps
+	 * @param glueApiBudgetLeaseSize
+	 * @param ddbTblNameForChunkTracking
+	 * @param ddbTblNameForImportCheckpoints
+	 * @param catalogCacheTtlSeconds
+	 * @param catalogCacheMaxSize
+	 * @param catalogCacheWarmUp
 	 */
 	public void printEnvVariables(String targetGlueCatalogId, boolean skipTableArchive,
-			String ddbTblNameForTableStatusTracking, String region) {
+			String ddbTblNameForTableStatusTracking, String region, int partitionReadSegments,
+			int partitionReadParallelism, int partitionImportParallelism,
+			String ddbTblNameForGlueApiBudget, double glueApiBudgetTps, int glueApiBudgetLeaseSize,
+			String ddbTblNameForChunkTracking, String ddbTblNameForImportCheckpoints, long catalogCacheTtlSeconds,
+			long catalogCacheMaxSize, boolean catalogCacheWarmUp) {
 		System.out.println("Target Catalog Id: " + targetGlueCatalogId);
 		System.out.println("Skip Table Archive: " + skipTableArchive);
 		System.out.println("DynamoDB Table for Table Import Auditing: " + ddbTblNameForTableStatusTracking);
 		System.out.println("Region: " + region);
+		System.out.println("Partition read segments: " + partitionReadSegments);
+		System.out.println("Partition read parallelism: " + partitionReadParallelism);
+		System.out.println("Partition import parallelism: " + partitionImportParallelism);
+		System.out.println("DynamoDB Table for Glue API Budget: " + ddbTblNameForGlueApiBudget);
+		System.out.println("Glue API budget in calls per second: " + glueApiBudgetTps);
+		System.out.println("Glue API budget lease size: " + glueApiBudgetLeaseSize);
+		System.out.println("DynamoDB Table for Large Table Chunk Tracking: " + ddbTblNameForChunkTracking);
+		System.out.println("DynamoDB Table for Large Table Import Checkpoints: " + ddbTblNameForImportCheckpoints);
+		System.out.println("Target catalog cache TTL in seconds: " + catalogCacheTtlSeconds);
+		System.out.println("Target catalog cache maximum size: " + catalogCacheMaxSize);
+		System.out.println("Target catalog cache warm-up: " + catalogCacheWarmUp);
 	}
 
 	/**
@@ -114,16 +185,26 @@ public class ImportLargeTable implements RequestHandler<SQSEvent, String> {
 	 * @param exportBatchId
 	 * @param sourceGlueCatalogId
 	 * @param region
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param partitionImportParallelism
+	 * @param ddbTblNameForChunkTracking
+	 * @param ddbTblNameForImportCheckpoints
+	 * @param catalogCache
 	 */
 	public boolean processsRecord(Context context, AWSGlue glue, AmazonSQS sqs,
 			String targetGlueCatalogId, String ddbTblNameForTableStatusTracking, String message,
-			boolean skipTableArchive, String exportBatchId, String sourceGlueCatalogId, String region) {
+			boolean skipTableArchive, String exportBatchId, String sourceGlueCatalogId, String region,
+			int partitionReadSegments, int partitionReadParallelism, int partitionImportParallelism,
+			String ddbTblNameForChunkTracking, String ddbTblNameForImportCheckpoints,
+			TargetCatalogCache catalogCache) {
 
 		boolean recordProcessed = false;
-		Gson gson = new Gson();
+		Gson gson = GsonRegistry.getGson();
 		S3Util s3Util = new S3Util();
 		DDBUtil ddbUtil = new DDBUtil();
 		GlueUtil glueUtil = new GlueUtil();
+		GDCUtil gdcUtil = new GDCUtil();
 
 		LargeTable largeTable = null;
 		TableReplicationStatus tableStatus = null;
@@ -137,74 +218,52 @@ public class ImportLargeTable implements RequestHandler<SQSEvent, String> {
 			e.printStackTrace();
 		}
 
-		// Create or update Table
+		// Create or update Table. Of the chunks of a chunked export, only the first one
+		// updates the table; the others create it only if it does not exist yet.
 		if (Optional.ofNullable(largeTable).isPresent()) {
-			tableStatus = glueUtil.createOrUpdateTable(glue, largeTable.getTable(), targetGlueCatalogId,
-					skipTableArchive);
+			if (largeTable.getChunkIndex() > 0 && Optional.ofNullable(glueUtil.getTable(glue, targetGlueCatalogId,
+					largeTable.getTable().getDatabaseName(), largeTable.getTable().getName())).isPresent()) {
+				tableStatus = new TableReplicationStatus();
+				tableStatus.setTableName(largeTable.getTable().getName());
+				tableStatus.setDbName(largeTable.getTable().getDatabaseName());
+				tableStatus.setReplicationTime(System.currentTimeMillis());
+				tableStatus.setReplicated(true);
+			} else
+				tableStatus = glueUtil.createOrUpdateTable(glue, largeTable.getTable(), targetGlueCatalogId,
+						skipTableArchive, catalogCache);
 			tableStatus.setTableSchema(message);
 		}
 
 		// Update table partitions
 		if (!tableStatus.isError()) {
-			// Get partitions from S3
-			List<Partition> partitionListFromExport = s3Util.getPartitionsFromS3(region, largeTable.getS3BucketName(),
-					largeTable.getS3ObjectKey());
-
-			// Get table partitions from Target Account
-			List<Partition> partitionsB4Replication = glueUtil.getPartitions(glue, targetGlueCatalogId,
-					largeTable.getTable().getDatabaseName(), largeTable.getTable().getName());
-			System.out.println("Number of partitions before replication: " + partitionsB4Replication.size());
-
-			// Add Partitions to the table if the export has Partitions
-			if (tableStatus.isReplicated() && partitionListFromExport.size() > 0) {
-				tableStatus.setExportHasPartitions(true);
-				if (partitionsB4Replication.size() == 0) {
-					System.out.println("Adding partitions based on the export.");
-					boolean partitionsAdded = glueUtil.addPartitions(glue, partitionListFromExport, targetGlueCatalogId,
-							largeTable.getTable().getDatabaseName(), largeTable.getTable().getName());
-					if (partitionsAdded) {
-						tableStatus.setPartitionsReplicated(true);
-						recordProcessed = true;
-					}
-				} else {
-					System.out.println(
-							"Target table has partitions. They will be deleted first before adding partitions based on Export.");
-					// delete partitions in batch mode
-					boolean partitionsDeleted = glueUtil.deletePartitions(glue, targetGlueCatalogId,
-							largeTable.getTable().getDatabaseName(), largeTable.getTable().getName(),
-							partitionsB4Replication);
-
-					// Enable the below code for debugging purpose. Check number of table partitions after deletion
-//					List<Partition> partitionsAfterDeletion = glueUtil.getPartitions(glue, targetGlueCatalogId,
-//							largeTable.getTable().getDatabaseName(), largeTable.getTable().getName());
-//					System.out.println("Number of partitions after deletion: " + partitionsAfterDeletion.size());
-
-					// add partitions from S3 object
-					boolean partitionsAdded = glueUtil.addPartitions(glue, partitionListFromExport, targetGlueCatalogId,
-							largeTable.getTable().getDatabaseName(), largeTable.getTable().getName());
-
-					if (partitionsDeleted && partitionsAdded) {
-						tableStatus.setPartitionsReplicated(true);
-						recordProcessed = true;
-					}
-					// Enable the below code for debugging purpose. Check number of table partitions after addition
-//					List<Partition> partitionsAfterAddition = glueUtil.getPartitions(glue, targetGlueCatalogId,
-//							largeTable.getTable().getDatabaseName(), largeTable.getTable().getName());
-//					System.out.println("Number of partitions after addition: " + partitionsAfterAddition.size());
+			// Stream partitions from S3 and add, update and delete only the partitions that
+			// differ from the export
+			if (tableStatus.isReplicated() && largeTable.getNumberOfChunks() > 0) {
+				if (gdcUtil.syncPartitionChunk(glue, glueUtil, s3Util, ddbUtil, region, largeTable, targetGlueCatalogId,
+						tableStatus, ddbTblNameForChunkTracking, context.getRemainingTimeInMillis(),
+						partitionReadSegments, partitionReadParallelism, partitionImportParallelism)) {
+					tableStatus.setPartitionsReplicated(true);
+					recordProcessed = true;
 				}
-
-			} else if (tableStatus.isReplicated() && partitionListFromExport.size() == 0) {
-				tableStatus.setExportHasPartitions(false);
-				if (partitionsB4Replication.size() > 0) {
-					// Export has no partitions but table already has some partitions. Those
-					// partitions will be deleted in batch mode.
-					boolean partitionsDeleted = glueUtil.deletePartitions(glue, targetGlueCatalogId,
-							largeTable.getTable().getDatabaseName(), largeTable.getTable().getName(),
-							partitionsB4Replication);
-					if (partitionsDeleted) {
-						tableStatus.setPartitionsReplicated(true);
-						recordProcessed = true;
-					}
+			} else if (tableStatus.isReplicated() && !ddbTblNameForImportCheckpoints.isEmpty()) {
+				if (gdcUtil.syncPartitionsFromS3WithCheckpoints(glue, glueUtil, s3Util, ddbUtil, region,
+						largeTable.getS3BucketName(), largeTable.getS3ObjectKey(), targetGlueCatalogId,
+						largeTable.getTable().getDatabaseName(), largeTable.getTable().getName(),
+						largeTable.isCompactPartitions() ? largeTable.getTable() : null, tableStatus,
+						ddbTblNameForImportCheckpoints, partitionReadSegments, partitionReadParallelism,
+						partitionImportParallelism)) {
+					tableStatus.setPartitionsReplicated(true);
+					recordProcessed = true;
+				}
+			} else if (tableStatus.isReplicated()) {
+				boolean partitionsSynced = gdcUtil.syncPartitionsFromS3(glue, glueUtil, s3Util, region,
+						largeTable.getS3BucketName(), largeTable.getS3ObjectKey(), targetGlueCatalogId,
+						largeTable.getTable().getDatabaseName(), largeTable.getTable().getName(),
+						largeTable.isCompactPartitions() ? largeTable.getTable() : null, tableStatus,
+						partitionReadSegments, partitionReadParallelism, partitionImportParallelism);
+				if (partitionsSynced) {
+					tableStatus.setPartitionsReplicated(true);
+					recordProcessed = true;
 				}
 			}
 		}
@@ -217,10 +276,10 @@ public class ImportLargeTable implements RequestHandler<SQSEvent, String> {
 		ddbUtil.trackTableImportStatus(tableStatus, sourceGlueCatalogId, targetGlueCatalogId, importRunId,
 				exportBatchId, ddbTblNameForTableStatusTracking);
 		System.out.printf(
-				"Processing of Table shcema completed. Result: Table replicated: %b, Export has partitions: %b, "
-						+ "Partitions replicated: %b, error: %b \n",
-				tableStatus.isReplicated(), tableStatus.isExportHasPartitions(), tableStatus.isPartitionsReplicated(),
-				tableStatus.isError());
+				"Processing of Table shcema completed. Result: Table replicated: %b, unchanged: %b, "
+						+ "Export has partitions: %b, Partitions replicated: %b, error: %b \n",
+				tableStatus.isReplicated(), tableStatus.isUnchanged(), tableStatus.isExportHasPartitions(),
+				tableStatus.isPartitionsReplicated(), tableStatus.isError());
 		
 		return recordProcessed;
 	}
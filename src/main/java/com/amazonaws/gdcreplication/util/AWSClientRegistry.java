@@ -0,0 +1,147 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.glue.AWSGlue;
+import com.amazonaws.services.glue.AWSGlueClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.sns.AmazonSNS;
+import com.amazonaws.services.sns.AmazonSNSClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+
+/**
+ * This class holds the AWS SDK clients of a Lambda container. A client is built
+ * the first time it is asked for and then shared by all the invocations that
+ * the container serves, so the connection pool and the TLS sessions survive
+ * between invocations. Clients are keyed by service, region and tuning profile.
+ * They are never shut down.
+ *
+ * The ClientConfiguration of each service can be tuned with the following
+ * environment variables, where &lt;service&gt; is one of glue, s3, sns, sqs or
+ * dynamodb:
+ * <ul>
+ * <li>&lt;service&gt;_max_connections</li>
+ * <li>&lt;service&gt;_connection_timeout_ms</li>
+ * <li>&lt;service&gt;_socket_timeout_ms</li>
+ * <li>&lt;service&gt;_tcp_keep_alive (default true)</li>
+ * </ul>
+ *
+ */
+public class AWSClientRegistry {
+
+	public static final String PROFILE_DEFAULT = "default";
+	public static final String PROFILE_THROTTLE_AWARE = "throttle-aware";
+
+	private static final Map<String, Object> CLIENTS = new ConcurrentHashMap<String, Object>();
+
+	private AWSClientRegistry() {
+	}
+
+	/**
+	 * Get the Glue client of a region. It uses the retry policy of
+	 * RateLimitedGlue, which leaves throttling errors to the rate limiter. The
+	 * client is returned as is; wrap it with RateLimitedGlue before use.
+	 *
+	 * @param region
+	 * @return
+	 */
+	public static AWSGlue getGlue(String region) {
+		return getClient("glue", region, PROFILE_THROTTLE_AWARE,
+				cc -> AWSGlueClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build());
+	}
+
+	public static AmazonSNS getSNS(String region) {
+		return getClient("sns", region, PROFILE_DEFAULT,
+				cc -> AmazonSNSClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build());
+	}
+
+	public static AmazonSQS getSQS(String region) {
+		return getClient("sqs", region, PROFILE_DEFAULT,
+				cc -> AmazonSQSClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build());
+	}
+
+	public static AmazonS3 getS3(String region) {
+		return getClient("s3", region, PROFILE_DEFAULT,
+				cc -> AmazonS3ClientBuilder.standard().withRegion(region).withClientConfiguration(cc).build());
+	}
+
+	/**
+	 * Get the DynamoDB client of a region. If region is null, the region is taken
+	 * from the environment of the Lambda function.
+	 *
+	 * @param region
+	 * @return
+	 */
+	public static AmazonDynamoDB getDynamoDB(String region) {
+		return getClient("dynamodb", region, PROFILE_DEFAULT, cc -> {
+			AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClientBuilder.standard().withClientConfiguration(cc);
+			if (Optional.ofNullable(region).isPresent())
+				builder.setRegion(region);
+			return builder.build();
+		});
+	}
+
+	/**
+	 * Create the ClientConfiguration of a service and tuning profile. The
+	 * environment variables of the service override the defaults.
+	 *
+	 * @param service
+	 * @param profile
+	 * @return
+	 */
+	public static ClientConfiguration createClientConfiguration(String service, String profile) {
+		ClientConfiguration cc = PROFILE_THROTTLE_AWARE.equals(profile) ? RateLimitedGlue.createClientConfiguration()
+				: new ClientConfiguration().withMaxErrorRetry(10);
+		getEnv(service, "max_connections").map(Integer::parseInt).ifPresent(cc::setMaxConnections);
+		getEnv(service, "connection_timeout_ms").map(Integer::parseInt).ifPresent(cc::setConnectionTimeout);
+		getEnv(service, "socket_timeout_ms").map(Integer::parseInt).ifPresent(cc::setSocketTimeout);
+		cc.setUseTcpKeepAlive(Boolean.parseBoolean(getEnv(service, "tcp_keep_alive").orElse("true")));
+		return cc;
+	}
+
+	/**
+	 * Register a client in place of the one the registry would build, e.g. an
+	 * in-memory stand-in used to measure the replication without AWS. It must be
+	 * registered before the client is first asked for.
+	 *
+	 * @param service one of glue, s3, sns, sqs or dynamodb
+	 * @param region  the region, or null for the DynamoDB client of the
+	 *                environment
+	 * @param profile the tuning profile the client is asked for with, i.e.
+	 *                PROFILE_THROTTLE_AWARE for glue and PROFILE_DEFAULT
+	 *                otherwise
+	 * @param client
+	 */
+	public static void registerClient(String service, String region, String profile, Object client) {
+		CLIENTS.put(getKey(service, region, profile), client);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T getClient(String service, String region, String profile,
+			Function<ClientConfiguration, T> clientFactory) {
+		String key = getKey(service, region, profile);
+		return (T) CLIENTS.computeIfAbsent(key, k -> {
+			System.out.println("Creating AWS SDK client: " + k);
+			return clientFactory.apply(createClientConfiguration(service, profile));
+		});
+	}
+
+	private static String getKey(String service, String region, String profile) {
+		return String.join("|", service, Optional.ofNullable(region).orElse(""), profile);
+	}
+
+	private static Optional<String> getEnv(String service, String setting) {
+		return Optional.ofNullable(System.getenv(service + "_" + setting));
+	}
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * This is a rate limiter that adapts its rate using additive increase /
+ * multiplicative decrease (AIMD). It starts at the configured rate. Each
+ * throttled call cuts the rate by the decrease factor, and successful calls
+ * raise it by roughly 'additiveIncrease' permits per second every second. The
+ * rate always stays between minRate and maxRate.
+ *
+ */
+public class AdaptiveRateLimiter {
+
+	private final String name;
+	private final double minRate;
+	private final double maxRate;
+	private final double additiveIncrease;
+	private final double decreaseFactor;
+	private final RateLimiter rateLimiter;
+	private final AtomicLong successCount = new AtomicLong();
+	private final AtomicLong throttleCount = new AtomicLong();
+	private double currentRate;
+
+	public AdaptiveRateLimiter(String name, double initialRate, double minRate, double maxRate,
+			double additiveIncrease, double decreaseFactor) {
+		this.name = name;
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.additiveIncrease = additiveIncrease;
+		this.decreaseFactor = decreaseFactor;
+		this.currentRate = Math.min(Math.max(initialRate, minRate), maxRate);
+		this.rateLimiter = RateLimiter.create(currentRate);
+	}
+
+	/**
+	 * Block until a permit is available at the current rate.
+	 */
+	public void acquire() {
+		rateLimiter.acquire();
+	}
+
+	/**
+	 * Probe upwards. At the current rate there are 'currentRate' successes per
+	 * second, so each one adds additiveIncrease / currentRate.
+	 */
+	public synchronized void onSuccess() {
+		successCount.incrementAndGet();
+		if (currentRate < maxRate)
+			updateRate(Math.min(maxRate, currentRate + additiveIncrease / currentRate));
+	}
+
+	/**
+	 * Back off multiplicatively.
+	 */
+	public synchronized void onThrottle() {
+		throttleCount.incrementAndGet();
+		updateRate(Math.max(minRate, currentRate * decreaseFactor));
+		System.out.printf("Glue %s calls throttled. Rate reduced to %.2f calls per second. \n", name, currentRate);
+	}
+
+	public synchronized double getCurrentRate() {
+		return currentRate;
+	}
+
+	public long getSuccessCount() {
+		return successCount.get();
+	}
+
+	public long getThrottleCount() {
+		return throttleCount.get();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: current rate = %.2f, successful calls = %d, throttled calls = %d", name,
+				getCurrentRate(), getSuccessCount(), getThrottleCount());
+	}
+
+	private void updateRate(double newRate) {
+		currentRate = newRate;
+		rateLimiter.setRate(newRate);
+	}
+}
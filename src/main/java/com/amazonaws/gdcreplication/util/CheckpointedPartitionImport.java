@@ -0,0 +1,209 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.glue.AWSGlue;
+import com.amazonaws.services.glue.model.Partition;
+
+/**
+ * This class adds and updates the partitions of a large table export batch by
+ * batch, and checkpoints its progress in DynamoDB so that a retry resumes
+ * after the last committed batch. Each batch looks up the target partitions
+ * with the same values with BatchGetPartition, then adds the new partitions
+ * and updates the changed ones.
+ *
+ * Batches run on a bounded pool of workers, like PartitionImportPipeline, so
+ * they may complete out of order. The checkpoint only moves past a batch once
+ * every batch before it has completed; batches completed beyond a failed batch
+ * are redone by the retry, and are mostly no-ops by then.
+ *
+ */
+public class CheckpointedPartitionImport {
+
+	public static final int BATCH_SIZE = PartitionImportPipeline.BATCH_SIZE;
+
+	private final AWSGlue glue;
+	private final GlueUtil glueUtil;
+	private final DDBUtil ddbUtil;
+	private final String catalogId;
+	private final String databaseName;
+	private final String tableName;
+	private final String ddbTblName;
+	private final String importId;
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger numberOfPartitionsAdded = new AtomicInteger();
+	private final AtomicInteger numberOfPartitionsUpdated = new AtomicInteger();
+	private final AtomicInteger numberOfFailedBatches = new AtomicInteger();
+	private final PartitionBatchResult batchResult = new PartitionBatchResult();
+	private final TreeMap<Long, Long> completedBatches = new TreeMap<Long, Long>();
+	private long recordsCommitted;
+	private long nextRecord;
+	private long batchStart;
+	private List<Partition> batch = new ArrayList<Partition>(BATCH_SIZE);
+
+	/**
+	 * @param glue
+	 * @param glueUtil
+	 * @param ddbUtil
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param ddbTblName
+	 * @param importId
+	 * @param recordsCommitted the number of records committed by earlier attempts;
+	 *                         the first partition added is record number
+	 *                         recordsCommitted
+	 * @param parallelism
+	 */
+	public CheckpointedPartitionImport(AWSGlue glue, GlueUtil glueUtil, DDBUtil ddbUtil, String catalogId,
+			String databaseName, String tableName, String ddbTblName, String importId, long recordsCommitted,
+			int parallelism) {
+		this.glue = glue;
+		this.glueUtil = glueUtil;
+		this.ddbUtil = ddbUtil;
+		this.catalogId = catalogId;
+		this.databaseName = databaseName;
+		this.tableName = tableName;
+		this.ddbTblName = ddbTblName;
+		this.importId = importId;
+		this.recordsCommitted = recordsCommitted;
+		this.nextRecord = recordsCommitted;
+		int numberOfThreads = Math.max(parallelism, 1);
+		this.executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(numberOfThreads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Add a partition to the current batch. The batch is submitted once it is
+	 * full.
+	 *
+	 * @param partition
+	 */
+	public void add(Partition partition) {
+		if (batch.isEmpty())
+			batchStart = nextRecord;
+		batch.add(partition);
+		nextRecord++;
+		if (batch.size() == BATCH_SIZE)
+			submitBatch();
+	}
+
+	/**
+	 * Submit the last batch and wait for all the batches to complete.
+	 *
+	 * @return true if all the batches were committed
+	 */
+	public boolean close() {
+		if (batch.size() > 0)
+			submitBatch();
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("Waiting for partition batches to be committed. Active workers: "
+						+ executor.getActiveCount());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+			numberOfFailedBatches.incrementAndGet();
+		}
+		System.out.printf(
+				"Checkpointed partition import completed. Records committed: %d of %d, added: %d, updated: %d, failed batches: %d \n",
+				getRecordsCommitted(), nextRecord, numberOfPartitionsAdded.get(), numberOfPartitionsUpdated.get(),
+				numberOfFailedBatches.get());
+		return numberOfFailedBatches.get() == 0;
+	}
+
+	/**
+	 * @return the number of records read, including the ones committed by
+	 *         earlier attempts
+	 */
+	public long getNumberOfRecords() {
+		return nextRecord;
+	}
+
+	public synchronized long getRecordsCommitted() {
+		return recordsCommitted;
+	}
+
+	public int getNumberOfPartitionsAdded() {
+		return numberOfPartitionsAdded.get();
+	}
+
+	public int getNumberOfPartitionsUpdated() {
+		return numberOfPartitionsUpdated.get();
+	}
+
+	private void submitBatch() {
+		List<Partition> partitionBatch = batch;
+		long start = batchStart;
+		batch = new ArrayList<Partition>(BATCH_SIZE);
+		executor.execute(() -> {
+			try {
+				if (importBatch(partitionBatch))
+					commit(start, start + partitionBatch.size());
+				else
+					numberOfFailedBatches.incrementAndGet();
+			} catch (Exception e) {
+				e.printStackTrace();
+				numberOfFailedBatches.incrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * @return the outcome of the BatchCreatePartition requests of all the batches
+	 */
+	public PartitionBatchResult getBatchResult() {
+		return batchResult;
+	}
+
+	private boolean importBatch(List<Partition> partitionBatch) {
+		List<List<String>> partitionValues = new ArrayList<List<String>>();
+		for (Partition p : partitionBatch)
+			partitionValues.add(p.getValues());
+		List<Partition> targetPartitions = glueUtil.getPartitionsByValues(glue, catalogId, databaseName, tableName,
+				partitionValues);
+		PartitionDiff partitionDiff = glueUtil.computePartitionDiff(partitionBatch, targetPartitions);
+		boolean partitionsAdded = true;
+		boolean partitionsUpdated = true;
+		if (partitionDiff.getPartitionsToAdd().size() > 0) {
+			PartitionBatchResult result = glueUtil.addPartitions(glue, partitionDiff.getPartitionsToAdd(),
+					catalogId, databaseName, tableName, new PartitionBatchResult());
+			batchResult.merge(result);
+			partitionsAdded = result.isSuccessful();
+			numberOfPartitionsAdded.getAndAdd(result.getNumberOfPartitionsSucceeded());
+		}
+		if (partitionDiff.getPartitionsToUpdate().size() > 0) {
+			int numberOfPartitionsUpdatedInBatch = glueUtil.updatePartitionsAndGetCount(glue, catalogId,
+					databaseName, tableName, partitionDiff.getPartitionsToUpdate());
+			partitionsUpdated = numberOfPartitionsUpdatedInBatch == partitionDiff.getPartitionsToUpdate().size();
+			numberOfPartitionsUpdated.getAndAdd(numberOfPartitionsUpdatedInBatch);
+		}
+		return partitionsAdded && partitionsUpdated;
+	}
+
+	private void commit(long start, long end) {
+		long committed;
+		synchronized (this) {
+			completedBatches.put(start, end);
+			long previouslyCommitted = recordsCommitted;
+			while (completedBatches.containsKey(recordsCommitted))
+				recordsCommitted = completedBatches.remove(recordsCommitted);
+			if (recordsCommitted == previouslyCommitted)
+				return;
+			committed = recordsCommitted;
+		}
+		// Concurrent saves may arrive out of order; DDBUtil never moves a checkpoint back
+		ddbUtil.saveImportCheckpoint(ddbTblName, importId, ImportCheckpoint.Phase.ADD, committed);
+	}
+}
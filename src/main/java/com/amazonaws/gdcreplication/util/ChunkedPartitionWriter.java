@@ -0,0 +1,223 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.Table;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * This class writes the partitions of a large table to a sequence of S3
+ * objects, the chunks, of at most 'partitionsPerChunk' partitions each. Each
+ * chunk is new line delimited JSON, like the single object written when the
+ * export is not chunked, and is uploaded with multipart upload. When the writer
+ * is closed, a manifest listing the chunks is written to
+ * &lt;keyPrefix&gt;/manifest.json.
+ *
+ * The writer has one lane per GetPartitions segment. Each lane fills and
+ * uploads its own chunks, so segments read concurrently are also serialized
+ * and uploaded concurrently; only the manifest is shared between lanes. Writes
+ * to one lane are synchronized on the lane.
+ *
+ * There is always at least one chunk, even if the table has no partitions, so
+ * that the import of the table is always triggered.
+ *
+ */
+public class ChunkedPartitionWriter {
+
+	public static final String MANIFEST_NAME = "manifest.json";
+
+	private final S3Util s3Util;
+	private final GlueUtil glueUtil;
+	private final Gson gson;
+	private final String region;
+	private final String bucketName;
+	private final String keyPrefix;
+	private final int partSize;
+	private final int partitionsPerChunk;
+	private final Table compactBaseTable;
+	private final LargeTableManifest manifest = new LargeTableManifest();
+	private final Lane[] lanes;
+
+	/**
+	 * The chunk being written by one segment
+	 */
+	private static class Lane {
+		private S3MultipartOutputStream outputStream;
+		private Writer writer;
+		private JsonWriter jsonWriter;
+		private LargeTableManifest.Chunk chunk;
+		private int partitionsInChunk;
+	}
+
+	/**
+	 * @param s3Util
+	 * @param glueUtil
+	 * @param gson
+	 * @param region
+	 * @param bucketName
+	 * @param keyPrefix
+	 * @param partSize
+	 * @param partitionsPerChunk
+	 * @param compactBaseTable   the table to compact the partitions against, or
+	 *                           null to write full partitions
+	 */
+	public ChunkedPartitionWriter(S3Util s3Util, GlueUtil glueUtil, Gson gson, String region, String bucketName,
+			String keyPrefix, int partSize, int partitionsPerChunk, Table compactBaseTable) {
+		this(s3Util, glueUtil, gson, region, bucketName, keyPrefix, partSize, partitionsPerChunk, compactBaseTable, 1);
+	}
+
+	/**
+	 * @param s3Util
+	 * @param glueUtil
+	 * @param gson
+	 * @param region
+	 * @param bucketName
+	 * @param keyPrefix
+	 * @param partSize
+	 * @param partitionsPerChunk
+	 * @param compactBaseTable   the table to compact the partitions against, or
+	 *                           null to write full partitions
+	 * @param numberOfLanes      the number of segments written concurrently
+	 */
+	public ChunkedPartitionWriter(S3Util s3Util, GlueUtil glueUtil, Gson gson, String region, String bucketName,
+			String keyPrefix, int partSize, int partitionsPerChunk, Table compactBaseTable, int numberOfLanes) {
+		this.s3Util = s3Util;
+		this.glueUtil = glueUtil;
+		this.gson = gson;
+		this.region = region;
+		this.bucketName = bucketName;
+		this.keyPrefix = keyPrefix;
+		this.partSize = partSize;
+		this.partitionsPerChunk = Math.max(1, partitionsPerChunk);
+		this.compactBaseTable = compactBaseTable;
+		this.lanes = new Lane[Math.max(1, numberOfLanes)];
+		for (int i = 0; i < lanes.length; i++)
+			lanes[i] = new Lane();
+		manifest.setCompactPartitions(Optional.ofNullable(compactBaseTable).isPresent());
+	}
+
+	/**
+	 * Write a page of partitions to the first lane
+	 *
+	 * @param partitionList
+	 * @throws IOException
+	 */
+	public void write(List<Partition> partitionList) throws IOException {
+		write(0, partitionList);
+	}
+
+	/**
+	 * Write a page of partitions of a segment, starting new chunks as the chunk of
+	 * the segment fills up
+	 *
+	 * @param segmentNumber
+	 * @param partitionList
+	 * @throws IOException
+	 */
+	public void write(int segmentNumber, List<Partition> partitionList) throws IOException {
+		Lane lane = lanes[segmentNumber];
+		synchronized (lane) {
+			for (Partition partition : partitionList) {
+				if (!Optional.ofNullable(lane.jsonWriter).isPresent() || lane.partitionsInChunk == partitionsPerChunk) {
+					closeChunk(lane);
+					openChunk(lane);
+				}
+				if (Optional.ofNullable(compactBaseTable).isPresent())
+					gson.toJson(glueUtil.compactPartition(compactBaseTable, partition), CompactPartition.class,
+							lane.jsonWriter);
+				else
+					gson.toJson(partition, Partition.class, lane.jsonWriter);
+				lane.writer.write(System.lineSeparator());
+				lane.partitionsInChunk++;
+			}
+		}
+	}
+
+	/**
+	 * Complete the upload of the last chunk of every lane and write the manifest.
+	 * Call it once all the writes have returned.
+	 *
+	 * @return the manifest
+	 * @throws IOException
+	 */
+	public LargeTableManifest close() throws IOException {
+		for (Lane lane : lanes) {
+			synchronized (lane) {
+				closeChunk(lane);
+			}
+		}
+		if (manifest.getChunks().isEmpty()) {
+			synchronized (lanes[0]) {
+				openChunk(lanes[0]);
+				closeChunk(lanes[0]);
+			}
+		}
+		if (!s3Util.createS3Object(region, bucketName, getManifestKey(), gson.toJson(manifest)))
+			throw new IOException("Manifest could not be written to S3. Object key: " + getManifestKey());
+		System.out.printf("Manifest written to S3. Object key: %s, chunks: %d, partitions: %d \n", getManifestKey(),
+				manifest.getChunks().size(), manifest.getNumberOfPartitions());
+		return manifest;
+	}
+
+	/**
+	 * Abort the upload of the chunks being written. Chunks already uploaded are
+	 * left in place; without a manifest, they are never imported.
+	 */
+	public void abort() {
+		for (Lane lane : lanes) {
+			synchronized (lane) {
+				if (Optional.ofNullable(lane.outputStream).isPresent())
+					lane.outputStream.abort();
+			}
+		}
+	}
+
+	public String getManifestKey() {
+		return keyPrefix + "/" + MANIFEST_NAME;
+	}
+
+	public LargeTableManifest getManifest() {
+		return manifest;
+	}
+
+	private void openChunk(Lane lane) throws IOException {
+		synchronized (manifest) {
+			String chunkKey = String.format("%s/chunk-%05d.txt", keyPrefix, manifest.getChunks().size());
+			lane.chunk = new LargeTableManifest.Chunk(chunkKey, 0);
+			manifest.getChunks().add(lane.chunk);
+		}
+		lane.outputStream = s3Util.createMultipartOutputStream(region, bucketName, lane.chunk.getS3ObjectKey(),
+				partSize);
+		lane.writer = new BufferedWriter(new OutputStreamWriter(lane.outputStream, StandardCharsets.UTF_8));
+		lane.jsonWriter = gson.newJsonWriter(lane.writer);
+		lane.partitionsInChunk = 0;
+	}
+
+	private void closeChunk(Lane lane) throws IOException {
+		if (!Optional.ofNullable(lane.jsonWriter).isPresent())
+			return;
+		// JsonWriter.close() rejects an empty document, so close the underlying writer
+		lane.writer.close();
+		synchronized (manifest) {
+			lane.chunk.setNumberOfPartitions(lane.partitionsInChunk);
+			manifest.setNumberOfPartitions(manifest.getNumberOfPartitions() + lane.partitionsInChunk);
+		}
+		System.out.printf("Chunk of %d partitions written to S3. Object key: %s \n", lane.partitionsInChunk,
+				lane.chunk.getS3ObjectKey());
+		lane.jsonWriter = null;
+		lane.writer = null;
+		lane.outputStream = null;
+		lane.chunk = null;
+	}
+}
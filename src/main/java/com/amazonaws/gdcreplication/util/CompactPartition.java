@@ -0,0 +1,110 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.amazonaws.services.glue.model.StorageDescriptor;
+
+/**
+ * This is a POJO class for a partition whose StorageDescriptor is stored as a
+ * delta against the StorageDescriptor of its table. The fields of the
+ * StorageDescriptor that are equal to the table's are left out of
+ * storageDescriptorDelta and listed in inheritedFields instead. If the columns
+ * differ, the columns that are equal to the table's column at the same position
+ * are null in storageDescriptorDelta. Usually only the location and the
+ * parameters differ, so a compact partition is a small fraction of the size of
+ * a Partition. The parameters of the partition itself are kept as they are.
+ *
+ * See GlueUtil.compactPartition and GlueUtil.expandPartition.
+ *
+ */
+public class CompactPartition {
+
+	/**
+	 * The fields of a StorageDescriptor that a partition can inherit from its
+	 * table
+	 */
+	public enum InheritableField {
+		COLUMNS(StorageDescriptor::getColumns, (sd, base) -> sd.setColumns(base.getColumns())),
+		LOCATION(StorageDescriptor::getLocation, (sd, base) -> sd.setLocation(base.getLocation())),
+		INPUT_FORMAT(StorageDescriptor::getInputFormat, (sd, base) -> sd.setInputFormat(base.getInputFormat())),
+		OUTPUT_FORMAT(StorageDescriptor::getOutputFormat, (sd, base) -> sd.setOutputFormat(base.getOutputFormat())),
+		COMPRESSED(StorageDescriptor::getCompressed, (sd, base) -> sd.setCompressed(base.getCompressed())),
+		NUMBER_OF_BUCKETS(StorageDescriptor::getNumberOfBuckets,
+				(sd, base) -> sd.setNumberOfBuckets(base.getNumberOfBuckets())),
+		SERDE_INFO(StorageDescriptor::getSerdeInfo, (sd, base) -> sd.setSerdeInfo(base.getSerdeInfo())),
+		BUCKET_COLUMNS(StorageDescriptor::getBucketColumns,
+				(sd, base) -> sd.setBucketColumns(base.getBucketColumns())),
+		SORT_COLUMNS(StorageDescriptor::getSortColumns, (sd, base) -> sd.setSortColumns(base.getSortColumns())),
+		PARAMETERS(StorageDescriptor::getParameters, (sd, base) -> sd.setParameters(base.getParameters())),
+		SKEWED_INFO(StorageDescriptor::getSkewedInfo, (sd, base) -> sd.setSkewedInfo(base.getSkewedInfo())),
+		STORED_AS_SUB_DIRECTORIES(StorageDescriptor::getStoredAsSubDirectories,
+				(sd, base) -> sd.setStoredAsSubDirectories(base.getStoredAsSubDirectories()));
+
+		private final Function<StorageDescriptor, Object> getter;
+		private final BiConsumer<StorageDescriptor, StorageDescriptor> copier;
+
+		InheritableField(Function<StorageDescriptor, Object> getter,
+				BiConsumer<StorageDescriptor, StorageDescriptor> copier) {
+			this.getter = getter;
+			this.copier = copier;
+		}
+
+		public Object get(StorageDescriptor storageDescriptor) {
+			return getter.apply(storageDescriptor);
+		}
+
+		/**
+		 * Copy the field from 'base' to 'storageDescriptor'. The value is shared, not
+		 * cloned.
+		 *
+		 * @param storageDescriptor
+		 * @param base
+		 */
+		public void copy(StorageDescriptor storageDescriptor, StorageDescriptor base) {
+			copier.accept(storageDescriptor, base);
+		}
+	}
+
+	private List<String> values;
+	private Map<String, String> parameters;
+	private StorageDescriptor storageDescriptorDelta;
+	private List<InheritableField> inheritedFields;
+
+	public List<String> getValues() {
+		return values;
+	}
+
+	public void setValues(List<String> values) {
+		this.values = values;
+	}
+
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	public void setParameters(Map<String, String> parameters) {
+		this.parameters = parameters;
+	}
+
+	public StorageDescriptor getStorageDescriptorDelta() {
+		return storageDescriptorDelta;
+	}
+
+	public void setStorageDescriptorDelta(StorageDescriptor storageDescriptorDelta) {
+		this.storageDescriptorDelta = storageDescriptorDelta;
+	}
+
+	public List<InheritableField> getInheritedFields() {
+		return inheritedFields;
+	}
+
+	public void setInheritedFields(List<InheritableField> inheritedFields) {
+		this.inheritedFields = inheritedFields;
+	}
+}
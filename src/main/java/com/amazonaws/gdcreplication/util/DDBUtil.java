@@ -3,23 +3,37 @@
 
 package com.amazonaws.gdcreplication.util;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
-import com.amazonaws.ClientConfiguration;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
-import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
 import com.amazonaws.services.dynamodbv2.document.DynamoDB;
 import com.amazonaws.services.dynamodbv2.document.Item;
 import com.amazonaws.services.dynamodbv2.document.PutItemOutcome;
 import com.amazonaws.services.dynamodbv2.document.Table;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
 import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
 import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
 import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 
 /**
  * <p>
@@ -33,7 +47,10 @@ import com.google.common.collect.Lists;
 public class DDBUtil {
 
 	/**
-	 * Method to track the status of Tables imported 
+	 * Method to track the status of Tables imported. The table schema can be as
+	 * large as the SNS message it came from once decoded, more than the item size
+	 * limit of DynamoDB, so it is stored gzip encoded, with the name of the codec
+	 * in payload_codec like the export audit items.
 	 * @param tableStatus
 	 * @param sourceGlueCatalogId
 	 * @param targetGlueCatalogId
@@ -45,24 +62,39 @@ public class DDBUtil {
 			String targetGlueCatalogId, long importRunId, String exportBatchId, String ddbTblName) {
 		boolean itemInserted = false;
 		
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
-		AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard().withClientConfiguration(cc).build();
-		DynamoDB dynamoDB = new DynamoDB(client);
+		DynamoDB dynamoDB = new DynamoDB(AWSClientRegistry.getDynamoDB(null));
 		
+		PayloadCodec codec = new GzipPayloadCodec();
+		String tableSchema = "";
+		try {
+			tableSchema = codec.encode(Optional.ofNullable(tableStatus.getTableSchema()).orElse(""));
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Exception thrown while encoding table schema. " + e.getLocalizedMessage());
+		}
+
 		Table table = dynamoDB.getTable(ddbTblName);
 		Item item = new Item().withPrimaryKey("table_id", tableStatus.getTableName().concat("|").concat(tableStatus.getDbName()))
 				.withNumber("import_run_id", importRunId)
 				.withString("export_batch_id", exportBatchId)
 				.withString("table_name", tableStatus.getTableName())
 				.withString("database_name", tableStatus.getDbName())
-				.withString("table_schema", tableStatus.getTableSchema())
+				.withString("table_schema", tableSchema)
+				.withString("payload_codec", codec.getName())
 				.withString("target_glue_catalog_id", targetGlueCatalogId)
 				.withString("source_glue_catalog_id", sourceGlueCatalogId)
 				.withBoolean("table_created", tableStatus.isCreated())
 				.withBoolean("table_updated", tableStatus.isUpdated())
+				.withBoolean("table_unchanged", tableStatus.isUnchanged())
 				.withBoolean("export_has_partitions", tableStatus.isExportHasPartitions())
-				.withBoolean("partitions_updated", tableStatus.isPartitionsReplicated());
+				.withBoolean("partitions_updated", tableStatus.isPartitionsReplicated())
+				.withNumber("num_partitions_added", tableStatus.getNumberOfPartitionsAdded())
+				.withNumber("num_partitions_deleted", tableStatus.getNumberOfPartitionsDeleted())
+				.withNumber("num_partitions_updated", tableStatus.getNumberOfPartitionsUpdated())
+				.withNumber("num_partitions_failed", tableStatus.getNumberOfPartitionsFailed())
+				.withNumber("num_partition_retries", tableStatus.getNumberOfPartitionRetries());
+		if (!tableStatus.getPartitionErrorCodes().isEmpty())
+			item.withMap("partition_error_codes", new HashMap<String, Object>(tableStatus.getPartitionErrorCodes()));
 		// Write the item to the table
 		try {
 			PutItemOutcome outcome = table.putItem(item);
@@ -76,7 +108,6 @@ public class DDBUtil {
 			e.printStackTrace();
 			System.out.println("Could not insert a Table import status to DynamoDB table: " + ddbTblName);
 		}
-		dynamoDB.shutdown();
 		return itemInserted;
 	}
     
@@ -94,10 +125,7 @@ public class DDBUtil {
 			long importRunId, String exportBatchId, boolean isCreated) {
 		boolean itemInserted = false;
 		
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
-		AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard().withClientConfiguration(cc).build();
-		DynamoDB dynamoDB = new DynamoDB(client);
+		DynamoDB dynamoDB = new DynamoDB(AWSClientRegistry.getDynamoDB(null));
 		
 		com.amazonaws.services.dynamodbv2.document.Table table = dynamoDB.getTable(ddbTblName);
 		Item item = new Item().withPrimaryKey("db_id", databaseName).withNumber("import_run_id", importRunId)
@@ -116,7 +144,6 @@ public class DDBUtil {
 			e.printStackTrace();
 			System.out.println("Could not insert a Database import status to DynamoDB table: " + ddbTblName);
 		}
-		dynamoDB.shutdown();
 		return itemInserted;
 	}
 	
@@ -140,10 +167,7 @@ public class DDBUtil {
 		if (Optional.of(glueDBName).isPresent() && Optional.of(glueTableName).isPresent()
 				&& Optional.of(glueTableSchema).isPresent() && Optional.of(snsMsgId).isPresent()) {
 			
-			ClientConfiguration cc = new ClientConfiguration();
-			cc.setMaxErrorRetry(10);
-			AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard().withClientConfiguration(cc).build();
-			DynamoDB dynamoDB = new DynamoDB(client);
+			DynamoDB dynamoDB = new DynamoDB(AWSClientRegistry.getDynamoDB(null));
 			
 			com.amazonaws.services.dynamodbv2.document.Table table = dynamoDB.getTable(ddbTblName);
 			
@@ -168,7 +192,6 @@ public class DDBUtil {
 				e.printStackTrace();
 				System.out.println("Could not insert a Table export status to DynamoDB table: " + ddbTblName);
 			}
-			dynamoDB.shutdown();
 		} else {
 			System.out.println("Not all the values present to insert Table item to ");
 		}
@@ -190,10 +213,7 @@ public class DDBUtil {
 			String glueCatalogId, long exportRunId, String exportBatchId, boolean isExported) {
 		boolean itemInserted = false;
 		
-		ClientConfiguration cc = new ClientConfiguration();
-		cc.setMaxErrorRetry(10);
-		AmazonDynamoDB client = AmazonDynamoDBClientBuilder.standard().withClientConfiguration(cc).build();
-		DynamoDB dynamoDB = new DynamoDB(client);
+		DynamoDB dynamoDB = new DynamoDB(AWSClientRegistry.getDynamoDB(null));
 		
 		com.amazonaws.services.dynamodbv2.document.Table table = dynamoDB.getTable(ddbTblName);
 		Item item = new Item().withPrimaryKey("db_id", glueDBName)
@@ -215,7 +235,6 @@ public class DDBUtil {
 			e.printStackTrace();
 			System.out.println("Could not insert a Database export status to DynamoDB table: " + ddbTblName);
 		}
-		dynamoDB.shutdown();
 		return itemInserted;
 	}
 	
@@ -227,7 +246,7 @@ public class DDBUtil {
 	public void insertIntoDynamoDB(List<WriteRequest> itemList, String dynamoDBTblName) {
 		
 		System.out.printf("Inserting %d items to DynamoDB using Batch API call. \n", itemList.size());
-		AmazonDynamoDB dynamoDB = AmazonDynamoDBClientBuilder.standard().build();
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
 		for (List<WriteRequest> miniBatch : Lists.partition(itemList, 25)) { 
 			Map<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
 			requestItems.put(dynamoDBTblName, miniBatch);
@@ -240,7 +259,345 @@ public class DDBUtil {
 				 result = dynamoDB.batchWriteItem(unprocessedItems);
 			}
 		}
-		dynamoDB.shutdown();
 	}
-		
-}
\ No newline at end of file
+
+	/**
+	 * This method leases tokens from a token bucket stored as an item in a DynamoDB
+	 * table. The bucket is refilled at 'refillRate' tokens per second up to
+	 * 'capacity' tokens. The item is updated with a condition on the values that
+	 * were read, so concurrent callers never hand out the same tokens twice. When
+	 * the condition fails the bucket is read again, up to 'maxAttempts' times.
+	 *
+	 * The item has the attributes bucket_id (partition key), tokens and
+	 * last_refill_ms. It is created, full, on the first lease.
+	 *
+	 * @param dynamoDB
+	 * @param ddbTblName
+	 * @param bucketId
+	 * @param tokensRequested
+	 * @param refillRate
+	 * @param capacity
+	 * @param maxAttempts
+	 * @return the number of tokens leased, between 0 and tokensRequested
+	 */
+	public int leaseTokens(AmazonDynamoDB dynamoDB, String ddbTblName, String bucketId, int tokensRequested,
+			double refillRate, double capacity, int maxAttempts) {
+		Map<String, AttributeValue> key = Collections.singletonMap("bucket_id", new AttributeValue(bucketId));
+		for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+			long now = System.currentTimeMillis();
+			Map<String, AttributeValue> item = dynamoDB
+					.getItem(new GetItemRequest().withTableName(ddbTblName).withKey(key).withConsistentRead(true))
+					.getItem();
+			try {
+				if (!Optional.ofNullable(item).isPresent()) {
+					int tokensLeased = (int) Math.min(tokensRequested, Math.floor(capacity));
+					Map<String, AttributeValue> newItem = new HashMap<String, AttributeValue>(key);
+					newItem.put("tokens", new AttributeValue().withN(Double.toString(capacity - tokensLeased)));
+					newItem.put("last_refill_ms", new AttributeValue().withN(Long.toString(now)));
+					dynamoDB.putItem(new PutItemRequest().withTableName(ddbTblName).withItem(newItem)
+							.withConditionExpression("attribute_not_exists(bucket_id)"));
+					return tokensLeased;
+				}
+				String tokens = item.get("tokens").getN();
+				String lastRefill = item.get("last_refill_ms").getN();
+				long elapsedMillis = Math.max(0, now - Long.parseLong(lastRefill));
+				double availableTokens = Math.min(capacity,
+						Double.parseDouble(tokens) + elapsedMillis * refillRate / 1000);
+				int tokensLeased = (int) Math.min(tokensRequested, Math.floor(availableTokens));
+				if (tokensLeased == 0)
+					return 0;
+
+				Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+				values.put(":new_tokens", new AttributeValue().withN(Double.toString(availableTokens - tokensLeased)));
+				values.put(":now", new AttributeValue().withN(Long.toString(Math.max(now, Long.parseLong(lastRefill)))));
+				values.put(":old_tokens", new AttributeValue().withN(tokens));
+				values.put(":old_refill", new AttributeValue().withN(lastRefill));
+				dynamoDB.updateItem(new UpdateItemRequest().withTableName(ddbTblName).withKey(key)
+						.withUpdateExpression("SET tokens = :new_tokens, last_refill_ms = :now")
+						.withConditionExpression("tokens = :old_tokens AND last_refill_ms = :old_refill")
+						.withExpressionAttributeValues(values));
+				return tokensLeased;
+			} catch (ConditionalCheckFailedException e) {
+				System.out.printf("Token bucket '%s' was updated concurrently. Attempt %d of %d. \n", bucketId, attempt,
+						maxAttempts);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * This method records that a chunk of a chunked large-table export was
+	 * imported. The chunk indexes are kept in a number set, so recording the same
+	 * chunk twice, e.g. when a message is redelivered, has no effect.
+	 * 
+	 * @param ddbTblName
+	 * @param manifestId
+	 * @param chunkIndex
+	 * @param numberOfChunks
+	 * @return the number of distinct chunks imported so far
+	 */
+	public int trackChunkImported(String ddbTblName, String manifestId, int chunkIndex, int numberOfChunks) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":chunk", new AttributeValue().withNS(Integer.toString(chunkIndex)));
+		values.put(":number_of_chunks", new AttributeValue().withN(Integer.toString(numberOfChunks)));
+		values.put(":now", new AttributeValue().withN(Long.toString(System.currentTimeMillis())));
+		UpdateItemResult result = dynamoDB.updateItem(new UpdateItemRequest().withTableName(ddbTblName)
+				.withKey(Collections.singletonMap("manifest_id", new AttributeValue(manifestId)))
+				.withUpdateExpression(
+						"ADD completed_chunks :chunk SET number_of_chunks = :number_of_chunks, last_update_ms = :now")
+				.withExpressionAttributeValues(values).withReturnValues(ReturnValue.ALL_NEW));
+		int numberOfChunksImported = result.getAttributes().get("completed_chunks").getNS().size();
+		System.out.printf("Manifest '%s': %d of %d chunks imported. \n", manifestId, numberOfChunksImported,
+				numberOfChunks);
+		return numberOfChunksImported;
+	}
+
+	/**
+	 * This method claims the finalization of a chunked large-table import, i.e.
+	 * the deletion of the partitions that are not in the export. Only one import
+	 * Lambda gets the claim, and only once every chunk is imported. The claim
+	 * expires after leaseMillis so that a redelivered message can take it over
+	 * if the Lambda holding it failed.
+	 * 
+	 * @param ddbTblName
+	 * @param manifestId
+	 * @param numberOfChunks
+	 * @param leaseMillis
+	 * @return true if the claim was granted
+	 */
+	public boolean claimChunkedImportFinalization(String ddbTblName, String manifestId, int numberOfChunks,
+			long leaseMillis) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		long now = System.currentTimeMillis();
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":number_of_chunks", new AttributeValue().withN(Integer.toString(numberOfChunks)));
+		values.put(":now", new AttributeValue().withN(Long.toString(now)));
+		values.put(":lease_expiry", new AttributeValue().withN(Long.toString(now + leaseMillis)));
+		try {
+			dynamoDB.updateItem(new UpdateItemRequest().withTableName(ddbTblName)
+					.withKey(Collections.singletonMap("manifest_id", new AttributeValue(manifestId)))
+					.withUpdateExpression("SET finalization_lease_expiry_ms = :lease_expiry")
+					.withConditionExpression("size(completed_chunks) = :number_of_chunks AND attribute_not_exists(finalized_ms) "
+							+ "AND (attribute_not_exists(finalization_lease_expiry_ms) OR finalization_lease_expiry_ms < :now)")
+					.withExpressionAttributeValues(values));
+			return true;
+		} catch (ConditionalCheckFailedException e) {
+			System.out.printf("Finalization of manifest '%s' is not due or is claimed by another import. \n", manifestId);
+			return false;
+		}
+	}
+
+	/**
+	 * This method ends a claim on the finalization of a chunked large-table
+	 * import. If the finalization succeeded, it is marked as done; otherwise the
+	 * claim is released so that it can be retried.
+	 * 
+	 * @param ddbTblName
+	 * @param manifestId
+	 * @param finalized
+	 */
+	public void completeChunkedImportFinalization(String ddbTblName, String manifestId, boolean finalized) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		UpdateItemRequest updateItemRequest = new UpdateItemRequest().withTableName(ddbTblName)
+				.withKey(Collections.singletonMap("manifest_id", new AttributeValue(manifestId)));
+		if (finalized)
+			updateItemRequest.withUpdateExpression("SET finalized_ms = :now").withExpressionAttributeValues(
+					Collections.singletonMap(":now", new AttributeValue().withN(Long.toString(System.currentTimeMillis()))));
+		else
+			updateItemRequest.withUpdateExpression("REMOVE finalization_lease_expiry_ms");
+		dynamoDB.updateItem(updateItemRequest);
+	}
+
+	/**
+	 * This method reads the checkpoint of the import of a large table
+	 * 
+	 * @param ddbTblName
+	 * @param importId
+	 * @return the checkpoint, or null if the import has none yet
+	 */
+	public ImportCheckpoint getImportCheckpoint(String ddbTblName, String importId) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		Map<String, AttributeValue> item = dynamoDB.getItem(new GetItemRequest().withTableName(ddbTblName)
+				.withKey(Collections.singletonMap("import_id", new AttributeValue(importId))).withConsistentRead(true))
+				.getItem();
+		if (!Optional.ofNullable(item).isPresent() || item.isEmpty())
+			return null;
+		ImportCheckpoint checkpoint = new ImportCheckpoint(importId,
+				ImportCheckpoint.Phase.valueOf(item.get("phase").getS()),
+				Long.parseLong(item.get("records_committed").getN()));
+		if (item.containsKey("delete_list_id")) {
+			checkpoint.setDeleteListId(item.get("delete_list_id").getS());
+			checkpoint.setNumberOfDeleteBatches(Integer.parseInt(item.get("number_of_delete_batches").getN()));
+			checkpoint.setNumberOfRecords(Long.parseLong(item.get("number_of_records").getN()));
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * This method saves the list of partitions to delete in phase DELETE of the
+	 * import of a large table, and moves the checkpoint to phase DELETE with no
+	 * batch committed. Each batch is an item of the checkpoint table, keyed by
+	 * the import id, a new delete list id and the batch index, so that a retry
+	 * deletes the remaining batches without reading the export and the target
+	 * partitions again.
+	 * 
+	 * If another import of the same export saved its list first, the checkpoint
+	 * is not changed and the list saved here is never read.
+	 * 
+	 * @param ddbTblName
+	 * @param importId
+	 * @param deleteBatches   the values of the partitions to delete, in batches
+	 * @param numberOfRecords the number of partitions in the export
+	 * @return true if the list was saved and the checkpoint moved to phase DELETE
+	 */
+	public boolean saveImportDeleteList(String ddbTblName, String importId, List<List<List<String>>> deleteBatches,
+			long numberOfRecords) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		Gson gson = GsonRegistry.getGson();
+		String deleteListId = UUID.randomUUID().toString();
+		List<WriteRequest> itemList = new ArrayList<WriteRequest>();
+		for (int i = 0; i < deleteBatches.size(); i++) {
+			Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+			item.put("import_id", new AttributeValue(getImportDeleteBatchId(importId, deleteListId, i)));
+			item.put("partition_values", new AttributeValue(gson.toJson(deleteBatches.get(i))));
+			itemList.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
+		}
+		if (!itemList.isEmpty())
+			insertIntoDynamoDB(itemList, ddbTblName);
+
+		ImportCheckpoint.Phase phase = ImportCheckpoint.Phase.DELETE;
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":phase", new AttributeValue(phase.name()));
+		values.put(":phase_order", new AttributeValue().withN(Integer.toString(phase.ordinal())));
+		values.put(":records_committed", new AttributeValue().withN("0"));
+		values.put(":delete_list_id", new AttributeValue(deleteListId));
+		values.put(":number_of_delete_batches", new AttributeValue().withN(Integer.toString(deleteBatches.size())));
+		values.put(":number_of_records", new AttributeValue().withN(Long.toString(numberOfRecords)));
+		values.put(":now", new AttributeValue().withN(Long.toString(System.currentTimeMillis())));
+		try {
+			dynamoDB.updateItem(new UpdateItemRequest().withTableName(ddbTblName)
+					.withKey(Collections.singletonMap("import_id", new AttributeValue(importId)))
+					.withUpdateExpression("SET phase = :phase, phase_order = :phase_order, "
+							+ "records_committed = :records_committed, delete_list_id = :delete_list_id, "
+							+ "number_of_delete_batches = :number_of_delete_batches, "
+							+ "number_of_records = :number_of_records, last_update_ms = :now")
+					.withConditionExpression("attribute_not_exists(delete_list_id) "
+							+ "AND (attribute_not_exists(import_id) OR phase_order <= :phase_order)")
+					.withExpressionAttributeValues(values));
+			return true;
+		} catch (ConditionalCheckFailedException e) {
+			System.out.printf("Delete list of import '%s' was already saved by another import. \n", importId);
+			return false;
+		}
+	}
+
+	/**
+	 * This method reads a batch of the partitions to delete saved by
+	 * saveImportDeleteList
+	 * 
+	 * @param ddbTblName
+	 * @param checkpoint
+	 * @param batchIndex
+	 * @return the values of the partitions of the batch
+	 */
+	public List<List<String>> getImportDeleteBatch(String ddbTblName, ImportCheckpoint checkpoint, int batchIndex) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		String batchId = getImportDeleteBatchId(checkpoint.getImportId(), checkpoint.getDeleteListId(), batchIndex);
+		Map<String, AttributeValue> item = dynamoDB.getItem(new GetItemRequest().withTableName(ddbTblName)
+				.withKey(Collections.singletonMap("import_id", new AttributeValue(batchId))).withConsistentRead(true))
+				.getItem();
+		if (!Optional.ofNullable(item).isPresent() || item.isEmpty())
+			throw new IllegalStateException("Batch of partitions to delete not found: " + batchId);
+		return GsonRegistry.getGson().fromJson(item.get("partition_values").getS(),
+				new TypeToken<List<List<String>>>() {
+				}.getType());
+	}
+
+	private static String getImportDeleteBatchId(String importId, String deleteListId, int batchIndex) {
+		return importId + "|delete|" + deleteListId + "|" + batchIndex;
+	}
+
+	/**
+	 * This method saves the checkpoint of the import of a large table. A
+	 * checkpoint never moves back: it is only written if it is in a later phase,
+	 * or in the same phase with more records committed, than the saved one.
+	 * Failures are logged and ignored; the import then resumes from an earlier
+	 * checkpoint.
+	 * 
+	 * @param ddbTblName
+	 * @param importId
+	 * @param phase
+	 * @param recordsCommitted
+	 * @return true if the checkpoint was saved
+	 */
+	public boolean saveImportCheckpoint(String ddbTblName, String importId, ImportCheckpoint.Phase phase,
+			long recordsCommitted) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		Map<String, AttributeValue> values = new HashMap<String, AttributeValue>();
+		values.put(":phase", new AttributeValue(phase.name()));
+		values.put(":phase_order", new AttributeValue().withN(Integer.toString(phase.ordinal())));
+		values.put(":records_committed", new AttributeValue().withN(Long.toString(recordsCommitted)));
+		values.put(":now", new AttributeValue().withN(Long.toString(System.currentTimeMillis())));
+		try {
+			dynamoDB.updateItem(new UpdateItemRequest().withTableName(ddbTblName)
+					.withKey(Collections.singletonMap("import_id", new AttributeValue(importId)))
+					.withUpdateExpression("SET phase = :phase, phase_order = :phase_order, "
+							+ "records_committed = :records_committed, last_update_ms = :now")
+					.withConditionExpression("attribute_not_exists(import_id) OR phase_order < :phase_order "
+							+ "OR (phase_order = :phase_order AND records_committed < :records_committed)")
+					.withExpressionAttributeValues(values));
+			return true;
+		} catch (ConditionalCheckFailedException e) {
+			return false;
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.printf("Checkpoint of import '%s' could not be saved: phase = %s, records committed = %d \n",
+					importId, phase, recordsCommitted);
+			return false;
+		}
+	}
+
+	/**
+	 * This method reads all the fingerprints from the DynamoDB table used by the
+	 * incremental replication planner
+	 * 
+	 * @param ddbTblName
+	 * @return a map of entity_id to fingerprint
+	 */
+	public Map<String, String> getFingerprints(String ddbTblName) {
+		AmazonDynamoDB dynamoDB = AWSClientRegistry.getDynamoDB(null);
+		Map<String, String> fingerprints = new HashMap<String, String>();
+		ScanRequest scanRequest = new ScanRequest().withTableName(ddbTblName)
+				.withProjectionExpression("entity_id, fingerprint");
+		do {
+			ScanResult scanResult = dynamoDB.scan(scanRequest);
+			for (Map<String, AttributeValue> item : scanResult.getItems())
+				fingerprints.put(item.get("entity_id").getS(), item.get("fingerprint").getS());
+			scanRequest.setExclusiveStartKey(scanResult.getLastEvaluatedKey());
+		} while (Optional.ofNullable(scanRequest.getExclusiveStartKey()).isPresent());
+		System.out.printf("Number of fingerprints read from DynamoDB table %s: %d \n", ddbTblName, fingerprints.size());
+		return fingerprints;
+	}
+
+	/**
+	 * This method saves fingerprints to the DynamoDB table used by the incremental
+	 * replication planner
+	 * 
+	 * @param ddbTblName
+	 * @param fingerprints a map of entity_id to fingerprint
+	 * @param exportRunId
+	 */
+	public void trackFingerprints(String ddbTblName, Map<String, String> fingerprints, long exportRunId) {
+		List<WriteRequest> itemList = new ArrayList<WriteRequest>();
+		for (Map.Entry<String, String> fingerprint : fingerprints.entrySet()) {
+			Map<String, AttributeValue> item = new HashMap<String, AttributeValue>();
+			item.put("entity_id", new AttributeValue().withS(fingerprint.getKey()));
+			item.put("fingerprint", new AttributeValue().withS(fingerprint.getValue()));
+			item.put("export_run_id", new AttributeValue().withN(Long.toString(exportRunId)));
+			itemList.add(new WriteRequest().withPutRequest(new PutRequest().withItem(item)));
+		}
+		insertIntoDynamoDB(itemList, ddbTblName);
+	}
+
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+
+/**
+ * This is a token bucket shared by all the Lambda containers that call Glue in
+ * one account. The bucket itself is an item in a DynamoDB table, see
+ * DDBUtil.leaseTokens. To keep the number of DynamoDB calls low, tokens are
+ * leased in chunks of 'leaseSize' and handed out locally until the chunk is
+ * used up.
+ *
+ * The fleet as a whole never uses more than 'tokensPerSecond' tokens per
+ * second, plus a burst of one second worth of tokens.
+ *
+ */
+public class DistributedTokenBucket {
+
+	public static final int MAX_LEASE_ATTEMPTS = 5;
+
+	private final AmazonDynamoDB dynamoDB;
+	private final DDBUtil ddbUtil;
+	private final String ddbTblName;
+	private final String bucketId;
+	private final double tokensPerSecond;
+	private final int leaseSize;
+	private final AtomicLong numberOfLeases = new AtomicLong();
+	private final AtomicLong numberOfEmptyLeases = new AtomicLong();
+	private int localTokens;
+
+	public DistributedTokenBucket(AmazonDynamoDB dynamoDB, DDBUtil ddbUtil, String ddbTblName, String bucketId,
+			double tokensPerSecond, int leaseSize) {
+		this.dynamoDB = dynamoDB;
+		this.ddbUtil = ddbUtil;
+		this.ddbTblName = ddbTblName;
+		this.bucketId = bucketId;
+		this.tokensPerSecond = tokensPerSecond;
+		this.leaseSize = Math.max(1, leaseSize);
+	}
+
+	/**
+	 * Take one token. If no token is left locally, lease a new chunk from DynamoDB.
+	 * If the shared bucket is empty too, wait for roughly the time the bucket needs
+	 * to refill one chunk and try again.
+	 */
+	public synchronized void acquire() {
+		while (localTokens == 0) {
+			localTokens = ddbUtil.leaseTokens(dynamoDB, ddbTblName, bucketId, leaseSize, tokensPerSecond,
+					Math.max(tokensPerSecond, leaseSize), MAX_LEASE_ATTEMPTS);
+			numberOfLeases.incrementAndGet();
+			if (localTokens == 0) {
+				numberOfEmptyLeases.incrementAndGet();
+				long waitMillis = (long) (leaseSize * 1000 / tokensPerSecond);
+				try {
+					TimeUnit.MILLISECONDS.sleep(waitMillis + ThreadLocalRandom.current().nextLong(waitMillis + 1));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException("Interrupted while waiting for tokens of bucket " + bucketId, e);
+				}
+			}
+		}
+		localTokens--;
+	}
+
+	public String getBucketId() {
+		return bucketId;
+	}
+
+	public long getNumberOfLeases() {
+		return numberOfLeases.get();
+	}
+
+	public long getNumberOfEmptyLeases() {
+		return numberOfEmptyLeases.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: tokens per second = %.2f, lease size = %d, leases = %d, empty leases = %d",
+				bucketId, tokensPerSecond, leaseSize, getNumberOfLeases(), getNumberOfEmptyLeases());
+	}
+}
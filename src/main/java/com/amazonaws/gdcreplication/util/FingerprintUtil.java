@@ -0,0 +1,136 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import com.amazonaws.services.glue.model.Database;
+import com.amazonaws.services.glue.model.Table;
+import com.amazonaws.services.glue.model.TableInput;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * This is a utility class to compute fingerprints of Glue Databases and Tables.
+ * A fingerprint is a SHA-256 hash of the canonical JSON of an object, i.e. JSON
+ * with the keys of every object sorted, so that two equal objects always have
+ * the same fingerprint regardless of the order of their maps.
+ *
+ */
+public class FingerprintUtil {
+
+	private final Gson gson = GsonRegistry.getGson();
+
+	/**
+	 * @param databaseName
+	 * @return the id of the fingerprint of a Database
+	 */
+	public String getDatabaseEntityId(String databaseName) {
+		return "database|" + databaseName;
+	}
+
+	/**
+	 * @param databaseName
+	 * @param tableName
+	 * @return the id of the fingerprint of a Table
+	 */
+	public String getTableEntityId(String databaseName, String tableName) {
+		return "table|" + databaseName + "|" + tableName;
+	}
+
+	/**
+	 * Check if the fingerprint of a Table covers all that is replicated of it. It
+	 * does not for a table with partition keys: partitions are added and changed
+	 * without the table definition changing, and reading them to fingerprint the
+	 * table would cost about as much as exporting them.
+	 *
+	 * @param table
+	 * @return
+	 */
+	public boolean isFingerprintComplete(Table table) {
+		return !Optional.ofNullable(table.getPartitionKeys()).isPresent() || table.getPartitionKeys().isEmpty();
+	}
+
+	/**
+	 * Compute the fingerprint of a Database. CreateTime is ignored.
+	 *
+	 * @param database
+	 * @return
+	 */
+	public String getDatabaseFingerprint(Database database) {
+		return canonicalHash(database.clone().withCreateTime(null));
+	}
+
+	/**
+	 * Compute the fingerprint of a Table from its UpdateTime and the TableInput
+	 * that would be used to replicate it. LastAccessTime is ignored, it changes
+	 * without the table definition changing.
+	 *
+	 * @param glueUtil
+	 * @param table
+	 * @return
+	 */
+	public String getTableFingerprint(GlueUtil glueUtil, Table table) {
+		long updateTime = Optional.ofNullable(table.getUpdateTime()).map(time -> time.getTime()).orElse(0L);
+		return getTableDefinitionHash(glueUtil, table) + "|" + updateTime;
+	}
+
+	/**
+	 * Compute the hash of the definition of a Table, i.e. of the TableInput that
+	 * would be used to replicate it. Server-managed fields such as CatalogId,
+	 * CreateTime and UpdateTime are not part of a TableInput; LastAccessTime is
+	 * ignored as well. A source table and a target table with the same definition
+	 * hash need no update.
+	 *
+	 * @param glueUtil
+	 * @param table
+	 * @return
+	 */
+	public String getTableDefinitionHash(GlueUtil glueUtil, Table table) {
+		return canonicalHash(glueUtil.createTableInput(table).withLastAccessTime(null));
+	}
+
+	/**
+	 * Compute the SHA-256 hash, in hex, of the canonical JSON of an object
+	 *
+	 * @param object
+	 * @return
+	 */
+	public String canonicalHash(Object object) {
+		return Hashing.sha256().hashString(toCanonicalJson(object), StandardCharsets.UTF_8).toString();
+	}
+
+	/**
+	 * Convert an object to JSON with the keys of every JSON object sorted
+	 *
+	 * @param object
+	 * @return
+	 */
+	public String toCanonicalJson(Object object) {
+		return gson.toJson(canonicalize(gson.toJsonTree(object)));
+	}
+
+	private JsonElement canonicalize(JsonElement element) {
+		if (element.isJsonObject()) {
+			Map<String, JsonElement> sortedMembers = new TreeMap<String, JsonElement>();
+			for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet())
+				sortedMembers.put(member.getKey(), canonicalize(member.getValue()));
+			JsonObject sortedObject = new JsonObject();
+			sortedMembers.forEach(sortedObject::add);
+			return sortedObject;
+		} else if (element.isJsonArray()) {
+			JsonArray array = new JsonArray();
+			for (JsonElement item : element.getAsJsonArray())
+				array.add(canonicalize(item));
+			return array;
+		}
+		return element;
+	}
+}
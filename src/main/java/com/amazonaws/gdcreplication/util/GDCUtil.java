@@ -3,17 +3,30 @@
 
 package com.amazonaws.gdcreplication.util;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import com.amazonaws.services.glue.AWSGlue;
 import com.amazonaws.services.glue.model.Database;
 import com.amazonaws.services.glue.model.Partition;
 import com.amazonaws.services.glue.model.Table;
 import com.amazonaws.services.sqs.AmazonSQS;
+import com.google.gson.Gson;
 
 public class GDCUtil {
 
+	/**
+	 * Maximum number of partitions, and of bytes of their values as JSON, in a
+	 * batch of the partitions to delete saved with an import checkpoint. A batch
+	 * is one DynamoDB item, which is limited to 400KB.
+	 */
+	private static final int DELETE_BATCH_SIZE = 1000;
+	private static final int DELETE_BATCH_MAX_BYTES = 300 * 1024;
+
 	/**
 	 * This method processes a Message that belongs to Table schema
 	 * @param glue
@@ -26,10 +39,39 @@ public class GDCUtil {
 	 * @param sqsQueueURL
 	 * @param exportBatchId
 	 * @param skipTableArchive
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
 	 */
 	public void processTableSchema(AWSGlue glue, AmazonSQS sqs, String targetGlueCatalogId, String sourceGlueCatalogId,
 			TableWithPartitions tableWithPartitions, String message, String ddbTblNameForTableStatusTracking,
-			String sqsQueueURL, String exportBatchId, boolean skipTableArchive) {
+			String sqsQueueURL, String exportBatchId, boolean skipTableArchive, int partitionReadSegments,
+			int partitionReadParallelism) {
+		processTableSchema(glue, sqs, targetGlueCatalogId, sourceGlueCatalogId, tableWithPartitions, message,
+				ddbTblNameForTableStatusTracking, sqsQueueURL, exportBatchId, skipTableArchive, partitionReadSegments,
+				partitionReadParallelism, null);
+	}
+
+	/**
+	 * This method processes a Message that belongs to Table schema, using a cache
+	 * of the target catalog
+	 * @param glue
+	 * @param sqs
+	 * @param targetGlueCatalogId
+	 * @param sourceGlueCatalogId
+	 * @param tableWithPartitions
+	 * @param message
+	 * @param ddbTblNameForTableStatusTracking
+	 * @param sqsQueueURL
+	 * @param exportBatchId
+	 * @param skipTableArchive
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param catalogCache the cache of the target catalog, or null
+	 */
+	public void processTableSchema(AWSGlue glue, AmazonSQS sqs, String targetGlueCatalogId, String sourceGlueCatalogId,
+			TableWithPartitions tableWithPartitions, String message, String ddbTblNameForTableStatusTracking,
+			String sqsQueueURL, String exportBatchId, boolean skipTableArchive, int partitionReadSegments,
+			int partitionReadParallelism, TargetCatalogCache catalogCache) {
 
 		DDBUtil ddbUtil = new DDBUtil();
 		SQSUtil sqsUtil = new SQSUtil();
@@ -38,76 +80,35 @@ public class GDCUtil {
 
 		// Get Table and its Partitions from Input JSON
 		Table table = tableWithPartitions.getTable();
-		List<Partition> partitionListFromExport = tableWithPartitions.getPartitionList();
+		List<Partition> partitionListFromExport = glueUtil.getPartitionList(tableWithPartitions);
 
 		// Create or update table
 		TableReplicationStatus tableStatus = glueUtil.createOrUpdateTable(glue, table, targetGlueCatalogId,
-				skipTableArchive);
+				skipTableArchive, catalogCache);
 		// If database not found then create one
 		if (tableStatus.isDbNotFoundError()) {
 			System.out.printf("Creating Database with name: '%s'. \n", table.getDatabaseName());
 			DBReplicationStatus dbStatus = glueUtil.createGlueDatabase(glue, targetGlueCatalogId,
 					table.getDatabaseName(),
 					"Database Imported from Glue Data Catalog of AWS Account Id: ".concat(sourceGlueCatalogId));
+			if (Optional.ofNullable(catalogCache).isPresent())
+				catalogCache.invalidateDatabase(table.getDatabaseName());
 			// Now, try to create / update table again.
 			if (dbStatus.isCreated()) {
 				tableStatus = glueUtil.createOrUpdateTable(glue, tableWithPartitions.getTable(), targetGlueCatalogId,
-						skipTableArchive);
+						skipTableArchive, catalogCache);
 			}
 		}
 		tableStatus.setTableSchema(message);
 
 		// Update table partitions
 		if (!tableStatus.isError()) {
-			// Get table partitions from Target Account
-			List<Partition> partitionsB4Replication = glueUtil.getPartitions(glue, targetGlueCatalogId,
-					table.getDatabaseName(), table.getName());
-			System.out.println("Number of partitions before replication: " + partitionsB4Replication.size());
-
-			// Add Partitions to the table if the export has Partitions
-			if (partitionListFromExport.size() > 0) {
-				tableStatus.setExportHasPartitions(true);
-				if (partitionsB4Replication.size() == 0) {
-					System.out.println("Adding partitions based on the export.");
-					boolean partitionsAdded = glueUtil.addPartitions(glue, partitionListFromExport, targetGlueCatalogId,
-							table.getDatabaseName(), table.getName());
-					if (partitionsAdded)
-						tableStatus.setPartitionsReplicated(true);
-				} else {
-					System.out.println(
-							"Table has partitions. They will be deleted first before adding partitions based on Export.");
-					// delete partitions in batch mode
-					boolean partitionsDeleted = glueUtil.deletePartitions(glue, targetGlueCatalogId,
-							table.getDatabaseName(), table.getName(), partitionsB4Replication);
-
-					// Enable the below code for debugging purpose. Check number of table partitions after deletion
-//					List<Partition> partitionsAfterDeletion = glueUtil.getPartitions(glue, targetGlueCatalogId,
-//							table.getDatabaseName(), table.getName());
-//					System.out.println("Number of partitions after deletion: " + partitionsAfterDeletion.size());
-
-					// add partitions from S3 object
-					boolean partitionsAdded = glueUtil.addPartitions(glue, partitionListFromExport, targetGlueCatalogId,
-							table.getDatabaseName(), table.getName());
-
-					if (partitionsDeleted && partitionsAdded)
-						tableStatus.setPartitionsReplicated(true);
-
-					// Enable the below code for debugging purpose. Check number of table partitions after addition
-//					List<Partition> partitionsAfterAddition = glueUtil.getPartitions(glue, targetGlueCatalogId,
-//							table.getDatabaseName(), table.getName());
-//					System.out.println("Number of partitions after addition: " + partitionsAfterAddition.size());
-				}
-			} else if (partitionListFromExport.size() == 0) {
-				tableStatus.setExportHasPartitions(false);
-				if (partitionsB4Replication.size() > 0) {
-					// Export has no partitions but table already has some partitions. Those
-					// partitions will be deleted in batch mode.
-					boolean partitionsDeleted = glueUtil.deletePartitions(glue, targetGlueCatalogId,
-							table.getDatabaseName(), table.getName(), partitionsB4Replication);
-					if (partitionsDeleted)
-						tableStatus.setPartitionsReplicated(true);
-				}
-			}
+			tableStatus.setExportHasPartitions(partitionListFromExport.size() > 0);
+			boolean partitionsSynced = syncPartitions(glue, glueUtil, targetGlueCatalogId, table.getDatabaseName(),
+					table.getName(), partitionListFromExport, tableStatus, partitionReadSegments,
+					partitionReadParallelism);
+			if (partitionsSynced)
+				tableStatus.setPartitionsReplicated(true);
 		}
 		// If there is any error in creating/updating table then send it to DLQ
 		else {
@@ -118,10 +119,10 @@ public class GDCUtil {
 		ddbUtil.trackTableImportStatus(tableStatus, sourceGlueCatalogId, targetGlueCatalogId, importRunId,
 				exportBatchId, ddbTblNameForTableStatusTracking);
 		System.out.printf(
-				"Processing of Table shcema completed. Result: Table replicated: %b, Export has partitions: %b, "
-						+ "Partitions replicated: %b, error: %b \n",
-				tableStatus.isReplicated(), tableStatus.isExportHasPartitions(), tableStatus.isPartitionsReplicated(),
-				tableStatus.isError());
+				"Processing of Table shcema completed. Result: Table replicated: %b, unchanged: %b, "
+						+ "Export has partitions: %b, Partitions replicated: %b, error: %b \n",
+				tableStatus.isReplicated(), tableStatus.isUnchanged(), tableStatus.isExportHasPartitions(),
+				tableStatus.isPartitionsReplicated(), tableStatus.isError());
 	}
 
 	/**
@@ -139,6 +140,27 @@ public class GDCUtil {
 	public void processDatabseSchema(AWSGlue glue, AmazonSQS sqs, String targetGlueCatalogId, Database db,
 			String message, String sqsQueueURL, String sourceGlueCatalogId, String exportBatchId,
 			String ddbTblNameForDBStatusTracking) {
+		processDatabseSchema(glue, sqs, targetGlueCatalogId, db, message, sqsQueueURL, sourceGlueCatalogId,
+				exportBatchId, ddbTblNameForDBStatusTracking, null);
+	}
+
+	/**
+	 * This method processes a Message that belongs to Database schema, using a
+	 * cache of the target catalog
+	 * @param glue
+	 * @param sqs
+	 * @param targetGlueCatalogId
+	 * @param db
+	 * @param message
+	 * @param sqsQueueURL
+	 * @param sourceGlueCatalogId
+	 * @param exportBatchId
+	 * @param ddbTblNameForDBStatusTracking
+	 * @param catalogCache the cache of the target catalog, or null
+	 */
+	public void processDatabseSchema(AWSGlue glue, AmazonSQS sqs, String targetGlueCatalogId, Database db,
+			String message, String sqsQueueURL, String sourceGlueCatalogId, String exportBatchId,
+			String ddbTblNameForDBStatusTracking, TargetCatalogCache catalogCache) {
 
 		DDBUtil ddbUtil = new DDBUtil();
 		GlueUtil glueUtil = new GlueUtil();
@@ -146,10 +168,12 @@ public class GDCUtil {
 
 		boolean isDBCreated = false;
 		long importRunId = System.currentTimeMillis();
-		Database database = glueUtil.getDatabaseIfExist(glue, targetGlueCatalogId, db);
+		Database database = glueUtil.getDatabaseIfExist(glue, targetGlueCatalogId, db, catalogCache);
 		boolean dbExist = Optional.ofNullable(database).isPresent();
 		if (!dbExist) {
 			DBReplicationStatus dbStatus = glueUtil.createGlueDatabase(glue, targetGlueCatalogId, db);
+			if (Optional.ofNullable(catalogCache).isPresent())
+				catalogCache.invalidateDatabase(db.getName());
 			if (dbStatus.isError()) {
 				System.out.println("Error in creating database in the Glue Data Catalog. It will be send to DLQ.");
 				sqsUtil.sendDatabaseSchemaToDeadLetterQueue(sqs, sqsQueueURL, message, db.getName(), exportBatchId,
@@ -166,4 +190,451 @@ public class GDCUtil {
 		System.out.printf("Processing of Database shcema completed. Result: DB already exist: %b, DB created: %b. \n",
 				dbExist, isDBCreated);
 	}
+
+	/**
+	 * This method brings the partitions of a target table in line with the
+	 * partitions of an export. Instead of deleting all partitions and adding them
+	 * again, it computes a diff and issues only the required create, update and
+	 * delete calls. New partitions are added before the removed ones are deleted,
+	 * so the table never goes through an empty state.
+	 * 
+	 * @param glue
+	 * @param glueUtil
+	 * @param targetGlueCatalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param partitionListFromExport
+	 * @param tableStatus
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @return
+	 */
+	public boolean syncPartitions(AWSGlue glue, GlueUtil glueUtil, String targetGlueCatalogId, String databaseName,
+			String tableName, List<Partition> partitionListFromExport, TableReplicationStatus tableStatus,
+			int partitionReadSegments, int partitionReadParallelism) {
+
+		boolean partitionsAdded = true;
+		boolean partitionsUpdated = true;
+		boolean partitionsDeleted = true;
+
+		// Get table partitions from Target Account
+		List<Partition> partitionsB4Replication = glueUtil.getPartitions(glue, targetGlueCatalogId, databaseName,
+				tableName, partitionReadSegments, partitionReadParallelism);
+		System.out.println("Number of partitions before replication: " + partitionsB4Replication.size());
+
+		PartitionDiff partitionDiff = glueUtil.computePartitionDiff(partitionListFromExport, partitionsB4Replication);
+		if (!partitionDiff.hasChanges()) {
+			System.out.println("Partitions of the target table are identical to the export. No action will be taken.");
+			return true;
+		}
+		if (partitionDiff.getPartitionsToAdd().size() > 0) {
+			PartitionBatchResult addResult = glueUtil.addPartitions(glue, partitionDiff.getPartitionsToAdd(),
+					targetGlueCatalogId, databaseName, tableName, new PartitionBatchResult());
+			tableStatus.addPartitionBatchResult(addResult);
+			partitionsAdded = addResult.isSuccessful();
+			tableStatus.setNumberOfPartitionsAdded(addResult.getNumberOfPartitionsSucceeded());
+		}
+		if (partitionDiff.getPartitionsToUpdate().size() > 0) {
+			int numberOfPartitionsUpdated = glueUtil.updatePartitionsAndGetCount(glue, targetGlueCatalogId,
+					databaseName, tableName, partitionDiff.getPartitionsToUpdate());
+			partitionsUpdated = numberOfPartitionsUpdated == partitionDiff.getPartitionsToUpdate().size();
+			tableStatus.setNumberOfPartitionsUpdated(numberOfPartitionsUpdated);
+		}
+		if (partitionDiff.getPartitionsToDelete().size() > 0) {
+			PartitionBatchResult deleteResult = glueUtil.deletePartitions(glue, targetGlueCatalogId, databaseName,
+					tableName, partitionDiff.getPartitionsToDelete(), new PartitionBatchResult());
+			tableStatus.addPartitionBatchResult(deleteResult);
+			partitionsDeleted = deleteResult.isSuccessful();
+			tableStatus.setNumberOfPartitionsDeleted(deleteResult.getNumberOfPartitionsSucceeded());
+		}
+		return partitionsAdded && partitionsUpdated && partitionsDeleted;
+	}
+
+	/**
+	 * This method brings the partitions of a target table in line with the
+	 * partitions exported to an S3 object. The object is read as a stream and
+	 * handed over in batches to a pool of workers while the rest of the object is
+	 * still being read. Each batch is compared with the target partitions of the
+	 * same values, read with BatchGetPartition, and its new and changed partitions
+	 * are added and updated. Once the whole object has been read, the target
+	 * partitions missing from the export are deleted.
+	 * 
+	 * Only the values of the exported partitions are kept in memory, never the
+	 * target partitions, so the heap is not proportional to the size of the
+	 * table definition.
+	 * 
+	 * @param glue
+	 * @param glueUtil
+	 * @param s3Util
+	 * @param region
+	 * @param bucketName
+	 * @param objectKey
+	 * @param targetGlueCatalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param compactBaseTable the table the partitions are compacted against, or null
+	 * @param tableStatus
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param partitionImportParallelism
+	 * @return
+	 */
+	public boolean syncPartitionsFromS3(AWSGlue glue, GlueUtil glueUtil, S3Util s3Util, String region,
+			String bucketName, String objectKey, String targetGlueCatalogId, String databaseName, String tableName,
+			Table compactBaseTable, TableReplicationStatus tableStatus, int partitionReadSegments, int partitionReadParallelism,
+			int partitionImportParallelism) {
+
+		boolean partitionsDeleted = true;
+
+		// Stream the export and add or update each batch while reading
+		Set<List<String>> exportedPartitionValues = new HashSet<List<String>>();
+		PartitionImportPipeline pipeline = new PartitionImportPipeline(glue, glueUtil, targetGlueCatalogId,
+				databaseName, tableName, partitionImportParallelism);
+		boolean objectRead = s3Util.readPartitionsFromS3(region, bucketName, objectKey, compactBaseTable, p -> {
+			exportedPartitionValues.add(p.getValues());
+			pipeline.add(p);
+		});
+		boolean partitionsAddedAndUpdated = pipeline.close();
+		tableStatus.setNumberOfPartitionsAdded(pipeline.getBatchResult().getNumberOfPartitionsSucceeded());
+		tableStatus.setNumberOfPartitionsUpdated(pipeline.getNumberOfPartitionsUpdated());
+		tableStatus.addPartitionBatchResult(pipeline.getBatchResult());
+		tableStatus.setExportHasPartitions(exportedPartitionValues.size() > 0);
+		System.out.println("Number of partitions read from S3: " + exportedPartitionValues.size());
+
+		// Partitions cannot be deleted based on an export that was not read completely
+		if (!objectRead) {
+			System.out.println("Export could not be read completely. Partitions will not be deleted.");
+			return false;
+		}
+
+		// Only the values of the target partitions to delete are kept
+		List<Partition> partitionsToDelete = new ArrayList<Partition>();
+		glueUtil.getPartitions(glue, targetGlueCatalogId, databaseName, tableName, partitionReadSegments,
+				partitionReadParallelism, partitionList -> {
+					synchronized (partitionsToDelete) {
+						for (Partition p : partitionList) {
+							if (!exportedPartitionValues.contains(p.getValues()))
+								partitionsToDelete.add(new Partition().withValues(p.getValues()));
+						}
+					}
+				});
+		if (partitionsToDelete.size() > 0) {
+			PartitionBatchResult deleteResult = glueUtil.deletePartitionsConcurrently(glue, targetGlueCatalogId,
+					databaseName, tableName, partitionsToDelete, partitionImportParallelism);
+			tableStatus.addPartitionBatchResult(deleteResult);
+			partitionsDeleted = deleteResult.isSuccessful();
+			tableStatus.setNumberOfPartitionsDeleted(deleteResult.getNumberOfPartitionsSucceeded());
+		}
+		System.out.printf("Partition sync completed: added = %d, updated = %d, deleted = %d \n",
+				tableStatus.getNumberOfPartitionsAdded(), tableStatus.getNumberOfPartitionsUpdated(),
+				tableStatus.getNumberOfPartitionsDeleted());
+		return partitionsAddedAndUpdated && partitionsDeleted;
+	}
+
+	/**
+	 * This method synchronizes the partitions of a table with a large-table
+	 * export in S3, like syncPartitionsFromS3, and checkpoints its progress in
+	 * DynamoDB so that a retry only does the work that remains:
+	 * <ul>
+	 * <li>ADD: the export is read in batches; each batch is compared with the
+	 * target partitions of the same values and its new and changed partitions are
+	 * added and updated. A retry skips the records already committed. Skipped
+	 * records are not parsed or imported, but they are still downloaded: the
+	 * object is read from its start, as the checkpoint counts records, not
+	 * bytes.</li>
+	 * <li>DELETE: the export is read once more and the target partitions not in
+	 * it are listed. They are saved in batches with the checkpoint, see
+	 * DDBUtil.saveImportDeleteList, and deleted batch by batch. A retry deletes
+	 * the batches left, without reading the export or the target partitions
+	 * again.</li>
+	 * <li>DONE: a redelivered message has nothing left to do.</li>
+	 * </ul>
+	 * The import is identified by the bucket and object key of the export, which
+	 * are unique per export.
+	 * 
+	 * @param glue
+	 * @param glueUtil
+	 * @param s3Util
+	 * @param ddbUtil
+	 * @param region
+	 * @param bucketName
+	 * @param objectKey
+	 * @param targetGlueCatalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param compactBaseTable
+	 * @param tableStatus
+	 * @param ddbTblNameForCheckpoints
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param partitionImportParallelism
+	 * @return true if the import is complete
+	 */
+	public boolean syncPartitionsFromS3WithCheckpoints(AWSGlue glue, GlueUtil glueUtil, S3Util s3Util,
+			DDBUtil ddbUtil, String region, String bucketName, String objectKey, String targetGlueCatalogId,
+			String databaseName, String tableName, Table compactBaseTable, TableReplicationStatus tableStatus,
+			String ddbTblNameForCheckpoints, int partitionReadSegments, int partitionReadParallelism,
+			int partitionImportParallelism) {
+
+		String importId = bucketName + "/" + objectKey;
+		ImportCheckpoint checkpoint = Optional.ofNullable(ddbUtil.getImportCheckpoint(ddbTblNameForCheckpoints, importId))
+				.orElse(new ImportCheckpoint(importId, ImportCheckpoint.Phase.ADD, 0));
+		System.out.printf("Import checkpoint of '%s': phase = %s, records committed = %d \n", importId,
+				checkpoint.getPhase(), checkpoint.getRecordsCommitted());
+
+		if (checkpoint.getPhase() == ImportCheckpoint.Phase.DONE) {
+			System.out.println("Partitions of this export were already imported. Nothing left to do.");
+			tableStatus.setExportHasPartitions(checkpoint.getRecordsCommitted() > 0);
+			return true;
+		}
+
+		if (checkpoint.getPhase() == ImportCheckpoint.Phase.ADD) {
+			CheckpointedPartitionImport partitionImport = new CheckpointedPartitionImport(glue, glueUtil, ddbUtil,
+					targetGlueCatalogId, databaseName, tableName, ddbTblNameForCheckpoints, importId,
+					checkpoint.getRecordsCommitted(), partitionImportParallelism);
+			boolean objectRead = s3Util.readPartitionsFromS3(region, bucketName, objectKey, compactBaseTable,
+					checkpoint.getRecordsCommitted(), partitionImport::add);
+			boolean partitionsAdded = partitionImport.close();
+			tableStatus.setNumberOfPartitionsAdded(partitionImport.getNumberOfPartitionsAdded());
+			tableStatus.addPartitionBatchResult(partitionImport.getBatchResult());
+			tableStatus.setNumberOfPartitionsUpdated(partitionImport.getNumberOfPartitionsUpdated());
+			if (!objectRead || !partitionsAdded) {
+				System.out.println("Partitions could not all be added or updated. A retry resumes from the checkpoint.");
+				return false;
+			}
+		}
+
+		// Phase DELETE. The partitions to delete are listed once and saved with the checkpoint.
+		if (!Optional.ofNullable(checkpoint.getDeleteListId()).isPresent()) {
+			Set<List<String>> exportedPartitionValues = new HashSet<List<String>>();
+			if (!s3Util.readPartitionsFromS3(region, bucketName, objectKey, compactBaseTable,
+					p -> exportedPartitionValues.add(p.getValues()))) {
+				System.out.println("Export could not be read completely. Partitions will not be deleted.");
+				return false;
+			}
+			List<List<String>> partitionValuesToDelete = new ArrayList<List<String>>();
+			glueUtil.getPartitions(glue, targetGlueCatalogId, databaseName, tableName, partitionReadSegments,
+					partitionReadParallelism, partitionList -> {
+						synchronized (partitionValuesToDelete) {
+							for (Partition p : partitionList) {
+								if (!exportedPartitionValues.contains(p.getValues()))
+									partitionValuesToDelete.add(p.getValues());
+							}
+						}
+					});
+			System.out.printf("Number of partitions to delete: %d \n", partitionValuesToDelete.size());
+			ddbUtil.saveImportDeleteList(ddbTblNameForCheckpoints, importId,
+					partitionDeleteBatches(partitionValuesToDelete), exportedPartitionValues.size());
+			checkpoint = ddbUtil.getImportCheckpoint(ddbTblNameForCheckpoints, importId);
+			if (checkpoint.getPhase() == ImportCheckpoint.Phase.DONE) {
+				System.out.println("Partitions of this export were imported by another import.");
+				tableStatus.setExportHasPartitions(checkpoint.getRecordsCommitted() > 0);
+				return true;
+			}
+		}
+		tableStatus.setExportHasPartitions(checkpoint.getNumberOfRecords() > 0);
+		int numberOfPartitionsDeleted = 0;
+		for (int i = (int) checkpoint.getRecordsCommitted(); i < checkpoint.getNumberOfDeleteBatches(); i++) {
+			List<Partition> partitionsToDelete = new ArrayList<Partition>();
+			for (List<String> values : ddbUtil.getImportDeleteBatch(ddbTblNameForCheckpoints, checkpoint, i))
+				partitionsToDelete.add(new Partition().withValues(values));
+			PartitionBatchResult deleteResult = glueUtil.deletePartitionsConcurrently(glue, targetGlueCatalogId,
+					databaseName, tableName, partitionsToDelete, partitionImportParallelism);
+			tableStatus.addPartitionBatchResult(deleteResult);
+			numberOfPartitionsDeleted += deleteResult.getNumberOfPartitionsSucceeded();
+			tableStatus.setNumberOfPartitionsDeleted(numberOfPartitionsDeleted);
+			if (!deleteResult.isSuccessful()) {
+				System.out.println("Partitions could not all be deleted. A retry resumes from the checkpoint.");
+				return false;
+			}
+			ddbUtil.saveImportCheckpoint(ddbTblNameForCheckpoints, importId, ImportCheckpoint.Phase.DELETE, i + 1);
+		}
+		ddbUtil.saveImportCheckpoint(ddbTblNameForCheckpoints, importId, ImportCheckpoint.Phase.DONE,
+				checkpoint.getNumberOfRecords());
+		System.out.printf("Partition sync completed: added = %d, updated = %d, deleted = %d \n",
+				tableStatus.getNumberOfPartitionsAdded(), tableStatus.getNumberOfPartitionsUpdated(),
+				tableStatus.getNumberOfPartitionsDeleted());
+		return true;
+	}
+
+	/**
+	 * This method splits the values of the partitions to delete into batches of
+	 * at most DELETE_BATCH_SIZE partitions and DELETE_BATCH_MAX_BYTES bytes of
+	 * JSON
+	 * 
+	 * @param partitionValuesToDelete
+	 * @return
+	 */
+	private List<List<List<String>>> partitionDeleteBatches(List<List<String>> partitionValuesToDelete) {
+		Gson gson = GsonRegistry.getGson();
+		List<List<List<String>>> deleteBatches = new ArrayList<List<List<String>>>();
+		List<List<String>> deleteBatch = new ArrayList<List<String>>();
+		int batchBytes = 0;
+		for (List<String> values : partitionValuesToDelete) {
+			int valuesBytes = gson.toJson(values).getBytes(StandardCharsets.UTF_8).length + 1;
+			if (deleteBatch.size() == DELETE_BATCH_SIZE
+					|| (!deleteBatch.isEmpty() && batchBytes + valuesBytes > DELETE_BATCH_MAX_BYTES)) {
+				deleteBatches.add(deleteBatch);
+				deleteBatch = new ArrayList<List<String>>();
+				batchBytes = 0;
+			}
+			deleteBatch.add(values);
+			batchBytes += valuesBytes;
+		}
+		if (!deleteBatch.isEmpty())
+			deleteBatches.add(deleteBatch);
+		return deleteBatches;
+	}
+
+	/**
+	 * This method imports one chunk of a chunked large-table export. The chunk is
+	 * read from S3 and compared with the target partitions that have the same
+	 * values, read with BatchGetPartition: new partitions are added and changed
+	 * partitions are updated. Chunks are independent of each other, so they can
+	 * be imported by many Lambda functions in parallel.
+	 * 
+	 * Partitions that are no longer in the export can only be found once every
+	 * chunk is imported. The chunks imported are tracked in DynamoDB and the
+	 * import that completes the last chunk deletes them, see
+	 * finalizeChunkedImport. If ddbTblNameForChunkTracking is empty, partitions
+	 * are never deleted.
+	 * 
+	 * @param glue
+	 * @param glueUtil
+	 * @param s3Util
+	 * @param ddbUtil
+	 * @param region
+	 * @param largeTable
+	 * @param targetGlueCatalogId
+	 * @param tableStatus
+	 * @param ddbTblNameForChunkTracking
+	 * @param finalizationLeaseMillis
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param partitionImportParallelism
+	 * @return true if the chunk, and the finalization if it was due, succeeded
+	 */
+	public boolean syncPartitionChunk(AWSGlue glue, GlueUtil glueUtil, S3Util s3Util, DDBUtil ddbUtil, String region,
+			LargeTable largeTable, String targetGlueCatalogId, TableReplicationStatus tableStatus,
+			String ddbTblNameForChunkTracking, long finalizationLeaseMillis, int partitionReadSegments,
+			int partitionReadParallelism, int partitionImportParallelism) {
+
+		String databaseName = largeTable.getTable().getDatabaseName();
+		String tableName = largeTable.getTable().getName();
+		Table compactBaseTable = largeTable.isCompactPartitions() ? largeTable.getTable() : null;
+		System.out.printf("Importing chunk %d of %d of table '%s' of database '%s'. Object key: %s \n",
+				largeTable.getChunkIndex() + 1, largeTable.getNumberOfChunks(), tableName, databaseName,
+				largeTable.getS3ObjectKey());
+
+		// Read the chunk and the matching target partitions
+		List<Partition> chunkPartitions = new ArrayList<Partition>();
+		if (!s3Util.readPartitionsFromS3(region, largeTable.getS3BucketName(), largeTable.getS3ObjectKey(),
+				compactBaseTable, chunkPartitions::add))
+			return false;
+		List<List<String>> chunkPartitionValues = new ArrayList<List<String>>();
+		for (Partition p : chunkPartitions)
+			chunkPartitionValues.add(p.getValues());
+		List<Partition> targetPartitions = glueUtil.getPartitionsByValues(glue, targetGlueCatalogId, databaseName,
+				tableName, chunkPartitionValues);
+		tableStatus.setExportHasPartitions(chunkPartitions.size() > 0);
+
+		// Add and update. The target partitions all have values of the chunk, so nothing is to be deleted.
+		PartitionDiff partitionDiff = glueUtil.computePartitionDiff(chunkPartitions, targetPartitions);
+		boolean partitionsAdded = true;
+		boolean partitionsUpdated = true;
+		if (partitionDiff.getPartitionsToAdd().size() > 0) {
+			PartitionBatchResult addResult = glueUtil.addPartitionsConcurrently(glue,
+					partitionDiff.getPartitionsToAdd(), targetGlueCatalogId, databaseName, tableName,
+					partitionImportParallelism);
+			tableStatus.addPartitionBatchResult(addResult);
+			partitionsAdded = addResult.isSuccessful();
+			tableStatus.setNumberOfPartitionsAdded(addResult.getNumberOfPartitionsSucceeded());
+		}
+		if (partitionDiff.getPartitionsToUpdate().size() > 0) {
+			int numberOfPartitionsUpdated = glueUtil.updatePartitionsAndGetCount(glue, targetGlueCatalogId,
+					databaseName, tableName, partitionDiff.getPartitionsToUpdate());
+			partitionsUpdated = numberOfPartitionsUpdated == partitionDiff.getPartitionsToUpdate().size();
+			tableStatus.setNumberOfPartitionsUpdated(numberOfPartitionsUpdated);
+		}
+		if (!partitionsAdded || !partitionsUpdated)
+			return false;
+
+		// Track the chunk and finalize the import once all chunks are in
+		if (ddbTblNameForChunkTracking.isEmpty()) {
+			System.out.println("No DynamoDB table for chunk tracking. Partitions not in the export will not be deleted.");
+			return true;
+		}
+		String manifestId = largeTable.getS3BucketName() + "/" + largeTable.getManifestKey();
+		int numberOfChunksImported = ddbUtil.trackChunkImported(ddbTblNameForChunkTracking, manifestId,
+				largeTable.getChunkIndex(), largeTable.getNumberOfChunks());
+		if (numberOfChunksImported < largeTable.getNumberOfChunks() || !ddbUtil
+				.claimChunkedImportFinalization(ddbTblNameForChunkTracking, manifestId, largeTable.getNumberOfChunks(),
+						finalizationLeaseMillis))
+			return true;
+		boolean finalized = false;
+		try {
+			finalized = finalizeChunkedImport(glue, glueUtil, s3Util, region, largeTable, targetGlueCatalogId,
+					tableStatus, partitionReadSegments, partitionReadParallelism, partitionImportParallelism);
+		} finally {
+			ddbUtil.completeChunkedImportFinalization(ddbTblNameForChunkTracking, manifestId, finalized);
+		}
+		return finalized;
+	}
+
+	/**
+	 * This method deletes the target partitions that are in none of the chunks of
+	 * the manifest of a chunked large-table export. Only the values of the
+	 * exported partitions are kept in memory.
+	 * 
+	 * @param glue
+	 * @param glueUtil
+	 * @param s3Util
+	 * @param region
+	 * @param largeTable
+	 * @param targetGlueCatalogId
+	 * @param tableStatus
+	 * @param partitionReadSegments
+	 * @param partitionReadParallelism
+	 * @param partitionImportParallelism
+	 * @return
+	 */
+	public boolean finalizeChunkedImport(AWSGlue glue, GlueUtil glueUtil, S3Util s3Util, String region,
+			LargeTable largeTable, String targetGlueCatalogId, TableReplicationStatus tableStatus,
+			int partitionReadSegments, int partitionReadParallelism, int partitionImportParallelism) {
+
+		String databaseName = largeTable.getTable().getDatabaseName();
+		String tableName = largeTable.getTable().getName();
+		String manifestJSON = s3Util.readObjectAsString(region, largeTable.getS3BucketName(),
+				largeTable.getManifestKey());
+		if (!Optional.ofNullable(manifestJSON).isPresent())
+			return false;
+		LargeTableManifest manifest = GsonRegistry.getGson().fromJson(manifestJSON, LargeTableManifest.class);
+		Table compactBaseTable = manifest.isCompactPartitions() ? largeTable.getTable() : null;
+
+		Set<List<String>> exportedPartitionValues = new HashSet<List<String>>();
+		for (LargeTableManifest.Chunk chunk : manifest.getChunks()) {
+			if (!s3Util.readPartitionsFromS3(region, largeTable.getS3BucketName(), chunk.getS3ObjectKey(),
+					compactBaseTable, p -> exportedPartitionValues.add(p.getValues())))
+				return false;
+		}
+		List<Partition> partitionsToDelete = new ArrayList<Partition>();
+		glueUtil.getPartitions(glue, targetGlueCatalogId, databaseName, tableName, partitionReadSegments,
+				partitionReadParallelism, partitionList -> {
+					synchronized (partitionsToDelete) {
+						for (Partition p : partitionList) {
+							if (!exportedPartitionValues.contains(p.getValues()))
+								partitionsToDelete.add(p);
+						}
+					}
+				});
+		System.out.printf("Finalizing import of table '%s' of database '%s': partitions in export = %d, to delete = %d \n",
+				tableName, databaseName, exportedPartitionValues.size(), partitionsToDelete.size());
+		if (partitionsToDelete.isEmpty())
+			return true;
+		PartitionBatchResult deleteResult = glueUtil.deletePartitionsConcurrently(glue, targetGlueCatalogId,
+				databaseName, tableName, partitionsToDelete, partitionImportParallelism);
+		tableStatus.addPartitionBatchResult(deleteResult);
+		tableStatus.setNumberOfPartitionsDeleted(deleteResult.getNumberOfPartitionsSucceeded());
+		return deleteResult.isSuccessful();
+	}
 }
@@ -4,15 +4,39 @@
 package com.amazonaws.gdcreplication.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.glue.AWSGlue;
+import com.amazonaws.services.glue.model.AlreadyExistsException;
 import com.amazonaws.services.glue.model.BatchCreatePartitionRequest;
 import com.amazonaws.services.glue.model.BatchCreatePartitionResult;
 import com.amazonaws.services.glue.model.BatchDeletePartitionRequest;
 import com.amazonaws.services.glue.model.BatchDeletePartitionResult;
+import com.amazonaws.services.glue.model.BatchGetPartitionRequest;
+import com.amazonaws.services.glue.model.BatchGetPartitionResult;
+import com.amazonaws.services.glue.model.Column;
 import com.amazonaws.services.glue.model.CreateDatabaseRequest;
 import com.amazonaws.services.glue.model.CreateDatabaseResult;
 import com.amazonaws.services.glue.model.CreateTableRequest;
@@ -36,12 +60,18 @@ import com.amazonaws.services.glue.model.Partition;
 import com.amazonaws.services.glue.model.PartitionError;
 import com.amazonaws.services.glue.model.PartitionInput;
 import com.amazonaws.services.glue.model.PartitionValueList;
+import com.amazonaws.services.glue.model.Segment;
 import com.amazonaws.services.glue.model.StorageDescriptor;
 import com.amazonaws.services.glue.model.Table;
 import com.amazonaws.services.glue.model.TableInput;
+import com.amazonaws.services.glue.model.UpdatePartitionRequest;
+import com.amazonaws.services.glue.model.UpdatePartitionResult;
 import com.amazonaws.services.glue.model.UpdateTableRequest;
 import com.amazonaws.services.glue.model.UpdateTableResult;
+import com.google.common.base.Utf8;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
 
 /**
  * This is class has utility methods to work with AWS Glue Data Catalog
@@ -51,6 +81,52 @@ import com.google.common.collect.Lists;
  */
 public class GlueUtil {
 
+	/**
+	 * Maximum value of TotalSegments supported by GetPartitions API
+	 */
+	public static final int MAX_PARTITION_SEGMENTS = 10;
+	public static final int MAX_PARTITIONS_PER_PAGE = 1000;
+	public static final int MAX_BATCH_GET_ATTEMPTS = 5;
+	public static final int MAX_BATCH_WRITE_ATTEMPTS = 5;
+	public static final long BATCH_WRITE_BASE_DELAY_MILLIS = 100;
+	public static final long BATCH_WRITE_MAX_DELAY_MILLIS = 5000;
+	public static final int MAX_PARTITIONS_PER_CREATE_REQUEST = 100;
+	public static final int MAX_PARTITIONS_PER_DELETE_REQUEST = 25;
+	/**
+	 * Estimated payload budget of a BatchCreatePartition request. It leaves
+	 * headroom below the request size limit of Glue for the request envelope and
+	 * for estimation errors.
+	 */
+	public static final long MAX_CREATE_PARTITION_REQUEST_BYTES = 1024 * 1024;
+
+	private static final Gson GSON = GsonRegistry.getGson();
+	private static final FingerprintUtil FINGERPRINT_UTIL = new FingerprintUtil();
+
+	/**
+	 * Error codes of BatchCreatePartition and BatchDeletePartition entries that
+	 * are worth resending
+	 */
+	public static final Set<String> RETRYABLE_PARTITION_ERROR_CODES = Collections
+			.unmodifiableSet(new HashSet<String>(Arrays.asList("InternalServiceException", "OperationTimeoutException",
+					"ThrottlingException", "ConcurrentModificationException")));
+
+	/**
+	 * Idle time after which a thread of the pool of runConcurrently ends
+	 */
+	public static final long WORKER_KEEP_ALIVE_SECONDS = 10;
+
+	/**
+	 * The pool of runConcurrently. A GlueUtil is created per invocation of a
+	 * Lambda function, so the threads are reused by all the concurrent reads and
+	 * writes of one invocation. The pool has no fixed size, the parallelism of
+	 * each call is bounded by the number of workers it submits; idle threads end
+	 * after WORKER_KEEP_ALIVE_SECONDS and are daemon threads, so the pool needs no
+	 * shutdown.
+	 */
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+			WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+			new ThreadFactoryBuilder().setNameFormat("glue-util-%d").setDaemon(true).build());
+
 	/**
 	 * This method checks if a Database exist with the given name in the Glue Data
 	 * Catalog
@@ -74,6 +150,32 @@ public class GlueUtil {
 		return database;
 	}
 
+	/**
+	 * This method checks if a Database exist with the given name in the Glue Data
+	 * Catalog. The cache is asked first; what Glue returns is put in to the
+	 * cache.
+	 * 
+	 * @param glue
+	 * @param targetCatalogId
+	 * @param db
+	 * @param catalogCache    the cache of the target catalog, or null
+	 * @return
+	 */
+	public Database getDatabaseIfExist(AWSGlue glue, String targetCatalogId, Database db,
+			TargetCatalogCache catalogCache) {
+		if (!Optional.ofNullable(catalogCache).isPresent())
+			return getDatabaseIfExist(glue, targetCatalogId, db);
+		Optional<Database> cachedDatabase = catalogCache.getDatabase(db.getName());
+		if (Optional.ofNullable(cachedDatabase).isPresent()) {
+			System.out.printf("Database '%s' found in target catalog cache. Exists: %b \n", db.getName(),
+					cachedDatabase.isPresent());
+			return cachedDatabase.orElse(null);
+		}
+		Database database = getDatabaseIfExist(glue, targetCatalogId, db);
+		catalogCache.putDatabase(db.getName(), database);
+		return database;
+	}
+
 	/**
 	 * This method get all the databases from a given Glue Data Catalog
 	 * 
@@ -94,6 +196,7 @@ public class GlueUtil {
 				// create a new GetDatabasesRequest using next token.
 				getDatabasesRequest = new GetDatabasesRequest();
 				getDatabasesRequest.setNextToken(databaseResultNextToken);
+				getDatabasesRequest.setCatalogId(sourceGlueCatalogId);
 				getDatabasesResult = glue.getDatabases(getDatabasesRequest);
 				databaseList = getDatabasesResult.getDatabaseList();
 				masterDBList.addAll(databaseList);
@@ -157,6 +260,10 @@ public class GlueUtil {
 				dbStatus.setError(false);
 			} else
 				System.out.println("Database could not be created");
+		} catch (AlreadyExistsException e) {
+			System.out.printf("Database with name '%s' exist already. No action will be taken. \n", db.getName());
+			dbStatus.setDbName(db.getName());
+			dbStatus.setError(false);
 		} catch (Exception e) {
 			e.printStackTrace();
 			dbStatus.setDbName(db.getName());
@@ -253,7 +360,10 @@ public class GlueUtil {
 	}
 
 	/**
-	 * This method creates or updates a Table in Glue Data Catalog
+	 * This method creates or updates a Table in Glue Data Catalog. An existing
+	 * table is not updated if its definition is the same as the definition of the
+	 * source table, see FingerprintUtil.getTableDefinitionHash; the status is then
+	 * 'unchanged'.
 	 * 
 	 * @param glue
 	 * @param sourceTable
@@ -263,11 +373,43 @@ public class GlueUtil {
 	 */
 	public TableReplicationStatus createOrUpdateTable(AWSGlue glue, Table sourceTable, String targetGlueCatalogId,
 			boolean skipTableArchive) {
+		return createOrUpdateTable(glue, sourceTable, targetGlueCatalogId, skipTableArchive, null);
+	}
+
+	/**
+	 * This method creates or updates a Table in Glue Data Catalog, like
+	 * createOrUpdateTable above. If the cache has the definition hash of the target
+	 * table and it matches the source table, the table is unchanged without a
+	 * GetTable call. The cache entry of the table is refreshed by GetTable and
+	 * invalidated when the table is written or cannot be written.
+	 * 
+	 * @param glue
+	 * @param sourceTable
+	 * @param targetGlueCatalogId
+	 * @param skipTableArchive
+	 * @param catalogCache        the cache of the target catalog, or null
+	 * @return
+	 */
+	public TableReplicationStatus createOrUpdateTable(AWSGlue glue, Table sourceTable, String targetGlueCatalogId,
+			boolean skipTableArchive, TargetCatalogCache catalogCache) {
 
 		TableReplicationStatus tableStatus = new TableReplicationStatus();
 		tableStatus.setTableName(sourceTable.getName());
 		tableStatus.setDbName(sourceTable.getDatabaseName());
 		tableStatus.setReplicationTime(System.currentTimeMillis());
+		boolean cacheEnabled = Optional.ofNullable(catalogCache).isPresent();
+		String sourceDefinitionHash = FINGERPRINT_UTIL.getTableDefinitionHash(this, sourceTable);
+
+		// Check if the cached definition of the table is the same
+		if (cacheEnabled && sourceDefinitionHash.equals(
+				catalogCache.getTableDefinitionHash(sourceTable.getDatabaseName(), sourceTable.getName()))) {
+			System.out.printf("Table '%s' is unchanged according to the target catalog cache. It will not be updated. \n",
+					sourceTable.getName());
+			tableStatus.setUnchanged(true);
+			tableStatus.setReplicated(true);
+			tableStatus.setError(false);
+			return tableStatus;
+		}
 
 		// Check if a table exist already
 		GetTableRequest targetTableRequest = new GetTableRequest();
@@ -285,9 +427,24 @@ public class GlueUtil {
 			System.out.println("Exception in getting getTable");
 		}
 		TableInput tableInput = createTableInput(sourceTable);
+		String targetDefinitionHash = null;
+		if (Optional.ofNullable(targetTable).isPresent()) {
+			targetDefinitionHash = FINGERPRINT_UTIL.getTableDefinitionHash(this, targetTable);
+			if (cacheEnabled)
+				catalogCache.putTableDefinitionHash(sourceTable.getDatabaseName(), sourceTable.getName(),
+						targetDefinitionHash);
+		}
 
+		// If table exist and has the same definition - skip the update. It would only
+		// create a new table version.
+		if (sourceDefinitionHash.equals(targetDefinitionHash)) {
+			System.out.printf("Table '%s' exist and is unchanged. It will not be updated. \n", sourceTable.getName());
+			tableStatus.setUnchanged(true);
+			tableStatus.setReplicated(true);
+			tableStatus.setError(false);
+		}
 		// If table exist - update the table with the schema in the input message.
-		if (Optional.ofNullable(targetTable).isPresent()) {
+		else if (Optional.ofNullable(targetTable).isPresent()) {
 			System.out.println("Table exist. It will be updated");
 			UpdateTableRequest updateTableRequest = new UpdateTableRequest();
 			updateTableRequest.setTableInput(tableInput);
@@ -346,6 +503,10 @@ public class GlueUtil {
 				tableStatus.setError(true);
 			}
 		}
+		if (cacheEnabled && !tableStatus.isUnchanged())
+			catalogCache.invalidateTable(sourceTable.getDatabaseName(), sourceTable.getName());
+		if (cacheEnabled && tableStatus.isDbNotFoundError())
+			catalogCache.putDatabase(sourceTable.getDatabaseName(), null);
 		return tableStatus;
 	}
 
@@ -360,31 +521,225 @@ public class GlueUtil {
 	 */
 	public List<Partition> getPartitions(AWSGlue glue, String catalogId, String databaseName, String tableName) {
 		List<Partition> masterPartitionList = new ArrayList<Partition>();
-		GetPartitionsRequest getPartitionsRequest = new GetPartitionsRequest();
-		getPartitionsRequest.setDatabaseName(databaseName);
-		getPartitionsRequest.setCatalogId(catalogId);
-		getPartitionsRequest.setTableName(tableName);
-		GetPartitionsResult getPartitionResult = glue.getPartitions(getPartitionsRequest);
-		List<Partition> partitionList = getPartitionResult.getPartitions();
-		masterPartitionList.addAll(partitionList);
-		String partitionResultNextToken = getPartitionResult.getNextToken();
-		if (Optional.ofNullable(partitionResultNextToken).isPresent()) {
-			do {
-				// create a new GetPartitionsRequest using next token.
-				getPartitionsRequest = new GetPartitionsRequest();
-				getPartitionsRequest.setDatabaseName(databaseName);
-				getPartitionsRequest.setCatalogId(catalogId);
-				getPartitionsRequest.setTableName(tableName);
-				getPartitionsRequest.setNextToken(partitionResultNextToken);
-				getPartitionResult = glue.getPartitions(getPartitionsRequest);
-				partitionList = getPartitionResult.getPartitions();
-				masterPartitionList.addAll(partitionList);
-				partitionResultNextToken = getPartitionResult.getNextToken();
-			} while (Optional.ofNullable(partitionResultNextToken).isPresent());
-		}
+		getPartitionsOfSegment(glue, catalogId, databaseName, tableName, null,
+				partitionList -> masterPartitionList.addAll(partitionList));
 		return masterPartitionList;
 	}
 
+	/**
+	 * This method gets a list of partitions for a given table. When totalSegments
+	 * is more than 1, the partitions are read concurrently using GetPartitions
+	 * segments and merged in to one list. The order of the partitions in the
+	 * merged list is not guaranteed.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param totalSegments
+	 * @param parallelism
+	 * @return
+	 */
+	public List<Partition> getPartitions(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			int totalSegments, int parallelism) {
+		List<Partition> masterPartitionList = Collections.synchronizedList(new ArrayList<Partition>());
+		getPartitions(glue, catalogId, databaseName, tableName, totalSegments, parallelism,
+				partitionList -> masterPartitionList.addAll(partitionList));
+		return masterPartitionList;
+	}
+
+	/**
+	 * This method reads the partitions of a given table and hands over each page
+	 * to the consumer as soon as it is fetched. When totalSegments is more than 1,
+	 * the segments are read concurrently with at most 'parallelism' threads, see
+	 * runConcurrently, so the consumer must be thread-safe.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param totalSegments
+	 * @param parallelism
+	 * @param pageConsumer
+	 */
+	public void getPartitions(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			int totalSegments, int parallelism, Consumer<List<Partition>> pageConsumer) {
+		getPartitionsBySegment(glue, catalogId, databaseName, tableName, totalSegments, parallelism,
+				(segmentNumber, page) -> pageConsumer.accept(page));
+	}
+
+	/**
+	 * This method reads the partitions of a given table like getPartitions, and
+	 * hands over each page to the consumer together with the number of the
+	 * segment it belongs to, from 0 to getNumberOfSegments(totalSegments) - 1.
+	 * Pages of one segment are handed over in order by a single thread, so a
+	 * consumer that keeps separate state per segment needs no locking across
+	 * segments.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param totalSegments
+	 * @param parallelism
+	 * @param segmentPageConsumer
+	 */
+	public void getPartitionsBySegment(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			int totalSegments, int parallelism, BiConsumer<Integer, List<Partition>> segmentPageConsumer) {
+		int numberOfSegments = getNumberOfSegments(totalSegments);
+		if (numberOfSegments == 1) {
+			getPartitionsOfSegment(glue, catalogId, databaseName, tableName, null,
+					page -> segmentPageConsumer.accept(0, page));
+			return;
+		}
+		int numberOfThreads = Math.min(Math.max(parallelism, 1), numberOfSegments);
+		System.out.printf("Reading partitions of table '%s' of database '%s' using %d segments and %d threads. \n",
+				tableName, databaseName, numberOfSegments, numberOfThreads);
+		List<Runnable> taskList = new ArrayList<Runnable>();
+		for (int segmentNumber = 0; segmentNumber < numberOfSegments; segmentNumber++) {
+			Segment segment = new Segment().withSegmentNumber(segmentNumber).withTotalSegments(numberOfSegments);
+			taskList.add(() -> getPartitionsOfSegment(glue, catalogId, databaseName, tableName, segment,
+					page -> segmentPageConsumer.accept(segment.getSegmentNumber(), page)));
+		}
+		runConcurrently(taskList, numberOfThreads);
+	}
+
+	/**
+	 * @param totalSegments
+	 * @return the number of GetPartitions segments actually used for a requested
+	 *         number of segments, between 1 and MAX_PARTITION_SEGMENTS
+	 */
+	public int getNumberOfSegments(int totalSegments) {
+		return Math.min(Math.max(totalSegments, 1), MAX_PARTITION_SEGMENTS);
+	}
+
+	/**
+	 * This method runs the given tasks with at most 'parallelism' threads of the
+	 * pool of this GlueUtil and waits for all of them to complete. The tasks are
+	 * taken from a queue by 'parallelism' workers. The first exception thrown by a
+	 * task is re-thrown and the tasks not started yet are dropped.
+	 * 
+	 * @param taskList
+	 * @param parallelism
+	 */
+	private void runConcurrently(List<Runnable> taskList, int parallelism) {
+		if (taskList.isEmpty())
+			return;
+		Queue<Runnable> taskQueue = new ConcurrentLinkedQueue<Runnable>(taskList);
+		int numberOfWorkers = Math.min(Math.max(parallelism, 1), taskList.size());
+		List<Future<?>> futureList = new ArrayList<Future<?>>();
+		try {
+			for (int i = 0; i < numberOfWorkers; i++) {
+				futureList.add(executor.submit(() -> {
+					Runnable task;
+					while (!Thread.currentThread().isInterrupted() && (task = taskQueue.poll()) != null)
+						task.run();
+				}));
+			}
+			for (Future<?> future : futureList) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for Glue requests to complete", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			taskQueue.clear();
+			for (Future<?> future : futureList)
+				future.cancel(true);
+		}
+	}
+
+	/**
+	 * This method reads the partitions of a table page by page and hands over each
+	 * page to the consumer. It stops as soon as the consumer returns false.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param pageSize
+	 * @param pageConsumer
+	 * @return true if all the partitions were read
+	 */
+	public boolean getPartitionsWhile(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			int pageSize, Predicate<List<Partition>> pageConsumer) {
+		String partitionResultNextToken = null;
+		do {
+			GetPartitionsRequest getPartitionsRequest = new GetPartitionsRequest().withCatalogId(catalogId)
+					.withDatabaseName(databaseName).withTableName(tableName).withMaxResults(pageSize)
+					.withNextToken(partitionResultNextToken);
+			GetPartitionsResult getPartitionResult = glue.getPartitions(getPartitionsRequest);
+			if (!pageConsumer.test(getPartitionResult.getPartitions()))
+				return false;
+			partitionResultNextToken = getPartitionResult.getNextToken();
+		} while (Optional.ofNullable(partitionResultNextToken).isPresent());
+		return true;
+	}
+
+	/**
+	 * This method walks the NextToken pages of one GetPartitions segment. When
+	 * segment is null, all the partitions of the table are read.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param segment
+	 * @param pageConsumer
+	 */
+	private void getPartitionsOfSegment(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			Segment segment, Consumer<List<Partition>> pageConsumer) {
+		String partitionResultNextToken = null;
+		do {
+			GetPartitionsRequest getPartitionsRequest = new GetPartitionsRequest();
+			getPartitionsRequest.setDatabaseName(databaseName);
+			getPartitionsRequest.setCatalogId(catalogId);
+			getPartitionsRequest.setTableName(tableName);
+			getPartitionsRequest.setSegment(segment);
+			getPartitionsRequest.setNextToken(partitionResultNextToken);
+			GetPartitionsResult getPartitionResult = glue.getPartitions(getPartitionsRequest);
+			pageConsumer.accept(getPartitionResult.getPartitions());
+			partitionResultNextToken = getPartitionResult.getNextToken();
+		} while (Optional.ofNullable(partitionResultNextToken).isPresent());
+	}
+
+	/**
+	 * Get the partitions of a table with the given lists of values, with
+	 * BatchGetPartition. Partitions that do not exist are not returned.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param partitionValuesList
+	 * @return
+	 */
+	public List<Partition> getPartitionsByValues(AWSGlue glue, String catalogId, String databaseName,
+			String tableName, List<List<String>> partitionValuesList) {
+		List<Partition> partitionList = new ArrayList<Partition>();
+		for (List<List<String>> valuesBatch : Lists.partition(partitionValuesList, MAX_PARTITIONS_PER_PAGE)) {
+			List<PartitionValueList> partitionsToGet = new ArrayList<PartitionValueList>();
+			for (List<String> values : valuesBatch)
+				partitionsToGet.add(new PartitionValueList().withValues(values));
+			for (int attempt = 1; attempt <= MAX_BATCH_GET_ATTEMPTS && !partitionsToGet.isEmpty(); attempt++) {
+				BatchGetPartitionResult result = glue.batchGetPartition(new BatchGetPartitionRequest()
+						.withCatalogId(catalogId).withDatabaseName(databaseName).withTableName(tableName)
+						.withPartitionsToGet(partitionsToGet));
+				partitionList.addAll(result.getPartitions());
+				partitionsToGet = Optional.ofNullable(result.getUnprocessedKeys())
+						.orElse(new ArrayList<PartitionValueList>());
+			}
+			if (!partitionsToGet.isEmpty())
+				System.out.printf("%d partitions of table '%s' of database '%s' could not be read. \n",
+						partitionsToGet.size(), tableName, databaseName);
+		}
+		return partitionList;
+	}
+
 	/**
 	 * Add partitions in batch mode
 	 * @param glue
@@ -392,62 +747,44 @@ public class GlueUtil {
 	 * @param catalogId
 	 * @param databaseName
 	 * @param tableName
-	 * @return
+	 * @return true if all the partitions were added or already existed
 	 */
 	public boolean addPartitions(AWSGlue glue, List<Partition> partitionsToAdd, String catalogId, String databaseName,
 			String tableName) {
-		AtomicInteger numPartitionsAdded = new AtomicInteger();
-		boolean partitionsAdded = false;
-		BatchCreatePartitionRequest batchCreatePartitionRequest = new BatchCreatePartitionRequest();
-		batchCreatePartitionRequest.setCatalogId(catalogId);
-		batchCreatePartitionRequest.setDatabaseName(databaseName);
-		batchCreatePartitionRequest.setTableName(tableName);
+		return addPartitions(glue, partitionsToAdd, catalogId, databaseName, tableName, new PartitionBatchResult())
+				.isSuccessful();
+	}
 
+	/**
+	 * Add partitions in batch mode. The partitions are sliced in to batches of at
+	 * most 100 partitions and MAX_CREATE_PARTITION_REQUEST_BYTES, see
+	 * slicePartitionInputs. Partitions that fail with a retryable error are resent, see
+	 * sendPartitionBatch, and the outcome is merged in to batchResult.
+	 * 
+	 * @param glue
+	 * @param partitionsToAdd
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param batchResult
+	 * @return batchResult
+	 */
+	public PartitionBatchResult addPartitions(AWSGlue glue, List<Partition> partitionsToAdd, String catalogId,
+			String databaseName, String tableName, PartitionBatchResult batchResult) {
 		List<PartitionInput> partitionInputList = new ArrayList<PartitionInput>();
 		for (Partition p : partitionsToAdd) {
-			PartitionInput pi = new PartitionInput();
-			StorageDescriptor storageDescriptor = p.getStorageDescriptor();
-			pi.setStorageDescriptor(storageDescriptor);
-			pi.setValues(p.getValues());
-			partitionInputList.add(pi);
+			partitionInputList.add(createPartitionInput(p));
 		}
 		System.out.println("Partition Input List Size: " + partitionInputList.size());
-		if(partitionInputList.size() > 100)
-			System.out.println("The input has more than 100 partitions, it will be sliced into smaller lists with 100 partitions each.");
-		
-		List<List<PartitionInput>> listofSmallerLists = Lists.partition(partitionInputList, 100);
-		for(List<PartitionInput> partInputList : listofSmallerLists) {
-			batchCreatePartitionRequest.setPartitionInputList(partInputList);
-			try {
-				BatchCreatePartitionResult result = glue.batchCreatePartition(batchCreatePartitionRequest);
-				int statusCode = result.getSdkHttpMetadata().getHttpStatusCode();
-				List<PartitionError> partErrors = result.getErrors();
-				if (statusCode == 200 && partErrors.size() == 0) {
-					System.out.printf("%d partitions were added to table '%s' of database '%s'. \n", partInputList.size(),
-							tableName, databaseName);
-					partitionsAdded = true;
-					numPartitionsAdded.getAndAdd(partInputList.size());
-					System.out.printf("%d of %d partitions added so far. \n", numPartitionsAdded.get(), partitionInputList.size());
-				} else {
-					System.out.printf("Not all partitions were added. Status Code: %d, Number of partition errors: %d \n",
-							statusCode, partErrors.size());
-					for (PartitionError pe : partErrors) {
-						System.out.println("Partition Error Message: " + pe.getErrorDetail().getErrorMessage());
-						List<String> pv = pe.getPartitionValues();
-						for (String v : pv) {
-							System.out.println("Partition error value: " + v);
-						}
-					}
-				}
-			} catch(Exception e) {
-				e.printStackTrace();
-				System.out.printf("Exception in adding partitions. \n");
-				System.out.printf("%d of %d partitions added so far. \n", numPartitionsAdded.get(), partitionInputList.size());
-				// TODO - what to do when there are exceptions here?
-			}
+		for (List<PartitionInput> partInputList : slicePartitionInputs(partitionInputList)) {
+			sendPartitionBatch(partInputList, PartitionInput::getValues, "AlreadyExistsException", batchResult,
+					batch -> glue.batchCreatePartition(new BatchCreatePartitionRequest().withCatalogId(catalogId)
+							.withDatabaseName(databaseName).withTableName(tableName).withPartitionInputList(batch))
+							.getErrors());
 		}
-		System.out.println("Total partitions added: " + numPartitionsAdded.get());
-		return partitionsAdded;
+		System.out.printf("Partitions added to table '%s' of database '%s': %s \n", tableName, databaseName,
+				batchResult);
+		return batchResult;
 	}
 
 	/** 
@@ -484,61 +821,459 @@ public class GlueUtil {
 	 * @param databaseName
 	 * @param tableName
 	 * @param partitionsToDelete
-	 * @return
+	 * @return true if all the partitions were deleted or did not exist
 	 */
 	public boolean deletePartitions(AWSGlue glue, String catalogId, String databaseName, String tableName,
 			List<Partition> partitionsToDelete) {
+		return deletePartitions(glue, catalogId, databaseName, tableName, partitionsToDelete,
+				new PartitionBatchResult()).isSuccessful();
+	}
 
-		boolean partitionsDeleted = false;
-
-		BatchDeletePartitionRequest batchDeletePartitionRequest = new BatchDeletePartitionRequest();
-		batchDeletePartitionRequest.setCatalogId(catalogId);
-		batchDeletePartitionRequest.setDatabaseName(databaseName);
-		batchDeletePartitionRequest.setTableName(tableName);
-
-		// Prepare a List of PartitionValueList
+	/**
+	 * Delete partitions using Batch mode. The partitions are sliced in to lists of
+	 * 25. Partitions that fail with a retryable error are resent, see
+	 * sendPartitionBatch, and the outcome is merged in to batchResult.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param partitionsToDelete
+	 * @param batchResult
+	 * @return batchResult
+	 */
+	public PartitionBatchResult deletePartitions(AWSGlue glue, String catalogId, String databaseName,
+			String tableName, List<Partition> partitionsToDelete, PartitionBatchResult batchResult) {
 		List<PartitionValueList> listOfPartitionValueList = new ArrayList<PartitionValueList>();
-
-		// For each Partition, get its values, add create a PartitionValueList, and add
-		// them to List of PartitionValueList
 		for (Partition p : partitionsToDelete) {
-			PartitionValueList pvList = new PartitionValueList();
-			pvList.setValues(p.getValues());
-			listOfPartitionValueList.add(pvList);
+			listOfPartitionValueList.add(new PartitionValueList().withValues(p.getValues()));
 		}
-
 		System.out.println("Size of List of PartitionValueList: " + listOfPartitionValueList.size());
-		List<List<PartitionValueList>> listofSmallerLists = Lists.partition(listOfPartitionValueList, 25);
-		for (List<PartitionValueList> smallerList : listofSmallerLists) {
-			// Add List of PartitionValueList to BatchDeletePartitionRequest
-			batchDeletePartitionRequest.setPartitionsToDelete(smallerList);
+		for (List<PartitionValueList> smallerList : Lists.partition(listOfPartitionValueList, MAX_PARTITIONS_PER_DELETE_REQUEST)) {
+			sendPartitionBatch(smallerList, PartitionValueList::getValues, "EntityNotFoundException", batchResult,
+					batch -> glue.batchDeletePartition(new BatchDeletePartitionRequest().withCatalogId(catalogId)
+							.withDatabaseName(databaseName).withTableName(tableName).withPartitionsToDelete(batch))
+							.getErrors());
+		}
+		System.out.printf("Partitions deleted from table '%s' of database '%s': %s \n", tableName, databaseName,
+				batchResult);
+		return batchResult;
+	}
+
+	/**
+	 * This method sends one BatchCreatePartition or BatchDeletePartition request
+	 * and resends only the entries that failed with a retryable error code, with
+	 * jittered exponential backoff, up to MAX_BATCH_WRITE_ATTEMPTS times. An entry
+	 * that fails with alreadyDoneErrorCode is already in the desired state and
+	 * counts as succeeded; any other error is terminal. A request rejected as too
+	 * large is split in halves which are sent separately. Any other request that
+	 * fails as a whole is not resent here: the SDK and RateLimitedGlue already
+	 * retried it.
+	 * 
+	 * @param entries
+	 * @param valuesOf             gets the partition values of an entry
+	 * @param alreadyDoneErrorCode
+	 * @param batchResult
+	 * @param request              sends a request and returns its errors
+	 */
+	private <T> void sendPartitionBatch(List<T> entries, Function<T, List<String>> valuesOf,
+			String alreadyDoneErrorCode, PartitionBatchResult batchResult, Function<List<T>, List<PartitionError>> request) {
+		List<T> pendingEntries = entries;
+		for (int attempt = 1;; attempt++) {
+			List<PartitionError> errors;
+			batchResult.addBatchSize(pendingEntries.size());
 			try {
-				BatchDeletePartitionResult batchDeletePartitionResult = glue
-						.batchDeletePartition(batchDeletePartitionRequest);
-				int statusCode = batchDeletePartitionResult.getSdkHttpMetadata().getHttpStatusCode();
-				List<PartitionError> partErrors = batchDeletePartitionResult.getErrors();
-				if (statusCode == 200 && partErrors.size() == 0) {
-					System.out.printf("%d partitions from table '%s' of database '%s' were deleted. \n",
-							smallerList.size(), tableName, databaseName);
-					partitionsDeleted = true;
-				} else {
-					System.out.printf(
-							"Not all partitions were deleted. Status Code: %d, Number of partition errors: %d \n",
-							statusCode, partErrors.size());
-
-					for (PartitionError pe : partErrors) {
-						System.out.println("Partition Error Message: " + pe.getErrorDetail().getErrorMessage());
-						List<String> pv = pe.getPartitionValues();
-						for (String v : pv) {
-							System.out.println("Partition value: " + v);
-						}
-					}
+				errors = request.apply(pendingEntries);
+			} catch (Exception e) {
+				if (isRequestTooLarge(e) && pendingEntries.size() > 1) {
+					// The size estimate was off. Split the batch in halves and send them separately.
+					System.out.printf("Batch request of %d partitions is too large. It will be split in two. \n",
+							pendingEntries.size());
+					batchResult.addSplitRequest();
+					for (List<T> half : Lists.partition(pendingEntries, (pendingEntries.size() + 1) / 2))
+						sendPartitionBatch(half, valuesOf, alreadyDoneErrorCode, batchResult, request);
+					return;
 				}
+				e.printStackTrace();
+				System.out.printf("Exception in batch request of %d partitions. \n", pendingEntries.size());
+				batchResult.addFailedRequest(pendingEntries.size());
+				return;
+			}
+			Map<List<String>, T> entriesByValues = new HashMap<List<String>, T>();
+			for (T entry : pendingEntries)
+				entriesByValues.put(valuesOf.apply(entry), entry);
+			List<T> retryEntries = new ArrayList<T>();
+			List<PartitionError> terminalErrors = new ArrayList<PartitionError>();
+			int numberOfPartitionsAlreadyDone = 0;
+			for (PartitionError pe : Optional.ofNullable(errors).orElse(Collections.emptyList())) {
+				String errorCode = PartitionBatchResult.getErrorCode(pe);
+				T entry = entriesByValues.get(pe.getPartitionValues());
+				if (alreadyDoneErrorCode.equals(errorCode))
+					numberOfPartitionsAlreadyDone++;
+				else if (attempt < MAX_BATCH_WRITE_ATTEMPTS && RETRYABLE_PARTITION_ERROR_CODES.contains(errorCode)
+						&& Optional.ofNullable(entry).isPresent())
+					retryEntries.add(entry);
+				else {
+					terminalErrors.add(pe);
+					System.out.printf("Partition error: %s, values: %s, message: %s \n", errorCode,
+							pe.getPartitionValues(), Optional.ofNullable(pe.getErrorDetail())
+									.map(detail -> detail.getErrorMessage()).orElse(""));
+				}
+			}
+			batchResult.addRequestResult(pendingEntries.size() - retryEntries.size(), terminalErrors,
+					numberOfPartitionsAlreadyDone);
+			if (retryEntries.isEmpty())
+				return;
+			batchResult.addRetries(retryEntries.size());
+			long delayMillis = Math.min(BATCH_WRITE_MAX_DELAY_MILLIS, BATCH_WRITE_BASE_DELAY_MILLIS << (attempt - 1));
+			System.out.printf("Retrying %d of %d partitions after a retryable error. Attempt %d of %d. \n",
+					retryEntries.size(), pendingEntries.size(), attempt + 1, MAX_BATCH_WRITE_ATTEMPTS);
+			try {
+				TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(delayMillis + 1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				batchResult.addFailedRequest(retryEntries.size());
+				return;
+			}
+			pendingEntries = retryEntries;
+		}
+	}
+
+	/**
+	 * This method slices PartitionInputs in to batches for BatchCreatePartition.
+	 * A batch is closed when it has MAX_PARTITIONS_PER_CREATE_REQUEST partitions
+	 * or when the next partition would take its estimated size past
+	 * MAX_CREATE_PARTITION_REQUEST_BYTES. A partition that is larger than the
+	 * budget on its own gets a batch of its own.
+	 * 
+	 * @param partitionInputList
+	 * @return
+	 */
+	public List<List<PartitionInput>> slicePartitionInputs(List<PartitionInput> partitionInputList) {
+		List<List<PartitionInput>> batches = new ArrayList<List<PartitionInput>>();
+		int batchStart = 0;
+		long batchBytes = 0;
+		for (int i = 0; i < partitionInputList.size(); i++) {
+			long partitionBytes = estimateSerializedSize(partitionInputList.get(i));
+			if (i > batchStart && (i - batchStart == MAX_PARTITIONS_PER_CREATE_REQUEST
+					|| batchBytes + partitionBytes > MAX_CREATE_PARTITION_REQUEST_BYTES)) {
+				batches.add(partitionInputList.subList(batchStart, i));
+				batchStart = i;
+				batchBytes = 0;
+			}
+			batchBytes += partitionBytes;
+		}
+		if (batchStart < partitionInputList.size())
+			batches.add(partitionInputList.subList(batchStart, partitionInputList.size()));
+		return batches;
+	}
+
+	/**
+	 * Estimate the number of bytes a PartitionInput takes in a request. The
+	 * estimate is the size of its JSON serialization, plus one for the separator.
+	 * 
+	 * @param partitionInput
+	 * @return
+	 */
+	public long estimateSerializedSize(PartitionInput partitionInput) {
+		return Utf8.encodedLength(GSON.toJson(partitionInput)) + 1;
+	}
+
+	/**
+	 * @param e
+	 * @return true if a request was rejected because its payload is too large
+	 */
+	private boolean isRequestTooLarge(Exception e) {
+		if (!(e instanceof AmazonServiceException))
+			return false;
+		AmazonServiceException ase = (AmazonServiceException) e;
+		String errorCode = Optional.ofNullable(ase.getErrorCode()).orElse("");
+		String errorMessage = Optional.ofNullable(ase.getErrorMessage()).orElse("").toLowerCase();
+		return ase.getStatusCode() == 413 || errorCode.contains("TooLarge") || errorMessage.contains("too large")
+				|| errorMessage.contains("payload size");
+	}
+
+	/**
+	 * This method creates a PartitionInput object using Partition object
+	 * 
+	 * @param partition
+	 * @return
+	 */
+	public PartitionInput createPartitionInput(Partition partition) {
+		PartitionInput partitionInput = new PartitionInput();
+		StorageDescriptor storageDescriptor = partition.getStorageDescriptor();
+		partitionInput.setStorageDescriptor(storageDescriptor);
+		partitionInput.setValues(partition.getValues());
+		partitionInput.setParameters(partition.getParameters());
+		return partitionInput;
+	}
+
+	/**
+	 * This method converts a Partition to a CompactPartition. The fields of the
+	 * partition's StorageDescriptor that are equal to the table's are left out
+	 * and marked as inherited. If the columns differ, each column that is equal
+	 * to the table's column at the same position is replaced by null. Only the
+	 * values, the parameters and the StorageDescriptor are kept, which is all
+	 * that createPartitionInput replicates.
+	 * 
+	 * @param table
+	 * @param partition
+	 * @return
+	 */
+	public CompactPartition compactPartition(Table table, Partition partition) {
+		CompactPartition compactPartition = new CompactPartition();
+		compactPartition.setValues(partition.getValues());
+		compactPartition.setParameters(partition.getParameters());
+		StorageDescriptor storageDescriptor = partition.getStorageDescriptor();
+		StorageDescriptor baseStorageDescriptor = table.getStorageDescriptor();
+		if (!Optional.ofNullable(storageDescriptor).isPresent()
+				|| !Optional.ofNullable(baseStorageDescriptor).isPresent()) {
+			compactPartition.setStorageDescriptorDelta(storageDescriptor);
+			return compactPartition;
+		}
+		StorageDescriptor delta = new StorageDescriptor();
+		List<CompactPartition.InheritableField> inheritedFields = new ArrayList<CompactPartition.InheritableField>();
+		for (CompactPartition.InheritableField field : CompactPartition.InheritableField.values()) {
+			if (Objects.equals(field.get(storageDescriptor), field.get(baseStorageDescriptor)))
+				inheritedFields.add(field);
+			else
+				field.copy(delta, storageDescriptor);
+		}
+		if (Optional.ofNullable(delta.getColumns()).isPresent()
+				&& Optional.ofNullable(baseStorageDescriptor.getColumns()).isPresent()) {
+			List<Column> baseColumns = baseStorageDescriptor.getColumns();
+			List<Column> columnsDelta = new ArrayList<Column>(delta.getColumns());
+			for (int i = 0; i < columnsDelta.size() && i < baseColumns.size(); i++) {
+				if (Objects.equals(columnsDelta.get(i), baseColumns.get(i)))
+					columnsDelta.set(i, null);
+			}
+			delta.setColumns(columnsDelta);
+		}
+		compactPartition.setStorageDescriptorDelta(delta);
+		compactPartition.setInheritedFields(inheritedFields);
+		return compactPartition;
+	}
+
+	/**
+	 * This method rebuilds the Partition of a CompactPartition. The inherited
+	 * fields are copied from the table's StorageDescriptor; they are shared with
+	 * the table, not cloned, so expanding many partitions does not multiply the
+	 * column lists in the heap.
+	 * 
+	 * @param table
+	 * @param compactPartition
+	 * @return
+	 */
+	public Partition expandPartition(Table table, CompactPartition compactPartition) {
+		StorageDescriptor storageDescriptor = compactPartition.getStorageDescriptorDelta();
+		if (Optional.ofNullable(compactPartition.getInheritedFields()).isPresent()) {
+			storageDescriptor = Optional.ofNullable(storageDescriptor).orElse(new StorageDescriptor());
+			for (CompactPartition.InheritableField field : compactPartition.getInheritedFields())
+				field.copy(storageDescriptor, table.getStorageDescriptor());
+		}
+		if (Optional.ofNullable(storageDescriptor).isPresent()
+				&& Optional.ofNullable(storageDescriptor.getColumns()).isPresent()
+				&& storageDescriptor.getColumns().contains(null)) {
+			List<Column> baseColumns = table.getStorageDescriptor().getColumns();
+			List<Column> columns = new ArrayList<Column>(storageDescriptor.getColumns());
+			for (int i = 0; i < columns.size(); i++) {
+				if (!Optional.ofNullable(columns.get(i)).isPresent())
+					columns.set(i, baseColumns.get(i));
+			}
+			storageDescriptor.setColumns(columns);
+		}
+		return new Partition().withDatabaseName(table.getDatabaseName()).withTableName(table.getName())
+				.withValues(compactPartition.getValues()).withParameters(compactPartition.getParameters())
+				.withStorageDescriptor(storageDescriptor);
+	}
+
+	/**
+	 * This method returns the partitions of a TableWithPartitions, expanding the
+	 * compact partitions if the export has them.
+	 * 
+	 * @param tableWithPartitions
+	 * @return
+	 */
+	public List<Partition> getPartitionList(TableWithPartitions tableWithPartitions) {
+		if (!Optional.ofNullable(tableWithPartitions.getCompactPartitionList()).isPresent())
+			return Optional.ofNullable(tableWithPartitions.getPartitionList()).orElse(new ArrayList<Partition>());
+		List<Partition> partitionList = new ArrayList<Partition>(tableWithPartitions.getCompactPartitionList().size());
+		for (CompactPartition compactPartition : tableWithPartitions.getCompactPartitionList())
+			partitionList.add(expandPartition(tableWithPartitions.getTable(), compactPartition));
+		return partitionList;
+	}
+
+	/**
+	 * This method reconciles the partitions of an export against the partitions of
+	 * the target table. Partitions are keyed by their list of values and compared
+	 * by the PartitionInput that addPartitions would replicate, see
+	 * isPartitionChanged.
+	 * 
+	 * @param partitionListFromExport
+	 * @param partitionsB4Replication
+	 * @return
+	 */
+	public PartitionDiff computePartitionDiff(List<Partition> partitionListFromExport,
+			List<Partition> partitionsB4Replication) {
+		PartitionDiff partitionDiff = new PartitionDiff();
+		Map<List<String>, Partition> targetPartitionMap = new HashMap<List<String>, Partition>();
+		for (Partition p : partitionsB4Replication) {
+			targetPartitionMap.put(p.getValues(), p);
+		}
+		int numberOfUnchangedPartitions = 0;
+		for (Partition p : partitionListFromExport) {
+			Partition targetPartition = targetPartitionMap.remove(p.getValues());
+			if (!Optional.ofNullable(targetPartition).isPresent())
+				partitionDiff.getPartitionsToAdd().add(p);
+			else if (isPartitionChanged(p, targetPartition))
+				partitionDiff.getPartitionsToUpdate().add(p);
+			else
+				numberOfUnchangedPartitions++;
+		}
+		// Whatever is left in the map does not exist in the export anymore
+		partitionDiff.getPartitionsToDelete().addAll(targetPartitionMap.values());
+		partitionDiff.setNumberOfUnchangedPartitions(numberOfUnchangedPartitions);
+		System.out.printf(
+				"Partition diff: to add = %d, to delete = %d, to update = %d, unchanged = %d \n",
+				partitionDiff.getPartitionsToAdd().size(), partitionDiff.getPartitionsToDelete().size(),
+				partitionDiff.getPartitionsToUpdate().size(), numberOfUnchangedPartitions);
+		return partitionDiff;
+	}
+
+	/**
+	 * This method checks if the exported partition differs from the partition
+	 * with the same values in the target table. The partitions are compared by
+	 * the PartitionInput that would be used to replicate them, i.e. values,
+	 * parameters and StorageDescriptor. Server-managed fields such as
+	 * CreationTime, LastAccessTime and LastAnalyzedTime are not part of it.
+	 * 
+	 * @param exportedPartition
+	 * @param targetPartition
+	 * @return
+	 */
+	public boolean isPartitionChanged(Partition exportedPartition, Partition targetPartition) {
+		return !Objects.equals(createPartitionInput(exportedPartition), createPartitionInput(targetPartition));
+	}
+
+	/**
+	 * Update partitions one at a time. There is no batch API for updating
+	 * partitions.
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param partitionsToUpdate
+	 * @return
+	 */
+	public boolean updatePartitions(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			List<Partition> partitionsToUpdate) {
+		return updatePartitionsAndGetCount(glue, catalogId, databaseName, tableName,
+				partitionsToUpdate) == partitionsToUpdate.size();
+	}
+
+	/**
+	 * Update partitions one at a time, like updatePartitions, and return the
+	 * number of partitions actually updated.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param partitionsToUpdate
+	 * @return the number of partitions updated
+	 */
+	public int updatePartitionsAndGetCount(AWSGlue glue, String catalogId, String databaseName, String tableName,
+			List<Partition> partitionsToUpdate) {
+		AtomicInteger numPartitionsUpdated = new AtomicInteger();
+		for (Partition p : partitionsToUpdate) {
+			UpdatePartitionRequest updatePartitionRequest = new UpdatePartitionRequest();
+			updatePartitionRequest.setCatalogId(catalogId);
+			updatePartitionRequest.setDatabaseName(databaseName);
+			updatePartitionRequest.setTableName(tableName);
+			updatePartitionRequest.setPartitionValueList(p.getValues());
+			updatePartitionRequest.setPartitionInput(createPartitionInput(p));
+			try {
+				UpdatePartitionResult result = glue.updatePartition(updatePartitionRequest);
+				int statusCode = result.getSdkHttpMetadata().getHttpStatusCode();
+				if (statusCode == 200)
+					numPartitionsUpdated.getAndIncrement();
 			} catch (Exception e) {
-				System.out.println("Exception in deleting partitions.");
 				e.printStackTrace();
+				System.out.printf("Exception in updating partition with values %s. \n", p.getValues());
 			}
 		}
-		return partitionsDeleted;
+		System.out.printf("%d of %d partitions updated in table '%s' of database '%s'. \n", numPartitionsUpdated.get(),
+				partitionsToUpdate.size(), tableName, databaseName);
+		return numPartitionsUpdated.get();
+	}
+
+	/**
+	 * Add partitions in batch mode. The partitions are sliced in to batches, see
+	 * slicePartitionInputs, and the batches are sent concurrently with at most
+	 * 'parallelism' threads. The errors of all the slices are aggregated in
+	 * to the result.
+	 * 
+	 * @param glue
+	 * @param partitionsToAdd
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param parallelism
+	 * @return
+	 */
+	public PartitionBatchResult addPartitionsConcurrently(AWSGlue glue, List<Partition> partitionsToAdd,
+			String catalogId, String databaseName, String tableName, int parallelism) {
+		PartitionBatchResult batchResult = new PartitionBatchResult();
+		List<PartitionInput> partitionInputList = new ArrayList<PartitionInput>();
+		for (Partition p : partitionsToAdd) {
+			partitionInputList.add(createPartitionInput(p));
+		}
+		List<Runnable> taskList = new ArrayList<Runnable>();
+		for (List<PartitionInput> partInputList : slicePartitionInputs(partitionInputList)) {
+			taskList.add(() -> sendPartitionBatch(partInputList, PartitionInput::getValues, "AlreadyExistsException",
+					batchResult,
+					batch -> glue.batchCreatePartition(new BatchCreatePartitionRequest().withCatalogId(catalogId)
+							.withDatabaseName(databaseName).withTableName(tableName).withPartitionInputList(batch))
+							.getErrors()));
+		}
+		runConcurrently(taskList, parallelism);
+		System.out.printf("Partitions added to table '%s' of database '%s': %s \n", tableName, databaseName,
+				batchResult);
+		return batchResult;
+	}
+
+	/**
+	 * Delete partitions in batch mode. The partitions are sliced in to lists of 25
+	 * and the slices are sent concurrently with at most 'parallelism' threads.
+	 * The errors of all the slices are aggregated in
+	 * to the result.
+	 * 
+	 * @param glue
+	 * @param catalogId
+	 * @param databaseName
+	 * @param tableName
+	 * @param partitionsToDelete
+	 * @param parallelism
+	 * @return
+	 */
+	public PartitionBatchResult deletePartitionsConcurrently(AWSGlue glue, String catalogId, String databaseName,
+			String tableName, List<Partition> partitionsToDelete, int parallelism) {
+		PartitionBatchResult batchResult = new PartitionBatchResult();
+		List<PartitionValueList> listOfPartitionValueList = new ArrayList<PartitionValueList>();
+		for (Partition p : partitionsToDelete) {
+			listOfPartitionValueList.add(new PartitionValueList().withValues(p.getValues()));
+		}
+		List<Runnable> taskList = new ArrayList<Runnable>();
+		for (List<PartitionValueList> smallerList : Lists.partition(listOfPartitionValueList, MAX_PARTITIONS_PER_DELETE_REQUEST)) {
+			taskList.add(() -> sendPartitionBatch(smallerList, PartitionValueList::getValues, "EntityNotFoundException",
+					batchResult,
+					batch -> glue.batchDeletePartition(new BatchDeletePartitionRequest().withCatalogId(catalogId)
+							.withDatabaseName(databaseName).withTableName(tableName).withPartitionsToDelete(batch))
+							.getErrors()));
+		}
+		runConcurrently(taskList, parallelism);
+		System.out.printf("Partitions deleted from table '%s' of database '%s': %s \n", tableName, databaseName,
+				batchResult);
+		return batchResult;
 	}
 }
@@ -0,0 +1,27 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import com.google.gson.Gson;
+
+/**
+ * This class holds the Gson of a Lambda container. Gson is thread-safe and
+ * caches the TypeAdapter of every type it has seen, so one instance is shared
+ * by all the invocations and threads instead of a new Gson per message.
+ *
+ */
+public class GsonRegistry {
+
+	private static final Gson GSON = new Gson();
+
+	private GsonRegistry() {
+	}
+
+	/**
+	 * @return the shared Gson
+	 */
+	public static Gson getGson() {
+		return GSON;
+	}
+}
@@ -0,0 +1,52 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * A PayloadCodec that compresses the payload with gzip and encodes the
+ * compressed bytes with Base64, since SNS and SQS only accept text. Glue
+ * schemas are very repetitive JSON, so the encoded payload is typically a
+ * fraction of the size of the plain JSON.
+ *
+ */
+public class GzipPayloadCodec implements PayloadCodec {
+
+	public static final String NAME = "gzip";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public OutputStream encodingStream(OutputStream out) throws IOException {
+		// Sync flush makes flush() emit all the data compressed so far, so callers
+		// can measure the size of the payload while they write it.
+		return new GZIPOutputStream(Base64.getEncoder().wrap(out), BUFFER_SIZE, true);
+	}
+
+	@Override
+	public String decode(String payload) throws IOException {
+		byte[] compressed = Base64.getDecoder().decode(payload.trim());
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream(compressed.length * 4);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed), BUFFER_SIZE)) {
+			ByteStreams.copy(in, decoded);
+		}
+		return new String(decoded.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,35 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.io.OutputStream;
+
+/**
+ * A PayloadCodec that leaves the payload as plain JSON
+ *
+ */
+public class IdentityPayloadCodec implements PayloadCodec {
+
+	public static final String NAME = "none";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public OutputStream encodingStream(OutputStream out) {
+		return out;
+	}
+
+	@Override
+	public String encode(String payload) {
+		return payload;
+	}
+
+	@Override
+	public String decode(String payload) {
+		return payload;
+	}
+}
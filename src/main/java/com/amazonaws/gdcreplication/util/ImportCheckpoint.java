@@ -0,0 +1,89 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+/**
+ * This is a POJO class for the progress of the import of a large table from
+ * S3. The import goes through the phases ADD, where the partitions of the
+ * export are added or updated batch by batch, DELETE, where the target
+ * partitions not in the export are deleted, and DONE. In phase ADD,
+ * recordsCommitted is the number of partitions, from the start of the S3
+ * object, whose batches have all been committed.
+ * 
+ * Phase DELETE starts with saving the partitions to delete in batches, under
+ * deleteListId. recordsCommitted is then the number of those batches deleted,
+ * and numberOfRecords the number of partitions in the export. In phase DONE,
+ * recordsCommitted is the number of partitions in the export.
+ *
+ */
+public class ImportCheckpoint {
+
+	public enum Phase {
+		ADD, DELETE, DONE
+	}
+
+	private String importId;
+	private Phase phase;
+	private long recordsCommitted;
+	private String deleteListId;
+	private int numberOfDeleteBatches;
+	private long numberOfRecords;
+
+	public ImportCheckpoint() {
+	}
+
+	public ImportCheckpoint(String importId, Phase phase, long recordsCommitted) {
+		this.importId = importId;
+		this.phase = phase;
+		this.recordsCommitted = recordsCommitted;
+	}
+
+	public String getImportId() {
+		return importId;
+	}
+
+	public void setImportId(String importId) {
+		this.importId = importId;
+	}
+
+	public Phase getPhase() {
+		return phase;
+	}
+
+	public void setPhase(Phase phase) {
+		this.phase = phase;
+	}
+
+	public long getRecordsCommitted() {
+		return recordsCommitted;
+	}
+
+	public void setRecordsCommitted(long recordsCommitted) {
+		this.recordsCommitted = recordsCommitted;
+	}
+
+	public String getDeleteListId() {
+		return deleteListId;
+	}
+
+	public void setDeleteListId(String deleteListId) {
+		this.deleteListId = deleteListId;
+	}
+
+	public int getNumberOfDeleteBatches() {
+		return numberOfDeleteBatches;
+	}
+
+	public void setNumberOfDeleteBatches(int numberOfDeleteBatches) {
+		this.numberOfDeleteBatches = numberOfDeleteBatches;
+	}
+
+	public long getNumberOfRecords() {
+		return numberOfRecords;
+	}
+
+	public void setNumberOfRecords(long numberOfRecords) {
+		this.numberOfRecords = numberOfRecords;
+	}
+}
@@ -19,6 +19,10 @@ public class LargeTable {
 	private Table table;
 	private String s3ObjectKey;
 	private String s3BucketName;
+	private boolean compactPartitions;
+	private String manifestKey;
+	private int chunkIndex;
+	private int numberOfChunks;
 
 	public Table getTable() {
 		return table;
@@ -67,4 +71,51 @@ public class LargeTable {
 	public void setNumberOfPartitions(int numberOfPartitions) {
 		this.numberOfPartitions = numberOfPartitions;
 	}
+
+	/**
+	 * @return true if the S3 object holds CompactPartitions, relative to the
+	 *         StorageDescriptor of this table, rather than Partitions
+	 */
+	public boolean isCompactPartitions() {
+		return compactPartitions;
+	}
+
+	public void setCompactPartitions(boolean compactPartitions) {
+		this.compactPartitions = compactPartitions;
+	}
+
+	/**
+	 * @return the S3 object key of the LargeTableManifest if the partitions are
+	 *         exported in chunks, null otherwise
+	 */
+	public String getManifestKey() {
+		return manifestKey;
+	}
+
+	public void setManifestKey(String manifestKey) {
+		this.manifestKey = manifestKey;
+	}
+
+	/**
+	 * @return the position, in the manifest, of the chunk in s3ObjectKey
+	 */
+	public int getChunkIndex() {
+		return chunkIndex;
+	}
+
+	public void setChunkIndex(int chunkIndex) {
+		this.chunkIndex = chunkIndex;
+	}
+
+	/**
+	 * @return the number of chunks in the manifest, 0 if the partitions are not
+	 *         exported in chunks
+	 */
+	public int getNumberOfChunks() {
+		return numberOfChunks;
+	}
+
+	public void setNumberOfChunks(int numberOfChunks) {
+		this.numberOfChunks = numberOfChunks;
+	}
 }
@@ -0,0 +1,96 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is a POJO class for the manifest of a large table whose partitions are
+ * exported in chunks, i.e. in several S3 objects of a bounded number of
+ * partitions each. The manifest lists the chunks in order. It is written next
+ * to the chunks once they are all uploaded.
+ *
+ */
+public class LargeTableManifest {
+
+	/**
+	 * One S3 object of partitions
+	 */
+	public static class Chunk {
+
+		private String s3ObjectKey;
+		private int numberOfPartitions;
+
+		public Chunk() {
+		}
+
+		public Chunk(String s3ObjectKey, int numberOfPartitions) {
+			this.s3ObjectKey = s3ObjectKey;
+			this.numberOfPartitions = numberOfPartitions;
+		}
+
+		public String getS3ObjectKey() {
+			return s3ObjectKey;
+		}
+
+		public void setS3ObjectKey(String s3ObjectKey) {
+			this.s3ObjectKey = s3ObjectKey;
+		}
+
+		public int getNumberOfPartitions() {
+			return numberOfPartitions;
+		}
+
+		public void setNumberOfPartitions(int numberOfPartitions) {
+			this.numberOfPartitions = numberOfPartitions;
+		}
+	}
+
+	private String databaseName;
+	private String tableName;
+	private int numberOfPartitions;
+	private boolean compactPartitions;
+	private List<Chunk> chunks = new ArrayList<Chunk>();
+
+	public String getDatabaseName() {
+		return databaseName;
+	}
+
+	public void setDatabaseName(String databaseName) {
+		this.databaseName = databaseName;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public void setTableName(String tableName) {
+		this.tableName = tableName;
+	}
+
+	public int getNumberOfPartitions() {
+		return numberOfPartitions;
+	}
+
+	public void setNumberOfPartitions(int numberOfPartitions) {
+		this.numberOfPartitions = numberOfPartitions;
+	}
+
+	public boolean isCompactPartitions() {
+		return compactPartitions;
+	}
+
+	public void setCompactPartitions(boolean compactPartitions) {
+		this.compactPartitions = compactPartitions;
+	}
+
+	public List<Chunk> getChunks() {
+		return chunks;
+	}
+
+	public void setChunks(List<Chunk> chunks) {
+		this.chunks = chunks;
+	}
+}
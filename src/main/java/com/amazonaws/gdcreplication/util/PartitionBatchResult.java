@@ -0,0 +1,221 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import com.amazonaws.services.glue.model.PartitionError;
+
+/**
+ * This is a POJO class that aggregates the outcome of all the
+ * BatchCreatePartition or BatchDeletePartition requests sent for one table.
+ * 
+ * Partitions whose error means that they are already in the desired state,
+ * e.g. AlreadyExistsException on create, count as succeeded and are also
+ * counted as already done. The errors kept are the terminal ones, left after
+ * retries.
+ *
+ */
+public class PartitionBatchResult {
+
+	/**
+	 * Error code counted for the partitions of a request that failed as a whole
+	 */
+	public static final String REQUEST_FAILED = "RequestFailed";
+
+	private int numberOfRequests;
+	private int numberOfFailedRequests;
+	private int numberOfPartitionsSucceeded;
+	private int numberOfPartitionsFailed;
+	private int numberOfPartitionsAlreadyDone;
+	private int numberOfPartitionRetries;
+	private int numberOfSplitRequests;
+	private List<PartitionError> partitionErrors = new ArrayList<PartitionError>();
+	private Map<String, Integer> errorCodeCounts = new TreeMap<String, Integer>();
+	private Map<Integer, Integer> batchSizeCounts = new TreeMap<Integer, Integer>();
+
+	/**
+	 * Merge the outcome of one request in to this result
+	 *
+	 * @param numberOfPartitions
+	 * @param errors
+	 */
+	public synchronized void addRequestResult(int numberOfPartitions, List<PartitionError> errors) {
+		addRequestResult(numberOfPartitions, errors, 0);
+	}
+
+	/**
+	 * Merge the outcome of one request in to this result
+	 *
+	 * @param numberOfPartitions           the number of partitions that are not
+	 *                                     retried
+	 * @param errors                       the terminal errors
+	 * @param numberOfPartitionsAlreadyDone the number of partitions that failed
+	 *                                     because they already are in the
+	 *                                     desired state
+	 */
+	public synchronized void addRequestResult(int numberOfPartitions, List<PartitionError> errors,
+			int numberOfPartitionsAlreadyDone) {
+		numberOfRequests++;
+		numberOfPartitionsSucceeded += numberOfPartitions - errors.size();
+		numberOfPartitionsFailed += errors.size();
+		this.numberOfPartitionsAlreadyDone += numberOfPartitionsAlreadyDone;
+		partitionErrors.addAll(errors);
+		for (PartitionError pe : errors)
+			errorCodeCounts.merge(getErrorCode(pe), 1, Integer::sum);
+	}
+
+	/**
+	 * Merge another result, e.g. the result of one batch, in to this result. The
+	 * state of the other result is copied under its own lock first and applied
+	 * under the lock of this result, so the two locks are never held together and
+	 * concurrent merges in opposite directions cannot deadlock.
+	 *
+	 * @param other
+	 */
+	public void merge(PartitionBatchResult other) {
+		PartitionBatchResult snapshot = other.copy();
+		synchronized (this) {
+			numberOfRequests += snapshot.numberOfRequests;
+			numberOfFailedRequests += snapshot.numberOfFailedRequests;
+			numberOfPartitionsSucceeded += snapshot.numberOfPartitionsSucceeded;
+			numberOfPartitionsFailed += snapshot.numberOfPartitionsFailed;
+			numberOfPartitionsAlreadyDone += snapshot.numberOfPartitionsAlreadyDone;
+			numberOfPartitionRetries += snapshot.numberOfPartitionRetries;
+			numberOfSplitRequests += snapshot.numberOfSplitRequests;
+			partitionErrors.addAll(snapshot.partitionErrors);
+			snapshot.errorCodeCounts.forEach((code, count) -> errorCodeCounts.merge(code, count, Integer::sum));
+			snapshot.batchSizeCounts.forEach((size, count) -> batchSizeCounts.merge(size, count, Integer::sum));
+		}
+	}
+
+	/**
+	 * @return a copy of this result
+	 */
+	public synchronized PartitionBatchResult copy() {
+		PartitionBatchResult copy = new PartitionBatchResult();
+		copy.numberOfRequests = numberOfRequests;
+		copy.numberOfFailedRequests = numberOfFailedRequests;
+		copy.numberOfPartitionsSucceeded = numberOfPartitionsSucceeded;
+		copy.numberOfPartitionsFailed = numberOfPartitionsFailed;
+		copy.numberOfPartitionsAlreadyDone = numberOfPartitionsAlreadyDone;
+		copy.numberOfPartitionRetries = numberOfPartitionRetries;
+		copy.numberOfSplitRequests = numberOfSplitRequests;
+		copy.partitionErrors = new ArrayList<PartitionError>(partitionErrors);
+		copy.errorCodeCounts = new TreeMap<String, Integer>(errorCodeCounts);
+		copy.batchSizeCounts = new TreeMap<Integer, Integer>(batchSizeCounts);
+		return copy;
+	}
+
+	/**
+	 * Record the partitions of a request that are being resent
+	 *
+	 * @param numberOfPartitions the number of partitions retried
+	 */
+	public synchronized void addRetries(int numberOfPartitions) {
+		numberOfPartitionRetries += numberOfPartitions;
+	}
+
+	/**
+	 * Record the number of partitions of a request about to be sent
+	 *
+	 * @param numberOfPartitions
+	 */
+	public synchronized void addBatchSize(int numberOfPartitions) {
+		batchSizeCounts.merge(numberOfPartitions, 1, Integer::sum);
+	}
+
+	/**
+	 * Record a request that was rejected as too large and is sent again in two
+	 * halves
+	 */
+	public synchronized void addSplitRequest() {
+		numberOfRequests++;
+		numberOfSplitRequests++;
+	}
+
+	/**
+	 * Record a request that failed as a whole, e.g. with an exception
+	 *
+	 * @param numberOfPartitions
+	 */
+	public synchronized void addFailedRequest(int numberOfPartitions) {
+		numberOfRequests++;
+		numberOfFailedRequests++;
+		numberOfPartitionsFailed += numberOfPartitions;
+		errorCodeCounts.merge(REQUEST_FAILED, numberOfPartitions, Integer::sum);
+	}
+
+	public synchronized boolean isSuccessful() {
+		return numberOfPartitionsFailed == 0;
+	}
+
+	public synchronized int getNumberOfRequests() {
+		return numberOfRequests;
+	}
+
+	public synchronized int getNumberOfFailedRequests() {
+		return numberOfFailedRequests;
+	}
+
+	public synchronized int getNumberOfPartitionsSucceeded() {
+		return numberOfPartitionsSucceeded;
+	}
+
+	public synchronized int getNumberOfPartitionsFailed() {
+		return numberOfPartitionsFailed;
+	}
+
+	public synchronized int getNumberOfPartitionsAlreadyDone() {
+		return numberOfPartitionsAlreadyDone;
+	}
+
+	public synchronized int getNumberOfPartitionRetries() {
+		return numberOfPartitionRetries;
+	}
+
+	public synchronized int getNumberOfSplitRequests() {
+		return numberOfSplitRequests;
+	}
+
+	public synchronized List<PartitionError> getPartitionErrors() {
+		return new ArrayList<PartitionError>(partitionErrors);
+	}
+
+	/**
+	 * @return the number of terminal errors by error code
+	 */
+	public synchronized Map<String, Integer> getErrorCodeCounts() {
+		return new TreeMap<String, Integer>(errorCodeCounts);
+	}
+
+	/**
+	 * @return the number of requests sent by number of partitions in the request
+	 */
+	public synchronized Map<Integer, Integer> getBatchSizeCounts() {
+		return new TreeMap<Integer, Integer>(batchSizeCounts);
+	}
+
+	/**
+	 * @param partitionError
+	 * @return the error code of a PartitionError, or "Unknown" if it has none
+	 */
+	public static String getErrorCode(PartitionError partitionError) {
+		return Optional.ofNullable(partitionError.getErrorDetail()).map(detail -> detail.getErrorCode())
+				.orElse("Unknown");
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("succeeded = %d (already done = %d), failed = %d, retries = %d, requests = %d, "
+				+ "failed requests = %d, split requests = %d, errors = %s, batch sizes = %s",
+				numberOfPartitionsSucceeded, numberOfPartitionsAlreadyDone, numberOfPartitionsFailed,
+				numberOfPartitionRetries, numberOfRequests, numberOfFailedRequests, numberOfSplitRequests,
+				errorCodeCounts, batchSizeCounts);
+	}
+}
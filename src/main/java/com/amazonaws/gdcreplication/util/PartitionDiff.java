@@ -0,0 +1,63 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.glue.model.Partition;
+
+/**
+ * This is a POJO class that holds the result of reconciling the partitions of
+ * an export against the partitions of the target table. Partitions are keyed
+ * by their list of values.
+ *
+ * 1. partitionsToAdd - exist in the export but not in the target table
+ * 2. partitionsToDelete - exist in the target table but not in the export
+ * 3. partitionsToUpdate - exist in both but their StorageDescriptor differs
+ *
+ */
+public class PartitionDiff {
+
+	private List<Partition> partitionsToAdd = new ArrayList<Partition>();
+	private List<Partition> partitionsToDelete = new ArrayList<Partition>();
+	private List<Partition> partitionsToUpdate = new ArrayList<Partition>();
+	private int numberOfUnchangedPartitions;
+
+	public List<Partition> getPartitionsToAdd() {
+		return partitionsToAdd;
+	}
+
+	public void setPartitionsToAdd(List<Partition> partitionsToAdd) {
+		this.partitionsToAdd = partitionsToAdd;
+	}
+
+	public List<Partition> getPartitionsToDelete() {
+		return partitionsToDelete;
+	}
+
+	public void setPartitionsToDelete(List<Partition> partitionsToDelete) {
+		this.partitionsToDelete = partitionsToDelete;
+	}
+
+	public List<Partition> getPartitionsToUpdate() {
+		return partitionsToUpdate;
+	}
+
+	public void setPartitionsToUpdate(List<Partition> partitionsToUpdate) {
+		this.partitionsToUpdate = partitionsToUpdate;
+	}
+
+	public int getNumberOfUnchangedPartitions() {
+		return numberOfUnchangedPartitions;
+	}
+
+	public void setNumberOfUnchangedPartitions(int numberOfUnchangedPartitions) {
+		this.numberOfUnchangedPartitions = numberOfUnchangedPartitions;
+	}
+
+	public boolean hasChanges() {
+		return !partitionsToAdd.isEmpty() || !partitionsToDelete.isEmpty() || !partitionsToUpdate.isEmpty();
+	}
+}
@@ -0,0 +1,150 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.amazonaws.services.glue.AWSGlue;
+import com.amazonaws.services.glue.model.Partition;
+
+/**
+ * This class adds and updates the partitions of a table while they are still
+ * being read. The producer calls add() for every partition, partitions are
+ * grouped in to batches of 100 (the BatchCreatePartition limit) and each batch
+ * is handed over to a bounded pool of workers. A worker looks up the target
+ * partitions with the same values with BatchGetPartition, adds the new
+ * partitions and updates the changed ones.
+ *
+ * The work queue holds at most two batches per worker. When it is full, the
+ * producer runs the batch itself, which slows reading down to the pace of the
+ * writes and keeps the heap bounded by the queue depth.
+ *
+ */
+public class PartitionImportPipeline {
+
+	public static final int BATCH_SIZE = 100;
+
+	private final AWSGlue glue;
+	private final GlueUtil glueUtil;
+	private final String catalogId;
+	private final String databaseName;
+	private final String tableName;
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger numberOfPartitionsSubmitted = new AtomicInteger();
+	private final AtomicInteger numberOfPartitionsUpdated = new AtomicInteger();
+	private final AtomicInteger numberOfFailedBatches = new AtomicInteger();
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private final PartitionBatchResult batchResult = new PartitionBatchResult();
+	private List<Partition> batch = new ArrayList<Partition>(BATCH_SIZE);
+
+	public PartitionImportPipeline(AWSGlue glue, GlueUtil glueUtil, String catalogId, String databaseName,
+			String tableName, int parallelism) {
+		this.glue = glue;
+		this.glueUtil = glueUtil;
+		this.catalogId = catalogId;
+		this.databaseName = databaseName;
+		this.tableName = tableName;
+		int numberOfThreads = Math.max(parallelism, 1);
+		this.executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(numberOfThreads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Add a partition to the current batch. The batch is submitted once it is
+	 * full.
+	 *
+	 * @param partition
+	 */
+	public void add(Partition partition) {
+		batch.add(partition);
+		if (batch.size() == BATCH_SIZE)
+			submitBatch();
+	}
+
+	/**
+	 * Submit the last batch and wait for all the batches to complete.
+	 *
+	 * @return true if all the batches were added and updated successfully
+	 */
+	public boolean close() {
+		if (closed.getAndSet(true))
+			return numberOfFailedBatches.get() == 0;
+		if (batch.size() > 0)
+			submitBatch();
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				System.out.println("Waiting for partition batches to be added. Active workers: "
+						+ executor.getActiveCount());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+			numberOfFailedBatches.incrementAndGet();
+		}
+		System.out.printf("Partition import pipeline completed. Partitions submitted: %d, failed batches: %d \n",
+				numberOfPartitionsSubmitted.get(), numberOfFailedBatches.get());
+		return numberOfFailedBatches.get() == 0;
+	}
+
+	public int getNumberOfPartitionsSubmitted() {
+		return numberOfPartitionsSubmitted.get();
+	}
+
+	public int getNumberOfPartitionsUpdated() {
+		return numberOfPartitionsUpdated.get();
+	}
+
+	/**
+	 * @return the outcome of the BatchCreatePartition requests of all the batches
+	 */
+	public PartitionBatchResult getBatchResult() {
+		return batchResult;
+	}
+
+	private void submitBatch() {
+		List<Partition> partitionBatch = batch;
+		batch = new ArrayList<Partition>(BATCH_SIZE);
+		numberOfPartitionsSubmitted.getAndAdd(partitionBatch.size());
+		executor.execute(() -> {
+			try {
+				if (!importBatch(partitionBatch))
+					numberOfFailedBatches.incrementAndGet();
+			} catch (Exception e) {
+				e.printStackTrace();
+				numberOfFailedBatches.incrementAndGet();
+			}
+		});
+	}
+
+	private boolean importBatch(List<Partition> partitionBatch) {
+		List<List<String>> partitionValues = new ArrayList<List<String>>();
+		for (Partition p : partitionBatch)
+			partitionValues.add(p.getValues());
+		List<Partition> targetPartitions = glueUtil.getPartitionsByValues(glue, catalogId, databaseName, tableName,
+				partitionValues);
+		PartitionDiff partitionDiff = glueUtil.computePartitionDiff(partitionBatch, targetPartitions);
+		boolean partitionsAdded = true;
+		boolean partitionsUpdated = true;
+		if (partitionDiff.getPartitionsToAdd().size() > 0) {
+			PartitionBatchResult result = glueUtil.addPartitions(glue, partitionDiff.getPartitionsToAdd(),
+					catalogId, databaseName, tableName, new PartitionBatchResult());
+			batchResult.merge(result);
+			partitionsAdded = result.isSuccessful();
+		}
+		if (partitionDiff.getPartitionsToUpdate().size() > 0) {
+			int numberOfPartitionsUpdatedInBatch = glueUtil.updatePartitionsAndGetCount(glue, catalogId,
+					databaseName, tableName, partitionDiff.getPartitionsToUpdate());
+			partitionsUpdated = numberOfPartitionsUpdatedInBatch == partitionDiff.getPartitionsToUpdate().size();
+			numberOfPartitionsUpdated.getAndAdd(numberOfPartitionsUpdatedInBatch);
+		}
+		return partitionsAdded && partitionsUpdated;
+	}
+}
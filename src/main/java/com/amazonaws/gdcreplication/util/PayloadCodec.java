@@ -0,0 +1,101 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * A codec for the body of the SNS and SQS messages exchanged between the source
+ * and the target accounts. The encoded body is always a valid UTF-8 string. The
+ * name of the codec travels with the message as a message attribute so that the
+ * receiver can decode it; a message without the attribute is plain JSON.
+ *
+ */
+public interface PayloadCodec {
+
+	/**
+	 * Name of the SNS message attribute that carries the codec name
+	 */
+	String SNS_ATTRIBUTE = "payload_codec";
+
+	/**
+	 * Name of the SQS message attribute that carries the codec name
+	 */
+	String SQS_ATTRIBUTE = "PayloadCodec";
+
+	/**
+	 * @return the name of the codec, as used in the message attribute
+	 */
+	String getName();
+
+	/**
+	 * Wrap a stream so that the UTF-8 bytes written to the returned stream are
+	 * encoded into 'out'. Closing the returned stream finishes the encoding and
+	 * closes 'out'.
+	 *
+	 * @param out
+	 * @return
+	 * @throws IOException
+	 */
+	OutputStream encodingStream(OutputStream out) throws IOException;
+
+	/**
+	 * Decode an encoded payload back to the original string
+	 *
+	 * @param payload
+	 * @return
+	 * @throws IOException
+	 */
+	String decode(String payload) throws IOException;
+
+	/**
+	 * Encode a payload
+	 *
+	 * @param payload
+	 * @return
+	 * @throws IOException
+	 */
+	default String encode(String payload) throws IOException {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		try (OutputStream out = encodingStream(encoded)) {
+			out.write(payload.getBytes(StandardCharsets.UTF_8));
+		}
+		return new String(encoded.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Get a codec by name. A missing name means no encoding.
+	 *
+	 * @param name 'none' or 'gzip'
+	 * @return
+	 */
+	static PayloadCodec forName(String name) {
+		String codecName = Optional.ofNullable(name).map(String::trim).orElse("");
+		if (codecName.isEmpty() || IdentityPayloadCodec.NAME.equalsIgnoreCase(codecName))
+			return new IdentityPayloadCodec();
+		if (GzipPayloadCodec.NAME.equalsIgnoreCase(codecName))
+			return new GzipPayloadCodec();
+		throw new IllegalArgumentException("Unknown payload codec: " + name);
+	}
+
+	/**
+	 * Decode the body of a message with the codec named in its message attribute
+	 *
+	 * @param name the value of the message attribute, null if it is absent
+	 * @param payload
+	 * @return
+	 */
+	static String decodePayload(String name, String payload) {
+		try {
+			return forName(name).decode(payload);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Payload could not be decoded with codec " + name, e);
+		}
+	}
+}
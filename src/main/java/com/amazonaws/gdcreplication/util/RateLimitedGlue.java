@@ -0,0 +1,149 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.services.glue.AWSGlue;
+
+/**
+ * This class puts an adaptive rate limiter in front of an AWSGlue client. Every
+ * call goes through one of two shared AIMD buckets: one for read APIs (Get*,
+ * BatchGet*, Search*) and one for all other, write, APIs. The buckets are
+ * static, so all the clients wrapped in one Lambda container share them.
+ *
+ * Throttled calls are retried here and not by the SDK. A client used with this
+ * class should be built with createClientConfiguration(), whose retry policy
+ * does not retry throttling errors, so that every throttle reaches the limiter.
+ *
+ * The initial rates are read from the environment variables glue_read_tps
+ * (default 50) and glue_write_tps (default 20). Each bucket may grow up to 10
+ * times its initial rate.
+ *
+ * Optionally, every call also takes a token from a DistributedTokenBucket, so
+ * that all the Lambda containers together stay within one Glue API budget.
+ *
+ */
+public class RateLimitedGlue implements InvocationHandler {
+
+	public static final int MAX_ERROR_RETRY = 10;
+
+	private static final AdaptiveRateLimiter READ_LIMITER = createLimiter("read", "glue_read_tps", "50");
+	private static final AdaptiveRateLimiter WRITE_LIMITER = createLimiter("write", "glue_write_tps", "20");
+
+	private final AWSGlue glue;
+	private final DistributedTokenBucket budget;
+
+	private RateLimitedGlue(AWSGlue glue, DistributedTokenBucket budget) {
+		this.glue = glue;
+		this.budget = budget;
+	}
+
+	/**
+	 * Wrap an AWSGlue client so that all of its calls go through the shared rate
+	 * limiters.
+	 *
+	 * @param glue
+	 * @return
+	 */
+	public static AWSGlue wrap(AWSGlue glue) {
+		return wrap(glue, null);
+	}
+
+	/**
+	 * Wrap an AWSGlue client so that all of its calls go through the shared rate
+	 * limiters and, if it is not null, the distributed budget.
+	 *
+	 * @param glue
+	 * @param budget
+	 * @return
+	 */
+	public static AWSGlue wrap(AWSGlue glue, DistributedTokenBucket budget) {
+		return (AWSGlue) Proxy.newProxyInstance(AWSGlue.class.getClassLoader(), new Class<?>[] { AWSGlue.class },
+				new RateLimitedGlue(glue, budget));
+	}
+
+	/**
+	 * Create a ClientConfiguration for the AWSGlue client that retries all the
+	 * retryable errors except throttling.
+	 *
+	 * @return
+	 */
+	public static ClientConfiguration createClientConfiguration() {
+		ClientConfiguration cc = new ClientConfiguration();
+		cc.setMaxErrorRetry(MAX_ERROR_RETRY);
+		cc.setRetryPolicy(new RetryPolicy((request, exception, retriesAttempted) -> !RetryUtils
+				.isThrottlingException(exception)
+				&& PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION.shouldRetry(request, exception, retriesAttempted),
+				PredefinedRetryPolicies.DEFAULT_BACKOFF_STRATEGY, MAX_ERROR_RETRY, true));
+		return cc;
+	}
+
+	public static AdaptiveRateLimiter getReadLimiter() {
+		return READ_LIMITER;
+	}
+
+	public static AdaptiveRateLimiter getWriteLimiter() {
+		return WRITE_LIMITER;
+	}
+
+	/**
+	 * Print the current rate and the throttle counts of both buckets
+	 */
+	public static void printStatistics() {
+		System.out.println("Glue rate limiter - " + READ_LIMITER);
+		System.out.println("Glue rate limiter - " + WRITE_LIMITER);
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class || method.getParameterCount() != 1)
+			return invokeTarget(method, args);
+
+		AdaptiveRateLimiter limiter = isReadApi(method.getName()) ? READ_LIMITER : WRITE_LIMITER;
+		int throttleRetries = 0;
+		while (true) {
+			if (Optional.ofNullable(budget).isPresent())
+				budget.acquire();
+			limiter.acquire();
+			try {
+				Object result = invokeTarget(method, args);
+				limiter.onSuccess();
+				return result;
+			} catch (AmazonServiceException e) {
+				if (!RetryUtils.isThrottlingException(e))
+					throw e;
+				limiter.onThrottle();
+				if (++throttleRetries > MAX_ERROR_RETRY)
+					throw e;
+			}
+		}
+	}
+
+	private Object invokeTarget(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(glue, args);
+		} catch (InvocationTargetException e) {
+			throw Optional.ofNullable(e.getCause()).orElse(e);
+		}
+	}
+
+	private static boolean isReadApi(String methodName) {
+		return methodName.startsWith("get") || methodName.startsWith("batchGet") || methodName.startsWith("search");
+	}
+
+	private static AdaptiveRateLimiter createLimiter(String name, String envVariable, String defaultRate) {
+		double initialRate = Double.parseDouble(Optional.ofNullable(System.getenv(envVariable)).orElse(defaultRate));
+		return new AdaptiveRateLimiter(name, initialRate, 1, initialRate * 10, 1, 0.5);
+	}
+}
@@ -0,0 +1,129 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * This is an OutputStream that writes an S3 object using multipart upload.
+ * Bytes are buffered until a part is full and then uploaded, so the heap used
+ * is bounded by the part size no matter how large the object is.
+ *
+ * The multipart upload is initiated only when the first part is full. If the
+ * content never fills a part, it is written with a single PutObject call when
+ * the stream is closed. If anything fails, call abort() to discard the parts
+ * uploaded so far.
+ *
+ */
+public class S3MultipartOutputStream extends OutputStream {
+
+	/**
+	 * Minimum part size accepted by S3 for every part except the last one
+	 */
+	public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+	private final AmazonS3 s3;
+	private final String bucket;
+	private final String objectKey;
+	private final byte[] buffer;
+	private final List<PartETag> partETags = new ArrayList<PartETag>();
+	private int position;
+	private String uploadId;
+	private long bytesWritten;
+	private boolean closed;
+
+	public S3MultipartOutputStream(AmazonS3 s3, String bucket, String objectKey, int partSize) {
+		this.s3 = s3;
+		this.bucket = bucket;
+		this.objectKey = objectKey;
+		this.buffer = new byte[Math.max(partSize, MIN_PART_SIZE)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (position == buffer.length)
+			uploadPart();
+		buffer[position++] = (byte) b;
+		bytesWritten++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (position == buffer.length)
+				uploadPart();
+			int count = Math.min(len, buffer.length - position);
+			System.arraycopy(b, off, buffer, position, count);
+			position += count;
+			off += count;
+			len -= count;
+			bytesWritten += count;
+		}
+	}
+
+	/**
+	 * Uploads the remaining bytes and completes the multipart upload.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		if (!Optional.ofNullable(uploadId).isPresent()) {
+			ObjectMetadata metadata = new ObjectMetadata();
+			metadata.setContentLength(position);
+			s3.putObject(new PutObjectRequest(bucket, objectKey, new ByteArrayInputStream(buffer, 0, position),
+					metadata));
+		} else {
+			if (position > 0)
+				uploadPart();
+			s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, objectKey, uploadId, partETags));
+		}
+		System.out.printf("Object '%s' written to S3. Number of parts: %d, size in bytes: %d \n", objectKey,
+				Math.max(partETags.size(), 1), bytesWritten);
+	}
+
+	/**
+	 * Aborts the multipart upload, if one was initiated, and discards the buffer.
+	 */
+	public void abort() {
+		closed = true;
+		if (Optional.ofNullable(uploadId).isPresent()) {
+			try {
+				s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucket, objectKey, uploadId));
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.out.println("Exception thrown while aborting multipart upload. Object key: " + objectKey);
+			}
+		}
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	private void uploadPart() {
+		if (!Optional.ofNullable(uploadId).isPresent())
+			uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucket, objectKey)).getUploadId();
+		UploadPartRequest uploadPartRequest = new UploadPartRequest().withBucketName(bucket).withKey(objectKey)
+				.withUploadId(uploadId).withPartNumber(partETags.size() + 1)
+				.withInputStream(new ByteArrayInputStream(buffer, 0, position)).withPartSize(position);
+		partETags.add(s3.uploadPart(uploadPartRequest).getPartETag());
+		position = 0;
+	}
+}
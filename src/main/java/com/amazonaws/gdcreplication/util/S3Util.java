@@ -12,11 +12,14 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.auth.profile.ProfileCredentialsProvider;
 import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.Table;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.GetObjectRequest;
@@ -43,7 +46,7 @@ public class S3Util {
 	 */
 	public boolean createS3Object(String region, String bucket, String objectKey, String content) {
 		boolean objectCreated = false;
-		AmazonS3 s3 = AmazonS3ClientBuilder.standard().withRegion(region).build();
+		AmazonS3 s3 = AWSClientRegistry.getS3(region);
 
 		byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
 		InputStream inputStream = new ByteArrayInputStream(contentBytes);
@@ -70,6 +73,22 @@ public class S3Util {
 		return objectCreated;
 	}
 
+	/**
+	 * Create an OutputStream that writes an object to S3 using multipart upload.
+	 * The caller must close the stream to complete the upload, or abort it on
+	 * failure.
+	 * @param region
+	 * @param bucket
+	 * @param objectKey
+	 * @param partSize
+	 * @return
+	 */
+	public S3MultipartOutputStream createMultipartOutputStream(String region, String bucket, String objectKey,
+			int partSize) {
+		AmazonS3 s3 = AWSClientRegistry.getS3(region);
+		return new S3MultipartOutputStream(s3, bucket, objectKey, partSize);
+	}
+
 	/**
 	 * Upload a file as an object to S3.
 	 * @param region
@@ -84,7 +103,7 @@ public class S3Util {
 
 		System.out.println("Uploading file to S3.");
 		boolean objectUploaded = false;
-		AmazonS3 s3Client = AmazonS3ClientBuilder.standard().withRegion(region).build();
+		AmazonS3 s3Client = AWSClientRegistry.getS3(region);
 
 		try {
 			// Upload a text string as a new object.
@@ -116,7 +135,7 @@ public class S3Util {
 		boolean objectCreated = false;
 
 		try {
-			AmazonS3 s3Client = AmazonS3ClientBuilder.standard().withRegion(region).build();
+			AmazonS3 s3Client = AWSClientRegistry.getS3(region);
 
 			// Upload a text string as a new object.
 			s3Client.putObject(bucketName, stringObjKeyName, tableDDL);
@@ -198,41 +217,132 @@ public class S3Util {
 		System.out.println();
 	}
 	
-	public List<Partition> getPartitionsFromS3(String region, String bucket, String key) {
-
-		String contentType = "";
-		Gson gson = new Gson();
-		S3Object fullObject = null;
-		AmazonS3 s3 = AmazonS3ClientBuilder.standard().withRegion(region).build();
-		System.out.printf("Bucket Name: %s, Object Key: %s \n", bucket, key);
-		
+	/**
+	 * Read a small S3 object, such as a manifest, as a UTF-8 string
+	 * @param region
+	 * @param bucket
+	 * @param key
+	 * @return the content, or null if the object could not be read
+	 */
+	public String readObjectAsString(String region, String bucket, String key) {
+		AmazonS3 s3 = AWSClientRegistry.getS3(region);
 		try {
-			fullObject = s3.getObject(new GetObjectRequest(bucket, key));
+			return s3.getObjectAsString(bucket, key);
 		} catch (Exception e) {
 			e.printStackTrace();
-			System.out.println("Exception thrown while reading object from S3");	
+			System.out.printf("Exception thrown while reading object from S3. Bucket Name: %s, Object Key: %s \n",
+					bucket, key);
 		}
-		
-		InputStream input = fullObject.getObjectContent();
-		contentType = fullObject.getObjectMetadata().getContentType();
-		System.out.println("CONTENT TYPE: " + contentType);
+		return null;
+	}
 
-		// Read the text input stream one line at a time and display each line.
+	public List<Partition> getPartitionsFromS3(String region, String bucket, String key) {
 		List<Partition> partitionList = new ArrayList<Partition>();
+		readPartitionsFromS3(region, bucket, key, partition -> partitionList.add(partition));
+		System.out.println("Number of partitions read from S3: " + partitionList.size());
+		return partitionList;
+	}
 
-		BufferedReader reader = new BufferedReader(new InputStreamReader(input));
-		String line = null;
-		try {
-			while ((line = reader.readLine()) != null) {
-				Partition partition = gson.fromJson(line, Partition.class);
-				partitionList.add(partition);
-			}
+	/**
+	 * Read an S3 object with one partition per line and hand over each partition
+	 * to the consumer as soon as it is parsed. The object is never held in memory
+	 * as a whole.
+	 * @param region
+	 * @param bucket
+	 * @param key
+	 * @param partitionConsumer
+	 * @return true if the whole object was read and parsed
+	 */
+	public boolean readPartitionsFromS3(String region, String bucket, String key,
+			Consumer<Partition> partitionConsumer) {
+		return readPartitionsFromS3(region, bucket, key, null, partitionConsumer);
+	}
+
+	/**
+	 * Read an S3 object with one partition per line and hand over each partition
+	 * to the consumer as soon as it is parsed. If compactBaseTable is not null,
+	 * each line is a CompactPartition and it is expanded against that table.
+	 * @param region
+	 * @param bucket
+	 * @param key
+	 * @param compactBaseTable
+	 * @param partitionConsumer
+	 * @return true if the whole object was read and parsed
+	 */
+	public boolean readPartitionsFromS3(String region, String bucket, String key, Table compactBaseTable,
+			Consumer<Partition> partitionConsumer) {
+		return readPartitionsFromS3(region, bucket, key, compactBaseTable, 0, partitionConsumer);
+	}
+
+	/**
+	 * Read an S3 object with one partition per line, skipping the first
+	 * recordsToSkip partitions without parsing them, and hand over each of the
+	 * other partitions to the consumer as soon as it is parsed. If
+	 * compactBaseTable is not null, each line is a CompactPartition and it is
+	 * expanded against that table. The object is always read from its start:
+	 * skipped partitions are still downloaded.
+	 * @param region
+	 * @param bucket
+	 * @param key
+	 * @param compactBaseTable
+	 * @param recordsToSkip
+	 * @param partitionConsumer
+	 * @return true if the whole object was read and parsed
+	 */
+	public boolean readPartitionsFromS3(String region, String bucket, String key, Table compactBaseTable,
+			long recordsToSkip, Consumer<Partition> partitionConsumer) {
+
+		boolean objectRead = false;
+		AmazonS3 s3 = AWSClientRegistry.getS3(region);
+		System.out.printf("Bucket Name: %s, Object Key: %s \n", bucket, key);
+
+		try (S3Object fullObject = s3.getObject(new GetObjectRequest(bucket, key));
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(fullObject.getObjectContent(), StandardCharsets.UTF_8))) {
+			System.out.println("CONTENT TYPE: " + fullObject.getObjectMetadata().getContentType());
+			readPartitions(reader, compactBaseTable, recordsToSkip, partitionConsumer);
+			objectRead = true;
 		} catch (JsonSyntaxException | IOException e) {
 			System.out.println("Exception occured while reading partition information from S3 object.");
 			e.printStackTrace();
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.println("Exception thrown while reading object from S3");
+		}
+		return objectRead;
+	}
+
+	/**
+	 * This method parses partitions, one JSON document per line, and hands them to
+	 * the consumer as soon as each one is parsed. Empty lines are ignored. If
+	 * compactBaseTable is not null, each line is a CompactPartition and it is
+	 * expanded against that table.
+	 * @param reader
+	 * @param compactBaseTable
+	 * @param recordsToSkip
+	 * @param partitionConsumer
+	 * @throws IOException
+	 */
+	public void readPartitions(BufferedReader reader, Table compactBaseTable, long recordsToSkip,
+			Consumer<Partition> partitionConsumer) throws IOException {
+
+		long recordsSkipped = 0;
+		Gson gson = GsonRegistry.getGson();
+		GlueUtil glueUtil = new GlueUtil();
+		String line = null;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			if (recordsSkipped < recordsToSkip) {
+				recordsSkipped++;
+				continue;
+			}
+			if (Optional.ofNullable(compactBaseTable).isPresent())
+				partitionConsumer.accept(
+						glueUtil.expandPartition(compactBaseTable, gson.fromJson(line, CompactPartition.class)));
+			else
+				partitionConsumer.accept(gson.fromJson(line, Partition.class));
 		}
-		System.out.println("Number of partitions read from S3: " + partitionList.size());
-		return partitionList;
 	}
 
 }
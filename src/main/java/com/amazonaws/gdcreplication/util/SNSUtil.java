@@ -14,6 +14,7 @@ import com.amazonaws.services.sns.AmazonSNS;
 import com.amazonaws.services.sns.model.MessageAttributeValue;
 import com.amazonaws.services.sns.model.PublishRequest;
 import com.amazonaws.services.sns.model.PublishResult;
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 
 /**
@@ -24,21 +25,36 @@ import com.google.gson.Gson;
 public class SNSUtil {
 
 	
+	/**
+	 * This method publishes the schema of a Large Table to SNS Topic. The message
+	 * is encoded with the given PayloadCodec.
+	 * 
+	 * @param sns
+	 * @param topicArn
+	 * @param region
+	 * @param bucketName
+	 * @param message
+	 * @param sourceGlueCatalogId
+	 * @param exportBatchId
+	 * @param messageType
+	 * @param codec
+	 * @return
+	 */
 	public PublishResult publishLargeTableSchemaToSNS(AmazonSNS sns, String topicArn, String region, String bucketName, String message,
-			String sourceGlueCatalogId, String exportBatchId, String messageType) {
+			String sourceGlueCatalogId, String exportBatchId, String messageType, PayloadCodec codec) {
 		
 		PublishResult publishResponse = null;
 		
-		PublishRequest publishRequest = new PublishRequest(topicArn, message);
-		
 		Map<String, MessageAttributeValue> messageAttributes = new HashMap<String, MessageAttributeValue>();
 		messageAttributes.put("source_catalog_id", createStringAttribute(sourceGlueCatalogId));
 		messageAttributes.put("message_type", createStringAttribute(messageType));
 		messageAttributes.put("export_batch_id", createStringAttribute(exportBatchId));
 		messageAttributes.put("bucket_name", createStringAttribute(bucketName));
 		messageAttributes.put("region_name", createStringAttribute(region));
-		publishRequest.setMessageAttributes(messageAttributes);
+		messageAttributes.put(PayloadCodec.SNS_ATTRIBUTE, createStringAttribute(codec.getName()));
 		try {
+			PublishRequest publishRequest = new PublishRequest(topicArn, codec.encode(message));
+			publishRequest.setMessageAttributes(messageAttributes);
 			publishResponse = sns.publish(publishRequest);
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -88,17 +104,39 @@ public class SNSUtil {
 	 */
 	public int publishDatabaseSchemasToSNS(AmazonSNS sns, List<Database> masterDBList, String snsTopicArn,
 			DDBUtil ddbUtil, String ddbTblName, String sourceGlueCatalogId) {
-		long exportRunId = System.currentTimeMillis();
+		return publishDatabaseSchemasToSNS(sns, masterDBList, snsTopicArn, ddbUtil, ddbTblName, sourceGlueCatalogId,
+				System.currentTimeMillis(), true);
+	}
+
+	/**
+	 * This method publishes all Database Schemas (DDL) to SNS Topic and tracks the
+	 * status in a DynamoDB table. When exportTables is false, the messages ask the
+	 * export function to export the database only; its tables are then published
+	 * separately with publishTableBatchesToSNS.
+	 * 
+	 * @param sns
+	 * @param masterDBList
+	 * @param snsTopicArn
+	 * @param ddbUtil
+	 * @param ddbTblName
+	 * @param sourceGlueCatalogId
+	 * @param exportRunId
+	 * @param exportTables
+	 * @return
+	 */
+	public int publishDatabaseSchemasToSNS(AmazonSNS sns, List<Database> masterDBList, String snsTopicArn,
+			DDBUtil ddbUtil, String ddbTblName, String sourceGlueCatalogId, long exportRunId, boolean exportTables) {
 		String exportBatchId = Long.toString(exportRunId);
 		AtomicInteger numberOfDatabasesExported = new AtomicInteger();
 		// Create Message Attributes
 		MessageAttributeValue sourceCatalogIdMA = createStringAttribute(sourceGlueCatalogId);
 		MessageAttributeValue msgTypeMA = createStringAttribute("database");
 		MessageAttributeValue exportBatchIdMA = createStringAttribute(exportBatchId);
+		MessageAttributeValue exportTablesMA = createStringAttribute(Boolean.toString(exportTables));
 		// Convert databases to JSON Messages and publish them to SNS Topic
 		for (Database db : masterDBList) {
 			// Convert Glue Database to JSON String
-			Gson gson = new Gson();
+			Gson gson = GsonRegistry.getGson();
 			String databaseDDL = gson.toJson(db);
 			// Publish JSON String to Amazon SNS topic
 			PublishRequest publishRequest = new PublishRequest(snsTopicArn, databaseDDL);
@@ -106,6 +144,7 @@ public class SNSUtil {
 			messageAttributes.put("source_catalog_id", sourceCatalogIdMA);
 			messageAttributes.put("message_type", msgTypeMA);
 			messageAttributes.put("export_batch_id", exportBatchIdMA);
+			messageAttributes.put("export_tables", exportTablesMA);
 			publishRequest.setMessageAttributes(messageAttributes);
 			try {
 				PublishResult publishResponse = sns.publish(publishRequest);
@@ -127,23 +166,103 @@ public class SNSUtil {
 		return numberOfDatabasesExported.get();
 	}
 
+	/**
+	 * This method publishes a continuation of the export of a database. It is a
+	 * database message with a 'table_cursor' attribute: the export function that
+	 * receives it does not publish the database again and exports only the tables
+	 * whose name sorts after the cursor.
+	 * 
+	 * @param sns
+	 * @param snsTopicArn
+	 * @param databaseDDL
+	 * @param sourceGlueCatalogId
+	 * @param exportBatchId
+	 * @param tableCursor the name of the last table exported
+	 * @return
+	 */
+	public PublishResult publishDatabaseContinuationToSNS(AmazonSNS sns, String snsTopicArn, String databaseDDL,
+			String sourceGlueCatalogId, String exportBatchId, String tableCursor) {
+		PublishResult publishResponse = null;
+		Map<String, MessageAttributeValue> messageAttributes = new HashMap<String, MessageAttributeValue>();
+		messageAttributes.put("source_catalog_id", createStringAttribute(sourceGlueCatalogId));
+		messageAttributes.put("message_type", createStringAttribute("database"));
+		messageAttributes.put("export_batch_id", createStringAttribute(exportBatchId));
+		messageAttributes.put("export_tables", createStringAttribute(Boolean.toString(true)));
+		messageAttributes.put("table_cursor", createStringAttribute(tableCursor));
+		try {
+			publishResponse = sns.publish(new PublishRequest(snsTopicArn, databaseDDL)
+					.withMessageAttributes(messageAttributes));
+			System.out.printf("Continuation of database export published to SNS Topic. Table cursor: '%s', Message_Id: %s \n",
+					tableCursor, publishResponse.getMessageId());
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.out.printf("Continuation of database export could not be published to SNS Topic. Table cursor: '%s' \n",
+					tableCursor);
+		}
+		return publishResponse;
+	}
+
+	/**
+	 * This method publishes the tables of a database to SNS Topic in batches of
+	 * 'batchSize' table names. Each batch is exported by a separate invocation of
+	 * the export function.
+	 * 
+	 * @param sns
+	 * @param snsTopicArn
+	 * @param databaseName
+	 * @param tableNames
+	 * @param batchSize
+	 * @param sourceGlueCatalogId
+	 * @param exportBatchId
+	 * @return number of batches published
+	 */
+	public int publishTableBatchesToSNS(AmazonSNS sns, String snsTopicArn, String databaseName,
+			List<String> tableNames, int batchSize, String sourceGlueCatalogId, String exportBatchId) {
+		int numberOfBatchesPublished = 0;
+		Gson gson = GsonRegistry.getGson();
+		Map<String, MessageAttributeValue> messageAttributes = new HashMap<String, MessageAttributeValue>();
+		messageAttributes.put("source_catalog_id", createStringAttribute(sourceGlueCatalogId));
+		messageAttributes.put("message_type", createStringAttribute("tableBatch"));
+		messageAttributes.put("export_batch_id", createStringAttribute(exportBatchId));
+		for (List<String> batch : Lists.partition(tableNames, Math.max(batchSize, 1))) {
+			String message = gson.toJson(new TableBatch(databaseName, batch));
+			PublishRequest publishRequest = new PublishRequest(snsTopicArn, message)
+					.withMessageAttributes(messageAttributes);
+			try {
+				sns.publish(publishRequest);
+				numberOfBatchesPublished++;
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.out.printf("A batch of %d tables of database '%s' could not be published to SNS Topic. \n",
+						batch.size(), databaseName);
+				System.out.println("Message to be published: " + message);
+			}
+		}
+		System.out.printf("Database: %s, number of tables: %d, number of table batches published to SNS: %d \n",
+				databaseName, tableNames.size(), numberOfBatchesPublished);
+		return numberOfBatchesPublished;
+	}
+
 	/**
 	 * This method publishes Table Schema (DDL) to SNS Topic
 	 * 
 	 * @param sns
 	 * @param topicArn
-	 * @param tableDDL
+	 * @param tableDDL the payload, already encoded with the codec named payloadCodec
 	 * @param sourceGlueCatalogId
+	 * @param exportBatchId
+	 * @param payloadCodec
 	 * @return
 	 */
 	public PublishResult publishTableSchemaToSNS(AmazonSNS sns, String topicArn, Table table, String tableDDL,
-			String sourceGlueCatalogId, String exportBatchId) {
+			String sourceGlueCatalogId, String exportBatchId, String payloadCodec) {
 		PublishResult publishResponse = null;
 		PublishRequest publishRequest = new PublishRequest(topicArn, tableDDL);
 		Map<String, MessageAttributeValue> messageAttributes = new HashMap<String, MessageAttributeValue>();
 		messageAttributes.put("source_catalog_id", createStringAttribute(sourceGlueCatalogId));
 		messageAttributes.put("message_type", createStringAttribute("table"));
 		messageAttributes.put("export_batch_id", createStringAttribute(exportBatchId));
+		messageAttributes.put(PayloadCodec.SNS_ATTRIBUTE, createStringAttribute(payloadCodec));
 		publishRequest.setMessageAttributes(messageAttributes);
 		try {
 			publishResponse = sns.publish(publishRequest);
@@ -3,6 +3,7 @@
 
 package com.amazonaws.gdcreplication.util;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -15,13 +16,20 @@ import com.google.gson.Gson;
 public class SQSUtil {
 
 	public boolean sendTableSchemaToSQSQueue(AmazonSQS sqs, String queueUrl, LargeTable largeTable,
-			String exportBatchId, String sourceGlueCatalogId) {
+			String exportBatchId, String sourceGlueCatalogId, PayloadCodec codec) {
 
-		Gson gson = new Gson();
+		Gson gson = GsonRegistry.getGson();
 		String tableInfo = gson.toJson(largeTable);
 		System.out.println(tableInfo);
 		
 		int statusCode = 400;
+		try {
+			tableInfo = codec.encode(tableInfo);
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Exception thrown while encoding message. " + e.getLocalizedMessage());
+			return false;
+		}
 		boolean messageSentToSQS = false;
 		Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
 		messageAttributes.put("ExportBatchId",
@@ -30,6 +38,8 @@ public class SQSUtil {
 				.withDataType("String.SourceGlueDataCatalogId").withStringValue(sourceGlueCatalogId));
 		messageAttributes.put("SchemaType",
 				new MessageAttributeValue().withDataType("String.SchemaType").withStringValue("largeTable"));
+		messageAttributes.put(PayloadCodec.SQS_ATTRIBUTE,
+				new MessageAttributeValue().withDataType("String.PayloadCodec").withStringValue(codec.getName()));
 
 		SendMessageRequest req = new SendMessageRequest().withQueueUrl(queueUrl)
 				.withMessageBody(tableInfo).withMessageAttributes(messageAttributes);
@@ -78,10 +88,30 @@ public class SQSUtil {
 
 	}
 	
+	/**
+	 * Send the schema of a table that could not be imported to the dead letter
+	 * queue. The schema can be as large as the SNS message it came from once
+	 * decoded, so it is always sent gzip encoded.
+	 * 
+	 * @param sqs
+	 * @param queueUrl
+	 * @param tableStatus
+	 * @param exportBatchId
+	 * @param sourceGlueCatalogId
+	 */
 	public void sendTableSchemaToDeadLetterQueue(AmazonSQS sqs, String queueUrl, TableReplicationStatus tableStatus,
 			String exportBatchId, String sourceGlueCatalogId) {
 
 		int statusCode = 400;
+		PayloadCodec codec = new GzipPayloadCodec();
+		String tableSchema;
+		try {
+			tableSchema = codec.encode(tableStatus.getTableSchema());
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.out.println("Exception thrown while encoding message. " + e.getLocalizedMessage());
+			return;
+		}
 		Map<String, MessageAttributeValue> messageAttributes = new HashMap<>();
 		messageAttributes.put("ExportBatchId",
 				new MessageAttributeValue().withDataType("String.ExportBatchId").withStringValue(exportBatchId));
@@ -89,9 +119,11 @@ public class SQSUtil {
 				.withDataType("String.SourceGlueDataCatalogId").withStringValue(sourceGlueCatalogId));
 		messageAttributes.put("SchemaType",
 				new MessageAttributeValue().withDataType("String.SchemaType").withStringValue("Table"));
+		messageAttributes.put(PayloadCodec.SQS_ATTRIBUTE,
+				new MessageAttributeValue().withDataType("String.PayloadCodec").withStringValue(codec.getName()));
 
 		SendMessageRequest req = new SendMessageRequest().withQueueUrl(queueUrl)
-				.withMessageBody(tableStatus.getTableSchema()).withMessageAttributes(messageAttributes);
+				.withMessageBody(tableSchema).withMessageAttributes(messageAttributes);
 
 		try {
 			SendMessageResult sendMsgRes = sqs.sendMessage(req);
@@ -0,0 +1,123 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import com.amazonaws.services.glue.AWSGlue;
+import com.amazonaws.services.glue.model.Partition;
+import com.amazonaws.services.glue.model.Table;
+import com.google.common.io.CountingOutputStream;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * This class serializes a Table and its partitions to the JSON of
+ * TableWithPartitions, reading the partitions page by page while it writes
+ * them. The JSON is encoded with a PayloadCodec as it is written. The
+ * serializer keeps count of the size of the encoded payload written so far and
+ * gives up, without reading further pages, as soon as the payload exceeds the
+ * byte budget or the table has more partitions than the partition threshold.
+ *
+ * If compactPartitions is set, the partitions are written as CompactPartitions
+ * to compactPartitionList instead of partitionList.
+ *
+ * The decoded payload is the same as gson.toJson(tableWithPartitions).
+ *
+ */
+public class SizeBoundedTableSerializer {
+
+	public static final int PAGE_SIZE = 100;
+
+	private final Gson gson;
+	private final PayloadCodec codec;
+	private final int byteBudget;
+	private final int partitionThreshold;
+	private final boolean compactPartitions;
+	private int numberOfPartitionsRead;
+	private long numberOfBytesWritten;
+
+	public SizeBoundedTableSerializer(Gson gson, PayloadCodec codec, int byteBudget, int partitionThreshold,
+			boolean compactPartitions) {
+		this.gson = gson;
+		this.codec = codec;
+		this.byteBudget = byteBudget;
+		this.partitionThreshold = partitionThreshold;
+		this.compactPartitions = compactPartitions;
+	}
+
+	/**
+	 * Serialize a Table with all its partitions
+	 *
+	 * @param glue
+	 * @param glueUtil
+	 * @param catalogId
+	 * @param table
+	 * @return the encoded payload, or null if the table does not fit in the budget
+	 */
+	public String serialize(AWSGlue glue, GlueUtil glueUtil, String catalogId, Table table) {
+		numberOfPartitionsRead = 0;
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		CountingOutputStream countingStream = new CountingOutputStream(payload);
+		try {
+			// The codec may buffer; the JsonWriter is flushed after every page so
+			// that the count includes everything written so far.
+			JsonWriter jsonWriter = gson.newJsonWriter(
+					new OutputStreamWriter(codec.encodingStream(countingStream), StandardCharsets.UTF_8));
+			jsonWriter.beginObject();
+			jsonWriter.name("table");
+			gson.toJson(table, Table.class, jsonWriter);
+			jsonWriter.name(compactPartitions ? "compactPartitionList" : "partitionList");
+			jsonWriter.beginArray();
+			jsonWriter.flush();
+			boolean fits = countingStream.getCount() <= byteBudget && glueUtil.getPartitionsWhile(glue, catalogId,
+					table.getDatabaseName(), table.getName(), PAGE_SIZE, page -> {
+						for (Partition partition : page) {
+							if (++numberOfPartitionsRead > partitionThreshold)
+								return false;
+							if (compactPartitions)
+								gson.toJson(glueUtil.compactPartition(table, partition), CompactPartition.class,
+										jsonWriter);
+							else
+								gson.toJson(partition, Partition.class, jsonWriter);
+						}
+						try {
+							jsonWriter.flush();
+						} catch (IOException e) {
+							throw new JsonIOException(e);
+						}
+						return countingStream.getCount() <= byteBudget;
+					});
+			jsonWriter.endArray();
+			jsonWriter.endObject();
+			jsonWriter.close();
+			numberOfBytesWritten = countingStream.getCount();
+			if (fits && numberOfBytesWritten <= byteBudget)
+				return new String(payload.toByteArray(), StandardCharsets.UTF_8);
+		} catch (IOException | JsonIOException e) {
+			e.printStackTrace();
+			System.out.printf("Table '%s' of database '%s' could not be serialized. \n", table.getName(),
+					table.getDatabaseName());
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of partitions read by the last call to serialize
+	 */
+	public int getNumberOfPartitionsRead() {
+		return numberOfPartitionsRead;
+	}
+
+	/**
+	 * @return the size of the encoded payload written by the last call to serialize
+	 */
+	public long getNumberOfBytesWritten() {
+		return numberOfBytesWritten;
+	}
+}
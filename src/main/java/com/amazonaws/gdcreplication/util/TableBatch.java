@@ -0,0 +1,42 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.List;
+
+/**
+ * This is a POJO class for a batch of tables of one database. The replication
+ * planner publishes it, in table fan-out mode, so that the tables of a database
+ * are exported by many Lambda invocations in parallel.
+ *
+ */
+public class TableBatch {
+
+	private String databaseName;
+	private List<String> tableNames;
+
+	public TableBatch() {
+	}
+
+	public TableBatch(String databaseName, List<String> tableNames) {
+		this.databaseName = databaseName;
+		this.tableNames = tableNames;
+	}
+
+	public String getDatabaseName() {
+		return databaseName;
+	}
+
+	public void setDatabaseName(String databaseName) {
+		this.databaseName = databaseName;
+	}
+
+	public List<String> getTableNames() {
+		return tableNames;
+	}
+
+	public void setTableNames(List<String> tableNames) {
+		this.tableNames = tableNames;
+	}
+}
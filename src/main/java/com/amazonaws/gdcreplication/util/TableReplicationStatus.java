@@ -3,6 +3,9 @@
 
 package com.amazonaws.gdcreplication.util;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * 
  * This is a POJO class for Glue Database Table Replication Status
@@ -19,12 +22,31 @@ public class TableReplicationStatus {
 	private long replicationTime;
 	private boolean created;
 	private boolean updated;
+	private boolean unchanged;
 	private boolean replicated;
 	private boolean exportHasPartitions;
 	private boolean partitionsReplicated;
 	private boolean error;
 	private boolean dbNotFoundError;
+	private int numberOfPartitionsAdded;
+	private int numberOfPartitionsDeleted;
+	private int numberOfPartitionsUpdated;
+	private int numberOfPartitionsFailed;
+	private int numberOfPartitionRetries;
+	private Map<String, Integer> partitionErrorCodes = new TreeMap<String, Integer>();
 	
+	/**
+	 * Add the outcome of the batch partition requests of an import step to the
+	 * partition failures, retries and error codes of this table
+	 * 
+	 * @param batchResult
+	 */
+	public void addPartitionBatchResult(PartitionBatchResult batchResult) {
+		numberOfPartitionsFailed += batchResult.getNumberOfPartitionsFailed();
+		numberOfPartitionRetries += batchResult.getNumberOfPartitionRetries();
+		batchResult.getErrorCodeCounts()
+				.forEach((code, count) -> partitionErrorCodes.merge(code, count, Integer::sum));
+	}
 	public boolean isDbNotFoundError() {
 		return dbNotFoundError;
 	}
@@ -85,6 +107,12 @@ public class TableReplicationStatus {
 	public void setUpdated(boolean updated) {
 		this.updated = updated;
 	}
+	public boolean isUnchanged() {
+		return unchanged;
+	}
+	public void setUnchanged(boolean unchanged) {
+		this.unchanged = unchanged;
+	}
 	public boolean isExportHasPartitions() {
 		return exportHasPartitions;
 	}
@@ -97,5 +125,41 @@ public class TableReplicationStatus {
 	public void setPartitionsReplicated(boolean partitionsReplicated) {
 		this.partitionsReplicated = partitionsReplicated;
 	}
+	public int getNumberOfPartitionsAdded() {
+		return numberOfPartitionsAdded;
+	}
+	public void setNumberOfPartitionsAdded(int numberOfPartitionsAdded) {
+		this.numberOfPartitionsAdded = numberOfPartitionsAdded;
+	}
+	public int getNumberOfPartitionsDeleted() {
+		return numberOfPartitionsDeleted;
+	}
+	public void setNumberOfPartitionsDeleted(int numberOfPartitionsDeleted) {
+		this.numberOfPartitionsDeleted = numberOfPartitionsDeleted;
+	}
+	public int getNumberOfPartitionsUpdated() {
+		return numberOfPartitionsUpdated;
+	}
+	public void setNumberOfPartitionsUpdated(int numberOfPartitionsUpdated) {
+		this.numberOfPartitionsUpdated = numberOfPartitionsUpdated;
+	}
+	public int getNumberOfPartitionsFailed() {
+		return numberOfPartitionsFailed;
+	}
+	public void setNumberOfPartitionsFailed(int numberOfPartitionsFailed) {
+		this.numberOfPartitionsFailed = numberOfPartitionsFailed;
+	}
+	public int getNumberOfPartitionRetries() {
+		return numberOfPartitionRetries;
+	}
+	public void setNumberOfPartitionRetries(int numberOfPartitionRetries) {
+		this.numberOfPartitionRetries = numberOfPartitionRetries;
+	}
+	public Map<String, Integer> getPartitionErrorCodes() {
+		return partitionErrorCodes;
+	}
+	public void setPartitionErrorCodes(Map<String, Integer> partitionErrorCodes) {
+		this.partitionErrorCodes = partitionErrorCodes;
+	}
 	
 }
@@ -11,6 +11,7 @@ public class TableWithPartitions {
 
 	private Table table;
 	private List<Partition> partitionList;
+	private List<CompactPartition> compactPartitionList;
 	
 	public Table getTable() {
 		return table;
@@ -24,6 +25,12 @@ public class TableWithPartitions {
 	public void setPartitionList(List<Partition> partitionList) {
 		this.partitionList = partitionList;
 	}
+	public List<CompactPartition> getCompactPartitionList() {
+		return compactPartitionList;
+	}
+	public void setCompactPartitionList(List<CompactPartition> compactPartitionList) {
+		this.compactPartitionList = compactPartitionList;
+	}
 	
 	
 	
@@ -0,0 +1,175 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.services.glue.AWSGlue;
+import com.amazonaws.services.glue.model.Database;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+
+/**
+ * This class caches what an import Lambda container knows about the target
+ * Glue Data Catalog, so that the messages of warm invocations do not need a
+ * GetDatabase or GetTable call each. Like AWSClientRegistry, the caches are
+ * kept in a static registry and live as long as the container.
+ *
+ * It holds:
+ * <ul>
+ * <li>databases known to exist, and databases known not to exist (negative
+ * lookups)</li>
+ * <li>the definition hash of target tables, see
+ * FingerprintUtil.getTableDefinitionHash</li>
+ * </ul>
+ * Entries expire a fixed time after they were written and the number of
+ * entries is bounded. The importers invalidate the entries of the databases and
+ * tables they write. Changes made to the target catalog by anyone else are
+ * seen once the entries expire.
+ *
+ * A warm-up reads all the databases of the catalog with GetDatabases. Until it
+ * expires, a database that is not cached is known not to exist, unless it was
+ * invalidated or the cache has evicted entries since.
+ *
+ */
+public class TargetCatalogCache {
+
+	private static final Map<String, TargetCatalogCache> CACHES = new ConcurrentHashMap<String, TargetCatalogCache>();
+
+	private final String catalogId;
+	private final long ttlMillis;
+	private final Cache<String, Optional<Database>> databases;
+	private final Cache<String, String> tableDefinitionHashes;
+	private final Set<String> invalidatedDatabases = ConcurrentHashMap.newKeySet();
+	private volatile long warmUpTime;
+	private volatile boolean warmUpComplete;
+
+	private TargetCatalogCache(String catalogId, long ttlSeconds, long maximumSize) {
+		this.catalogId = catalogId;
+		this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		this.databases = CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.maximumSize(maximumSize).recordStats().<String, Optional<Database>>removalListener(notification -> {
+					if (notification.getCause() == RemovalCause.SIZE)
+						warmUpComplete = false;
+				}).build();
+		this.tableDefinitionHashes = CacheBuilder.newBuilder().expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.maximumSize(maximumSize).recordStats().build();
+	}
+
+	/**
+	 * Get the cache of a target catalog. The cache is created the first time it is
+	 * asked for.
+	 *
+	 * @param catalogId
+	 * @param ttlSeconds
+	 * @param maximumSize the maximum number of databases and the maximum number
+	 *                    of tables cached
+	 * @return
+	 */
+	public static TargetCatalogCache getInstance(String catalogId, long ttlSeconds, long maximumSize) {
+		String key = String.join("|", catalogId, Long.toString(ttlSeconds), Long.toString(maximumSize));
+		return CACHES.computeIfAbsent(key, k -> new TargetCatalogCache(catalogId, ttlSeconds, maximumSize));
+	}
+
+	/**
+	 * Fill the cache with all the databases of the catalog, in one paginated
+	 * sweep of GetDatabases. Nothing is done until the last warm-up has expired,
+	 * even if it is no longer complete.
+	 *
+	 * @param glue
+	 * @param glueUtil
+	 */
+	public synchronized void warmUp(AWSGlue glue, GlueUtil glueUtil) {
+		if (System.currentTimeMillis() - warmUpTime < ttlMillis)
+			return;
+		long startTime = System.currentTimeMillis();
+		List<Database> databaseList = glueUtil.getDatabases(glue, catalogId);
+		invalidatedDatabases.clear();
+		warmUpComplete = true;
+		for (Database database : databaseList)
+			databases.put(database.getName(), Optional.of(database));
+		warmUpTime = startTime;
+		System.out.printf("Target catalog cache warmed up with %d databases in %d ms. Complete: %b \n",
+				databaseList.size(), System.currentTimeMillis() - startTime, warmUpComplete);
+	}
+
+	/**
+	 * Look up a database
+	 *
+	 * @param databaseName
+	 * @return a present Optional if the database exists, an empty Optional if it
+	 *         does not exist, or null if that is not known
+	 */
+	public Optional<Database> getDatabase(String databaseName) {
+		Optional<Database> database = databases.getIfPresent(databaseName);
+		if (!Optional.ofNullable(database).isPresent() && isWarm() && !invalidatedDatabases.contains(databaseName))
+			return Optional.empty();
+		return database;
+	}
+
+	/**
+	 * Record the result of a database lookup
+	 *
+	 * @param databaseName
+	 * @param database     the database, or null if it does not exist
+	 */
+	public void putDatabase(String databaseName, Database database) {
+		databases.put(databaseName, Optional.ofNullable(database));
+	}
+
+	/**
+	 * Forget a database, e.g. after creating it. It is looked up in Glue the next
+	 * time, even if the warm-up says that it does not exist.
+	 *
+	 * @param databaseName
+	 */
+	public void invalidateDatabase(String databaseName) {
+		invalidatedDatabases.add(databaseName);
+		databases.invalidate(databaseName);
+	}
+
+	/**
+	 * @param databaseName
+	 * @param tableName
+	 * @return the definition hash of a target table, or null if it is not cached
+	 */
+	public String getTableDefinitionHash(String databaseName, String tableName) {
+		return tableDefinitionHashes.getIfPresent(getTableKey(databaseName, tableName));
+	}
+
+	public void putTableDefinitionHash(String databaseName, String tableName, String definitionHash) {
+		tableDefinitionHashes.put(getTableKey(databaseName, tableName), definitionHash);
+	}
+
+	/**
+	 * Forget a table, e.g. after creating or updating it
+	 *
+	 * @param databaseName
+	 * @param tableName
+	 */
+	public void invalidateTable(String databaseName, String tableName) {
+		tableDefinitionHashes.invalidate(getTableKey(databaseName, tableName));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("catalog = %s, databases = %d (%s), tables = %d (%s), warm = %b", catalogId,
+				databases.size(), databases.stats(), tableDefinitionHashes.size(), tableDefinitionHashes.stats(),
+				isWarm());
+	}
+
+	private boolean isWarm() {
+		return warmUpComplete && System.currentTimeMillis() - warmUpTime < ttlMillis;
+	}
+
+	private String getTableKey(String databaseName, String tableName) {
+		return databaseName + "|" + tableName;
+	}
+}
@@ -0,0 +1,234 @@
+// Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.amazonaws.gdcreplication.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.dynamodbv2.AbstractAmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.GetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.GetItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+
+/**
+ * Tests of DDBUtil.leaseTokens and DistributedTokenBucket against a stand-in
+ * for the DynamoDB table of the Glue API budget.
+ *
+ */
+public class DistributedTokenBucketTest {
+
+	private static final String TABLE_NAME = "glue_api_budget";
+	private static final String BUCKET_ID = "target-catalog";
+
+	private final DDBUtil ddbUtil = new DDBUtil();
+	private BudgetTable budgetTable;
+
+	@Before
+	public void setUp() {
+		budgetTable = new BudgetTable();
+	}
+
+	@Test
+	public void firstLeaseCreatesFullBucket() {
+		int tokensLeased = ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 100, 100, 5);
+
+		assertEquals(10, tokensLeased);
+		assertEquals(90, budgetTable.getTokens(), 0.001);
+	}
+
+	@Test
+	public void leaseIsLimitedToTokensLeft() {
+		assertEquals(10, ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 0, 15, 5));
+		assertEquals(5, ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 0, 15, 5));
+		assertEquals(0, ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 0, 15, 5));
+		assertEquals(0, budgetTable.getTokens(), 0.001);
+	}
+
+	@Test
+	public void emptyBucketIsRefilledFromElapsedTime() {
+		budgetTable.putBucket(0, System.currentTimeMillis() - 1000);
+
+		// One second at 20 tokens per second refills the bucket up to its capacity of 20
+		int tokensLeased = ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 50, 20, 20, 5);
+
+		assertEquals(20, tokensLeased);
+		assertEquals(0, budgetTable.getTokens(), 0.001);
+	}
+
+	@Test
+	public void refillIsCappedByCapacity() {
+		budgetTable.putBucket(0, System.currentTimeMillis() - 60000);
+
+		int tokensLeased = ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 100, 30, 5);
+
+		assertEquals(10, tokensLeased);
+		assertEquals(20, budgetTable.getTokens(), 0.001);
+	}
+
+	@Test
+	public void leaseRetriesWhenBucketWasUpdatedConcurrently() {
+		budgetTable.putBucket(100, System.currentTimeMillis());
+		// Another container takes 30 tokens between the read and the conditional update
+		budgetTable.interleaveBeforeNextUpdate(() -> budgetTable.putBucket(70, budgetTable.getLastRefillMillis()));
+
+		int tokensLeased = ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 0, 100, 5);
+
+		assertEquals(10, tokensLeased);
+		assertEquals(1, budgetTable.getNumberOfFailedConditions());
+		assertEquals(60, budgetTable.getTokens(), 0.001);
+	}
+
+	@Test
+	public void leaseGivesUpAfterMaxAttempts() {
+		budgetTable.putBucket(100, System.currentTimeMillis());
+		budgetTable.failAllConditions();
+
+		int tokensLeased = ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 10, 0, 100, 3);
+
+		assertEquals(0, tokensLeased);
+		assertEquals(3, budgetTable.getNumberOfFailedConditions());
+		assertEquals(100, budgetTable.getTokens(), 0.001);
+	}
+
+	@Test
+	public void concurrentLeasesNeverHandOutMoreThanTheBucketHolds() throws Exception {
+		int numberOfThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		try {
+			for (int i = 0; i < numberOfThreads; i++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					int tokensLeased = 0;
+					for (int lease = 0; lease < 20; lease++)
+						tokensLeased += ddbUtil.leaseTokens(budgetTable, TABLE_NAME, BUCKET_ID, 3, 0, 100, 50);
+					return tokensLeased;
+				}));
+			}
+			start.countDown();
+			int totalTokensLeased = 0;
+			for (Future<Integer> future : futures)
+				totalTokensLeased += future.get(30, TimeUnit.SECONDS);
+
+			assertEquals(100, totalTokensLeased + budgetTable.getTokens(), 0.001);
+			assertTrue(budgetTable.getTokens() < 3);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void bucketsSharingBudgetWaitForRefill() {
+		// 50 tokens per second with a burst of 50: 100 tokens take at least one second
+		DistributedTokenBucket bucketA = new DistributedTokenBucket(budgetTable, ddbUtil, TABLE_NAME, BUCKET_ID, 50,
+				10);
+		DistributedTokenBucket bucketB = new DistributedTokenBucket(budgetTable, ddbUtil, TABLE_NAME, BUCKET_ID, 50,
+				10);
+		long startMillis = System.currentTimeMillis();
+		for (int i = 0; i < 50; i++) {
+			bucketA.acquire();
+			bucketB.acquire();
+		}
+		long elapsedMillis = System.currentTimeMillis() - startMillis;
+
+		assertTrue("Elapsed: " + elapsedMillis + " ms", elapsedMillis >= 800);
+		assertTrue(bucketA.getNumberOfEmptyLeases() + bucketB.getNumberOfEmptyLeases() > 0);
+	}
+
+	/**
+	 * A stand-in for the DynamoDB table of the Glue API budget. It holds the item
+	 * of one bucket and supports the requests of DDBUtil.leaseTokens, with the
+	 * same condition semantics as DynamoDB.
+	 */
+	private static class BudgetTable extends AbstractAmazonDynamoDB {
+
+		private Map<String, AttributeValue> item;
+		private Runnable interleavedUpdate;
+		private boolean failAllConditions;
+		private int numberOfFailedConditions;
+
+		synchronized void putBucket(double tokens, long lastRefillMillis) {
+			item = new HashMap<String, AttributeValue>();
+			item.put("bucket_id", new AttributeValue(BUCKET_ID));
+			item.put("tokens", new AttributeValue().withN(Double.toString(tokens)));
+			item.put("last_refill_ms", new AttributeValue().withN(Long.toString(lastRefillMillis)));
+		}
+
+		synchronized double getTokens() {
+			return Double.parseDouble(item.get("tokens").getN());
+		}
+
+		synchronized long getLastRefillMillis() {
+			return Long.parseLong(item.get("last_refill_ms").getN());
+		}
+
+		synchronized void interleaveBeforeNextUpdate(Runnable update) {
+			interleavedUpdate = update;
+		}
+
+		synchronized void failAllConditions() {
+			failAllConditions = true;
+		}
+
+		synchronized int getNumberOfFailedConditions() {
+			return numberOfFailedConditions;
+		}
+
+		@Override
+		public synchronized GetItemResult getItem(GetItemRequest request) {
+			return new GetItemResult().withItem(item == null ? null : new HashMap<String, AttributeValue>(item));
+		}
+
+		@Override
+		public synchronized PutItemResult putItem(PutItemRequest request) {
+			assertEquals("attribute_not_exists(bucket_id)", request.getConditionExpression());
+			if (item != null)
+				throw conditionFailed();
+			item = new HashMap<String, AttributeValue>(request.getItem());
+			return new PutItemResult();
+		}
+
+		@Override
+		public synchronized UpdateItemResult updateItem(UpdateItemRequest request) {
+			assertEquals("SET tokens = :new_tokens, last_refill_ms = :now", request.getUpdateExpression());
+			assertEquals("tokens = :old_tokens AND last_refill_ms = :old_refill", request.getConditionExpression());
+			if (interleavedUpdate != null) {
+				Runnable update = interleavedUpdate;
+				interleavedUpdate = null;
+				update.run();
+			}
+			Map<String, AttributeValue> values = request.getExpressionAttributeValues();
+			if (failAllConditions || !item.get("tokens").equals(values.get(":old_tokens"))
+					|| !item.get("last_refill_ms").equals(values.get(":old_refill")))
+				throw conditionFailed();
+			item.put("tokens", values.get(":new_tokens"));
+			item.put("last_refill_ms", values.get(":now"));
+			return new UpdateItemResult();
+		}
+
+		private ConditionalCheckFailedException conditionFailed() {
+			numberOfFailedConditions++;
+			return new ConditionalCheckFailedException("The conditional request failed");
+		}
+	}
+}